@@ -0,0 +1,17 @@
+package com.mythicemporium.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+// The cache interceptor runs outside the transaction interceptor so a cache hit
+// never opens a transaction or borrows a connection.
+@Configuration
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
+public class CacheConfig {
+
+    public static final String BRANDS = "brands";
+    public static final String ALL_BRANDS = "allBrands";
+    public static final String CATEGORIES = "categories";
+    public static final String ALL_CATEGORIES = "allCategories";
+}
@@ -0,0 +1,46 @@
+package com.mythicemporium.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "catalog")
+public class CatalogProperties {
+
+    public enum ReadMode {
+        ENTITY,
+        PROJECTION,
+        SNAPSHOT
+    }
+
+    private ReadMode readMode = ReadMode.ENTITY;
+
+    // Edits sent without If-Match are re-run this many times in total when they lose an
+    // optimistic version check, waiting a random part of the backoff between attempts.
+    private int conflictRetryAttempts = 3;
+    private Duration conflictRetryBackoff = Duration.ofMillis(20);
+
+    // Changes queued for one catalog stream subscriber before it is told to resync instead, and
+    // changes kept for subscribers resuming with Last-Event-ID.
+    private int streamBufferSize = 256;
+    private int streamReplaySize = 1024;
+    private Duration streamTimeout = Duration.ofMinutes(30);
+
+    // A subscriber whose connection blocks a single send for longer than this is dropped.
+    private Duration streamSendTimeout = Duration.ofSeconds(30);
+
+    // Bulk stock and price updates are applied in transactions of this many rows, so a failure
+    // only rolls back its own chunk.
+    private int bulkChunkSize = 500;
+    private int bulkMaxRows = 50000;
+
+    // Imported products are validated and inserted this many at a time, one transaction each.
+    private int importChunkSize = 500;
+
+    // SKUs whose variation id is kept in memory for lookups by SKU.
+    private int skuCacheSize = 100000;
+}
@@ -0,0 +1,31 @@
+package com.mythicemporium.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "inventory")
+public class InventoryProperties {
+
+    public enum Mode {
+        // Every purchase decrements product_variation.stock in its own transaction.
+        DATABASE,
+        // Purchases decrement in-memory counters and a background flusher writes the deltas back.
+        MEMORY
+    }
+
+    private Mode mode = Mode.DATABASE;
+    private long flushIntervalMs = 5;
+
+    // Database purchases of the same variation arriving within this window are applied together in
+    // one transaction. Zero applies every purchase on its own.
+    private Duration purchaseBatchWindow = Duration.ZERO;
+    private int purchaseBatchSize = 64;
+
+    private Duration reservationTtl = Duration.ofMinutes(10);
+    private int reservationSweepBatchSize = 500;
+}
@@ -34,6 +34,8 @@ public class SecurityConfig {
                     .requestMatchers("/api/brands/**").permitAll()
                     .requestMatchers("/api/categories/**").permitAll()
                     .requestMatchers("/api/admin/**").hasRole("ADMIN")
+                    .requestMatchers("/actuator/health").permitAll()
+                    .requestMatchers("/actuator/**").hasRole("ADMIN")
                     .requestMatchers("/api/**").authenticated()
                     .anyRequest().permitAll()
             )
@@ -2,13 +2,16 @@ package com.mythicemporium.controller;
 
 import com.mythicemporium.dto.BrandRequestDTO;
 import com.mythicemporium.model.Brand;
+import com.mythicemporium.service.CatalogRevision;
 import com.mythicemporium.service.BrandService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -18,32 +21,43 @@ import java.util.concurrent.CompletableFuture;
 public class BrandController {
 
     private BrandService service;
+    private CatalogRevision catalogRevision;
 
-    public BrandController(BrandService service) {
+    public BrandController(BrandService service, CatalogRevision catalogRevision) {
         this.service = service;
+        this.catalogRevision = catalogRevision;
     }
 
     @Operation(summary = "Fetches all brands")
     @ApiResponse(responseCode = "200", description = "Successfully retrieved all brands")
+    @ApiResponse(responseCode = "304", description = "Catalog unchanged since the given ETag")
     @ApiResponse(responseCode = "500", description = "Failed to connect to database")
     @GetMapping
     @PreAuthorize("permitAll()")
-    public ResponseEntity<List<Brand>> getAll() {
-        return ResponseEntity.ok(service.findAll());
+    public ResponseEntity<List<Brand>> getAll(WebRequest webRequest) {
+        if(webRequest.checkNotModified(catalogRevision.etag())) {
+            return null;
+        }
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(service.findAll());
     }
 
     @Operation(summary = "Fetches brand by id")
     @ApiResponse(responseCode = "200", description = "Successfully retrieved brand by id")
+    @ApiResponse(responseCode = "304", description = "Catalog unchanged since the given ETag")
     @ApiResponse(responseCode = "500", description = "Failed to connect to database")
     @GetMapping("/{brandId}")
     @PreAuthorize("permitAll()")
-    public ResponseEntity<?> findById(@PathVariable Long brandId) {
+    public ResponseEntity<?> findById(@PathVariable Long brandId, WebRequest webRequest) {
+        if(webRequest.checkNotModified(catalogRevision.etag())) {
+            return null;
+        }
+
         Brand brand = service.findById(brandId);
 
         if(brand == null) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        return ResponseEntity.ok(brand);
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(brand);
     }
 
     @Operation(summary = "Adds a brand and returns it")
@@ -2,13 +2,16 @@ package com.mythicemporium.controller;
 
 import com.mythicemporium.dto.CategoryRequestDTO;
 import com.mythicemporium.model.Category;
+import com.mythicemporium.service.CatalogRevision;
 import com.mythicemporium.service.CategoryService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -18,32 +21,43 @@ import java.util.concurrent.CompletableFuture;
 public class CategoryController {
 
     private CategoryService service;
+    private CatalogRevision catalogRevision;
 
-    public CategoryController(CategoryService service) {
+    public CategoryController(CategoryService service, CatalogRevision catalogRevision) {
         this.service = service;
+        this.catalogRevision = catalogRevision;
     }
 
     @Operation(summary = "Fetches all categories")
     @ApiResponse(responseCode = "200", description = "Successfully retrieved all categorys")
+    @ApiResponse(responseCode = "304", description = "Catalog unchanged since the given ETag")
     @ApiResponse(responseCode = "500", description = "Failed to connect to database")
     @GetMapping
     @PreAuthorize("permitAll()")
-    public ResponseEntity<List<Category>> getAll() {
-        return ResponseEntity.ok(service.findAll());
+    public ResponseEntity<List<Category>> getAll(WebRequest webRequest) {
+        if(webRequest.checkNotModified(catalogRevision.etag())) {
+            return null;
+        }
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(service.findAll());
     }
 
     @Operation(summary = "Fetches category by id")
     @ApiResponse(responseCode = "200", description = "Successfully retrieved category by id")
+    @ApiResponse(responseCode = "304", description = "Catalog unchanged since the given ETag")
     @ApiResponse(responseCode = "500", description = "Failed to connect to database")
     @GetMapping("/{categoryId}")
     @PreAuthorize("permitAll()")
-    public ResponseEntity<?> findById(@PathVariable Long categoryId) {
+    public ResponseEntity<?> findById(@PathVariable Long categoryId, WebRequest webRequest) {
+        if(webRequest.checkNotModified(catalogRevision.etag())) {
+            return null;
+        }
+
         Category category = service.findById(categoryId);
 
         if(category == null) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        return ResponseEntity.ok(category);
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(category);
     }
 
     @Operation(summary = "Adds a category and returns it")
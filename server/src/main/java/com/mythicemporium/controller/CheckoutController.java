@@ -0,0 +1,41 @@
+package com.mythicemporium.controller;
+
+import com.mythicemporium.dto.CheckoutRequestDTO;
+import com.mythicemporium.service.CheckoutService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("/api/checkout")
+public class CheckoutController {
+
+    private CheckoutService service;
+
+    public CheckoutController(CheckoutService service) {
+        this.service = service;
+    }
+
+    @Operation(summary = "Purchases every line of a cart in one transaction")
+    @ApiResponse(responseCode = "200", description = "Successfully purchased all lines")
+    @ApiResponse(responseCode = "400", description = "Invalid cart")
+    @ApiResponse(responseCode = "404", description = "A variation in the cart does not exist")
+    @ApiResponse(responseCode = "409", description = "One or more lines lack stock; nothing was purchased")
+    @ApiResponse(responseCode = "500", description = "Failed to connect to database")
+    @PostMapping
+    @PreAuthorize("isAuthenticated()")
+    public CompletableFuture<ResponseEntity<?>> checkout(@RequestBody CheckoutRequestDTO checkoutRequestDTO) {
+        return service.checkout(checkoutRequestDTO)
+                .thenApply(result -> {
+                    if(!result.isSuccess()) {
+                        return new ResponseEntity<>(result.getData(), HttpStatus.CONFLICT);
+                    }
+                    return ResponseEntity.ok(result.getData());
+                });
+    }
+}
@@ -1,14 +1,34 @@
 package com.mythicemporium.controller;
 
 import com.mythicemporium.dto.*;
+import com.mythicemporium.exception.InvalidRequestException;
+import com.mythicemporium.service.AttributeFacetService;
+import com.mythicemporium.service.BulkUpdateService;
+import com.mythicemporium.service.CatalogExportService;
+import com.mythicemporium.service.CatalogChangeStream;
+import com.mythicemporium.service.CatalogRevision;
+import com.mythicemporium.service.ConflictRetryExecutor;
+import com.mythicemporium.service.IdempotencyService;
+import com.mythicemporium.service.ProductImportService;
 import com.mythicemporium.service.ProductService;
+import com.mythicemporium.service.Result;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
@@ -16,37 +36,168 @@ import java.util.concurrent.CompletableFuture;
 @RequestMapping("/api/products")
 public class ProductController {
 
+    private static final String DEFAULT_PAGE_LIMIT = "50";
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String CSV = "text/csv";
+
     private ProductService service;
+    private CatalogExportService exportService;
+    private AttributeFacetService facetService;
+    private CatalogRevision catalogRevision;
+    private IdempotencyService idempotencyService;
+    private ConflictRetryExecutor conflictRetryExecutor;
+    private CatalogChangeStream changeStream;
+    private BulkUpdateService bulkUpdateService;
+    private ProductImportService importService;
 
-    public ProductController(ProductService service) {
+    public ProductController(ProductService service, CatalogExportService exportService, AttributeFacetService facetService,
+                             CatalogRevision catalogRevision, IdempotencyService idempotencyService,
+                             ConflictRetryExecutor conflictRetryExecutor, CatalogChangeStream changeStream,
+                             BulkUpdateService bulkUpdateService, ProductImportService importService) {
         this.service = service;
+        this.exportService = exportService;
+        this.facetService = facetService;
+        this.catalogRevision = catalogRevision;
+        this.idempotencyService = idempotencyService;
+        this.conflictRetryExecutor = conflictRetryExecutor;
+        this.changeStream = changeStream;
+        this.bulkUpdateService = bulkUpdateService;
+        this.importService = importService;
     }
 
-    @Operation(summary = "Fetches all products")
-    @ApiResponse(responseCode = "200", description = "Successfully retrieved all products")
+    @Operation(summary = "Fetches all products, optionally filtered by variation price and stock and sorted by price, name or stock")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved a page of products")
+    @ApiResponse(responseCode = "304", description = "Catalog unchanged since the given ETag")
+    @ApiResponse(responseCode = "400", description = "Invalid page cursor, limit, filter or sort")
     @ApiResponse(responseCode = "500", description = "Failed to connect to database")
     @GetMapping
     @PreAuthorize("permitAll()")
-    public ResponseEntity<List<ProductResponseDTO>> getAll() {
-        return ResponseEntity.ok(service.findAll());
+    public ResponseEntity<List<ProductResponseDTO>> getAll(@RequestParam(required = false) String after,
+                                                           @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit,
+                                                           @RequestParam(required = false) Double minPrice,
+                                                           @RequestParam(required = false) Double maxPrice,
+                                                           @RequestParam(defaultValue = "false") boolean inStock,
+                                                           @RequestParam(required = false) String sort,
+                                                           WebRequest webRequest) {
+        if(webRequest.checkNotModified(catalogRevision.etag())) {
+            return null;
+        }
+
+        if(minPrice != null || maxPrice != null || inStock || sort != null) {
+            return toPageResponse(service.findFiltered(after, limit, minPrice, maxPrice, inStock, sort));
+        }
+        return toPageResponse(service.findAll(after, limit));
     }
 
     @Operation(summary = "Fetches all products filtered by brand")
     @ApiResponse(responseCode = "200", description = "Successfully retrieved brand filtered products")
+    @ApiResponse(responseCode = "304", description = "Catalog unchanged since the given ETag")
+    @ApiResponse(responseCode = "400", description = "Invalid page cursor or limit")
     @ApiResponse(responseCode = "500", description = "Failed to connect to database")
     @GetMapping("/brand/{brandId}")
     @PreAuthorize("permitAll()")
-    public ResponseEntity<List<ProductResponseDTO>> getAllByBrandId(@PathVariable Long brandId) {
-        return ResponseEntity.ok(service.findAllByBrandId(brandId));
+    public ResponseEntity<List<ProductResponseDTO>> getAllByBrandId(@PathVariable Long brandId,
+                                                                    @RequestParam(required = false) String after,
+                                                                    @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit,
+                                                                    WebRequest webRequest) {
+        if(webRequest.checkNotModified(catalogRevision.etag())) {
+            return null;
+        }
+        return toPageResponse(service.findAllByBrandId(brandId, after, limit));
     }
 
     @Operation(summary = "Fetches all products filtered by category ")
     @ApiResponse(responseCode = "200", description = "Successfully retrieved category filtered products")
+    @ApiResponse(responseCode = "304", description = "Catalog unchanged since the given ETag")
+    @ApiResponse(responseCode = "400", description = "Invalid page cursor or limit")
     @ApiResponse(responseCode = "500", description = "Failed to connect to database")
     @GetMapping("/category/{categoryId}")
     @PreAuthorize("permitAll()")
-    public ResponseEntity<List<ProductResponseDTO>> getAllByCategoryId(@PathVariable Long categoryId) {
-        return ResponseEntity.ok(service.findAllByCategoryId(categoryId));
+    public ResponseEntity<List<ProductResponseDTO>> getAllByCategoryId(@PathVariable Long categoryId,
+                                                                       @RequestParam(required = false) String after,
+                                                                       @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit,
+                                                                    WebRequest webRequest) {
+        if(webRequest.checkNotModified(catalogRevision.etag())) {
+            return null;
+        }
+        return toPageResponse(service.findAllByCategoryId(categoryId, after, limit));
+    }
+
+    @Operation(summary = "Searches products by name, description, brand and category")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved a page of ranked search results")
+    @ApiResponse(responseCode = "304", description = "Catalog unchanged since the given ETag")
+    @ApiResponse(responseCode = "400", description = "Invalid query, page or limit")
+    @ApiResponse(responseCode = "500", description = "Failed to connect to database")
+    @GetMapping("/search")
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<List<ProductResponseDTO>> search(@RequestParam(required = false) String q,
+                                                           @RequestParam(defaultValue = "0") int page,
+                                                           @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit,
+                                                           WebRequest webRequest) {
+        if(webRequest.checkNotModified(catalogRevision.etag())) {
+            return null;
+        }
+        return toPageResponse(service.searchProducts(q, page, limit), "page");
+    }
+
+    @Operation(summary = "Filters variations by attributes and returns facet counts")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved matching variation ids and facet counts")
+    @ApiResponse(responseCode = "304", description = "Catalog unchanged since the given ETag")
+    @ApiResponse(responseCode = "400", description = "Invalid attribute filter, cursor or limit")
+    @GetMapping("/facets")
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<FacetSearchResultDTO> facets(@RequestParam(name = "attribute", required = false) List<String> attributes,
+                                                       @RequestParam(required = false) Long after,
+                                                       @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit,
+                                                       WebRequest webRequest) {
+        if(webRequest.checkNotModified(catalogRevision.etag())) {
+            return null;
+        }
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(facetService.search(attributes, after, limit));
+    }
+
+    @Operation(summary = "Fetches a product variation by SKU, ignoring case")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved the variation and its product id")
+    @ApiResponse(responseCode = "404", description = "No variation has this SKU")
+    @ApiResponse(responseCode = "500", description = "Failed to connect to database")
+    @GetMapping("/variations/by-sku/{sku}")
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<SkuLookupDTO> getVariationBySku(@PathVariable String sku) {
+        return ResponseEntity.ok(service.findVariationBySku(sku));
+    }
+
+    @Operation(summary = "Streams the full catalog as newline-delimited JSON")
+    @ApiResponse(responseCode = "200", description = "Successfully streamed the catalog")
+    @ApiResponse(responseCode = "403", description = "Access denied")
+    @ApiResponse(responseCode = "500", description = "Failed to connect to database")
+    @GetMapping(value = "/export", produces = NDJSON)
+    @PreAuthorize("hasRole('ADMIN')")
+    public void exportProducts(HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        exportService.exportProducts(response.getOutputStream());
+    }
+
+    @Operation(summary = "Imports products from newline-delimited JSON or CSV, reporting the lines that failed")
+    @ApiResponse(responseCode = "200", description = "Imported the valid products; see the errors for the rest")
+    @ApiResponse(responseCode = "400", description = "CSV header is missing columns")
+    @ApiResponse(responseCode = "403", description = "Access denied")
+    @ApiResponse(responseCode = "500", description = "Failed to connect to database")
+    @PostMapping(value = "/import", consumes = {NDJSON, CSV})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ImportResultDTO> importProducts(HttpServletRequest request) throws IOException {
+        ProductImportService.Format format = MediaType.parseMediaType(request.getContentType()).isCompatibleWith(MediaType.parseMediaType(CSV))
+                ? ProductImportService.Format.CSV
+                : ProductImportService.Format.NDJSON;
+        return ResponseEntity.ok(importService.importProducts(request.getInputStream(), format));
+    }
+
+    @Operation(summary = "Streams stock, price and product changes as Server-Sent Events, resuming after Last-Event-ID")
+    @ApiResponse(responseCode = "200", description = "Successfully subscribed to catalog changes")
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("permitAll()")
+    public SseEmitter stream(@RequestHeader(name = "Last-Event-ID", required = false) String lastEventId) {
+        return changeStream.subscribe(lastEventId);
     }
 
     @Operation(summary = "Adds a product and returns it")
@@ -56,31 +207,42 @@ public class ProductController {
     @ApiResponse(responseCode = "500", description = "Failed to connect to database")
     @PostMapping
     @PreAuthorize("hasPermission(#productRequestDTO, 'create')")
-    public CompletableFuture<ResponseEntity<?>> createProduct(@RequestBody ProductRequestDTO productRequestDTO) {
-        return service.createProduct(productRequestDTO)
+    public CompletableFuture<ResponseEntity<?>> createProduct(@RequestBody ProductRequestDTO productRequestDTO,
+                                                              @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, "POST /products", productRequestDTO, () -> service.createProduct(productRequestDTO)
                 .thenApply(result -> {
                     if(!result.isSuccess()) {
                         return new ResponseEntity<>(result.getErrorMessages(), HttpStatus.BAD_REQUEST);
                     }
                     return new ResponseEntity<>(result.getData(), HttpStatus.CREATED);
-                });
+                }));
     }
 
-    @Operation(summary = "Updates a product")
+    @Operation(summary = "Updates a product, optionally only if it is still at the version given in If-Match")
     @ApiResponse(responseCode = "200", description = "Successfully updated product")
     @ApiResponse(responseCode = "400", description = "Failed to update product")
     @ApiResponse(responseCode = "403", description = "Access denied")
+    @ApiResponse(responseCode = "409", description = "Product kept changing concurrently")
+    @ApiResponse(responseCode = "412", description = "Product is no longer at the If-Match version")
     @ApiResponse(responseCode = "500", description = "Failed to connect to database")
     @PutMapping("/{productId}")
     @PreAuthorize("hasPermission(#productRequestDTO, 'update')")
-    public CompletableFuture<ResponseEntity<?>> updateProduct(@PathVariable Long productId, @RequestBody ProductRequestDTO productRequestDTO) {
-        return service.updateProduct(productId, productRequestDTO)
-                .thenApply(result -> {
-                    if(!result.isSuccess()) {
-                        return new ResponseEntity<>(result.getErrorMessages(), HttpStatus.BAD_REQUEST);
-                    }
-                    return ResponseEntity.ok(result.getData());
-                });
+    public CompletableFuture<ResponseEntity<?>> updateProduct(@PathVariable Long productId, @RequestBody ProductRequestDTO productRequestDTO,
+                                                              @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                              @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        Long expectedVersion = parseIfMatch(ifMatch);
+        return idempotencyService.execute(idempotencyKey, "PUT /products/" + productId + " " + ifMatch, productRequestDTO, () -> {
+            CompletableFuture<Result> update = expectedVersion == null
+                    ? conflictRetryExecutor.execute("product.update", () -> service.updateProduct(productId, productRequestDTO))
+                    : conflictRetryExecutor.executeOnce("product.update", () -> service.updateProduct(productId, productRequestDTO, expectedVersion));
+            return update.thenApply(result -> {
+                if(!result.isSuccess()) {
+                    return new ResponseEntity<>(result.getErrorMessages(), HttpStatus.BAD_REQUEST);
+                }
+                Long version = result.getData() instanceof ProductResponseDTO product ? product.getVersion() : null;
+                return withVersion(ResponseEntity.ok(), version).body(result.getData());
+            });
+        });
     }
 
     @Operation(summary = "Deletes a product")
@@ -90,11 +252,26 @@ public class ProductController {
     @ApiResponse(responseCode = "500", description = "Failed to connect to database")
     @DeleteMapping("/{productId}")
     @PreAuthorize("hasPermission(#productId, 'Product', 'delete')")
-    public ResponseEntity<?> deleteProduct(@PathVariable Long productId) {
-        if(service.deleteProduct(productId)) {
-            return new ResponseEntity<>("Product " + productId + " successfully deleted.", HttpStatus.NO_CONTENT);
-        }
-        return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    public ResponseEntity<?> deleteProduct(@PathVariable Long productId,
+                                           @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.executeNow(idempotencyKey, "DELETE /products/" + productId, null, () -> {
+            if(service.deleteProduct(productId)) {
+                return new ResponseEntity<>("Product " + productId + " successfully deleted.", HttpStatus.NO_CONTENT);
+            }
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        });
+    }
+
+    @Operation(summary = "Deletes many products with their variations in chunked transactions, reporting ids not found or not deleted")
+    @ApiResponse(responseCode = "200", description = "Deleted the products that exist; see notFound and failed")
+    @ApiResponse(responseCode = "400", description = "Empty, oversized or invalid request")
+    @ApiResponse(responseCode = "403", description = "Access denied")
+    @DeleteMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> deleteProductsBulk(@RequestBody List<Long> productIds,
+                                                @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.executeNow(idempotencyKey, "DELETE /products", productIds,
+                () -> ResponseEntity.ok(bulkUpdateService.deleteProducts(productIds)));
     }
 
     @Operation(summary = "Adds a product variation and returns it")
@@ -104,31 +281,73 @@ public class ProductController {
     @ApiResponse(responseCode = "500", description = "Failed to connect to database")
     @PostMapping("/{productId}/variations")
     @PreAuthorize("hasPermission(#productVariationDTO, 'create')")
-    public CompletableFuture<ResponseEntity<?>> createVariation(@PathVariable Long productId, @RequestBody ProductVariationRequestDTO productVariationDTO) {
-        return service.createVariation(productId, productVariationDTO)
-                .thenApply(result -> {
-                    if(!result.isSuccess()) {
-                        return new ResponseEntity<>(result.getErrorMessages(), HttpStatus.BAD_REQUEST);
-                    }
-                    return new ResponseEntity<>(result.getData(), HttpStatus.CREATED);
-                });
+    public CompletableFuture<ResponseEntity<?>> createVariation(@PathVariable Long productId, @RequestBody ProductVariationRequestDTO productVariationDTO,
+                                                                @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, "POST /products/" + productId + "/variations", productVariationDTO,
+                () -> service.createVariation(productId, productVariationDTO)
+                        .thenApply(result -> {
+                            if(!result.isSuccess()) {
+                                return new ResponseEntity<>(result.getErrorMessages(), HttpStatus.BAD_REQUEST);
+                            }
+                            return new ResponseEntity<>(result.getData(), HttpStatus.CREATED);
+                        }));
     }
 
-    @Operation(summary = "Updates a product variation")
+    @Operation(summary = "Updates a product variation, optionally only if it is still at the version given in If-Match")
     @ApiResponse(responseCode = "200", description = "Successfully updated product variation")
     @ApiResponse(responseCode = "400", description = "Failed to update product variation")
     @ApiResponse(responseCode = "403", description = "Access denied")
+    @ApiResponse(responseCode = "409", description = "Product variation kept changing concurrently")
+    @ApiResponse(responseCode = "412", description = "Product variation is no longer at the If-Match version")
     @ApiResponse(responseCode = "500", description = "Failed to connect to database")
     @PutMapping("/variations/{variationId}")
     @PreAuthorize("hasPermission(#productVariationDTO, 'update')")
-    public CompletableFuture<ResponseEntity<?>> updateVariation(@PathVariable Long variationId, @RequestBody ProductVariationRequestDTO productVariationDTO) {
-        return service.updateVariation(variationId, productVariationDTO)
-                .thenApply(result -> {
-                    if(!result.isSuccess()) {
-                        return new ResponseEntity<>(result.getErrorMessages(), HttpStatus.BAD_REQUEST);
-                    }
-                    return new ResponseEntity<>(result.getData(), HttpStatus.OK);
-                });
+    public CompletableFuture<ResponseEntity<?>> updateVariation(@PathVariable Long variationId, @RequestBody ProductVariationRequestDTO productVariationDTO,
+                                                                @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                                @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        Long expectedVersion = parseIfMatch(ifMatch);
+        return idempotencyService.execute(idempotencyKey, "PUT /products/variations/" + variationId + " " + ifMatch, productVariationDTO, () -> {
+            CompletableFuture<Result> update = expectedVersion == null
+                    ? conflictRetryExecutor.execute("variation.update", () -> service.updateVariation(variationId, productVariationDTO))
+                    : conflictRetryExecutor.executeOnce("variation.update", () -> service.updateVariation(variationId, productVariationDTO, expectedVersion));
+            return update.thenApply(result -> {
+                if(!result.isSuccess()) {
+                    return new ResponseEntity<>(result.getErrorMessages(), HttpStatus.BAD_REQUEST);
+                }
+                Long version = result.getData() instanceof ProductResponseDTO product
+                        ? product.getVariations().stream()
+                                .filter(variation -> variationId.equals(variation.getId()))
+                                .map(ProductVariationResponseDTO::getVersion)
+                                .findFirst()
+                                .orElse(null)
+                        : null;
+                return withVersion(ResponseEntity.ok(), version).body(result.getData());
+            });
+        });
+    }
+
+    @Operation(summary = "Sets the stock of many product variations in chunked transactions, reporting a result per row")
+    @ApiResponse(responseCode = "200", description = "Applied the valid rows; see each row's status")
+    @ApiResponse(responseCode = "400", description = "Empty or oversized request")
+    @ApiResponse(responseCode = "403", description = "Access denied")
+    @PatchMapping("/variations/stock")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> updateVariationStockBulk(@RequestBody List<StockUpdateDTO> stockUpdateDTOs,
+                                                      @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.executeNow(idempotencyKey, "PATCH /products/variations/stock", stockUpdateDTOs,
+                () -> ResponseEntity.ok(bulkUpdateService.updateStock(stockUpdateDTOs)));
+    }
+
+    @Operation(summary = "Sets the price of many product variations in chunked transactions, reporting a result per row")
+    @ApiResponse(responseCode = "200", description = "Applied the valid rows; see each row's status")
+    @ApiResponse(responseCode = "400", description = "Empty or oversized request")
+    @ApiResponse(responseCode = "403", description = "Access denied")
+    @PatchMapping("/variations/price")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> updateVariationPriceBulk(@RequestBody List<PriceUpdateDTO> priceUpdateDTOs,
+                                                      @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.executeNow(idempotencyKey, "PATCH /products/variations/price", priceUpdateDTOs,
+                () -> ResponseEntity.ok(bulkUpdateService.updatePrices(priceUpdateDTOs)));
     }
 
     @Operation(summary = "Updates a product variation stock")
@@ -138,11 +357,32 @@ public class ProductController {
     @ApiResponse(responseCode = "500", description = "Failed to connect to database")
     @PatchMapping("/variations/{variationId}/stock")
     @PreAuthorize("hasPermission(#stockUpdateDTO, 'update')")
-    public ResponseEntity<?> updateVariationStock(@PathVariable Long variationId, @RequestBody StockUpdateDTO stockUpdateDTO) {
-        if(service.updateVariationStock(variationId, stockUpdateDTO.getStock())) {
-            return ResponseEntity.ok("Stock updated for variation " + variationId + ".");
-        }
-        return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    public ResponseEntity<?> updateVariationStock(@PathVariable Long variationId, @RequestBody StockUpdateDTO stockUpdateDTO,
+                                                  @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.executeNow(idempotencyKey, "PATCH /products/variations/" + variationId + "/stock", stockUpdateDTO, () -> {
+            if(service.updateVariationStock(variationId, stockUpdateDTO.getStock())) {
+                return ResponseEntity.ok("Stock updated for variation " + variationId + ".");
+            }
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        });
+    }
+
+    @Operation(summary = "Splits a product variation's stock across bucket rows to spread purchase contention")
+    @ApiResponse(responseCode = "200", description = "Successfully updated product variation stock shards")
+    @ApiResponse(responseCode = "400", description = "Failed to update product variation stock shards")
+    @ApiResponse(responseCode = "403", description = "Access denied")
+    @ApiResponse(responseCode = "404", description = "Product variation not found")
+    @ApiResponse(responseCode = "500", description = "Failed to connect to database")
+    @PatchMapping("/variations/{variationId}/stock/shards")
+    @PreAuthorize("hasPermission(#stockShardsUpdateDTO, 'update')")
+    public ResponseEntity<?> updateVariationStockShards(@PathVariable Long variationId, @RequestBody StockShardsUpdateDTO stockShardsUpdateDTO,
+                                                        @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.executeNow(idempotencyKey, "PATCH /products/variations/" + variationId + "/stock/shards", stockShardsUpdateDTO, () -> {
+            if(service.updateVariationStockShards(variationId, stockShardsUpdateDTO.getShards())) {
+                return ResponseEntity.ok("Stock shards updated for variation " + variationId + ".");
+            }
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        });
     }
 
     @Operation(summary = "Updates a product variation price")
@@ -152,11 +392,28 @@ public class ProductController {
     @ApiResponse(responseCode = "500", description = "Failed to connect to database")
     @PatchMapping("/variations/{variationId}/price")
     @PreAuthorize("hasPermission(#priceUpdateDTO, 'update')")
-    public ResponseEntity<?> updateVariationPrice(@PathVariable Long variationId, @RequestBody PriceUpdateDTO priceUpdateDTO) {
-        if(service.updateVariationPrice(variationId, priceUpdateDTO.getPrice())) {
-            return ResponseEntity.ok("Price updated for variation " + variationId + ".");
-        }
-        return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    public ResponseEntity<?> updateVariationPrice(@PathVariable Long variationId, @RequestBody PriceUpdateDTO priceUpdateDTO,
+                                                  @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.executeNow(idempotencyKey, "PATCH /products/variations/" + variationId + "/price", priceUpdateDTO, () -> {
+            if(service.updateVariationPrice(variationId, priceUpdateDTO.getPrice())) {
+                return ResponseEntity.ok("Price updated for variation " + variationId + ".");
+            }
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        });
+    }
+
+    @Operation(summary = "Purchases a quantity of a product variation")
+    @ApiResponse(responseCode = "200", description = "Successfully purchased product variation")
+    @ApiResponse(responseCode = "400", description = "Invalid quantity or insufficient stock")
+    @ApiResponse(responseCode = "500", description = "Failed to connect to database")
+    @PostMapping("/variations/{variationId}/purchase")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<?> purchaseVariation(@PathVariable Long variationId, @RequestBody PurchaseRequestDTO purchaseRequestDTO,
+                                               @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.executeNow(idempotencyKey, "POST /products/variations/" + variationId + "/purchase", purchaseRequestDTO, () -> {
+            service.purchaseProduct(variationId, purchaseRequestDTO.getQuantity());
+            return ResponseEntity.ok("Purchased " + purchaseRequestDTO.getQuantity() + " of variation " + variationId + ".");
+        });
     }
 
     @Operation(summary = "Deletes a product variation")
@@ -166,10 +423,57 @@ public class ProductController {
     @ApiResponse(responseCode = "500", description = "Failed to connect to database")
     @DeleteMapping("/variations/{variationId}")
     @PreAuthorize("hasPermission(#variationId, 'ProductVariation', 'delete')")
-    public ResponseEntity<?> deleteVariation(@PathVariable Long variationId) {
-        if(service.deleteVariation(variationId)) {
-            return new ResponseEntity<>("Variation " + variationId + " successfully deleted.", HttpStatus.NO_CONTENT);
+    public ResponseEntity<?> deleteVariation(@PathVariable Long variationId,
+                                             @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.executeNow(idempotencyKey, "DELETE /products/variations/" + variationId, null, () -> {
+            if(service.deleteVariation(variationId)) {
+                return new ResponseEntity<>("Variation " + variationId + " successfully deleted.", HttpStatus.NO_CONTENT);
+            }
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        });
+    }
+
+    // Versions are exchanged as strong entity tags: ETag on responses, If-Match on updates. A
+    // missing header or "*" makes the update unconditional.
+    private Long parseIfMatch(String ifMatch) {
+        if(ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+
+        String tag = ifMatch.trim();
+        if(tag.length() < 3 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            throw new InvalidRequestException("If-Match must be a single quoted version.");
+        }
+
+        try {
+            return Long.parseLong(tag.substring(1, tag.length() - 1));
+        }
+        catch(NumberFormatException e) {
+            throw new InvalidRequestException("If-Match must be a single quoted version.");
         }
-        return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+
+    private ResponseEntity.BodyBuilder withVersion(ResponseEntity.BodyBuilder builder, Long version) {
+        return version == null ? builder : builder.eTag("\"" + version + "\"");
+    }
+
+    // The next page is advertised through an RFC 8288 Link header so the body stays a plain list.
+    private ResponseEntity<List<ProductResponseDTO>> toPageResponse(ProductPageDTO page) {
+        return toPageResponse(page, "after");
+    }
+
+    private ResponseEntity<List<ProductResponseDTO>> toPageResponse(ProductPageDTO page, String cursorParam) {
+        if(page.getNextCursor() == null) {
+            return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(page.getProducts());
+        }
+
+        String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam(cursorParam, page.getNextCursor())
+                .toUriString();
+
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                .body(page.getProducts());
     }
 }
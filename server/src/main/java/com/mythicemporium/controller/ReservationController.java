@@ -0,0 +1,61 @@
+package com.mythicemporium.controller;
+
+import com.mythicemporium.dto.ReservationRequestDTO;
+import com.mythicemporium.service.ReservationService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("/api/products/variations")
+public class ReservationController {
+
+    private ReservationService service;
+
+    public ReservationController(ReservationService service) {
+        this.service = service;
+    }
+
+    @Operation(summary = "Holds stock of a variation until the reservation is confirmed, released, or expires")
+    @ApiResponse(responseCode = "201", description = "Successfully reserved stock")
+    @ApiResponse(responseCode = "400", description = "Invalid quantity or insufficient stock")
+    @ApiResponse(responseCode = "500", description = "Failed to connect to database")
+    @PostMapping("/{variationId}/reservations")
+    @PreAuthorize("isAuthenticated()")
+    public CompletableFuture<ResponseEntity<?>> reserve(@PathVariable Long variationId,
+                                                        @RequestBody ReservationRequestDTO reservationRequestDTO,
+                                                        Authentication authentication) {
+        return service.reserve(variationId, reservationRequestDTO.getQuantity(), authentication.getName())
+                .thenApply(result -> new ResponseEntity<>(result.getData(), HttpStatus.CREATED));
+    }
+
+    @Operation(summary = "Confirms a reservation, keeping its stock taken")
+    @ApiResponse(responseCode = "200", description = "Successfully confirmed reservation")
+    @ApiResponse(responseCode = "404", description = "Reservation not found")
+    @ApiResponse(responseCode = "409", description = "Reservation is no longer active")
+    @ApiResponse(responseCode = "500", description = "Failed to connect to database")
+    @PostMapping("/reservations/{reservationId}/confirm")
+    @PreAuthorize("isAuthenticated()")
+    public CompletableFuture<ResponseEntity<?>> confirm(@PathVariable Long reservationId, Authentication authentication) {
+        return service.confirm(reservationId, authentication.getName())
+                .thenApply(result -> ResponseEntity.ok(result.getData()));
+    }
+
+    @Operation(summary = "Releases a reservation, returning its stock")
+    @ApiResponse(responseCode = "200", description = "Successfully released reservation")
+    @ApiResponse(responseCode = "404", description = "Reservation not found")
+    @ApiResponse(responseCode = "409", description = "Reservation is no longer active")
+    @ApiResponse(responseCode = "500", description = "Failed to connect to database")
+    @PostMapping("/reservations/{reservationId}/release")
+    @PreAuthorize("isAuthenticated()")
+    public CompletableFuture<ResponseEntity<?>> release(@PathVariable Long reservationId, Authentication authentication) {
+        return service.release(reservationId, authentication.getName())
+                .thenApply(result -> ResponseEntity.ok(result.getData()));
+    }
+}
@@ -0,0 +1,20 @@
+package com.mythicemporium.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Failed ids belong to chunks that could not be committed; nothing in them was deleted and they can be resent.
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class BulkDeleteResultDTO {
+    private int deleted;
+    private List<Long> notFound = new ArrayList<>();
+    private List<Long> failed = new ArrayList<>();
+}
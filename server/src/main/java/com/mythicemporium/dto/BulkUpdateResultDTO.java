@@ -0,0 +1,18 @@
+package com.mythicemporium.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+// Rows are reported in request order.
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class BulkUpdateResultDTO {
+    private int updated;
+    private List<BulkUpdateRowDTO> rows;
+}
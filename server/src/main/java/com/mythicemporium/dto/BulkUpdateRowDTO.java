@@ -0,0 +1,27 @@
+package com.mythicemporium.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class BulkUpdateRowDTO {
+
+    public enum Status {
+        UPDATED,
+        INVALID,
+        NOT_FOUND,
+        // The row's chunk could not be committed; nothing in it was applied and it can be resent.
+        FAILED
+    }
+
+    private Long variationId;
+    private Status status;
+    private String message;
+}
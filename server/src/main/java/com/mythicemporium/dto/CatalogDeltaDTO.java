@@ -0,0 +1,24 @@
+package com.mythicemporium.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// One change on the catalog stream. Only the fields of the change's kind are set.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class CatalogDeltaDTO {
+    private Long productId;
+    private Long variationId;
+    private Integer stock;
+    private Double price;
+
+    public static CatalogDeltaDTO product(Long productId) {
+        return new CatalogDeltaDTO(productId, null, null, null);
+    }
+}
@@ -0,0 +1,23 @@
+package com.mythicemporium.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public class CatalogRowDTO {
+    private Long productId;
+    private String productName;
+    private String description;
+    private String brandName;
+    private String categoryName;
+
+    private Long variationId;
+    private String sku;
+    private Double price;
+    private Integer stock;
+    private String imageUrl;
+
+    private String attributeName;
+    private String attributeValue;
+}
@@ -0,0 +1,15 @@
+package com.mythicemporium.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class CheckoutLineDTO {
+    private Long variationId;
+    private Integer quantity;
+}
@@ -0,0 +1,16 @@
+package com.mythicemporium.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class CheckoutRequestDTO {
+    private List<CheckoutLineDTO> lines;
+}
@@ -0,0 +1,17 @@
+package com.mythicemporium.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class CheckoutResultDTO {
+    private List<CheckoutLineDTO> lines;
+    private List<CheckoutShortageDTO> shortages;
+}
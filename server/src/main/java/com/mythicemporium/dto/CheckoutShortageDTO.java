@@ -0,0 +1,16 @@
+package com.mythicemporium.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class CheckoutShortageDTO {
+    private Long variationId;
+    private Integer requested;
+    private Integer available;
+}
@@ -0,0 +1,22 @@
+package com.mythicemporium.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.Map;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class FacetSearchResultDTO {
+    private long matchCount;
+    private List<Long> variationIds;
+    private Long nextAfter;
+
+    // attribute name -> attribute value -> number of matching variations
+    private Map<String, Map<String, Integer>> facets;
+}
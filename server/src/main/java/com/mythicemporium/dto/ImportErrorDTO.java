@@ -0,0 +1,16 @@
+package com.mythicemporium.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class ImportErrorDTO {
+    // Line of the input the product starts on, counting from 1.
+    private long line;
+    private String message;
+}
@@ -0,0 +1,20 @@
+package com.mythicemporium.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+// Only the first errors are listed; failed counts all of them.
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class ImportResultDTO {
+    private long imported;
+    private long failed;
+    private double rowsPerSecond;
+    private List<ImportErrorDTO> errors;
+}
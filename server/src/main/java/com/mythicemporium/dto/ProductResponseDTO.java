@@ -11,6 +11,7 @@ import java.util.List;
 @Setter
 public class ProductResponseDTO {
     private Long id;
+    private Long version;
     private String name;
     private String description;
 
@@ -9,6 +9,7 @@ import java.util.List;
 @Setter
 public class ProductVariationResponseDTO {
     private Long id;
+    private Long version;
     private String sku;
     private Double price;
     private Integer stock;
@@ -0,0 +1,21 @@
+package com.mythicemporium.dto;
+
+import com.mythicemporium.model.StockReservation;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class ReservationResponseDTO {
+    private Long id;
+    private Long variationId;
+    private Integer quantity;
+    private StockReservation.Status status;
+    private Instant expiresAt;
+}
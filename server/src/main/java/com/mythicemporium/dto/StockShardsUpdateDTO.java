@@ -0,0 +1,10 @@
+package com.mythicemporium.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class StockShardsUpdateDTO {
+    private Integer shards;
+}
@@ -6,5 +6,7 @@ import lombok.Setter;
 @Getter
 @Setter
 public class StockUpdateDTO {
+    // Only read by the bulk endpoints; the single-variation endpoints take the id from the path.
+    private Long variationId;
     private Integer stock;
 }
@@ -0,0 +1,14 @@
+package com.mythicemporium.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public class VariationAttributeRowDTO {
+    private Long productId;
+    private Long variationId;
+
+    private String attributeName;
+    private String attributeValue;
+}
@@ -0,0 +1,72 @@
+package com.mythicemporium.event;
+
+import lombok.Getter;
+
+// Published by the catalog services inside their write transactions. Read models listen
+// with @TransactionalEventListener so they only see changes that actually commit.
+@Getter
+public class CatalogChangedEvent {
+
+    public enum Type {
+        PRODUCT,
+        // An admin edit of a single variation's price or stock.
+        VARIATION,
+        // A stock decrement from the purchase path; read models may apply these lazily.
+        STOCK,
+        BRAND,
+        CATEGORY
+    }
+
+    private final Type type;
+    private final Long id;
+    private final boolean deleted;
+    private final boolean created;
+
+    private CatalogChangedEvent(Type type, Long id, boolean deleted) {
+        this(type, id, deleted, false);
+    }
+
+    private CatalogChangedEvent(Type type, Long id, boolean deleted, boolean created) {
+        this.type = type;
+        this.id = id;
+        this.deleted = deleted;
+        this.created = created;
+    }
+
+    // A saved product that did not exist before; listeners that only refresh can treat it as saved.
+    public static CatalogChangedEvent productCreated(Long productId) {
+        return new CatalogChangedEvent(Type.PRODUCT, productId, false, true);
+    }
+
+    public static CatalogChangedEvent productSaved(Long productId) {
+        return new CatalogChangedEvent(Type.PRODUCT, productId, false);
+    }
+
+    public static CatalogChangedEvent productDeleted(Long productId) {
+        return new CatalogChangedEvent(Type.PRODUCT, productId, true);
+    }
+
+    public static CatalogChangedEvent variationChanged(Long variationId) {
+        return new CatalogChangedEvent(Type.VARIATION, variationId, false);
+    }
+
+    public static CatalogChangedEvent stockChanged(Long variationId) {
+        return new CatalogChangedEvent(Type.STOCK, variationId, false);
+    }
+
+    public static CatalogChangedEvent brandSaved(Long brandId) {
+        return new CatalogChangedEvent(Type.BRAND, brandId, false);
+    }
+
+    public static CatalogChangedEvent brandDeleted(Long brandId) {
+        return new CatalogChangedEvent(Type.BRAND, brandId, true);
+    }
+
+    public static CatalogChangedEvent categorySaved(Long categoryId) {
+        return new CatalogChangedEvent(Type.CATEGORY, categoryId, false);
+    }
+
+    public static CatalogChangedEvent categoryDeleted(Long categoryId) {
+        return new CatalogChangedEvent(Type.CATEGORY, categoryId, true);
+    }
+}
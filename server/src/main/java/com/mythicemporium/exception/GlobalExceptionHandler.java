@@ -1,6 +1,7 @@
 package com.mythicemporium.exception;
 
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authorization.AuthorizationDeniedException;
@@ -34,6 +35,16 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(new ApiError(409, ex.getMessage(), request.getRequestURI()), HttpStatus.CONFLICT);
     }
 
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<ApiError> handlePreconditionFailedException(PreconditionFailedException ex, HttpServletRequest request) {
+        return new ResponseEntity<>(new ApiError(412, ex.getMessage(), request.getRequestURI()), HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ApiError> handleOptimisticLockingFailureException(OptimisticLockingFailureException ex, HttpServletRequest request) {
+        return new ResponseEntity<>(new ApiError(409, "The resource was modified concurrently, please retry.", request.getRequestURI()), HttpStatus.CONFLICT);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ApiError> handleException(Exception ex, HttpServletRequest request) {
         return new ResponseEntity<>(new ApiError(500, "Something unexpected went wrong.", request.getRequestURI()), HttpStatus.INTERNAL_SERVER_ERROR);
@@ -14,7 +14,8 @@ import org.hibernate.envers.Audited;
 @Table(name = "brand")
 public class Brand {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "brand_seq")
+    @SequenceGenerator(name = "brand_seq", sequenceName = "brand_seq", allocationSize = 50)
     private Long id;
 
     private String name;
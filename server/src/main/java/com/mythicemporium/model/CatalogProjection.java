@@ -0,0 +1,47 @@
+package com.mythicemporium.model;
+
+import com.mythicemporium.dto.ProductVariationResponseDTO;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@NoArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "catalog_projection", indexes = {
+        @Index(name = "idx_catalog_projection_brand_id_product_id", columnList = "brand_id, product_id"),
+        @Index(name = "idx_catalog_projection_category_id_product_id", columnList = "category_id, product_id")
+})
+public class CatalogProjection {
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "product_version")
+    private Long productVersion;
+
+    private String name;
+    private String description;
+
+    @Column(name = "brand_id")
+    private Long brandId;
+
+    @Column(name = "brand_name")
+    private String brandName;
+
+    @Column(name = "category_id")
+    private Long categoryId;
+
+    @Column(name = "category_name")
+    private String categoryName;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    private List<ProductVariationResponseDTO> variations = new ArrayList<>();
+}
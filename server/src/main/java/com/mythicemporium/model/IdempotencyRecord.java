@@ -0,0 +1,37 @@
+package com.mythicemporium.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+// The stored response of a write made under an Idempotency-Key, replayed for retries of it.
+@NoArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "idempotency_record")
+public class IdempotencyRecord {
+
+    // The caller's key, prefixed with the principal that sent it.
+    @Id
+    @Column(length = 512)
+    private String id;
+
+    @Column(nullable = false, length = 64)
+    private String fingerprint;
+
+    @Column(nullable = false)
+    private Integer status;
+
+    @Column(name = "content_type", length = 100)
+    private String contentType;
+
+    @Column(columnDefinition = "TEXT")
+    private String body;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+}
@@ -14,12 +14,22 @@ import java.util.List;
 @Getter
 @Setter
 @Entity
-@Table(name = "product")
+@Table(name = "product", indexes = {
+        @Index(name = "idx_product_brand_id_id", columnList = "brand_id, id"),
+        @Index(name = "idx_product_category_id_id", columnList = "category_id, id")
+})
 public class Product {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Ids are drawn from a pooled sequence, 50 per round trip, so Hibernate can batch the inserts of
+    // a product with its variations and attributes. schema.sql moves the sequences past ids that the
+    // identity columns handed out before.
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "product_seq", allocationSize = 50)
     private Long id;
 
+    @Version
+    private Long version;
+
     private String name;
     private String description;
 
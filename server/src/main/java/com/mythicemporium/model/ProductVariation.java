@@ -3,29 +3,59 @@ package com.mythicemporium.model;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.Formula;
 import org.hibernate.envers.Audited;
+import org.hibernate.envers.NotAudited;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+// Dynamic updates keep edits of other columns from writing back a stock value loaded earlier,
+// which would undo purchases and inventory flushes made in the meantime.
 @Audited
+@DynamicUpdate
 @NoArgsConstructor
 @Getter
 @Setter
 @Entity
-@Table(name = "product_variation")
+@Table(name = "product_variation", indexes = {
+        @Index(name = "idx_product_variation_product_id_price", columnList = "product_id, price")
+})
 public class ProductVariation {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_variation_seq")
+    @SequenceGenerator(name = "product_variation_seq", sequenceName = "product_variation_seq", allocationSize = 50)
     private Long id;
 
+    // Bumped by edits, not by purchases, bucket moves or inventory flushes, which go through bulk
+    // statements; stock is a counter and never conflicts with an edit of the other columns.
+    @Version
+    private Long version;
+
     private String sku;
     private Double price;
     private Integer stock;
 
+    // Number of stock_bucket rows this variation's stock is split across, or null when the stock
+    // column holds it. While sharded the stock column stays at 0 and getStock() sums the buckets.
+    @Column(name = "stock_shards")
+    private Integer stockShards;
+
+    @NotAudited
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @Formula("(CASE WHEN stock_shards IS NULL THEN NULL ELSE (SELECT COALESCE(SUM(b.stock), 0) FROM stock_bucket b WHERE b.variation_id = id) END)")
+    private Integer bucketStock;
+
     @Column(name = "image_url")
     private String imageUrl;
 
@@ -37,4 +67,38 @@ public class ProductVariation {
     @OneToMany(mappedBy = "variation", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonManagedReference
     private List<ProductVariationAttribute> attributes = new ArrayList<>();
+
+    public Integer getStock() {
+        return stockShards == null ? stock : bucketStock;
+    }
+
+    public boolean isStockSharded() {
+        return stockShards != null;
+    }
+
+    // Brings the attributes in line with the given ones, matched by name. Matched rows keep their id
+    // and are only written, and audited, if their value changed; new names are added and attributes
+    // whose name is no longer given are removed.
+    public void mergeAttributes(List<ProductVariationAttribute> requested) {
+        Map<String, Deque<ProductVariationAttribute>> byName = new HashMap<>();
+        for(ProductVariationAttribute attribute : attributes) {
+            byName.computeIfAbsent(attribute.getAttributeName(), name -> new ArrayDeque<>()).add(attribute);
+        }
+
+        List<ProductVariationAttribute> added = new ArrayList<>();
+        for(ProductVariationAttribute attribute : requested) {
+            Deque<ProductVariationAttribute> existing = byName.get(attribute.getAttributeName());
+            ProductVariationAttribute match = existing == null ? null : existing.poll();
+            if(match == null) {
+                attribute.setVariation(this);
+                added.add(attribute);
+            }
+            else {
+                match.setAttributeValue(attribute.getAttributeValue());
+            }
+        }
+
+        byName.values().forEach(attributes::removeAll);
+        attributes.addAll(added);
+    }
 }
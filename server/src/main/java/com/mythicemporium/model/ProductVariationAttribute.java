@@ -15,7 +15,8 @@ import org.hibernate.envers.Audited;
 @Table(name = "product_variation_attribute")
 public class ProductVariationAttribute {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_variation_attribute_seq")
+    @SequenceGenerator(name = "product_variation_attribute_seq", sequenceName = "product_variation_attribute_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "attribute_name")
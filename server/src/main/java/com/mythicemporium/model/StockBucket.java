@@ -0,0 +1,34 @@
+package com.mythicemporium.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+// One slice of a sharded variation's stock. Purchases spread their row locks across the buckets
+// instead of queueing on the single product_variation row. Not audited: these change on every sale.
+@NoArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "stock_bucket", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_stock_bucket_variation_bucket", columnNames = {"variation_id", "bucket"})
+})
+public class StockBucket {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "variation_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private ProductVariation variation;
+
+    @Column(nullable = false)
+    private Integer bucket;
+
+    @Column(nullable = false)
+    private Integer stock;
+}
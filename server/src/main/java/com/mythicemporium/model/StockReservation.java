@@ -0,0 +1,55 @@
+package com.mythicemporium.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.time.Instant;
+
+// A hold on stock for a checkout in progress. The held quantity is taken from the variation's
+// stock when the reservation is made, so stock always reads as what is still available.
+@NoArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "stock_reservation")
+public class StockReservation {
+
+    public enum Status {
+        ACTIVE,
+        CONFIRMED,
+        RELEASED,
+        EXPIRED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "variation_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private ProductVariation variation;
+
+    @Column(name = "variation_id", insertable = false, updatable = false)
+    private Long variationId;
+
+    @Column(nullable = false)
+    private Integer quantity;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+
+    @Column(nullable = false)
+    private String owner;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+}
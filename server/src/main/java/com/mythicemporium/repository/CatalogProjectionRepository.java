@@ -0,0 +1,56 @@
+package com.mythicemporium.repository;
+
+import com.mythicemporium.model.CatalogProjection;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface CatalogProjectionRepository extends JpaRepository<CatalogProjection, Long>, CatalogProjectionRepositoryCustom {
+
+    @Query("SELECT c FROM CatalogProjection c WHERE c.productId > :afterId ORDER BY c.productId")
+    List<CatalogProjection> findPage(@Param("afterId") Long afterId, Limit limit);
+
+    @Query("SELECT c FROM CatalogProjection c WHERE c.brandId = :brandId AND c.productId > :afterId ORDER BY c.productId")
+    List<CatalogProjection> findPageByBrandId(@Param("brandId") Long brandId, @Param("afterId") Long afterId, Limit limit);
+
+    @Query("SELECT c FROM CatalogProjection c WHERE c.categoryId = :categoryId AND c.productId > :afterId ORDER BY c.productId")
+    List<CatalogProjection> findPageByCategoryId(@Param("categoryId") Long categoryId, @Param("afterId") Long afterId, Limit limit);
+
+    // search_vector and its GIN index are created by schema.sql.
+    @Query(value = "SELECT c.* FROM catalog_projection c, websearch_to_tsquery('english', :query) q " +
+            "WHERE c.search_vector @@ q " +
+            "ORDER BY ts_rank_cd(c.search_vector, q) DESC, c.product_id " +
+            "OFFSET :offset LIMIT :limit", nativeQuery = true)
+    List<CatalogProjection> search(@Param("query") String query, @Param("offset") long offset, @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE CatalogProjection c SET c.brandName = :name WHERE c.brandId = :brandId")
+    int updateBrandName(@Param("brandId") Long brandId, @Param("name") String name);
+
+    @Modifying
+    @Query("UPDATE CatalogProjection c SET c.categoryName = :name WHERE c.categoryId = :categoryId")
+    int updateCategoryName(@Param("categoryId") Long categoryId, @Param("name") String name);
+
+    @Modifying
+    @Query("DELETE FROM CatalogProjection c WHERE c.productId NOT IN (SELECT p.id FROM Product p)")
+    int deleteOrphans();
+
+    // Products whose row is missing or no longer matches the product version, the set of
+    // variations, or any variation's version or stock.
+    @Query(value = "SELECT p.id FROM product p LEFT JOIN catalog_projection c ON c.product_id = p.id " +
+            "WHERE c.product_id IS NULL " +
+            "OR c.product_version IS DISTINCT FROM p.version " +
+            "OR jsonb_array_length(COALESCE(c.variations, CAST('[]' AS jsonb))) <> " +
+            "(SELECT count(*) FROM product_variation v WHERE v.product_id = p.id) " +
+            "OR EXISTS (SELECT 1 FROM product_variation v WHERE v.product_id = p.id AND NOT EXISTS (" +
+            "SELECT 1 FROM jsonb_array_elements(c.variations) e " +
+            "WHERE CAST(e ->> 'id' AS bigint) = v.id " +
+            "AND CAST(e ->> 'version' AS bigint) IS NOT DISTINCT FROM v.version " +
+            "AND CAST(e ->> 'stock' AS integer) IS NOT DISTINCT FROM v.stock)) " +
+            "ORDER BY p.id", nativeQuery = true)
+    List<Long> findStaleProductIds();
+}
@@ -0,0 +1,19 @@
+package com.mythicemporium.repository;
+
+import com.mythicemporium.model.CatalogProjection;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+public interface CatalogProjectionRepositoryCustom {
+
+    @AllArgsConstructor
+    @Getter
+    class SortedRow {
+        private CatalogProjection projection;
+        private Object sortKey;
+    }
+
+    List<SortedRow> findFilteredPage(ProductFilter filter, int limit);
+}
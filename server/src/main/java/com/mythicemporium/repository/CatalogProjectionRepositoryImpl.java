@@ -0,0 +1,79 @@
+package com.mythicemporium.repository;
+
+import com.mythicemporium.model.CatalogProjection;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StandardBasicTypes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CatalogProjectionRepositoryImpl implements CatalogProjectionRepositoryCustom {
+
+    // Sharded variations keep their stock in stock_bucket and leave the stock column at 0.
+    private static final String VARIATION_STOCK = "(CASE WHEN v.stock_shards IS NULL THEN v.stock " +
+            "ELSE (SELECT COALESCE(SUM(b.stock), 0) FROM stock_bucket b WHERE b.variation_id = v.id) END)";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Price and stock predicates are applied to product_variation, where they can use
+    // idx_product_variation_product_id_price and the partial in-stock index from schema.sql.
+    // Matching variations are aggregated per product and joined to the pre-built
+    // catalog_projection row, so the whole page comes back in a single statement.
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<SortedRow> findFilteredPage(ProductFilter filter, int limit) {
+        Map<String, Object> parameters = new HashMap<>();
+        List<String> variationPredicates = new ArrayList<>();
+
+        if(filter.getMinPrice() != null) {
+            variationPredicates.add("v.price >= :minPrice");
+            parameters.put("minPrice", filter.getMinPrice());
+        }
+        if(filter.getMaxPrice() != null) {
+            variationPredicates.add("v.price <= :maxPrice");
+            parameters.put("maxPrice", filter.getMaxPrice());
+        }
+        if(filter.isInStock()) {
+            variationPredicates.add("(v.stock > 0 OR (v.stock_shards IS NOT NULL AND " + VARIATION_STOCK + " > 0))");
+        }
+
+        String sortExpression = filter.getSort().getExpression();
+
+        StringBuilder sql = new StringBuilder()
+                .append("SELECT {cp.*}, ").append(sortExpression).append(" AS sort_key ")
+                .append("FROM (SELECT v.product_id, MIN(v.price) AS min_price, SUM(").append(VARIATION_STOCK).append(") AS total_stock ")
+                .append("FROM product_variation v ");
+        if(!variationPredicates.isEmpty()) {
+            sql.append("WHERE ").append(String.join(" AND ", variationPredicates)).append(' ');
+        }
+        sql.append("GROUP BY v.product_id) m ")
+                .append("JOIN catalog_projection cp ON cp.product_id = m.product_id ");
+
+        if(filter.getAfterId() != null) {
+            sql.append("WHERE (").append(sortExpression).append(", cp.product_id) > (:afterKey, :afterId) ");
+            parameters.put("afterKey", filter.getAfterKey());
+            parameters.put("afterId", filter.getAfterId());
+        }
+
+        sql.append("ORDER BY ").append(sortExpression).append(", cp.product_id LIMIT :limit");
+        parameters.put("limit", limit);
+
+        NativeQuery<Object[]> query = entityManager.createNativeQuery(sql.toString()).unwrap(NativeQuery.class);
+        query.addEntity("cp", CatalogProjection.class);
+        switch(filter.getSort()) {
+            case ID, STOCK -> query.addScalar("sort_key", StandardBasicTypes.LONG);
+            case PRICE -> query.addScalar("sort_key", StandardBasicTypes.DOUBLE);
+            case NAME -> query.addScalar("sort_key", StandardBasicTypes.STRING);
+        }
+        parameters.forEach(query::setParameter);
+
+        return query.getResultList().stream()
+                .map(row -> new SortedRow((CatalogProjection) row[0], row[1]))
+                .toList();
+    }
+}
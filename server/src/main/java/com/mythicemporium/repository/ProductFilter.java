@@ -0,0 +1,18 @@
+package com.mythicemporium.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// A validated filter for product listings. afterKey/afterId is the keyset position of the
+// last product of the previous page, or null for the first page.
+@AllArgsConstructor
+@Getter
+public class ProductFilter {
+    private Double minPrice;
+    private Double maxPrice;
+    private boolean inStock;
+    private ProductSort sort;
+
+    private Object afterKey;
+    private Long afterId;
+}
@@ -1,21 +1,75 @@
 package com.mythicemporium.repository;
 
+import com.mythicemporium.dto.CatalogRowDTO;
 import com.mythicemporium.model.Brand;
 import com.mythicemporium.model.Product;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
 
     @Query("SELECT p FROM Product p WHERE p.brand.id = :brandId")
     List<Product> findAllByBrandId(@Param("brandId") Long brandId);
 
     @Query("SELECT p FROM Product p WHERE p.category.id = :categoryId")
     List<Product> findAllByCategoryId(@Param("categoryId") Long categoryId);
+
+    @EntityGraph(attributePaths = {"brand", "category", "variations"})
+    @Query("SELECT DISTINCT p FROM Product p")
+    List<Product> findAllWithVariations();
+
+    @EntityGraph(attributePaths = {"brand", "category", "variations"})
+    @Query("SELECT DISTINCT p FROM Product p WHERE p.brand.id = :brandId")
+    List<Product> findAllWithVariationsByBrandId(@Param("brandId") Long brandId);
+
+    @EntityGraph(attributePaths = {"brand", "category", "variations"})
+    @Query("SELECT DISTINCT p FROM Product p WHERE p.category.id = :categoryId")
+    List<Product> findAllWithVariationsByCategoryId(@Param("categoryId") Long categoryId);
+
+    @EntityGraph(attributePaths = {"brand", "category", "variations"})
+    @Query("SELECT DISTINCT p FROM Product p WHERE p.id IN :ids ORDER BY p.id")
+    List<Product> findAllWithVariationsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Taken in id order so that transactions locking overlapping sets cannot deadlock.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Product p WHERE p.id IN :ids ORDER BY p.id")
+    List<Product> lockAllByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT p.id FROM Product p WHERE p.id > :afterId ORDER BY p.id")
+    List<Long> findPageIds(@Param("afterId") Long afterId, Limit limit);
+
+    @Query("SELECT p.id FROM Product p WHERE p.brand.id = :brandId AND p.id > :afterId ORDER BY p.id")
+    List<Long> findPageIdsByBrandId(@Param("brandId") Long brandId, @Param("afterId") Long afterId, Limit limit);
+
+    @Query("SELECT p.id FROM Product p WHERE p.category.id = :categoryId AND p.id > :afterId ORDER BY p.id")
+    List<Long> findPageIdsByCategoryId(@Param("categoryId") Long categoryId, @Param("afterId") Long afterId, Limit limit);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    // Sharded variations report the sum of their buckets; their stock column stays at 0.
+    @Query("SELECT new com.mythicemporium.dto.CatalogRowDTO(p.id, p.name, p.description, b.name, c.name, " +
+           "v.id, v.sku, v.price, " +
+           "CAST(CASE WHEN v.stockShards IS NULL THEN v.stock " +
+           "ELSE (SELECT COALESCE(SUM(sb.stock), 0) FROM StockBucket sb WHERE sb.variation = v) END AS Integer), " +
+           "v.imageUrl, a.attributeName, a.attributeValue) " +
+           "FROM Product p LEFT JOIN p.brand b LEFT JOIN p.category c " +
+           "LEFT JOIN p.variations v LEFT JOIN v.attributes a " +
+           "ORDER BY p.id, v.id, a.id")
+    Stream<CatalogRowDTO> streamCatalogRows();
 }
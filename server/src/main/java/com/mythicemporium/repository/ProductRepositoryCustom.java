@@ -0,0 +1,23 @@
+package com.mythicemporium.repository;
+
+import com.mythicemporium.model.Product;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface ProductRepositoryCustom {
+
+    // Inserts new products with their variations and attributes as JDBC batches, assigning ids to
+    // the given entities and writing their Envers ADD rows under the transaction's revision. Brand
+    // and category only need their ids set.
+    void insertAll(List<Product> products);
+
+    // Deletes the products with their variations and attributes in one statement per table instead
+    // of loading and cascading them, writing the Envers DEL rows in bulk under the transaction's
+    // revision. Returns the ids of the removed variations by product; missing products are left out.
+    Map<Long, List<Long>> deleteAllByIdIn(Collection<Long> productIds);
+
+    // Deletes variations with their attributes the same way. Returns the product of each removed variation.
+    Map<Long, Long> deleteVariationsByIdIn(Collection<Long> variationIds);
+}
@@ -0,0 +1,196 @@
+package com.mythicemporium.repository;
+
+import com.mythicemporium.logging.AuditRevisionEntity;
+import com.mythicemporium.logging.AuditRevisionListener;
+import com.mythicemporium.model.Product;
+import com.mythicemporium.model.ProductVariation;
+import com.mythicemporium.model.ProductVariationAttribute;
+import jakarta.persistence.EntityManager;
+import org.hibernate.envers.RevisionType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ProductRepositoryImpl implements ProductRepositoryCustom {
+
+    // Matches the allocationSize of the catalog entities' sequence generators: every nextval
+    // reserves the block of ids ending at the returned value, exactly as Hibernate uses it.
+    private static final int ID_BLOCK_SIZE = 50;
+
+    private JdbcTemplate jdbcTemplate;
+    private EntityManager entityManager;
+
+    public ProductRepositoryImpl(JdbcTemplate jdbcTemplate, EntityManager entityManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+    }
+
+    // Ids are drawn from the entities' sequences up front, so every table is written with one
+    // batch instead of a round trip per row for its generated key. Rows written here bypass the
+    // persistence context and Envers, like the other bulk statements, so their ADD audit rows are
+    // copied over in one statement per table under a revision of their own. Callers publish
+    // the events.
+    @Override
+    public void insertAll(List<Product> products) {
+        List<ProductVariation> variations = new ArrayList<>();
+        List<ProductVariationAttribute> attributes = new ArrayList<>();
+        for(Product product : products) {
+            for(ProductVariation variation : product.getVariations()) {
+                variations.add(variation);
+                attributes.addAll(variation.getAttributes());
+            }
+        }
+
+        Iterator<Long> productIds = nextIds("product_seq", products.size());
+        products.forEach(product -> {
+            product.setId(productIds.next());
+            product.setVersion(0L);
+        });
+        Iterator<Long> variationIds = nextIds("product_variation_seq", variations.size());
+        variations.forEach(variation -> {
+            variation.setId(variationIds.next());
+            variation.setVersion(0L);
+        });
+        Iterator<Long> attributeIds = nextIds("product_variation_attribute_seq", attributes.size());
+        attributes.forEach(attribute -> attribute.setId(attributeIds.next()));
+
+        jdbcTemplate.batchUpdate("INSERT INTO product (id, version, name, description, brand_id, category_id) VALUES (?, ?, ?, ?, ?, ?)",
+                products, products.size(), (statement, product) -> {
+                    statement.setLong(1, product.getId());
+                    statement.setLong(2, product.getVersion());
+                    statement.setString(3, product.getName());
+                    statement.setString(4, product.getDescription());
+                    statement.setObject(5, product.getBrand().getId());
+                    statement.setObject(6, product.getCategory().getId());
+                });
+
+        if(!variations.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO product_variation (id, version, sku, price, stock, image_url, product_id) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                    variations, variations.size(), (statement, variation) -> {
+                        statement.setLong(1, variation.getId());
+                        statement.setLong(2, variation.getVersion());
+                        statement.setString(3, variation.getSku());
+                        statement.setObject(4, variation.getPrice());
+                        statement.setObject(5, variation.getStock());
+                        statement.setString(6, variation.getImageUrl());
+                        statement.setLong(7, variation.getProduct().getId());
+                    });
+        }
+
+        if(!attributes.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO product_variation_attribute (id, attribute_name, attribute_value, variation_id) VALUES (?, ?, ?, ?)",
+                    attributes, attributes.size(), (statement, attribute) -> {
+                        statement.setLong(1, attribute.getId());
+                        statement.setString(2, attribute.getAttributeName());
+                        statement.setString(3, attribute.getAttributeValue());
+                        statement.setLong(4, attribute.getVariation().getId());
+                    });
+        }
+
+        int revision = newRevision();
+        jdbcTemplate.update("INSERT INTO product_aud (id, rev, revtype, name, description, brand_id, category_id) " +
+                "SELECT id, ?, ?, name, description, brand_id, category_id FROM product WHERE id = ANY(CAST(? AS bigint[]))",
+                revision, RevisionType.ADD.getRepresentation(), products.stream().map(Product::getId).toArray(Long[]::new));
+
+        if(!variations.isEmpty()) {
+            jdbcTemplate.update("INSERT INTO product_variation_aud (id, rev, revtype, sku, price, stock, stock_shards, image_url, product_id) " +
+                    "SELECT id, ?, ?, sku, price, stock, stock_shards, image_url, product_id FROM product_variation WHERE id = ANY(CAST(? AS bigint[]))",
+                    revision, RevisionType.ADD.getRepresentation(), variations.stream().map(ProductVariation::getId).toArray(Long[]::new));
+        }
+
+        if(!attributes.isEmpty()) {
+            jdbcTemplate.update("INSERT INTO product_variation_attribute_aud (id, rev, revtype, attribute_name, attribute_value, variation_id) " +
+                    "SELECT id, ?, ?, attribute_name, attribute_value, variation_id FROM product_variation_attribute WHERE id = ANY(CAST(? AS bigint[]))",
+                    revision, RevisionType.ADD.getRepresentation(), attributes.stream().map(ProductVariationAttribute::getId).toArray(Long[]::new));
+        }
+    }
+
+    // Each DELETE hands its rows straight to the INSERT into the audit table, so a table costs one
+    // statement however many rows go. Envers stores only the id of a deleted row, as these do.
+    @Override
+    public Map<Long, List<Long>> deleteAllByIdIn(Collection<Long> productIds) {
+        Map<Long, List<Long>> deleted = new LinkedHashMap<>();
+        if(productIds.isEmpty()) {
+            return deleted;
+        }
+
+        Long[] ids = productIds.toArray(new Long[0]);
+        int revision = newRevision();
+        jdbcTemplate.update("WITH deleted AS (DELETE FROM product_variation_attribute a USING product_variation v " +
+                "WHERE a.variation_id = v.id AND v.product_id = ANY(CAST(? AS bigint[])) RETURNING a.id) " +
+                "INSERT INTO product_variation_attribute_aud (id, rev, revtype) SELECT id, ?, ? FROM deleted",
+                ids, revision, RevisionType.DEL.getRepresentation());
+
+        Map<Long, List<Long>> variations = new HashMap<>();
+        jdbcTemplate.query("WITH deleted AS (DELETE FROM product_variation WHERE product_id = ANY(CAST(? AS bigint[])) RETURNING id, product_id), " +
+                "audited AS (INSERT INTO product_variation_aud (id, rev, revtype) SELECT id, ?, ? FROM deleted) " +
+                "SELECT id, product_id FROM deleted ORDER BY id",
+                (RowCallbackHandler) row -> variations.computeIfAbsent(row.getLong("product_id"), id -> new ArrayList<>()).add(row.getLong("id")),
+                ids, revision, RevisionType.DEL.getRepresentation());
+
+        jdbcTemplate.query("WITH deleted AS (DELETE FROM product WHERE id = ANY(CAST(? AS bigint[])) RETURNING id), " +
+                "audited AS (INSERT INTO product_aud (id, rev, revtype) SELECT id, ?, ? FROM deleted) " +
+                "SELECT id FROM deleted ORDER BY id",
+                (RowCallbackHandler) row -> {
+                    long id = row.getLong("id");
+                    deleted.put(id, variations.getOrDefault(id, List.of()));
+                },
+                ids, revision, RevisionType.DEL.getRepresentation());
+        return deleted;
+    }
+
+    @Override
+    public Map<Long, Long> deleteVariationsByIdIn(Collection<Long> variationIds) {
+        Map<Long, Long> deleted = new LinkedHashMap<>();
+        if(variationIds.isEmpty()) {
+            return deleted;
+        }
+
+        Long[] ids = variationIds.toArray(new Long[0]);
+        int revision = newRevision();
+        jdbcTemplate.update("WITH deleted AS (DELETE FROM product_variation_attribute WHERE variation_id = ANY(CAST(? AS bigint[])) RETURNING id) " +
+                "INSERT INTO product_variation_attribute_aud (id, rev, revtype) SELECT id, ?, ? FROM deleted",
+                ids, revision, RevisionType.DEL.getRepresentation());
+
+        jdbcTemplate.query("WITH deleted AS (DELETE FROM product_variation WHERE id = ANY(CAST(? AS bigint[])) RETURNING id, product_id), " +
+                "audited AS (INSERT INTO product_variation_aud (id, rev, revtype) SELECT id, ?, ? FROM deleted) " +
+                "SELECT id, product_id FROM deleted ORDER BY id",
+                (RowCallbackHandler) row -> deleted.put(row.getLong("id"), row.getObject("product_id", Long.class)),
+                ids, revision, RevisionType.DEL.getRepresentation());
+        return deleted;
+    }
+
+    // A revision row for the bulk audit rows, filled in by the listener Envers uses for its own and
+    // written now so that they can reference it. Entity changes Envers records in the same
+    // transaction get a revision of their own.
+    private int newRevision() {
+        AuditRevisionEntity revision = new AuditRevisionEntity();
+        revision.setTimestamp(System.currentTimeMillis());
+        new AuditRevisionListener().newRevision(revision);
+        entityManager.persist(revision);
+        entityManager.flush();
+        return revision.getId();
+    }
+
+    private Iterator<Long> nextIds(String sequence, int count) {
+        List<Long> ids = new ArrayList<>(count);
+        if(count == 0) {
+            return ids.iterator();
+        }
+
+        int blocks = (count + ID_BLOCK_SIZE - 1) / ID_BLOCK_SIZE;
+        for(Long end : jdbcTemplate.queryForList("SELECT nextval(?) FROM generate_series(1, ?)", Long.class, sequence, blocks)) {
+            for(long id = end - ID_BLOCK_SIZE + 1; id <= end && ids.size() < count; id++) {
+                ids.add(id);
+            }
+        }
+        return ids.iterator();
+    }
+}
@@ -0,0 +1,44 @@
+package com.mythicemporium.repository;
+
+import java.util.Locale;
+
+// Sort orders for filtered product listings. Each maps to the SQL expression used both for
+// ORDER BY and for the keyset comparison in CatalogProjectionRepositoryImpl.
+public enum ProductSort {
+    ID("cp.product_id"),
+    PRICE("m.min_price"),
+    NAME("cp.name"),
+    STOCK("m.total_stock");
+
+    private final String expression;
+
+    ProductSort(String expression) {
+        this.expression = expression;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    // Returns null for unknown values so callers can report them as invalid requests.
+    public static ProductSort fromParam(String value) {
+        if(value == null || value.isBlank()) {
+            return ID;
+        }
+
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+        catch(IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    public Object parseKey(String key) {
+        return switch(this) {
+            case ID, STOCK -> Long.valueOf(key);
+            case PRICE -> Double.valueOf(key);
+            case NAME -> key;
+        };
+    }
+}
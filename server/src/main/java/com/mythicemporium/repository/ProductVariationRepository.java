@@ -1,22 +1,135 @@
 package com.mythicemporium.repository;
 
 
+import com.mythicemporium.dto.VariationAttributeRowDTO;
 import com.mythicemporium.model.ProductVariation;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 public interface ProductVariationRepository extends JpaRepository<ProductVariation, Long> {
     @Modifying
     @Query("UPDATE ProductVariation pv SET pv.stock = pv.stock - :quantity WHERE pv.id = :id AND pv.stock >= :quantity")
     int decrementStock(@Param("id") Long id, @Param("quantity") Integer quantity);
 
+    // Locks in id order so that concurrent checkouts over overlapping carts always queue on the
+    // same row first instead of deadlocking.
+    @Query(value = "SELECT id, product_id AS productId, stock, stock_shards AS stockShards FROM product_variation WHERE id IN (:ids) ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<StockRow> lockStockByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "UPDATE product_variation pv SET stock = pv.stock - line.quantity " +
+            "FROM unnest(CAST(:ids AS bigint[]), CAST(:quantities AS integer[])) AS line(id, quantity) " +
+            "WHERE pv.id = line.id AND pv.stock >= line.quantity", nativeQuery = true)
+    int decrementStockBatch(@Param("ids") Long[] ids, @Param("quantities") Integer[] quantities);
+
+    // Write-behind flush of in-memory inventory deltas, and stock returned from reservations as
+    // negative deltas. Unconditional: callers already guarantee that stock never goes negative.
+    @Modifying
+    @Query(value = "UPDATE product_variation pv SET stock = pv.stock - line.delta " +
+            "FROM unnest(CAST(:ids AS bigint[]), CAST(:deltas AS integer[])) AS line(id, delta) " +
+            "WHERE pv.id = line.id", nativeQuery = true)
+    int applyStockDeltas(@Param("ids") Long[] ids, @Param("deltas") Integer[] deltas);
+
+    // Bulk admin edits, one statement per chunk. Stock writes skip sharded variations, whose stock
+    // lives in their buckets; price writes bump the version like the single-row update does.
+    @Modifying
+    @Query(value = "UPDATE product_variation pv SET stock = line.stock " +
+            "FROM unnest(CAST(:ids AS bigint[]), CAST(:stocks AS integer[])) AS line(id, stock) " +
+            "WHERE pv.id = line.id AND pv.stock_shards IS NULL", nativeQuery = true)
+    int setStockBatch(@Param("ids") Long[] ids, @Param("stocks") Integer[] stocks);
+
+    @Modifying
+    @Query(value = "UPDATE product_variation pv SET price = line.price, version = pv.version + 1 " +
+            "FROM unnest(CAST(:ids AS bigint[]), CAST(:prices AS float8[])) AS line(id, price) " +
+            "WHERE pv.id = line.id", nativeQuery = true)
+    int setPriceBatch(@Param("ids") Long[] ids, @Param("prices") Double[] prices);
+
+    @Query("SELECT v.id AS id, v.product.id AS productId, v.stock AS stock, v.stockShards AS stockShards " +
+            "FROM ProductVariation v WHERE v.id > :afterId ORDER BY v.id")
+    List<StockRow> findStockPage(@Param("afterId") Long afterId, Limit limit);
+
+    @Query("SELECT v.id AS id, v.product.id AS productId, v.stock AS stock, v.stockShards AS stockShards " +
+            "FROM ProductVariation v WHERE v.id = :id")
+    Optional<StockRow> findStockRowById(@Param("id") Long id);
+
+    @Query("SELECT v.stockShards FROM ProductVariation v WHERE v.id = :id")
+    Optional<Integer> findStockShardsById(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT v FROM ProductVariation v WHERE v.id = :id")
+    Optional<ProductVariation> lockById(@Param("id") Long id);
+
     @Modifying
     @Query("UPDATE ProductVariation p SET p.stock = :stock WHERE p.id = :id")
     int updateStockById(@Param("id") Long id, @Param("stock") Integer stock);
 
     @Modifying
-    @Query("UPDATE ProductVariation p SET p.price = :price WHERE p.id = :id")
+    @Query("UPDATE ProductVariation p SET p.price = :price, p.version = p.version + 1 WHERE p.id = :id")
     int updatePriceById(@Param("id") Long id, @Param("price") Double price);
+
+    @Query("SELECT DISTINCT v FROM ProductVariation v LEFT JOIN FETCH v.attributes")
+    List<ProductVariation> findAllWithAttributes();
+
+    @Query("SELECT DISTINCT v FROM ProductVariation v LEFT JOIN FETCH v.attributes WHERE v.product.brand.id = :brandId")
+    List<ProductVariation> findAllWithAttributesByBrandId(@Param("brandId") Long brandId);
+
+    @Query("SELECT DISTINCT v FROM ProductVariation v LEFT JOIN FETCH v.attributes WHERE v.product.category.id = :categoryId")
+    List<ProductVariation> findAllWithAttributesByCategoryId(@Param("categoryId") Long categoryId);
+
+    @Query("SELECT DISTINCT v FROM ProductVariation v LEFT JOIN FETCH v.attributes WHERE v.product.id IN :productIds")
+    List<ProductVariation> findAllWithAttributesByProductIdIn(@Param("productIds") Collection<Long> productIds);
+
+    @Query("SELECT new com.mythicemporium.dto.VariationAttributeRowDTO(v.product.id, v.id, a.attributeName, a.attributeValue) " +
+            "FROM ProductVariation v LEFT JOIN v.attributes a WHERE v.product.id IN :productIds")
+    List<VariationAttributeRowDTO> findAttributeRowsByProductIdIn(@Param("productIds") Collection<Long> productIds);
+
+    // Served by the unique index on lower(sku); pass the SKU already lower-cased.
+    @Query("SELECT v.id FROM ProductVariation v WHERE lower(v.sku) = :sku")
+    Optional<Long> findIdByLowerSku(@Param("sku") String sku);
+
+    // Those of the given lower-cased SKUs that a variation already uses, also through the index.
+    @Query("SELECT lower(v.sku) FROM ProductVariation v WHERE lower(v.sku) IN :skus")
+    List<String> findLowerSkusIn(@Param("skus") Collection<String> skus);
+
+    @Query("SELECT v FROM ProductVariation v LEFT JOIN FETCH v.attributes WHERE v.id = :id")
+    Optional<ProductVariation> findWithAttributesById(@Param("id") Long id);
+
+    @Query("SELECT v FROM ProductVariation v LEFT JOIN FETCH v.attributes WHERE lower(v.sku) = :sku")
+    Optional<ProductVariation> findWithAttributesByLowerSku(@Param("sku") String sku);
+
+    @Query("SELECT v.product.id FROM ProductVariation v WHERE v.id = :id")
+    Optional<Long> findProductIdById(@Param("id") Long id);
+
+    @Query("SELECT DISTINCT v.product.id FROM ProductVariation v WHERE v.id IN :ids")
+    List<Long> findProductIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Stock here is what a reader sees, with sharded variations summed over their buckets.
+    @Query(value = "SELECT v.id, v.product_id AS productId, v.price, " +
+            "(CASE WHEN v.stock_shards IS NULL THEN v.stock " +
+            "ELSE (SELECT COALESCE(SUM(b.stock), 0) FROM stock_bucket b WHERE b.variation_id = v.id) END) AS stock " +
+            "FROM product_variation v WHERE v.id IN (:ids)", nativeQuery = true)
+    List<StockPriceRow> findStockAndPriceByIdIn(@Param("ids") Collection<Long> ids);
+
+    interface StockRow {
+        Long getId();
+        Long getProductId();
+        Integer getStock();
+        Integer getStockShards();
+    }
+
+    interface StockPriceRow {
+        Long getId();
+        Long getProductId();
+        Double getPrice();
+        Integer getStock();
+    }
 }
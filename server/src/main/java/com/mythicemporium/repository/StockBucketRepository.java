@@ -0,0 +1,29 @@
+package com.mythicemporium.repository;
+
+import com.mythicemporium.model.StockBucket;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface StockBucketRepository extends JpaRepository<StockBucket, Long> {
+    @Modifying
+    @Query("UPDATE StockBucket b SET b.stock = b.stock - :quantity WHERE b.variation.id = :variationId AND b.bucket = :bucket AND b.stock >= :quantity")
+    int decrementBucket(@Param("variationId") Long variationId, @Param("bucket") Integer bucket, @Param("quantity") Integer quantity);
+
+    @Modifying
+    @Query("UPDATE StockBucket b SET b.stock = b.stock + :quantity WHERE b.variation.id = :variationId AND b.bucket = :bucket")
+    int incrementBucket(@Param("variationId") Long variationId, @Param("bucket") Integer bucket, @Param("quantity") Integer quantity);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM StockBucket b WHERE b.variation.id = :variationId ORDER BY b.bucket")
+    List<StockBucket> lockAllByVariationId(@Param("variationId") Long variationId);
+
+    @Modifying
+    @Query("DELETE FROM StockBucket b WHERE b.variation.id = :variationId")
+    int deleteAllByVariationId(@Param("variationId") Long variationId);
+}
@@ -35,6 +35,10 @@ public class ProductPermissionEvaluator implements PermissionEvaluator {
             return checkProductVariationPermission(action);
         }
 
+        if(targetDomainObject instanceof StockShardsUpdateDTO s) {
+            return checkProductVariationPermission(action);
+        }
+
         if(targetDomainObject instanceof PriceUpdateDTO p) {
             return checkProductVariationPermission(action);
         }
@@ -0,0 +1,113 @@
+package com.mythicemporium.service;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.*;
+
+// Inverted index from attribute name and value to a compressed bitmap of variation ids.
+// Not thread safe; AttributeFacetService guards it with a read-write lock.
+class AttributeBitmapIndex {
+
+    private final Map<String, Map<String, RoaringBitmap>> postings = new HashMap<>();
+    private final Map<Integer, List<Map.Entry<String, String>>> attributesByVariation = new HashMap<>();
+    private final Map<Long, RoaringBitmap> variationsByProduct = new HashMap<>();
+    private final RoaringBitmap allVariations = new RoaringBitmap();
+
+    // variationAttributes maps each variation id of the product to its attribute name/value pairs.
+    void replaceProduct(Long productId, Map<Long, List<Map.Entry<String, String>>> variationAttributes) {
+        removeProduct(productId);
+        if(variationAttributes.isEmpty()) {
+            return;
+        }
+
+        RoaringBitmap productVariations = new RoaringBitmap();
+        variationAttributes.forEach((variationId, attributes) -> {
+            int id = Math.toIntExact(variationId);
+            productVariations.add(id);
+            allVariations.add(id);
+            attributesByVariation.put(id, List.copyOf(attributes));
+
+            for(Map.Entry<String, String> attribute : attributes) {
+                postings.computeIfAbsent(attribute.getKey(), name -> new HashMap<>())
+                        .computeIfAbsent(attribute.getValue(), value -> new RoaringBitmap())
+                        .add(id);
+            }
+        });
+        variationsByProduct.put(productId, productVariations);
+    }
+
+    void removeProduct(Long productId) {
+        RoaringBitmap productVariations = variationsByProduct.remove(productId);
+        if(productVariations == null) {
+            return;
+        }
+
+        productVariations.forEach((int id) -> {
+            allVariations.remove(id);
+            for(Map.Entry<String, String> attribute : attributesByVariation.remove(id)) {
+                Map<String, RoaringBitmap> values = postings.get(attribute.getKey());
+                RoaringBitmap bitmap = values.get(attribute.getValue());
+                bitmap.remove(id);
+                if(bitmap.isEmpty()) {
+                    values.remove(attribute.getValue());
+                }
+                if(values.isEmpty()) {
+                    postings.remove(attribute.getKey());
+                }
+            }
+        });
+    }
+
+    int variationCount() {
+        return allVariations.getCardinality();
+    }
+
+    // Values of one attribute name are OR-ed together, different names are AND-ed.
+    RoaringBitmap match(Map<String, Set<String>> filters) {
+        RoaringBitmap result = allVariations.clone();
+        for(Map.Entry<String, Set<String>> filter : filters.entrySet()) {
+            result.and(union(filter.getKey(), filter.getValue()));
+            if(result.isEmpty()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    // Counts for an attribute name ignore that name's own filter, so selecting "Red" still
+    // reports how many variations each other colour would match.
+    Map<String, Map<String, Integer>> facetCounts(Map<String, Set<String>> filters) {
+        RoaringBitmap matchAll = match(filters);
+
+        Map<String, Map<String, Integer>> facets = new TreeMap<>();
+        postings.forEach((name, values) -> {
+            RoaringBitmap base = matchAll;
+            if(filters.containsKey(name)) {
+                Map<String, Set<String>> others = new HashMap<>(filters);
+                others.remove(name);
+                base = match(others);
+            }
+
+            Map<String, Integer> counts = new TreeMap<>();
+            for(Map.Entry<String, RoaringBitmap> value : values.entrySet()) {
+                int count = RoaringBitmap.andCardinality(base, value.getValue());
+                if(count > 0) {
+                    counts.put(value.getKey(), count);
+                }
+            }
+
+            if(!counts.isEmpty()) {
+                facets.put(name, counts);
+            }
+        });
+        return facets;
+    }
+
+    private RoaringBitmap union(String name, Set<String> values) {
+        Map<String, RoaringBitmap> postingsForName = postings.getOrDefault(name, Map.of());
+        return RoaringBitmap.or(values.stream()
+                .map(postingsForName::get)
+                .filter(Objects::nonNull)
+                .iterator());
+    }
+}
@@ -0,0 +1,213 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.dto.FacetSearchResultDTO;
+import com.mythicemporium.dto.VariationAttributeRowDTO;
+import com.mythicemporium.event.CatalogChangedEvent;
+import com.mythicemporium.exception.InvalidRequestException;
+import com.mythicemporium.repository.ProductRepository;
+import com.mythicemporium.repository.ProductVariationRepository;
+import jakarta.annotation.PreDestroy;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Answers attribute facet queries from an in-memory AttributeBitmapIndex. The index is built at
+// startup and products touched by committed changes are reloaded on a single refresher thread.
+@Service
+public class AttributeFacetService {
+
+    private static final Logger log = LoggerFactory.getLogger(AttributeFacetService.class);
+    private static final int LOAD_BATCH_SIZE = 500;
+
+    private ProductRepository productRepository;
+    private ProductVariationRepository productVariationRepository;
+    private CatalogRevision catalogRevision;
+    private TransactionTemplate transactionTemplate;
+    private Executor refresher;
+
+    private final AttributeBitmapIndex index = new AttributeBitmapIndex();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Set<Long> pendingProductIds = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private volatile boolean ready;
+
+    public AttributeFacetService(ProductRepository productRepository, ProductVariationRepository productVariationRepository,
+                                 CatalogRevision catalogRevision, PlatformTransactionManager transactionManager) {
+        this(productRepository, productVariationRepository, catalogRevision, transactionManager,
+                Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "attribute-facet-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+    }
+
+    AttributeFacetService(ProductRepository productRepository, ProductVariationRepository productVariationRepository,
+                          CatalogRevision catalogRevision, PlatformTransactionManager transactionManager, Executor refresher) {
+        this.productRepository = productRepository;
+        this.productVariationRepository = productVariationRepository;
+        this.catalogRevision = catalogRevision;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.refresher = refresher;
+    }
+
+    // Each filter is "name:value"; repeating a name ORs its values, different names are ANDed.
+    public FacetSearchResultDTO search(List<String> filters, Long after, int limit) {
+        if(limit < 1 || limit > ProductService.MAX_PAGE_LIMIT) {
+            throw new InvalidRequestException("Page limit must be between 1 and " + ProductService.MAX_PAGE_LIMIT + ".");
+        }
+
+        if(after != null && after < 0) {
+            throw new InvalidRequestException("Variation cursor cannot be negative.");
+        }
+
+        Map<String, Set<String>> parsed = parseFilters(filters);
+
+        lock.readLock().lock();
+        try {
+            RoaringBitmap matches = index.match(parsed);
+
+            List<Long> variationIds = new ArrayList<>();
+            PeekableIntIterator iterator = matches.getIntIterator();
+            if(after != null) {
+                iterator.advanceIfNeeded(Math.toIntExact(after + 1));
+            }
+            while(iterator.hasNext() && variationIds.size() < limit) {
+                variationIds.add((long) iterator.next());
+            }
+            Long nextAfter = iterator.hasNext() ? variationIds.get(variationIds.size() - 1) : null;
+
+            return new FacetSearchResultDTO(matches.getLongCardinality(), variationIds, nextAfter, index.facetCounts(parsed));
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadAll() {
+        Long afterId = 0L;
+        while(true) {
+            Long from = afterId;
+            List<Long> productIds = transactionTemplate.execute(status -> productRepository.findPageIds(from, Limit.of(LOAD_BATCH_SIZE)));
+            if(productIds == null || productIds.isEmpty()) {
+                break;
+            }
+
+            apply(productIds, loadRows(productIds));
+            afterId = productIds.get(productIds.size() - 1);
+        }
+
+        ready = true;
+        log.info("Attribute facet index loaded with {} variations.", index.variationCount());
+        scheduleRefresh();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        // Variation attributes only change through product and variation edits, which publish PRODUCT events.
+        if(event.getType() != CatalogChangedEvent.Type.PRODUCT) {
+            return;
+        }
+
+        pendingProductIds.add(event.getId());
+        if(ready) {
+            scheduleRefresh();
+        }
+    }
+
+    void refreshPending() {
+        refreshScheduled.set(false);
+
+        List<Long> productIds = new ArrayList<>(pendingProductIds);
+        productIds.forEach(pendingProductIds::remove);
+        if(productIds.isEmpty()) {
+            return;
+        }
+
+        try {
+            apply(productIds, loadRows(productIds));
+            catalogRevision.bump();
+        }
+        catch(RuntimeException ex) {
+            log.error("Attribute facet index refresh failed, will retry on the next change.", ex);
+            pendingProductIds.addAll(productIds);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if(refresher instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    private List<VariationAttributeRowDTO> loadRows(Collection<Long> productIds) {
+        return transactionTemplate.execute(status -> productVariationRepository.findAttributeRowsByProductIdIn(productIds));
+    }
+
+    // Products without rows were deleted or lost all their variations.
+    private void apply(Collection<Long> productIds, List<VariationAttributeRowDTO> rows) {
+        Map<Long, Map<Long, List<Map.Entry<String, String>>>> byProduct = new HashMap<>();
+        for(VariationAttributeRowDTO row : rows) {
+            List<Map.Entry<String, String>> attributes = byProduct
+                    .computeIfAbsent(row.getProductId(), id -> new HashMap<>())
+                    .computeIfAbsent(row.getVariationId(), id -> new ArrayList<>());
+            if(row.getAttributeName() != null && row.getAttributeValue() != null) {
+                attributes.add(Map.entry(row.getAttributeName(), row.getAttributeValue()));
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            for(Long productId : productIds) {
+                index.replaceProduct(productId, byProduct.getOrDefault(productId, Map.of()));
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void scheduleRefresh() {
+        if(refreshScheduled.compareAndSet(false, true)) {
+            refresher.execute(this::refreshPending);
+        }
+    }
+
+    private Map<String, Set<String>> parseFilters(List<String> filters) {
+        if(filters == null) {
+            return Map.of();
+        }
+
+        Map<String, Set<String>> parsed = new HashMap<>();
+        for(String filter : filters) {
+            int separator = filter == null ? -1 : filter.indexOf(':');
+            if(separator <= 0 || separator == filter.length() - 1) {
+                throw new InvalidRequestException("Attribute filter must be in the form name:value.");
+            }
+
+            parsed.computeIfAbsent(filter.substring(0, separator), name -> new HashSet<>())
+                    .add(filter.substring(separator + 1));
+        }
+        return parsed;
+    }
+}
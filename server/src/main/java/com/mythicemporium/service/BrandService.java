@@ -1,7 +1,9 @@
 package com.mythicemporium.service;
 
+import com.mythicemporium.config.CacheConfig;
 import com.mythicemporium.dto.BrandRequestDTO;
 import com.mythicemporium.dto.CategoryRequestDTO;
+import com.mythicemporium.event.CatalogChangedEvent;
 import com.mythicemporium.exception.InvalidRequestException;
 import com.mythicemporium.exception.ResourceConflictException;
 import com.mythicemporium.exception.ResourceNotFoundException;
@@ -9,6 +11,8 @@ import com.mythicemporium.logging.AuditContext;
 import com.mythicemporium.logging.AuditContextHolder;
 import com.mythicemporium.model.Brand;
 import com.mythicemporium.repository.BrandRepository;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,15 +25,21 @@ import java.util.concurrent.CompletableFuture;
 public class BrandService {
 
     private BrandRepository brandRepository;
+    private ApplicationEventPublisher eventPublisher;
 
-    public BrandService(BrandRepository brandRepository) {
+    public BrandService(BrandRepository brandRepository, ApplicationEventPublisher eventPublisher) {
         this.brandRepository = brandRepository;
+        this.eventPublisher = eventPublisher;
     }
 
+    @Cacheable(cacheNames = CacheConfig.ALL_BRANDS, key = "'all'")
+    @Transactional(readOnly = true)
     public List<Brand> findAll() {
-        return brandRepository.findAll();
+        return List.copyOf(brandRepository.findAll());
     }
 
+    @Cacheable(cacheNames = CacheConfig.BRANDS, unless = "#result == null")
+    @Transactional(readOnly = true)
     public Brand findById(Long id) {
         Optional<Brand> brand = brandRepository.findById(id);
 
@@ -56,6 +66,7 @@ public class BrandService {
 
         try {
             brand = brandRepository.save(brand);
+            eventPublisher.publishEvent(CatalogChangedEvent.brandSaved(brand.getId()));
 
             AuditContext ctx = AuditContextHolder.getContext();
             ctx.setOperationType("CREATE");
@@ -91,6 +102,7 @@ public class BrandService {
         brand.setName(brandRequestDTO.getName());
 
         Brand savedBrand = brandRepository.save(brand);
+        eventPublisher.publishEvent(CatalogChangedEvent.brandSaved(brandId));
 
         Result result = new Result();
         result.setData(savedBrand);
@@ -111,6 +123,7 @@ public class BrandService {
         ctx.setOperationType("DELETE");
 
         brandRepository.delete(brand);
+        eventPublisher.publishEvent(CatalogChangedEvent.brandDeleted(brandId));
 
         return true;
     }
@@ -0,0 +1,236 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.config.CatalogProperties;
+import com.mythicemporium.dto.BulkDeleteResultDTO;
+import com.mythicemporium.dto.BulkUpdateResultDTO;
+import com.mythicemporium.dto.BulkUpdateRowDTO;
+import com.mythicemporium.dto.PriceUpdateDTO;
+import com.mythicemporium.dto.StockUpdateDTO;
+import com.mythicemporium.event.CatalogChangedEvent;
+import com.mythicemporium.exception.InvalidRequestException;
+import com.mythicemporium.logging.AuditContextHolder;
+import com.mythicemporium.repository.ProductRepository;
+import com.mythicemporium.repository.ProductVariationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+// Applies stock and price changes for many variations at once, as sent by an ERP sync. Rows are
+// validated up front, sorted by variation id and applied in chunks of catalog.bulk-chunk-size,
+// each in its own transaction with one locking read and one UPDATE over the whole chunk. A chunk
+// that fails is reported row by row and does not stop the chunks after it. Bulk product deletes
+// are chunked the same way.
+@Service
+public class BulkUpdateService {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkUpdateService.class);
+
+    private ProductRepository productRepository;
+    private ProductVariationRepository productVariationRepository;
+    private StockBucketService stockBucketService;
+    private InventoryEngine inventoryEngine;
+    private CatalogProperties catalogProperties;
+    private TransactionTemplate transactionTemplate;
+    private ApplicationEventPublisher eventPublisher;
+    private MeterRegistry meterRegistry;
+
+    public BulkUpdateService(ProductRepository productRepository, ProductVariationRepository productVariationRepository,
+                             StockBucketService stockBucketService, InventoryEngine inventoryEngine, CatalogProperties catalogProperties,
+                             PlatformTransactionManager transactionManager, ApplicationEventPublisher eventPublisher,
+                             MeterRegistry meterRegistry) {
+        this.productRepository = productRepository;
+        this.productVariationRepository = productVariationRepository;
+        this.stockBucketService = stockBucketService;
+        this.inventoryEngine = inventoryEngine;
+        this.catalogProperties = catalogProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public BulkUpdateResultDTO updateStock(List<StockUpdateDTO> updates) {
+        return apply("stock", updates, StockUpdateDTO::getVariationId, StockUpdateDTO::getStock,
+                stock -> stock == null || stock < 0 ? "Stock must be positive and non-null." : null,
+                this::applyStock);
+    }
+
+    public BulkUpdateResultDTO updatePrices(List<PriceUpdateDTO> updates) {
+        return apply("price", updates, PriceUpdateDTO::getVariationId, PriceUpdateDTO::getPrice,
+                price -> price == null || price < 0 ? "Price must be positive and non-null." : null,
+                this::applyPrices);
+    }
+
+    // Clears out products, such as a discontinued brand's, with a few set-based statements per chunk.
+    // Ids are deduplicated; ids that do not exist are reported, not treated as errors.
+    public BulkDeleteResultDTO deleteProducts(List<Long> productIds) {
+        if(productIds == null || productIds.isEmpty()) {
+            throw new InvalidRequestException("Bulk delete must contain at least one product id.");
+        }
+
+        if(productIds.size() > catalogProperties.getBulkMaxRows()) {
+            throw new InvalidRequestException("Bulk delete cannot contain more than " + catalogProperties.getBulkMaxRows() + " product ids.");
+        }
+
+        TreeSet<Long> unique = new TreeSet<>();
+        for(Long id : productIds) {
+            if(id == null || id < 0) {
+                throw new InvalidRequestException("Product ids cannot be null or negative.");
+            }
+            unique.add(id);
+        }
+
+        BulkDeleteResultDTO result = new BulkDeleteResultDTO();
+        Timer timer = meterRegistry.timer("catalog.bulk.delete");
+        List<Long> ids = new ArrayList<>(unique);
+        for(int from = 0; from < ids.size(); from += catalogProperties.getBulkChunkSize()) {
+            List<Long> chunk = ids.subList(from, Math.min(from + catalogProperties.getBulkChunkSize(), ids.size()));
+
+            try {
+                Set<Long> deleted = timer.record(() -> transactionTemplate.execute(status -> deleteChunk(chunk)));
+                result.setDeleted(result.getDeleted() + deleted.size());
+                chunk.stream().filter(id -> !deleted.contains(id)).forEach(result.getNotFound()::add);
+            } catch(RuntimeException e) {
+                log.warn("Bulk delete of {} products failed.", chunk.size(), e);
+                result.getFailed().addAll(chunk);
+            }
+        }
+
+        return result;
+    }
+
+    private <T, V> BulkUpdateResultDTO apply(String field, List<T> updates, Function<T, Long> idOf, Function<T, V> valueOf,
+                                             Function<V, String> validate, Function<Map<Long, V>, Set<Long>> applyChunk) {
+        if(updates == null || updates.isEmpty()) {
+            throw new InvalidRequestException("Bulk update must contain at least one row.");
+        }
+
+        if(updates.size() > catalogProperties.getBulkMaxRows()) {
+            throw new InvalidRequestException("Bulk update cannot contain more than " + catalogProperties.getBulkMaxRows() + " rows.");
+        }
+
+        BulkUpdateRowDTO[] rows = new BulkUpdateRowDTO[updates.size()];
+        Map<Long, Integer> positions = new HashMap<>();
+        TreeMap<Long, V> valid = new TreeMap<>();
+        for(int i = 0; i < updates.size(); i++) {
+            T update = updates.get(i);
+            Long id = update == null ? null : idOf.apply(update);
+            if(id == null || id < 0) {
+                rows[i] = new BulkUpdateRowDTO(id, BulkUpdateRowDTO.Status.INVALID, "Variation id cannot be null or negative.");
+                continue;
+            }
+
+            if(positions.containsKey(id)) {
+                rows[i] = new BulkUpdateRowDTO(id, BulkUpdateRowDTO.Status.INVALID, "Variation " + id + " appears more than once.");
+                continue;
+            }
+
+            V value = valueOf.apply(update);
+            String error = validate.apply(value);
+            if(error != null) {
+                rows[i] = new BulkUpdateRowDTO(id, BulkUpdateRowDTO.Status.INVALID, error);
+                continue;
+            }
+
+            positions.put(id, i);
+            valid.put(id, value);
+        }
+
+        Timer timer = meterRegistry.timer("catalog.bulk.update", "field", field);
+        List<Long> ids = new ArrayList<>(valid.keySet());
+        for(int from = 0; from < ids.size(); from += catalogProperties.getBulkChunkSize()) {
+            Map<Long, V> chunk = new LinkedHashMap<>();
+            ids.subList(from, Math.min(from + catalogProperties.getBulkChunkSize(), ids.size()))
+                    .forEach(id -> chunk.put(id, valid.get(id)));
+
+            try {
+                Set<Long> updated = timer.record(() -> transactionTemplate.execute(status -> applyChunk.apply(chunk)));
+                chunk.keySet().forEach(id -> rows[positions.get(id)] = updated.contains(id)
+                        ? new BulkUpdateRowDTO(id, BulkUpdateRowDTO.Status.UPDATED, null)
+                        : new BulkUpdateRowDTO(id, BulkUpdateRowDTO.Status.NOT_FOUND, "Variation " + id + " not found."));
+            } catch(RuntimeException e) {
+                log.warn("Bulk {} update of {} variations failed.", field, chunk.size(), e);
+                chunk.keySet().forEach(id -> rows[positions.get(id)] = new BulkUpdateRowDTO(id, BulkUpdateRowDTO.Status.FAILED,
+                        "Variation " + id + " could not be updated; nothing in its chunk was applied."));
+            }
+        }
+
+        int updated = (int) Arrays.stream(rows).filter(row -> row.getStatus() == BulkUpdateRowDTO.Status.UPDATED).count();
+        return new BulkUpdateResultDTO(updated, Arrays.asList(rows));
+    }
+
+    // Mirrors ProductService.updateVariationStock: variations held by the inventory engine are set
+    // in memory after commit, sharded ones have their buckets rewritten, the rest share one UPDATE.
+    private Set<Long> applyStock(Map<Long, Integer> chunk) {
+        Set<Long> updated = new TreeSet<>();
+        Map<Long, Integer> stored = new TreeMap<>();
+        chunk.forEach((id, stock) -> {
+            if(inventoryEngine.setStock(id, stock)) {
+                updated.add(id);
+            }
+            else {
+                stored.put(id, stock);
+            }
+        });
+
+        if(!stored.isEmpty()) {
+            List<Long> unsharded = new ArrayList<>();
+            for(ProductVariationRepository.StockRow row : productVariationRepository.lockStockByIdIn(stored.keySet())) {
+                if(row.getStockShards() != null) {
+                    stockBucketService.setStock(row.getId(), stored.get(row.getId()));
+                }
+                else {
+                    unsharded.add(row.getId());
+                }
+                updated.add(row.getId());
+            }
+
+            if(!unsharded.isEmpty()) {
+                productVariationRepository.setStockBatch(unsharded.toArray(new Long[0]),
+                        unsharded.stream().map(stored::get).toArray(Integer[]::new));
+            }
+        }
+
+        updated.forEach(id -> eventPublisher.publishEvent(CatalogChangedEvent.variationChanged(id)));
+        return updated;
+    }
+
+    private Set<Long> applyPrices(Map<Long, Double> chunk) {
+        Set<Long> updated = new TreeSet<>();
+        productVariationRepository.lockStockByIdIn(chunk.keySet()).forEach(row -> updated.add(row.getId()));
+
+        if(!updated.isEmpty()) {
+            productVariationRepository.setPriceBatch(updated.toArray(new Long[0]),
+                    updated.stream().map(chunk::get).toArray(Double[]::new));
+        }
+
+        updated.forEach(id -> eventPublisher.publishEvent(CatalogChangedEvent.variationChanged(id)));
+        return updated;
+    }
+
+    private Set<Long> deleteChunk(List<Long> chunk) {
+        AuditContextHolder.getContext().setOperationType("DELETE");
+
+        Map<Long, List<Long>> deleted = productRepository.deleteAllByIdIn(chunk);
+        deleted.forEach((productId, variationIds) -> {
+            variationIds.forEach(inventoryEngine::forget);
+            eventPublisher.publishEvent(CatalogChangedEvent.productDeleted(productId));
+        });
+        return deleted.keySet();
+    }
+}
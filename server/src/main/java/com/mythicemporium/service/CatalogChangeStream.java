@@ -0,0 +1,311 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.config.CatalogProperties;
+import com.mythicemporium.dto.CatalogDeltaDTO;
+import com.mythicemporium.event.CatalogChangedEvent;
+import com.mythicemporium.repository.ProductVariationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Pushes committed catalog changes to Server-Sent Events subscribers. Changes are queued after
+// commit and published together on a short timer by this single publisher: variation changes are
+// coalesced per variation and read back in one query, so a burst of purchases costs one query and
+// one event per variation. Events get increasing ids and the latest are kept for subscribers
+// resuming with Last-Event-ID. Each subscriber has a bounded queue drained by a sender thread; one
+// that falls behind has its queue replaced by a single resync event and should reload the listing.
+// A sender task writes a few events and then yields to the other subscribers, and senders run on a
+// pool that grows with demand, so a stalled client only ties up its own thread. A client stuck in
+// one write for longer than the send timeout is dropped and has to reconnect.
+@Service
+public class CatalogChangeStream {
+
+    public static final String READY = "ready";
+    public static final String RESYNC = "resync";
+    public static final String VARIATION = "variation";
+    public static final String PRODUCT_CREATED = "product-created";
+    public static final String PRODUCT_UPDATED = "product-updated";
+    public static final String PRODUCT_DELETED = "product-deleted";
+
+    static final int SEND_BATCH_SIZE = 32;
+
+    private static final long HEARTBEAT_NANOS = TimeUnit.SECONDS.toNanos(15);
+
+    private ProductVariationRepository productVariationRepository;
+    private CatalogProperties catalogProperties;
+    private Executor sender;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Queue<Change> pendingProducts = new ConcurrentLinkedQueue<>();
+    private final Set<Long> pendingVariationIds = ConcurrentHashMap.newKeySet();
+
+    // Guarded by this. Ids start from the clock so that ids from before a restart are never
+    // mistaken for current ones.
+    private final Deque<Change> replay = new ArrayDeque<>();
+    private long lastId = System.currentTimeMillis() * 1000;
+    private long lastSentNanos = System.nanoTime();
+
+    private final Counter resyncs;
+    private final Counter stalls;
+
+    public CatalogChangeStream(ProductVariationRepository productVariationRepository, CatalogProperties catalogProperties,
+                               MeterRegistry meterRegistry) {
+        this(productVariationRepository, catalogProperties, meterRegistry, Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-stream");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    CatalogChangeStream(ProductVariationRepository productVariationRepository, CatalogProperties catalogProperties,
+                        MeterRegistry meterRegistry, Executor sender) {
+        this.productVariationRepository = productVariationRepository;
+        this.catalogProperties = catalogProperties;
+        this.sender = sender;
+        this.resyncs = Counter.builder("catalog.stream.resyncs")
+                .description("Catalog stream subscribers told to resync after falling behind")
+                .register(meterRegistry);
+        this.stalls = Counter.builder("catalog.stream.stalls")
+                .description("Catalog stream subscribers dropped after a send outlasted the send timeout")
+                .register(meterRegistry);
+        Gauge.builder("catalog.stream.subscribers", subscribers, Set::size)
+                .description("Open catalog stream connections")
+                .register(meterRegistry);
+    }
+
+    public SseEmitter subscribe(String lastEventId) {
+        return subscribe(lastEventId, new SseEmitter(catalogProperties.getStreamTimeout().toMillis()));
+    }
+
+    SseEmitter subscribe(String lastEventId, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter, catalogProperties.getStreamBufferSize());
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+
+        synchronized(this) {
+            if(lastEventId == null) {
+                offer(subscriber, new Change(lastId, READY, new CatalogDeltaDTO()));
+            }
+            else {
+                Long resumeFrom = parseId(lastEventId);
+                if(resumeFrom != null && canReplayFrom(resumeFrom)) {
+                    replay.stream().filter(change -> change.id > resumeFrom).forEach(change -> offer(subscriber, change));
+                }
+                else {
+                    offer(subscriber, resync());
+                }
+            }
+            subscribers.add(subscriber);
+        }
+        return emitter;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        switch(event.getType()) {
+            case PRODUCT -> {
+                String name = event.isDeleted() ? PRODUCT_DELETED : event.isCreated() ? PRODUCT_CREATED : PRODUCT_UPDATED;
+                pendingProducts.add(new Change(0, name, CatalogDeltaDTO.product(event.getId())));
+            }
+            case VARIATION, STOCK -> pendingVariationIds.add(event.getId());
+            case BRAND, CATEGORY -> {
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.stream-interval-ms:250}")
+    public void publish() {
+        dropStalled();
+
+        List<Change> changes = new ArrayList<>();
+        Change product;
+        while((product = pendingProducts.poll()) != null) {
+            changes.add(product);
+        }
+        List<Long> variationIds = new ArrayList<>(pendingVariationIds);
+        variationIds.forEach(pendingVariationIds::remove);
+
+        // Nobody to read the changes back for; anyone resuming across this gap has to resync.
+        if(subscribers.isEmpty()) {
+            if(!changes.isEmpty() || !variationIds.isEmpty()) {
+                synchronized(this) {
+                    lastId++;
+                    replay.clear();
+                }
+            }
+            return;
+        }
+
+        if(!variationIds.isEmpty()) {
+            productVariationRepository.findStockAndPriceByIdIn(variationIds).forEach(row -> changes.add(new Change(0, VARIATION,
+                    new CatalogDeltaDTO(row.getProductId(), row.getId(), row.getStock(), row.getPrice()))));
+        }
+
+        synchronized(this) {
+            if(changes.isEmpty()) {
+                if(System.nanoTime() - lastSentNanos >= HEARTBEAT_NANOS) {
+                    subscribers.forEach(subscriber -> offer(subscriber, Change.HEARTBEAT));
+                    lastSentNanos = System.nanoTime();
+                }
+                return;
+            }
+
+            for(Change change : changes) {
+                Change numbered = new Change(++lastId, change.name, change.delta);
+                replay.addLast(numbered);
+                if(replay.size() > catalogProperties.getStreamReplaySize()) {
+                    replay.removeFirst();
+                }
+                subscribers.forEach(subscriber -> offer(subscriber, numbered));
+            }
+            lastSentNanos = System.nanoTime();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        if(sender instanceof ExecutorService executor) {
+            executor.shutdownNow();
+        }
+    }
+
+    int subscriberCount() {
+        return subscribers.size();
+    }
+
+    private boolean canReplayFrom(long id) {
+        if(id == lastId) {
+            return true;
+        }
+        return !replay.isEmpty() && id >= replay.peekFirst().id - 1 && id < lastId;
+    }
+
+    private Change resync() {
+        return new Change(lastId, RESYNC, new CatalogDeltaDTO());
+    }
+
+    private void offer(Subscriber subscriber, Change change) {
+        if(!subscriber.queue.offer(change)) {
+            subscriber.queue.clear();
+            subscriber.queue.offer(resync());
+            resyncs.increment();
+        }
+        drain(subscriber);
+    }
+
+    private void drain(Subscriber subscriber) {
+        if(!subscriber.draining.compareAndSet(false, true)) {
+            return;
+        }
+
+        sender.execute(() -> send(subscriber));
+    }
+
+    // Writes at most SEND_BATCH_SIZE changes and resubmits the rest behind the other subscribers'
+    // tasks, so one busy subscriber cannot keep a sender thread to itself.
+    private void send(Subscriber subscriber) {
+        try {
+            Change change;
+            for(int sent = 0; sent < SEND_BATCH_SIZE && (change = subscriber.queue.poll()) != null; sent++) {
+                subscriber.sendStartedNanos = System.nanoTime();
+                subscriber.sending = true;
+                subscriber.emitter.send(change.toEvent());
+                subscriber.sending = false;
+            }
+        }
+        catch(IOException | IllegalStateException e) {
+            subscribers.remove(subscriber);
+            subscriber.queue.clear();
+        }
+        finally {
+            subscriber.sending = false;
+            subscriber.draining.set(false);
+        }
+
+        if(!subscriber.queue.isEmpty() && subscribers.contains(subscriber)) {
+            drain(subscriber);
+        }
+    }
+
+    // A write that blocks this long means the client stopped reading. Nothing more is queued for
+    // it, and the emitter is completed on a thread of its own once the write gives up.
+    private void dropStalled() {
+        long timeout = catalogProperties.getStreamSendTimeout().toNanos();
+        long now = System.nanoTime();
+        for(Subscriber subscriber : subscribers) {
+            if(subscriber.sending && now - subscriber.sendStartedNanos > timeout && subscribers.remove(subscriber)) {
+                subscriber.queue.clear();
+                stalls.increment();
+                sender.execute(subscriber.emitter::complete);
+            }
+        }
+    }
+
+    private Long parseId(String id) {
+        try {
+            return Long.parseLong(id.trim());
+        }
+        catch(NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final ArrayBlockingQueue<Change> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean sending;
+        private volatile long sendStartedNanos;
+
+        private Subscriber(SseEmitter emitter, int capacity) {
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+    }
+
+    private static final class Change {
+        private static final Change HEARTBEAT = new Change(0, null, null);
+
+        private final long id;
+        private final String name;
+        private final CatalogDeltaDTO delta;
+
+        private Change(long id, String name, CatalogDeltaDTO delta) {
+            this.id = id;
+            this.name = name;
+            this.delta = delta;
+        }
+
+        private SseEmitter.SseEventBuilder toEvent() {
+            if(name == null) {
+                return SseEmitter.event().comment("keep-alive");
+            }
+            return SseEmitter.event().id(String.valueOf(id)).name(name).data(delta, MediaType.APPLICATION_JSON);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.mythicemporium.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mythicemporium.dto.CatalogRowDTO;
+import com.mythicemporium.repository.ProductRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.stream.Stream;
+
+@Service
+public class CatalogExportService {
+
+    private ProductRepository productRepository;
+    private ObjectMapper objectMapper;
+
+    public CatalogExportService(ProductRepository productRepository, ObjectMapper objectMapper) {
+        this.productRepository = productRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    // Rows are scalar projections read through a server-side cursor, so neither the
+    // persistence context nor the heap grows with the size of the catalog.
+    @Transactional(readOnly = true)
+    public long exportProducts(OutputStream out) throws IOException {
+        try(Stream<CatalogRowDTO> rows = productRepository.streamCatalogRows()) {
+            long count = CatalogRowAssembler.assemble(rows.iterator(), product -> {
+                out.write(objectMapper.writeValueAsBytes(product));
+                out.write('\n');
+            });
+
+            out.flush();
+            return count;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.dto.ProductPageDTO;
+import com.mythicemporium.dto.ProductResponseDTO;
+import com.mythicemporium.event.CatalogChangedEvent;
+import com.mythicemporium.model.CatalogProjection;
+import com.mythicemporium.model.Product;
+import com.mythicemporium.repository.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Maintains catalog_projection, one pre-joined row per product. Catalog edits are applied
+// before their transaction commits; purchase decrements are queued and folded in on a timer
+// so the hot purchase path never contends on projection rows.
+@Service
+public class CatalogProjectionService {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogProjectionService.class);
+    private static final int REBUILD_BATCH_SIZE = 200;
+
+    private CatalogProjectionRepository projectionRepository;
+    private ProductRepository productRepository;
+    private ProductVariationRepository productVariationRepository;
+    private BrandRepository brandRepository;
+    private CategoryRepository categoryRepository;
+    private CatalogRevision catalogRevision;
+    private TransactionTemplate transactionTemplate;
+
+    private final Set<Long> pendingStockVariationIds = ConcurrentHashMap.newKeySet();
+
+    public CatalogProjectionService(CatalogProjectionRepository projectionRepository, ProductRepository productRepository,
+                                    ProductVariationRepository productVariationRepository, BrandRepository brandRepository,
+                                    CategoryRepository categoryRepository, CatalogRevision catalogRevision,
+                                    PlatformTransactionManager transactionManager) {
+        this.projectionRepository = projectionRepository;
+        this.productRepository = productRepository;
+        this.productVariationRepository = productVariationRepository;
+        this.brandRepository = brandRepository;
+        this.categoryRepository = categoryRepository;
+        this.catalogRevision = catalogRevision;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Transactional(readOnly = true)
+    public List<ProductResponseDTO> findPage(Long afterId, int limit) {
+        return projectionRepository.findPage(afterId, Limit.of(limit)).stream().map(this::toResponseDTO).toList();
+    }
+
+    @Transactional(readOnly = true)
+    public List<ProductResponseDTO> findPageByBrandId(Long brandId, Long afterId, int limit) {
+        return projectionRepository.findPageByBrandId(brandId, afterId, Limit.of(limit)).stream().map(this::toResponseDTO).toList();
+    }
+
+    @Transactional(readOnly = true)
+    public List<ProductResponseDTO> findPageByCategoryId(Long categoryId, Long afterId, int limit) {
+        return projectionRepository.findPageByCategoryId(categoryId, afterId, Limit.of(limit)).stream().map(this::toResponseDTO).toList();
+    }
+
+    @Transactional(readOnly = true)
+    public List<ProductResponseDTO> search(String query, long offset, int limit) {
+        return projectionRepository.search(query, offset, limit).stream().map(this::toResponseDTO).toList();
+    }
+
+    // Fetches one row more than the page size to learn whether a next page exists.
+    @Transactional(readOnly = true)
+    public ProductPageDTO findFilteredPage(ProductFilter filter, int limit) {
+        List<CatalogProjectionRepositoryCustom.SortedRow> rows = projectionRepository.findFilteredPage(filter, limit + 1);
+        if(rows.size() <= limit) {
+            return new ProductPageDTO(rows.stream().map(row -> toResponseDTO(row.getProjection())).toList(), null);
+        }
+
+        List<CatalogProjectionRepositoryCustom.SortedRow> page = rows.subList(0, limit);
+        CatalogProjectionRepositoryCustom.SortedRow last = page.get(page.size() - 1);
+        String nextCursor = ProductCursor.encode(filter.getSort(), last.getSortKey(), last.getProjection().getProductId());
+        return new ProductPageDTO(page.stream().map(row -> toResponseDTO(row.getProjection())).toList(), nextCursor);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void applyChange(CatalogChangedEvent event) {
+        switch(event.getType()) {
+            case PRODUCT -> {
+                if(event.isDeleted()) {
+                    projectionRepository.deleteById(event.getId());
+                }
+                else {
+                    refreshProducts(List.of(event.getId()));
+                }
+            }
+            case VARIATION -> productVariationRepository.findProductIdById(event.getId())
+                    .ifPresent(productId -> refreshProducts(List.of(productId)));
+            case BRAND -> {
+                if(!event.isDeleted()) {
+                    brandRepository.findById(event.getId())
+                            .ifPresent(brand -> projectionRepository.updateBrandName(brand.getId(), brand.getName()));
+                }
+            }
+            case CATEGORY -> {
+                if(!event.isDeleted()) {
+                    categoryRepository.findById(event.getId())
+                            .ifPresent(category -> projectionRepository.updateCategoryName(category.getId(), category.getName()));
+                }
+            }
+            case STOCK -> {
+            }
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void queueStockChange(CatalogChangedEvent event) {
+        if(event.getType() == CatalogChangedEvent.Type.STOCK) {
+            pendingStockVariationIds.add(event.getId());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.projection.stock-refresh-interval-ms:1000}")
+    public void refreshPendingStock() {
+        if(pendingStockVariationIds.isEmpty()) {
+            return;
+        }
+
+        List<Long> variationIds = new ArrayList<>(pendingStockVariationIds);
+        variationIds.forEach(pendingStockVariationIds::remove);
+
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    refreshProducts(productVariationRepository.findProductIdsByIdIn(variationIds)));
+            catalogRevision.bump();
+        }
+        catch(RuntimeException ex) {
+            log.error("Catalog projection stock refresh failed, will retry on the next run.", ex);
+            pendingStockVariationIds.addAll(variationIds);
+        }
+    }
+
+    // Stock changes still queued at shutdown are lost, so row counts alone can look complete
+    // while rows carry old stock. Every row is checked against its product and variations.
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfIncomplete() {
+        transactionTemplate.executeWithoutResult(status -> projectionRepository.deleteOrphans());
+
+        List<Long> staleIds = projectionRepository.findStaleProductIds();
+        if(staleIds.isEmpty()) {
+            return;
+        }
+
+        log.info("Catalog projection has {} stale products, refreshing them.", staleIds.size());
+        for(int from = 0; from < staleIds.size(); from += REBUILD_BATCH_SIZE) {
+            List<Long> ids = staleIds.subList(from, Math.min(from + REBUILD_BATCH_SIZE, staleIds.size()));
+            transactionTemplate.executeWithoutResult(status -> refreshProducts(ids));
+        }
+    }
+
+    public void rebuildAll() {
+        transactionTemplate.executeWithoutResult(status -> projectionRepository.deleteOrphans());
+
+        Long afterId = 0L;
+        while(true) {
+            List<Long> ids = productRepository.findPageIds(afterId, Limit.of(REBUILD_BATCH_SIZE));
+            if(ids.isEmpty()) {
+                break;
+            }
+
+            transactionTemplate.executeWithoutResult(status -> refreshProducts(ids));
+            afterId = ids.get(ids.size() - 1);
+        }
+    }
+
+    private void refreshProducts(Collection<Long> productIds) {
+        if(productIds.isEmpty()) {
+            return;
+        }
+
+        // Each refresh rewrites whole rows from what its transaction can see. Locking the products
+        // first makes a concurrent edit of another variation wait for this commit, then read it.
+        productRepository.lockAllByIdIn(productIds);
+        List<Product> products = productRepository.findAllWithVariationsByIdIn(productIds);
+        productVariationRepository.findAllWithAttributesByProductIdIn(productIds);
+
+        projectionRepository.saveAll(products.stream().map(this::toProjection).toList());
+    }
+
+    private CatalogProjection toProjection(Product product) {
+        ProductResponseDTO dto = ProductMapper.toResponseDTO(product);
+
+        CatalogProjection projection = new CatalogProjection();
+        projection.setProductId(dto.getId());
+        projection.setProductVersion(dto.getVersion());
+        projection.setName(dto.getName());
+        projection.setDescription(dto.getDescription());
+        projection.setBrandId(product.getBrand().getId());
+        projection.setBrandName(dto.getBrandName());
+        projection.setCategoryId(product.getCategory().getId());
+        projection.setCategoryName(dto.getCategoryName());
+        projection.setVariations(dto.getVariations());
+        return projection;
+    }
+
+    private ProductResponseDTO toResponseDTO(CatalogProjection projection) {
+        ProductResponseDTO dto = new ProductResponseDTO();
+        dto.setId(projection.getProductId());
+        dto.setVersion(projection.getProductVersion());
+        dto.setName(projection.getName());
+        dto.setDescription(projection.getDescription());
+        dto.setBrandName(projection.getBrandName());
+        dto.setCategoryName(projection.getCategoryName());
+        dto.setVariations(projection.getVariations());
+        return dto;
+    }
+}
@@ -0,0 +1,39 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.event.CatalogChangedEvent;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// A counter bumped after every committed catalog change, used as the ETag of catalog GETs.
+// Read models that apply changes after the commit (the snapshot, deferred projection stock)
+// bump it again once their data is visible, so a new tag never pairs with a stale body.
+@Component
+public class CatalogRevision {
+
+    // Seeded from the clock so tags issued before a restart never match after it.
+    private final AtomicLong revision = new AtomicLong(System.currentTimeMillis());
+
+    public long current() {
+        return revision.get();
+    }
+
+    public String etag() {
+        return "\"catalog-" + current() + "\"";
+    }
+
+    public void bump() {
+        revision.incrementAndGet();
+    }
+
+    // Runs after the other after-commit listeners, e.g. cache eviction.
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        bump();
+    }
+}
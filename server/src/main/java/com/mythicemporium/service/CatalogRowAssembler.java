@@ -0,0 +1,78 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.dto.CatalogRowDTO;
+import com.mythicemporium.dto.ProductResponseDTO;
+import com.mythicemporium.dto.ProductVariationAttributeDTO;
+import com.mythicemporium.dto.ProductVariationResponseDTO;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Objects;
+
+// Folds flat product/variation/attribute rows, ordered by product id then variation id,
+// back into response DTOs. Only the product currently being assembled is held in memory.
+public class CatalogRowAssembler {
+
+    public interface ProductSink {
+        void accept(ProductResponseDTO product) throws IOException;
+    }
+
+    private CatalogRowAssembler() {
+    }
+
+    public static long assemble(Iterator<CatalogRowDTO> rows, ProductSink sink) throws IOException {
+        long count = 0;
+        ProductResponseDTO product = null;
+        ProductVariationResponseDTO variation = null;
+
+        while(rows.hasNext()) {
+            CatalogRowDTO row = rows.next();
+
+            if(product == null || !product.getId().equals(row.getProductId())) {
+                if(product != null) {
+                    sink.accept(product);
+                    count++;
+                }
+
+                product = new ProductResponseDTO();
+                product.setId(row.getProductId());
+                product.setName(row.getProductName());
+                product.setDescription(row.getDescription());
+                product.setBrandName(row.getBrandName());
+                product.setCategoryName(row.getCategoryName());
+                product.setVariations(new ArrayList<>());
+                variation = null;
+            }
+
+            if(row.getVariationId() == null) {
+                continue;
+            }
+
+            if(variation == null || !Objects.equals(variation.getId(), row.getVariationId())) {
+                variation = new ProductVariationResponseDTO();
+                variation.setId(row.getVariationId());
+                variation.setSku(row.getSku());
+                variation.setPrice(row.getPrice());
+                variation.setStock(row.getStock());
+                variation.setImageUrl(row.getImageUrl());
+                variation.setAttributes(new ArrayList<>());
+                product.getVariations().add(variation);
+            }
+
+            if(row.getAttributeName() != null) {
+                ProductVariationAttributeDTO attribute = new ProductVariationAttributeDTO();
+                attribute.setAttributeName(row.getAttributeName());
+                attribute.setAttributeValue(row.getAttributeValue());
+                variation.getAttributes().add(attribute);
+            }
+        }
+
+        if(product != null) {
+            sink.accept(product);
+            count++;
+        }
+
+        return count;
+    }
+}
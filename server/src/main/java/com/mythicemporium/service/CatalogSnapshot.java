@@ -0,0 +1,321 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.dto.ProductResponseDTO;
+import com.mythicemporium.dto.ProductVariationAttributeDTO;
+import com.mythicemporium.dto.ProductVariationResponseDTO;
+
+import java.util.*;
+
+// Immutable view of the whole catalog. A new instance is built for every change and swapped in
+// by CatalogSnapshotService; readers holding an older instance keep a consistent view. Successive
+// instances share the parts of the catalog that did not change.
+public final class CatalogSnapshot {
+
+    public static final CatalogSnapshot EMPTY = new CatalogSnapshot(0, PagedMap.empty(), new HashMap<>(), new HashMap<>(), PagedMap.empty());
+
+    public static final class Entry {
+        private final ProductResponseDTO product;
+        private final Long brandId;
+        private final Long categoryId;
+
+        public Entry(ProductResponseDTO product, Long brandId, Long categoryId) {
+            this.product = freeze(product);
+            this.brandId = brandId;
+            this.categoryId = categoryId;
+        }
+
+        public ProductResponseDTO getProduct() {
+            return product;
+        }
+
+        public Long getBrandId() {
+            return brandId;
+        }
+
+        public Long getCategoryId() {
+            return categoryId;
+        }
+    }
+
+    private final long version;
+    private final PagedMap<Entry> entries;
+    private final Map<Long, NavigableSet<Long>> productIdsByBrand;
+    private final Map<Long, NavigableSet<Long>> productIdsByCategory;
+    private final PagedMap<Long> productIdsByVariation;
+
+    private CatalogSnapshot(long version, PagedMap<Entry> entries, Map<Long, NavigableSet<Long>> productIdsByBrand,
+                            Map<Long, NavigableSet<Long>> productIdsByCategory, PagedMap<Long> productIdsByVariation) {
+        this.version = version;
+        this.entries = entries;
+        this.productIdsByBrand = productIdsByBrand;
+        this.productIdsByCategory = productIdsByCategory;
+        this.productIdsByVariation = productIdsByVariation;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Optional<ProductResponseDTO> findById(Long productId) {
+        Entry entry = entries.get(productId);
+        return entry == null ? Optional.empty() : Optional.of(entry.getProduct());
+    }
+
+    public List<ProductResponseDTO> findAll() {
+        return findPage(Long.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    public List<ProductResponseDTO> findAllByBrandId(Long brandId) {
+        return resolve(productIdsByBrand.getOrDefault(brandId, Collections.emptyNavigableSet()), Integer.MAX_VALUE);
+    }
+
+    public List<ProductResponseDTO> findAllByCategoryId(Long categoryId) {
+        return resolve(productIdsByCategory.getOrDefault(categoryId, Collections.emptyNavigableSet()), Integer.MAX_VALUE);
+    }
+
+    public List<ProductResponseDTO> findPage(Long afterId, int limit) {
+        return entries.valuesAfter(afterId, limit).stream().map(Entry::getProduct).toList();
+    }
+
+    public List<ProductResponseDTO> findPageByBrandId(Long brandId, Long afterId, int limit) {
+        return resolve(productIdsByBrand.getOrDefault(brandId, Collections.emptyNavigableSet()).tailSet(afterId, false), limit);
+    }
+
+    public List<ProductResponseDTO> findPageByCategoryId(Long categoryId, Long afterId, int limit) {
+        return resolve(productIdsByCategory.getOrDefault(categoryId, Collections.emptyNavigableSet()).tailSet(afterId, false), limit);
+    }
+
+    public Set<Long> productIdsForBrand(Long brandId) {
+        return productIdsByBrand.getOrDefault(brandId, Collections.emptyNavigableSet());
+    }
+
+    public Set<Long> productIdsForCategory(Long categoryId) {
+        return productIdsByCategory.getOrDefault(categoryId, Collections.emptyNavigableSet());
+    }
+
+    public Long productIdForVariation(Long variationId) {
+        return productIdsByVariation.get(variationId);
+    }
+
+    // Shares everything the changes do not touch with this snapshot. Only the pages of the id maps
+    // holding changed products and variations are copied, and a brand or category id set is only
+    // copied when a product actually joins or leaves it, so the common refresh of a product whose
+    // stock or price changed costs a few small copies however large the catalog is.
+    public CatalogSnapshot apply(Collection<Entry> upserts, Collection<Long> removedProductIds) {
+        PagedMap.Editor<Entry> nextEntries = entries.edit();
+        PagedMap.Editor<Long> nextByVariation = productIdsByVariation.edit();
+        IdSets nextByBrand = new IdSets(productIdsByBrand);
+        IdSets nextByCategory = new IdSets(productIdsByCategory);
+
+        for(Long productId : removedProductIds) {
+            Entry previous = nextEntries.remove(productId);
+            if(previous != null) {
+                nextByBrand.remove(previous.getBrandId(), productId);
+                nextByCategory.remove(previous.getCategoryId(), productId);
+                previous.getProduct().getVariations().forEach(variation -> nextByVariation.remove(variation.getId()));
+            }
+        }
+
+        for(Entry entry : upserts) {
+            Long productId = entry.getProduct().getId();
+            Entry previous = nextEntries.put(productId, entry);
+
+            if(previous == null || !Objects.equals(previous.getBrandId(), entry.getBrandId())) {
+                if(previous != null) {
+                    nextByBrand.remove(previous.getBrandId(), productId);
+                }
+                nextByBrand.add(entry.getBrandId(), productId);
+            }
+            if(previous == null || !Objects.equals(previous.getCategoryId(), entry.getCategoryId())) {
+                if(previous != null) {
+                    nextByCategory.remove(previous.getCategoryId(), productId);
+                }
+                nextByCategory.add(entry.getCategoryId(), productId);
+            }
+
+            Set<Long> variationIds = new HashSet<>();
+            entry.getProduct().getVariations().forEach(variation -> variationIds.add(variation.getId()));
+            if(previous != null) {
+                previous.getProduct().getVariations().stream()
+                        .filter(variation -> !variationIds.contains(variation.getId()))
+                        .forEach(variation -> nextByVariation.remove(variation.getId()));
+            }
+            for(Long variationId : variationIds) {
+                if(!productId.equals(nextByVariation.get(variationId))) {
+                    nextByVariation.put(variationId, productId);
+                }
+            }
+        }
+
+        return new CatalogSnapshot(version + 1, nextEntries.build(), nextByBrand.build(), nextByCategory.build(), nextByVariation.build());
+    }
+
+    private List<ProductResponseDTO> resolve(Set<Long> productIds, int limit) {
+        List<ProductResponseDTO> products = new ArrayList<>(Math.min(productIds.size(), limit));
+        for(Long productId : productIds) {
+            if(products.size() == limit) {
+                break;
+            }
+            products.add(entries.get(productId).getProduct());
+        }
+        return products;
+    }
+
+    private static ProductResponseDTO freeze(ProductResponseDTO product) {
+        List<ProductVariationResponseDTO> variations = new ArrayList<>();
+        for(ProductVariationResponseDTO variation : product.getVariations()) {
+            List<ProductVariationAttributeDTO> attributes = variation.getAttributes() == null ? List.of() : List.copyOf(variation.getAttributes());
+            variation.setAttributes(attributes);
+            variations.add(variation);
+        }
+        product.setVariations(List.copyOf(variations));
+        return product;
+    }
+
+    // Map from id to value, split into pages of consecutive ids kept in id order. Editing copies
+    // the page directory and, once each, the pages it writes to; every other page is shared with
+    // the map it was edited from. The directory holds one reference per 1024 ids.
+    private static final class PagedMap<V> {
+        private static final int PAGE_SHIFT = 10;
+        private static final PagedMap<?> EMPTY = new PagedMap<>(new TreeMap<>(), 0);
+
+        private final TreeMap<Long, TreeMap<Long, V>> pages;
+        private final int size;
+
+        private PagedMap(TreeMap<Long, TreeMap<Long, V>> pages, int size) {
+            this.pages = pages;
+            this.size = size;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <V> PagedMap<V> empty() {
+            return (PagedMap<V>) EMPTY;
+        }
+
+        int size() {
+            return size;
+        }
+
+        V get(Long key) {
+            TreeMap<Long, V> page = pages.get(key >> PAGE_SHIFT);
+            return page == null ? null : page.get(key);
+        }
+
+        List<V> valuesAfter(Long afterKey, int limit) {
+            List<V> values = new ArrayList<>(Math.min(size, limit));
+            for(TreeMap<Long, V> page : pages.tailMap(afterKey >> PAGE_SHIFT, true).values()) {
+                for(V value : page.tailMap(afterKey, false).values()) {
+                    if(values.size() == limit) {
+                        return values;
+                    }
+                    values.add(value);
+                }
+            }
+            return values;
+        }
+
+        Editor<V> edit() {
+            return new Editor<>(this);
+        }
+
+        static final class Editor<V> {
+            private final TreeMap<Long, TreeMap<Long, V>> pages;
+            private final Set<Long> copiedPages = new HashSet<>();
+            private int size;
+
+            private Editor(PagedMap<V> map) {
+                this.pages = new TreeMap<>(map.pages);
+                this.size = map.size;
+            }
+
+            V get(Long key) {
+                TreeMap<Long, V> page = pages.get(key >> PAGE_SHIFT);
+                return page == null ? null : page.get(key);
+            }
+
+            V put(Long key, V value) {
+                V previous = writablePage(key).put(key, value);
+                if(previous == null) {
+                    size++;
+                }
+                return previous;
+            }
+
+            V remove(Long key) {
+                TreeMap<Long, V> page = pages.get(key >> PAGE_SHIFT);
+                if(page == null || !page.containsKey(key)) {
+                    return null;
+                }
+
+                page = writablePage(key);
+                V previous = page.remove(key);
+                size--;
+                if(page.isEmpty()) {
+                    pages.remove(key >> PAGE_SHIFT);
+                }
+                return previous;
+            }
+
+            PagedMap<V> build() {
+                return new PagedMap<>(pages, size);
+            }
+
+            private TreeMap<Long, V> writablePage(Long key) {
+                Long pageKey = key >> PAGE_SHIFT;
+                if(copiedPages.add(pageKey)) {
+                    TreeMap<Long, V> page = pages.get(pageKey);
+                    pages.put(pageKey, page == null ? new TreeMap<>() : new TreeMap<>(page));
+                }
+                return pages.computeIfAbsent(pageKey, emptied -> new TreeMap<>());
+            }
+        }
+    }
+
+    // Brand or category id to the ids of its products. The map and each set are copied on their
+    // first change only, so an apply that moves no product between sets builds nothing.
+    private static final class IdSets {
+        private Map<Long, NavigableSet<Long>> sets;
+        private final Set<Long> copiedSets = new HashSet<>();
+        private boolean copied;
+
+        private IdSets(Map<Long, NavigableSet<Long>> sets) {
+            this.sets = sets;
+        }
+
+        void add(Long key, Long productId) {
+            writableSet(key).add(productId);
+        }
+
+        void remove(Long key, Long productId) {
+            NavigableSet<Long> set = sets.get(key);
+            if(set == null || !set.contains(productId)) {
+                return;
+            }
+
+            set = writableSet(key);
+            set.remove(productId);
+            if(set.isEmpty()) {
+                sets.remove(key);
+            }
+        }
+
+        Map<Long, NavigableSet<Long>> build() {
+            return sets;
+        }
+
+        private NavigableSet<Long> writableSet(Long key) {
+            if(!copied) {
+                sets = new HashMap<>(sets);
+                copied = true;
+            }
+            if(copiedSets.add(key)) {
+                sets.put(key, new TreeSet<>(sets.getOrDefault(key, Collections.emptyNavigableSet())));
+            }
+            return sets.computeIfAbsent(key, emptied -> new TreeSet<>());
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.config.CatalogProperties;
+import com.mythicemporium.event.CatalogChangedEvent;
+import com.mythicemporium.model.Product;
+import com.mythicemporium.repository.ProductRepository;
+import com.mythicemporium.repository.ProductVariationRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+// Holds the current CatalogSnapshot when catalog.read-mode=SNAPSHOT. Reads only dereference a
+// volatile field. Committed changes are queued and a single refresher thread reloads the touched
+// products, builds the next snapshot and swaps it in, so bursts of writes coalesce into one swap.
+// Stock changes, one per purchase, wait for the next stock refresh tick instead of triggering a
+// refresh each, like the projection's.
+@Service
+public class CatalogSnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogSnapshotService.class);
+    private static final int LOAD_BATCH_SIZE = 500;
+
+    private ProductRepository productRepository;
+    private ProductVariationRepository productVariationRepository;
+    private CatalogProperties catalogProperties;
+    private CatalogRevision catalogRevision;
+    private TransactionTemplate transactionTemplate;
+    private Executor refresher;
+
+    private volatile CatalogSnapshot snapshot = CatalogSnapshot.EMPTY;
+    private volatile boolean ready;
+    private volatile boolean reloadRequired;
+
+    private final Set<Long> pendingProductIds = ConcurrentHashMap.newKeySet();
+    private final Set<Long> pendingVariationIds = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+
+    public CatalogSnapshotService(ProductRepository productRepository, ProductVariationRepository productVariationRepository,
+                                  CatalogProperties catalogProperties, CatalogRevision catalogRevision,
+                                  PlatformTransactionManager transactionManager) {
+        this(productRepository, productVariationRepository, catalogProperties, catalogRevision, transactionManager,
+                Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "catalog-snapshot-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+    }
+
+    CatalogSnapshotService(ProductRepository productRepository, ProductVariationRepository productVariationRepository,
+                           CatalogProperties catalogProperties, CatalogRevision catalogRevision,
+                           PlatformTransactionManager transactionManager, Executor refresher) {
+        this.productRepository = productRepository;
+        this.productVariationRepository = productVariationRepository;
+        this.catalogProperties = catalogProperties;
+        this.catalogRevision = catalogRevision;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.refresher = refresher;
+    }
+
+    public CatalogSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIfEnabled() {
+        if(isEnabled()) {
+            loadAll();
+        }
+    }
+
+    public void loadAll() {
+        do {
+            reloadRequired = false;
+
+            List<CatalogSnapshot.Entry> entries = new ArrayList<>();
+            Long afterId = 0L;
+            while(true) {
+                Long from = afterId;
+                List<CatalogSnapshot.Entry> batch = transactionTemplate.execute(status ->
+                        loadEntries(productRepository.findPageIds(from, Limit.of(LOAD_BATCH_SIZE))));
+                if(batch == null || batch.isEmpty()) {
+                    break;
+                }
+
+                entries.addAll(batch);
+                afterId = batch.get(batch.size() - 1).getProduct().getId();
+            }
+
+            snapshot = CatalogSnapshot.EMPTY.apply(entries, List.of());
+        } while(reloadRequired);
+
+        ready = true;
+        catalogRevision.bump();
+        log.info("Catalog snapshot loaded with {} products.", snapshot.size());
+
+        // Changes that committed while the snapshot was loading are replayed on top of it.
+        scheduleRefresh();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if(!isEnabled()) {
+            return;
+        }
+
+        CatalogSnapshot current = snapshot;
+        switch(event.getType()) {
+            case PRODUCT -> pendingProductIds.add(event.getId());
+            case VARIATION, STOCK -> {
+                Long productId = current.productIdForVariation(event.getId());
+                if(productId != null) {
+                    pendingProductIds.add(productId);
+                }
+                else {
+                    pendingVariationIds.add(event.getId());
+                }
+            }
+            case BRAND -> {
+                if(!ready) {
+                    reloadRequired = true;
+                }
+                pendingProductIds.addAll(current.productIdsForBrand(event.getId()));
+            }
+            case CATEGORY -> {
+                if(!ready) {
+                    reloadRequired = true;
+                }
+                pendingProductIds.addAll(current.productIdsForCategory(event.getId()));
+            }
+        }
+
+        if(ready && event.getType() != CatalogChangedEvent.Type.STOCK) {
+            scheduleRefresh();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.snapshot.stock-refresh-interval-ms:250}")
+    public void refreshPendingStock() {
+        if(ready && (!pendingProductIds.isEmpty() || !pendingVariationIds.isEmpty())) {
+            scheduleRefresh();
+        }
+    }
+
+    void refreshPending() {
+        refreshScheduled.set(false);
+
+        Set<Long> productIds = drain(pendingProductIds);
+        Set<Long> variationIds = drain(pendingVariationIds);
+        if(productIds.isEmpty() && variationIds.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<CatalogSnapshot.Entry> entries = transactionTemplate.execute(status -> {
+                if(!variationIds.isEmpty()) {
+                    productIds.addAll(productVariationRepository.findProductIdsByIdIn(variationIds));
+                }
+                return loadEntries(productIds);
+            });
+
+            Set<Long> loadedIds = entries.stream().map(entry -> entry.getProduct().getId()).collect(Collectors.toSet());
+            List<Long> removedIds = productIds.stream().filter(id -> !loadedIds.contains(id)).toList();
+
+            snapshot = snapshot.apply(entries, removedIds);
+            catalogRevision.bump();
+        }
+        catch(RuntimeException ex) {
+            log.error("Catalog snapshot refresh failed, will retry on the next change.", ex);
+            pendingProductIds.addAll(productIds);
+            pendingVariationIds.addAll(variationIds);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if(refresher instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    private void scheduleRefresh() {
+        if(refreshScheduled.compareAndSet(false, true)) {
+            refresher.execute(this::refreshPending);
+        }
+    }
+
+    private List<CatalogSnapshot.Entry> loadEntries(Collection<Long> productIds) {
+        if(productIds.isEmpty()) {
+            return List.of();
+        }
+
+        List<Product> products = productRepository.findAllWithVariationsByIdIn(productIds);
+        productVariationRepository.findAllWithAttributesByProductIdIn(productIds);
+
+        return products.stream()
+                .map(product -> new CatalogSnapshot.Entry(ProductMapper.toResponseDTO(product),
+                        product.getBrand().getId(), product.getCategory().getId()))
+                .toList();
+    }
+
+    private static Set<Long> drain(Set<Long> pending) {
+        Set<Long> drained = new HashSet<>(pending);
+        pending.removeAll(drained);
+        return drained;
+    }
+
+    private boolean isEnabled() {
+        return catalogProperties.getReadMode() == CatalogProperties.ReadMode.SNAPSHOT;
+    }
+}
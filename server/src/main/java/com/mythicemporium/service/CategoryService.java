@@ -1,6 +1,8 @@
 package com.mythicemporium.service;
 
+import com.mythicemporium.config.CacheConfig;
 import com.mythicemporium.dto.CategoryRequestDTO;
+import com.mythicemporium.event.CatalogChangedEvent;
 import com.mythicemporium.exception.InvalidRequestException;
 import com.mythicemporium.exception.ResourceConflictException;
 import com.mythicemporium.exception.ResourceNotFoundException;
@@ -8,6 +10,8 @@ import com.mythicemporium.logging.AuditContext;
 import com.mythicemporium.logging.AuditContextHolder;
 import com.mythicemporium.model.Category;
 import com.mythicemporium.repository.CategoryRepository;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,15 +24,21 @@ import java.util.concurrent.CompletableFuture;
 public class CategoryService {
 
     private CategoryRepository categoryRepository;
+    private ApplicationEventPublisher eventPublisher;
 
-    public CategoryService(CategoryRepository categoryRepository) {
+    public CategoryService(CategoryRepository categoryRepository, ApplicationEventPublisher eventPublisher) {
         this.categoryRepository = categoryRepository;
+        this.eventPublisher = eventPublisher;
     }
 
+    @Cacheable(cacheNames = CacheConfig.ALL_CATEGORIES, key = "'all'")
+    @Transactional(readOnly = true)
     public List<Category> findAll() {
-        return categoryRepository.findAll();
+        return List.copyOf(categoryRepository.findAll());
     }
 
+    @Cacheable(cacheNames = CacheConfig.CATEGORIES, unless = "#result == null")
+    @Transactional(readOnly = true)
     public Category findById(Long id) {
         Optional<Category> category = categoryRepository.findById(id);
 
@@ -55,6 +65,7 @@ public class CategoryService {
 
         try {
             category = categoryRepository.save(category);
+            eventPublisher.publishEvent(CatalogChangedEvent.categorySaved(category.getId()));
 
             AuditContext ctx = AuditContextHolder.getContext();
             ctx.setOperationType("CREATE");
@@ -90,6 +101,7 @@ public class CategoryService {
         category.setName(categoryRequestDTO.getName());
 
         Category savedCategory = categoryRepository.save(category);
+        eventPublisher.publishEvent(CatalogChangedEvent.categorySaved(categoryId));
 
         Result result = new Result();
         result.setData(savedCategory);
@@ -109,6 +121,7 @@ public class CategoryService {
         ctx.setOperationType("DELETE");
 
         categoryRepository.delete(category);
+        eventPublisher.publishEvent(CatalogChangedEvent.categoryDeleted(categoryId));
 
         return true;
     }
@@ -0,0 +1,169 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.dto.CheckoutLineDTO;
+import com.mythicemporium.dto.CheckoutRequestDTO;
+import com.mythicemporium.dto.CheckoutResultDTO;
+import com.mythicemporium.dto.CheckoutShortageDTO;
+import com.mythicemporium.event.CatalogChangedEvent;
+import com.mythicemporium.exception.InsufficientStockException;
+import com.mythicemporium.exception.InvalidRequestException;
+import com.mythicemporium.exception.ResourceNotFoundException;
+import com.mythicemporium.repository.ProductVariationRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+@Service
+@Transactional
+public class CheckoutService {
+
+    public static final int MAX_CHECKOUT_LINES = 100;
+
+    private ProductVariationRepository productVariationRepository;
+    private StockBucketService stockBucketService;
+    private InventoryEngine inventoryEngine;
+    private ApplicationEventPublisher eventPublisher;
+
+    public CheckoutService(ProductVariationRepository productVariationRepository, StockBucketService stockBucketService,
+                           InventoryEngine inventoryEngine, ApplicationEventPublisher eventPublisher) {
+        this.productVariationRepository = productVariationRepository;
+        this.stockBucketService = stockBucketService;
+        this.inventoryEngine = inventoryEngine;
+        this.eventPublisher = eventPublisher;
+    }
+
+    // The whole cart is one transaction: the variation rows are locked in id order, every line is
+    // checked against the locked stock, and all lines are decremented by a single UPDATE. A cart
+    // with any short line changes nothing and reports every short line. Sharded variations have
+    // their buckets locked after all variation rows, again in id order. Lines held by the
+    // inventory engine are taken from memory instead and given back if the cart fails.
+    public CompletableFuture<Result> checkout(CheckoutRequestDTO checkoutRequestDTO) {
+        TreeMap<Long, Integer> quantities = mergeLines(checkoutRequestDTO);
+
+        TreeMap<Long, Integer> held = new TreeMap<>();
+        if(inventoryEngine.isActive()) {
+            quantities.forEach((id, quantity) -> {
+                if(inventoryEngine.manages(id)) {
+                    held.put(id, quantity);
+                }
+            });
+        }
+        TreeMap<Long, Integer> stored = new TreeMap<>(quantities);
+        held.keySet().forEach(stored::remove);
+
+        List<CheckoutShortageDTO> shortages = new ArrayList<>();
+        if(!held.isEmpty()) {
+            shortages.addAll(inventoryEngine.tryPurchaseAll(held));
+        }
+        boolean heldTaken = !held.isEmpty() && shortages.isEmpty();
+
+        Map<Long, Integer> available = new HashMap<>();
+        List<Long> sharded = new ArrayList<>();
+        if(!stored.isEmpty()) {
+            for(ProductVariationRepository.StockRow row : productVariationRepository.lockStockByIdIn(stored.keySet())) {
+                if(row.getStockShards() != null) {
+                    sharded.add(row.getId());
+                }
+                else {
+                    available.put(row.getId(), row.getStock());
+                }
+            }
+            for(Long id : sharded) {
+                available.put(id, stockBucketService.lockedStock(id));
+            }
+        }
+
+        List<Long> missing = stored.keySet().stream()
+                .filter(id -> !available.containsKey(id))
+                .toList();
+        if(!missing.isEmpty()) {
+            throw new ResourceNotFoundException("Variation ids " + missing + " not found.");
+        }
+
+        stored.forEach((id, quantity) -> {
+            int stock = available.get(id) == null ? 0 : available.get(id);
+            if(stock < quantity) {
+                shortages.add(new CheckoutShortageDTO(id, quantity, stock));
+            }
+        });
+
+        Result result = new Result();
+        if(!shortages.isEmpty()) {
+            if(heldTaken) {
+                inventoryEngine.release(held);
+            }
+
+            shortages.sort(Comparator.comparing(CheckoutShortageDTO::getVariationId));
+            shortages.forEach(shortage -> result.addErrorMessage("Variation %d: requested %d, %d available.", ResultType.INVALID,
+                    shortage.getVariationId(), shortage.getRequested(), shortage.getAvailable()));
+            result.setData(new CheckoutResultDTO(List.of(), shortages));
+            return CompletableFuture.completedFuture(result);
+        }
+
+        Map<Long, Integer> unsharded = new TreeMap<>(stored);
+        sharded.forEach(unsharded::remove);
+        for(Long id : sharded) {
+            if(!stockBucketService.drain(id, stored.get(id))) {
+                throw new InsufficientStockException("Not enough stock available for variation " + id + ".");
+            }
+        }
+
+        if(!unsharded.isEmpty()) {
+            Long[] ids = unsharded.keySet().toArray(new Long[0]);
+            Integer[] amounts = unsharded.values().toArray(new Integer[0]);
+            int updated = productVariationRepository.decrementStockBatch(ids, amounts);
+            if(updated != ids.length) {
+                // Unreachable while the rows are locked; throwing rolls back any partial decrement.
+                throw new InsufficientStockException("Not enough stock available for every line.");
+            }
+        }
+
+        // Held lines are published by the inventory engine once its flusher has written them.
+        for(Long id : stored.keySet()) {
+            eventPublisher.publishEvent(CatalogChangedEvent.stockChanged(id));
+        }
+
+        List<CheckoutLineDTO> lines = quantities.entrySet().stream()
+                .map(entry -> new CheckoutLineDTO(entry.getKey(), entry.getValue()))
+                .toList();
+        result.setData(new CheckoutResultDTO(lines, List.of()));
+        return CompletableFuture.completedFuture(result);
+    }
+
+    // Repeated variations are summed so each row is locked and decremented once.
+    private TreeMap<Long, Integer> mergeLines(CheckoutRequestDTO checkoutRequestDTO) {
+        if(checkoutRequestDTO == null || checkoutRequestDTO.getLines() == null || checkoutRequestDTO.getLines().isEmpty()) {
+            throw new InvalidRequestException("Checkout must contain at least one line.");
+        }
+
+        if(checkoutRequestDTO.getLines().size() > MAX_CHECKOUT_LINES) {
+            throw new InvalidRequestException("Checkout cannot contain more than " + MAX_CHECKOUT_LINES + " lines.");
+        }
+
+        TreeMap<Long, Integer> quantities = new TreeMap<>();
+        for(CheckoutLineDTO line : checkoutRequestDTO.getLines()) {
+            if(line == null || line.getVariationId() == null || line.getVariationId() < 0) {
+                throw new InvalidRequestException("Variation id cannot be null or negative.");
+            }
+
+            if(line.getQuantity() == null || line.getQuantity() <= 0) {
+                throw new InvalidRequestException("Quantity must be positive and non-null.");
+            }
+
+            try {
+                quantities.merge(line.getVariationId(), line.getQuantity(), Math::addExact);
+            } catch(ArithmeticException e) {
+                throw new InvalidRequestException("Quantity for variation " + line.getVariationId() + " is too large.");
+            }
+        }
+        return quantities;
+    }
+}
@@ -0,0 +1,77 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.config.CatalogProperties;
+import com.mythicemporium.exception.PreconditionFailedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Runs catalog edits that are guarded by optimistic versions. The write must open and commit its
+// own transaction, so a lost version check surfaces here and the whole edit can be re-run against
+// fresh state. Conflicts are counted per operation and outcome.
+@Component
+public class ConflictRetryExecutor {
+
+    private CatalogProperties catalogProperties;
+    private MeterRegistry meterRegistry;
+
+    public ConflictRetryExecutor(CatalogProperties catalogProperties, MeterRegistry meterRegistry) {
+        this.catalogProperties = catalogProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public <T> T execute(String operation, Supplier<T> write) {
+        int attempts = Math.max(1, catalogProperties.getConflictRetryAttempts());
+        for(int attempt = 1; ; attempt++) {
+            try {
+                return write.get();
+            }
+            catch(OptimisticLockingFailureException e) {
+                if(attempt >= attempts) {
+                    conflicts(operation, "exhausted").increment();
+                    throw e;
+                }
+                conflicts(operation, "retried").increment();
+                backoff();
+            }
+        }
+    }
+
+    // For edits conditioned on a client's If-Match: a conflict is the client's to resolve.
+    public <T> T executeOnce(String operation, Supplier<T> write) {
+        try {
+            return write.get();
+        }
+        catch(OptimisticLockingFailureException | PreconditionFailedException e) {
+            conflicts(operation, "rejected").increment();
+            throw e;
+        }
+    }
+
+    private Counter conflicts(String operation, String outcome) {
+        return Counter.builder("catalog.write.conflicts")
+                .description("Catalog edits that lost an optimistic version check")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private void backoff() {
+        long maxNanos = catalogProperties.getConflictRetryBackoff().toNanos();
+        if(maxNanos <= 0) {
+            return;
+        }
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(maxNanos));
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.mythicemporium.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mythicemporium.config.IdempotencyProperties;
+import com.mythicemporium.exception.InvalidRequestException;
+import com.mythicemporium.model.IdempotencyRecord;
+import com.mythicemporium.repository.IdempotencyRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+// Deduplicates writes sent with an Idempotency-Key. Recent keys live in a bounded in-memory
+// cache holding the in-flight or finished response, so concurrent duplicates wait on the first
+// request instead of running again. Successful responses are also written to idempotency_record
+// so retries after an eviction or restart are still answered without touching the catalog.
+// Failed requests are forgotten and may be retried under the same key.
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private IdempotencyRecordRepository recordRepository;
+    private IdempotencyProperties idempotencyProperties;
+    private ObjectMapper objectMapper;
+    private Clock clock;
+
+    private final Cache<String, Entry> entries;
+
+    public IdempotencyService(IdempotencyRecordRepository recordRepository, IdempotencyProperties idempotencyProperties,
+                              ObjectMapper objectMapper) {
+        this(recordRepository, idempotencyProperties, objectMapper, Clock.systemUTC());
+    }
+
+    IdempotencyService(IdempotencyRecordRepository recordRepository, IdempotencyProperties idempotencyProperties,
+                       ObjectMapper objectMapper, Clock clock) {
+        this.recordRepository = recordRepository;
+        this.idempotencyProperties = idempotencyProperties;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(idempotencyProperties.getMaxEntries())
+                .expireAfterWrite(idempotencyProperties.getTtl())
+                .build();
+    }
+
+    // The request describes the operation (method and path) and, with the payload, has to match
+    // on every use of a key; reusing a key for a different request is rejected.
+    public CompletableFuture<ResponseEntity<?>> execute(String key, String request, Object payload,
+                                                        Supplier<CompletableFuture<ResponseEntity<?>>> action) {
+        if(key == null) {
+            return action.get();
+        }
+
+        if(key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidRequestException(HEADER + " must be between 1 and " + MAX_KEY_LENGTH + " characters.");
+        }
+
+        String id = owner() + ":" + key;
+        String fingerprint = fingerprint(request, payload);
+
+        Entry entry = new Entry(fingerprint);
+        Entry existing = entries.asMap().putIfAbsent(id, entry);
+        if(existing != null) {
+            checkFingerprint(existing.fingerprint, fingerprint);
+            return existing.response.thenApply(this::replayed);
+        }
+
+        IdempotencyRecord stored = recordRepository.findByIdAndExpiresAtAfter(id, clock.instant()).orElse(null);
+        if(stored != null) {
+            if(!stored.getFingerprint().equals(fingerprint)) {
+                entries.asMap().remove(id, entry);
+                InvalidRequestException mismatch = keyReused();
+                entry.response.completeExceptionally(mismatch);
+                throw mismatch;
+            }
+            entry.response.complete(toResponse(stored));
+            return entry.response.thenApply(this::replayed);
+        }
+
+        CompletableFuture<ResponseEntity<?>> response;
+        try {
+            response = action.get();
+        }
+        catch(RuntimeException e) {
+            entries.asMap().remove(id, entry);
+            entry.response.completeExceptionally(e);
+            throw e;
+        }
+
+        response.whenComplete((result, error) -> {
+            if(error != null) {
+                entries.asMap().remove(id, entry);
+                entry.response.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                return;
+            }
+
+            if(result.getStatusCode().is2xxSuccessful()) {
+                store(id, fingerprint, result);
+            }
+            else {
+                entries.asMap().remove(id, entry);
+            }
+            entry.response.complete(result);
+        });
+        return response;
+    }
+
+    public ResponseEntity<?> executeNow(String key, String request, Object payload, Supplier<ResponseEntity<?>> action) {
+        try {
+            return execute(key, request, payload, () -> CompletableFuture.completedFuture(action.get())).join();
+        }
+        catch(CompletionException e) {
+            if(e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval-ms:60000}")
+    @Transactional
+    public void purgeExpired() {
+        recordRepository.deleteExpired(clock.instant());
+    }
+
+    private void store(String id, String fingerprint, ResponseEntity<?> response) {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setId(id);
+        record.setFingerprint(fingerprint);
+        record.setStatus(response.getStatusCode().value());
+        record.setExpiresAt(clock.instant().plus(idempotencyProperties.getTtl()));
+
+        Object body = response.getBody();
+        try {
+            if(body instanceof String text) {
+                record.setContentType(MediaType.TEXT_PLAIN_VALUE);
+                record.setBody(text);
+            }
+            else if(body != null) {
+                record.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                record.setBody(objectMapper.writeValueAsString(body));
+            }
+            recordRepository.save(record);
+        }
+        // The in-memory entry still answers retries; only durability across restarts is lost.
+        catch(JsonProcessingException | DataAccessException e) {
+            log.warn("Could not store response for idempotency key {}.", id, e);
+        }
+    }
+
+    private ResponseEntity<?> toResponse(IdempotencyRecord record) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(HttpStatus.valueOf(record.getStatus()));
+        if(record.getContentType() != null) {
+            builder.contentType(MediaType.parseMediaType(record.getContentType()));
+        }
+        return builder.body(record.getBody());
+    }
+
+    private ResponseEntity<?> replayed(ResponseEntity<?> response) {
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .header(REPLAYED_HEADER, "true")
+                .body(response.getBody());
+    }
+
+    private void checkFingerprint(String expected, String actual) {
+        if(!expected.equals(actual)) {
+            throw keyReused();
+        }
+    }
+
+    private InvalidRequestException keyReused() {
+        return new InvalidRequestException(HEADER + " was already used for a different request.");
+    }
+
+    private String fingerprint(String request, Object payload) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(request.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(objectMapper.writeValueAsBytes(payload));
+            return HexFormat.of().formatHex(digest.digest());
+        }
+        catch(NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Could not fingerprint request.", e);
+        }
+    }
+
+    private String owner() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null ? "" : authentication.getName();
+    }
+
+    private static final class Entry {
+        private final String fingerprint;
+        private final CompletableFuture<ResponseEntity<?>> response = new CompletableFuture<>();
+
+        private Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+}
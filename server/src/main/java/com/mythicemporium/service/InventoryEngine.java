@@ -0,0 +1,379 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.config.InventoryProperties;
+import com.mythicemporium.dto.CheckoutShortageDTO;
+import com.mythicemporium.event.CatalogChangedEvent;
+import com.mythicemporium.repository.ProductVariationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// When inventory.mode=MEMORY, stock of every unsharded variation is held in an in-JVM counter.
+// Purchases take from the counter with a CAS loop and return without touching the database; the
+// sold quantity is added to the counter's pending delta, and a flusher thread writes all pending
+// deltas back with one UPDATE every few milliseconds. For each variation the invariant
+// product_variation.stock - pending = available holds, which lets admin stock writes be applied
+// as deltas too instead of racing the flusher.
+@Service
+public class InventoryEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryEngine.class);
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    public enum Outcome {
+        PURCHASED,
+        INSUFFICIENT,
+        // Not held in memory (engine disabled, sharded or unknown variation); use the database.
+        NOT_MANAGED
+    }
+
+    private ProductVariationRepository productVariationRepository;
+    private InventoryProperties inventoryProperties;
+    private ApplicationEventPublisher eventPublisher;
+    private TransactionTemplate transactionTemplate;
+    private ScheduledExecutorService flusher;
+
+    private volatile boolean active;
+
+    private final Map<Long, StockCounter> counters = new ConcurrentHashMap<>();
+    private final Set<Long> dirtyIds = ConcurrentHashMap.newKeySet();
+    private final AtomicLong oldestPendingNanos = new AtomicLong();
+
+    private final Timer flushTimer;
+    private final Counter flushFailures;
+
+    public InventoryEngine(ProductVariationRepository productVariationRepository, InventoryProperties inventoryProperties,
+                           ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry) {
+        this(productVariationRepository, inventoryProperties, eventPublisher, transactionManager, meterRegistry,
+                Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "inventory-flush");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+    }
+
+    InventoryEngine(ProductVariationRepository productVariationRepository, InventoryProperties inventoryProperties,
+                    ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager,
+                    MeterRegistry meterRegistry, ScheduledExecutorService flusher) {
+        this.productVariationRepository = productVariationRepository;
+        this.inventoryProperties = inventoryProperties;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.flusher = flusher;
+
+        this.flushTimer = Timer.builder("inventory.flush").register(meterRegistry);
+        this.flushFailures = Counter.builder("inventory.flush.failures").register(meterRegistry);
+        Gauge.builder("inventory.flush.lag", this, InventoryEngine::flushLagMillis)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("inventory.pending.units", this, InventoryEngine::pendingUnits)
+                .register(meterRegistry);
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIfEnabled() {
+        if(inventoryProperties.getMode() != InventoryProperties.Mode.MEMORY) {
+            return;
+        }
+
+        loadAll();
+        active = true;
+        long interval = inventoryProperties.getFlushIntervalMs();
+        flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("Inventory engine loaded {} variations, flushing every {}ms.", counters.size(), interval);
+    }
+
+    void loadAll() {
+        Long afterId = 0L;
+        while(true) {
+            Long from = afterId;
+            List<ProductVariationRepository.StockRow> rows = transactionTemplate.execute(status ->
+                    productVariationRepository.findStockPage(from, Limit.of(LOAD_BATCH_SIZE)));
+            if(rows == null || rows.isEmpty()) {
+                break;
+            }
+
+            rows.stream()
+                    .filter(row -> row.getStockShards() == null)
+                    .forEach(row -> counters.put(row.getId(), new StockCounter(row.getProductId(), row.getStock())));
+            afterId = rows.get(rows.size() - 1).getId();
+        }
+    }
+
+    // Variations created after startup are adopted on first use.
+    public boolean manages(Long variationId) {
+        return active && counter(variationId) != null;
+    }
+
+    public Outcome tryPurchase(Long variationId, int quantity) {
+        if(!active) {
+            return Outcome.NOT_MANAGED;
+        }
+
+        StockCounter counter = counter(variationId);
+        if(counter == null) {
+            return Outcome.NOT_MANAGED;
+        }
+
+        if(!counter.take(quantity)) {
+            return Outcome.INSUFFICIENT;
+        }
+
+        markDirty(variationId, counter, quantity);
+        releaseOnRollback(Map.of(variationId, quantity));
+        return Outcome.PURCHASED;
+    }
+
+    // Takes every line or none. Returns the short lines, in which case nothing was taken. When
+    // called inside a transaction, the taken stock is given back if that transaction rolls back.
+    public List<CheckoutShortageDTO> tryPurchaseAll(Map<Long, Integer> quantities) {
+        Map<Long, Integer> taken = new LinkedHashMap<>();
+        List<CheckoutShortageDTO> shortages = new ArrayList<>();
+
+        quantities.forEach((id, quantity) -> {
+            StockCounter counter = counter(id);
+            if(counter != null && shortages.isEmpty() && counter.take(quantity)) {
+                taken.put(id, quantity);
+            }
+            else {
+                shortages.add(new CheckoutShortageDTO(id, quantity, counter == null ? 0 : counter.available.get()));
+            }
+        });
+
+        if(!shortages.isEmpty()) {
+            taken.forEach((id, quantity) -> counters.get(id).give(quantity));
+            // Lines after the first short one were only compared, so some of them may still fit.
+            return shortages.stream()
+                    .filter(shortage -> shortage.getAvailable() < shortage.getRequested())
+                    .toList();
+        }
+
+        taken.forEach((id, quantity) -> markDirty(id, counters.get(id), quantity));
+        releaseOnRollback(taken);
+        return List.of();
+    }
+
+    // Puts stock back, e.g. from a released or expired reservation. Inside a transaction it is
+    // applied after commit, like admin writes.
+    public void restock(Map<Long, Integer> quantities) {
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    release(quantities);
+                }
+            });
+        }
+        else {
+            release(quantities);
+        }
+    }
+
+    // Gives back stock taken by tryPurchaseAll for a checkout that did not go through.
+    public void release(Map<Long, Integer> quantities) {
+        quantities.forEach((id, quantity) -> {
+            StockCounter counter = counters.get(id);
+            if(counter != null) {
+                counter.give(quantity);
+                markDirty(id, counter, -quantity);
+            }
+        });
+    }
+
+    // Admin writes are absolute. The difference to the current counter becomes a pending delta so
+    // the flusher carries it to the database. Inside a transaction it is applied after commit.
+    public boolean setStock(Long variationId, int stock) {
+        StockCounter counter = active ? counter(variationId) : null;
+        if(counter == null) {
+            return false;
+        }
+
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyStock(variationId, counter, stock);
+                }
+            });
+        }
+        else {
+            applyStock(variationId, counter, stock);
+        }
+        return true;
+    }
+
+    public void forget(Long variationId) {
+        counters.remove(variationId);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if(event.getType() == CatalogChangedEvent.Type.PRODUCT && event.isDeleted()) {
+            counters.values().removeIf(counter -> event.getId().equals(counter.productId));
+        }
+    }
+
+    void flush() {
+        if(dirtyIds.isEmpty()) {
+            return;
+        }
+
+        long oldest = oldestPendingNanos.getAndSet(0);
+        Map<Long, Integer> deltas = new LinkedHashMap<>();
+        for(Long id : new ArrayList<>(dirtyIds)) {
+            dirtyIds.remove(id);
+            StockCounter counter = counters.get(id);
+            if(counter != null) {
+                int delta = counter.pending.getAndSet(0);
+                if(delta != 0) {
+                    deltas.put(id, delta);
+                }
+            }
+        }
+
+        if(deltas.isEmpty()) {
+            return;
+        }
+
+        try {
+            flushTimer.record(() -> transactionTemplate.executeWithoutResult(status -> {
+                productVariationRepository.applyStockDeltas(deltas.keySet().toArray(new Long[0]), deltas.values().toArray(new Integer[0]));
+                deltas.keySet().forEach(id -> eventPublisher.publishEvent(CatalogChangedEvent.stockChanged(id)));
+            }));
+        } catch(RuntimeException e) {
+            log.warn("Inventory flush of {} variations failed, retrying.", deltas.size(), e);
+            flushFailures.increment();
+            deltas.forEach((id, delta) -> {
+                StockCounter counter = counters.get(id);
+                if(counter != null) {
+                    counter.pending.addAndGet(delta);
+                    dirtyIds.add(id);
+                }
+            });
+            oldestPendingNanos.compareAndSet(0, oldest);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if(active) {
+            flush();
+        }
+    }
+
+    double flushLagMillis() {
+        long oldest = oldestPendingNanos.get();
+        return oldest == 0 ? 0 : (System.nanoTime() - oldest) / 1_000_000.0;
+    }
+
+    long pendingUnits() {
+        return counters.values().stream().mapToLong(counter -> counter.pending.get()).sum();
+    }
+
+    Integer available(Long variationId) {
+        StockCounter counter = counters.get(variationId);
+        return counter == null ? null : counter.available.get();
+    }
+
+    private StockCounter counter(Long variationId) {
+        StockCounter counter = counters.get(variationId);
+        if(counter != null) {
+            return counter;
+        }
+
+        return transactionTemplate.execute(status -> productVariationRepository.findStockRowById(variationId))
+                .filter(row -> row.getStockShards() == null)
+                .map(row -> counters.computeIfAbsent(row.getId(), id -> new StockCounter(row.getProductId(), row.getStock())))
+                .orElse(null);
+    }
+
+    // Purchases made inside a transaction that later rolls back must not keep their stock.
+    private void releaseOnRollback(Map<Long, Integer> taken) {
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if(status != STATUS_COMMITTED) {
+                        release(taken);
+                    }
+                }
+            });
+        }
+    }
+
+    private void applyStock(Long variationId, StockCounter counter, int stock) {
+        int previous = counter.available.getAndSet(stock);
+        markDirty(variationId, counter, previous - stock);
+    }
+
+    private void markDirty(Long variationId, StockCounter counter, int delta) {
+        counter.pending.addAndGet(delta);
+        oldestPendingNanos.compareAndSet(0, System.nanoTime());
+        dirtyIds.add(variationId);
+    }
+
+    private static class StockCounter {
+        private final Long productId;
+        private final AtomicInteger available;
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private StockCounter(Long productId, Integer stock) {
+            this.productId = productId;
+            this.available = new AtomicInteger(stock == null ? 0 : stock);
+        }
+
+        private boolean take(int quantity) {
+            while(true) {
+                int current = available.get();
+                if(current < quantity) {
+                    return false;
+                }
+                if(available.compareAndSet(current, current - quantity)) {
+                    return true;
+                }
+            }
+        }
+
+        private void give(int quantity) {
+            available.addAndGet(quantity);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.exception.InvalidRequestException;
+import com.mythicemporium.repository.ProductSort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Opaque keyset cursor for product listings. Clients only ever echo the token back,
+// so the encoding can change without breaking them.
+public final class ProductCursor {
+    private static final String PREFIX = "p:";
+    private static final String SORTED_PREFIX = "s:";
+
+    private ProductCursor() {
+    }
+
+    public static String encode(Long productId) {
+        byte[] raw = (PREFIX + productId).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    public static Long decode(String cursor) {
+        if(cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if(!raw.startsWith(PREFIX)) {
+                throw new InvalidRequestException("Invalid page cursor.");
+            }
+
+            return Long.parseLong(raw.substring(PREFIX.length()));
+        }
+        catch(IllegalArgumentException ex) {
+            throw new InvalidRequestException("Invalid page cursor.", ex);
+        }
+    }
+
+    // Cursors for filtered listings also carry the sort value of the last product,
+    // e.g. "s:PRICE:42:19.99". The value goes last because names may contain ':'.
+    public static String encode(ProductSort sort, Object sortKey, Long productId) {
+        byte[] raw = (SORTED_PREFIX + sort.name() + ":" + productId + ":" + sortKey).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    public static final class Position {
+        private final Object sortKey;
+        private final Long productId;
+
+        private Position(Object sortKey, Long productId) {
+            this.sortKey = sortKey;
+            this.productId = productId;
+        }
+
+        public Object getSortKey() {
+            return sortKey;
+        }
+
+        public Long getProductId() {
+            return productId;
+        }
+    }
+
+    // Returns null for the first page.
+    public static Position decode(String cursor, ProductSort sort) {
+        if(cursor == null || cursor.isBlank()) {
+            return null;
+        }
+
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", 4);
+            if(parts.length != 4 || !(parts[0] + ":").equals(SORTED_PREFIX) || !parts[1].equals(sort.name())) {
+                throw new InvalidRequestException("Invalid page cursor.");
+            }
+
+            return new Position(sort.parseKey(parts[3]), Long.parseLong(parts[2]));
+        }
+        catch(IllegalArgumentException ex) {
+            throw new InvalidRequestException("Invalid page cursor.", ex);
+        }
+    }
+}
@@ -0,0 +1,502 @@
+package com.mythicemporium.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mythicemporium.config.CatalogProperties;
+import com.mythicemporium.dto.ImportErrorDTO;
+import com.mythicemporium.dto.ImportResultDTO;
+import com.mythicemporium.dto.ProductRequestDTO;
+import com.mythicemporium.dto.ProductVariationAttributeDTO;
+import com.mythicemporium.dto.ProductVariationRequestDTO;
+import com.mythicemporium.event.CatalogChangedEvent;
+import com.mythicemporium.exception.InvalidRequestException;
+import com.mythicemporium.model.Brand;
+import com.mythicemporium.model.Category;
+import com.mythicemporium.model.Product;
+import com.mythicemporium.model.ProductVariation;
+import com.mythicemporium.model.ProductVariationAttribute;
+import com.mythicemporium.repository.ProductRepository;
+import com.mythicemporium.repository.ProductVariationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+// Imports products from newline-delimited JSON, one ProductRequestDTO per line, or from CSV with
+// one variation per line. The input is read a chunk of products at a time, each chunk validated
+// in parallel and its valid products inserted as JDBC batches in one transaction. Brands and
+// categories are looked up once per import, and SKUs once per chunk, against each other and the
+// catalog. A chunk that still fails to commit is retried a product at a time, so invalid products
+// are reported by line and everything else is imported.
+@Service
+public class ProductImportService {
+
+    public enum Format {
+        NDJSON,
+        CSV
+    }
+
+    public static final int MAX_REPORTED_ERRORS = 1000;
+
+    // A product is the run of consecutive lines sharing name, description, brandId and categoryId.
+    // Attributes are written as name=value pairs separated by semicolons.
+    static final List<String> CSV_COLUMNS = List.of("name", "description", "brandId", "categoryId",
+            "sku", "price", "stock", "imageUrl", "attributes");
+
+    private static final Logger log = LoggerFactory.getLogger(ProductImportService.class);
+
+    private ProductRepository productRepository;
+    private ProductVariationRepository productVariationRepository;
+    private BrandService brandService;
+    private CategoryService categoryService;
+    private CatalogProperties catalogProperties;
+    private TransactionTemplate transactionTemplate;
+    private ApplicationEventPublisher eventPublisher;
+    private ObjectMapper objectMapper;
+
+    public ProductImportService(ProductRepository productRepository, ProductVariationRepository productVariationRepository,
+                                BrandService brandService, CategoryService categoryService, CatalogProperties catalogProperties,
+                                PlatformTransactionManager transactionManager, ApplicationEventPublisher eventPublisher,
+                                ObjectMapper objectMapper) {
+        this.productRepository = productRepository;
+        this.productVariationRepository = productVariationRepository;
+        this.brandService = brandService;
+        this.categoryService = categoryService;
+        this.catalogProperties = catalogProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+    }
+
+    public ImportResultDTO importProducts(InputStream in, Format format) throws IOException {
+        long started = System.nanoTime();
+        Map<Long, Brand> brands = brandService.findAll().stream().collect(Collectors.toMap(Brand::getId, brand -> brand));
+        Map<Long, Category> categories = categoryService.findAll().stream().collect(Collectors.toMap(Category::getId, category -> category));
+
+        ImportResultDTO result = new ImportResultDTO(0, 0, 0, new ArrayList<>());
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Rows rows = format == Format.CSV ? new CsvRows(reader) : new NdjsonRows(reader, objectMapper);
+
+        List<Row> chunk = new ArrayList<>();
+        Row row;
+        while((row = rows.next()) != null) {
+            chunk.add(row);
+            if(chunk.size() == catalogProperties.getImportChunkSize()) {
+                importChunk(chunk, brands, categories, result);
+                chunk.clear();
+            }
+        }
+        if(!chunk.isEmpty()) {
+            importChunk(chunk, brands, categories, result);
+        }
+
+        double seconds = Math.max(System.nanoTime() - started, 1) / 1_000_000_000.0;
+        result.setRowsPerSecond((result.getImported() + result.getFailed()) / seconds);
+        return result;
+    }
+
+    private void importChunk(List<Row> chunk, Map<Long, Brand> brands, Map<Long, Category> categories, ImportResultDTO result) {
+        chunk.parallelStream()
+                .filter(row -> row.error == null)
+                .forEach(row -> row.error = validate(row.product, brands, categories));
+        checkSkus(chunk);
+
+        List<Row> valid = chunk.stream().filter(row -> row.error == null).toList();
+        chunk.stream().filter(row -> row.error != null).forEach(row -> fail(result, row.line, row.error));
+        if(valid.isEmpty()) {
+            return;
+        }
+
+        List<Product> products = valid.stream()
+                .map(row -> toProduct(row.product, brands, categories))
+                .toList();
+        if(products.size() > 1) {
+            try {
+                insert(products);
+                result.setImported(result.getImported() + products.size());
+                return;
+            } catch(RuntimeException e) {
+                log.warn("Import of {} products starting at line {} failed, retrying them one at a time.", valid.size(), valid.get(0).line, e);
+            }
+        }
+
+        for(int i = 0; i < valid.size(); i++) {
+            try {
+                insert(List.of(products.get(i)));
+                result.setImported(result.getImported() + 1);
+            } catch(RuntimeException e) {
+                log.warn("Import of the product at line {} failed.", valid.get(i).line, e);
+                fail(result, valid.get(i).line, failure(e));
+            }
+        }
+    }
+
+    private void insert(List<Product> products) {
+        transactionTemplate.executeWithoutResult(status -> {
+            productRepository.insertAll(products);
+            products.forEach(product -> eventPublisher.publishEvent(CatalogChangedEvent.productCreated(product.getId())));
+        });
+    }
+
+    private String failure(RuntimeException e) {
+        return SkuIndex.isConflict(e)
+                ? "Product could not be saved; one of its variation SKUs already exists."
+                : "Product could not be saved.";
+    }
+
+    // Fails the products with a SKU that already exists or repeats one from an earlier product of
+    // the chunk, compared case-insensitively like the unique index, so that one taken SKU does not
+    // sink the whole chunk.
+    private void checkSkus(List<Row> chunk) {
+        Set<String> requested = new LinkedHashSet<>();
+        chunk.stream()
+                .filter(row -> row.error == null)
+                .forEach(row -> row.product.getVariations().forEach(variation -> requested.add(sku(variation))));
+        if(requested.isEmpty()) {
+            return;
+        }
+
+        Set<String> existing = new HashSet<>(productVariationRepository.findLowerSkusIn(requested));
+        Map<String, Long> lines = new HashMap<>();
+        for(Row row : chunk) {
+            if(row.error != null) {
+                continue;
+            }
+
+            Set<String> skus = new HashSet<>();
+            for(ProductVariationRequestDTO variation : row.product.getVariations()) {
+                String sku = sku(variation);
+                if(existing.contains(sku)) {
+                    row.error = "Variation SKU " + variation.getSku() + " already exists.";
+                }
+                else if(lines.containsKey(sku)) {
+                    row.error = "Variation SKU " + variation.getSku() + " is already used on line " + lines.get(sku) + ".";
+                }
+                else if(!skus.add(sku)) {
+                    row.error = "Variation SKU " + variation.getSku() + " is repeated within the product.";
+                }
+
+                if(row.error != null) {
+                    break;
+                }
+            }
+
+            if(row.error == null) {
+                skus.forEach(sku -> lines.put(sku, row.line));
+            }
+        }
+    }
+
+    private String sku(ProductVariationRequestDTO variation) {
+        return variation.getSku().toLowerCase(Locale.ROOT);
+    }
+
+    private String validate(ProductRequestDTO product, Map<Long, Brand> brands, Map<Long, Category> categories) {
+        try {
+            ProductService.validateProductRequestDTO(0L, product);
+
+            if(!brands.containsKey(product.getBrandId())) {
+                return "Product brand " + product.getBrandId() + " not found.";
+            }
+
+            if(!categories.containsKey(product.getCategoryId())) {
+                return "Product category " + product.getCategoryId() + " not found.";
+            }
+
+            if(product.getVariations() == null) {
+                return "Product variation cannot be null.";
+            }
+
+            for(ProductVariationRequestDTO variation : product.getVariations()) {
+                if(variation == null || variation.getPrice() == null || variation.getStock() == null) {
+                    return "Variation price and stock cannot be null.";
+                }
+
+                ProductService.validateProductVariationRequestDTO(0L, variation);
+
+                if(variation.getAttributes().stream().anyMatch(Objects::isNull)) {
+                    return "Variation attribute cannot be null.";
+                }
+            }
+            return null;
+        } catch(InvalidRequestException e) {
+            return e.getMessage();
+        }
+    }
+
+    private Product toProduct(ProductRequestDTO productRequest, Map<Long, Brand> brands, Map<Long, Category> categories) {
+        Product product = new Product();
+        product.setName(productRequest.getName());
+        product.setDescription(productRequest.getDescription());
+        product.setBrand(brands.get(productRequest.getBrandId()));
+        product.setCategory(categories.get(productRequest.getCategoryId()));
+
+        for(ProductVariationRequestDTO variationDTO : productRequest.getVariations()) {
+            ProductVariation variation = new ProductVariation();
+            variation.setSku(variationDTO.getSku());
+            variation.setPrice(variationDTO.getPrice());
+            variation.setStock(variationDTO.getStock());
+            variation.setImageUrl(variationDTO.getImageUrl());
+            variation.setProduct(product);
+
+            for(ProductVariationAttributeDTO attributeDTO : variationDTO.getAttributes()) {
+                ProductVariationAttribute attribute = new ProductVariationAttribute();
+                attribute.setAttributeName(attributeDTO.getAttributeName());
+                attribute.setAttributeValue(attributeDTO.getAttributeValue());
+                attribute.setVariation(variation);
+                variation.getAttributes().add(attribute);
+            }
+
+            product.getVariations().add(variation);
+        }
+        return product;
+    }
+
+    private void fail(ImportResultDTO result, long line, String message) {
+        result.setFailed(result.getFailed() + 1);
+        if(result.getErrors().size() < MAX_REPORTED_ERRORS) {
+            result.getErrors().add(new ImportErrorDTO(line, message));
+        }
+    }
+
+    private static final class Row {
+        private final long line;
+        private final ProductRequestDTO product;
+        private volatile String error;
+
+        private Row(long line, ProductRequestDTO product, String error) {
+            this.line = line;
+            this.product = product;
+            this.error = error;
+        }
+    }
+
+    private interface Rows {
+        Row next() throws IOException;
+    }
+
+    private static final class NdjsonRows implements Rows {
+        private final BufferedReader reader;
+        private final ObjectMapper objectMapper;
+        private long line;
+
+        private NdjsonRows(BufferedReader reader, ObjectMapper objectMapper) {
+            this.reader = reader;
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        public Row next() throws IOException {
+            String text;
+            while((text = reader.readLine()) != null) {
+                line++;
+                if(text.isBlank()) {
+                    continue;
+                }
+
+                try {
+                    return new Row(line, objectMapper.readValue(text, ProductRequestDTO.class), null);
+                } catch(JsonProcessingException e) {
+                    return new Row(line, null, "Line is not a valid product: " + e.getOriginalMessage());
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class CsvRows implements Rows {
+        private final BufferedReader reader;
+        private Map<String, Integer> columns;
+        private long line;
+        private long pendingLine;
+        private List<String> pending;
+
+        private CsvRows(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public Row next() throws IOException {
+            if(columns == null) {
+                readHeader();
+            }
+
+            if(pending == null && !readPending()) {
+                return null;
+            }
+
+            long start = pendingLine;
+            List<String> first = pending;
+            ProductRequestDTO product = new ProductRequestDTO();
+            product.setVariations(new ArrayList<>());
+            String error = null;
+            try {
+                product.setName(value(first, "name"));
+                product.setDescription(value(first, "description"));
+                product.setBrandId(parseLong(value(first, "brandId"), "brandId"));
+                product.setCategoryId(parseLong(value(first, "categoryId"), "categoryId"));
+            } catch(InvalidRequestException e) {
+                error = "Line " + start + ": " + e.getMessage();
+            }
+
+            List<String> key = productKey(first);
+            do {
+                if(error == null) {
+                    try {
+                        product.getVariations().add(toVariation(pending));
+                    } catch(InvalidRequestException e) {
+                        error = "Line " + pendingLine + ": " + e.getMessage();
+                    }
+                }
+                pending = null;
+            } while(readPending() && productKey(pending).equals(key));
+
+            return new Row(start, error == null ? product : null, error);
+        }
+
+        private void readHeader() throws IOException {
+            String header = reader.readLine();
+            line++;
+            if(header == null) {
+                columns = Map.of();
+                return;
+            }
+
+            columns = new HashMap<>();
+            List<String> names = parse(header.replace("\uFEFF", ""));
+            for(int i = 0; i < names.size(); i++) {
+                columns.put(names.get(i).trim(), i);
+            }
+
+            List<String> missing = CSV_COLUMNS.stream().filter(column -> !columns.containsKey(column)).toList();
+            if(!missing.isEmpty()) {
+                throw new InvalidRequestException("CSV header is missing columns " + missing + ".");
+            }
+        }
+
+        private boolean readPending() throws IOException {
+            String text;
+            while((text = reader.readLine()) != null) {
+                line++;
+                if(!text.isBlank()) {
+                    pending = parse(text);
+                    pendingLine = line;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private List<String> productKey(List<String> fields) {
+            return List.of(value(fields, "name"), value(fields, "description"), value(fields, "brandId"), value(fields, "categoryId"));
+        }
+
+        private ProductVariationRequestDTO toVariation(List<String> fields) {
+            ProductVariationRequestDTO variation = new ProductVariationRequestDTO();
+            variation.setSku(value(fields, "sku"));
+            variation.setPrice(parseDouble(value(fields, "price")));
+            variation.setStock(parseInt(value(fields, "stock")));
+            variation.setImageUrl(value(fields, "imageUrl").isEmpty() ? null : value(fields, "imageUrl"));
+
+            List<ProductVariationAttributeDTO> attributes = new ArrayList<>();
+            for(String pair : value(fields, "attributes").split(";")) {
+                if(pair.isBlank()) {
+                    continue;
+                }
+
+                int separator = pair.indexOf('=');
+                if(separator <= 0) {
+                    throw new InvalidRequestException("Attribute '" + pair + "' must be written as name=value.");
+                }
+
+                ProductVariationAttributeDTO attribute = new ProductVariationAttributeDTO();
+                attribute.setAttributeName(pair.substring(0, separator).trim());
+                attribute.setAttributeValue(pair.substring(separator + 1).trim());
+                attributes.add(attribute);
+            }
+            variation.setAttributes(attributes);
+            return variation;
+        }
+
+        private String value(List<String> fields, String column) {
+            int index = columns.get(column);
+            return index < fields.size() ? fields.get(index).trim() : "";
+        }
+
+        private Long parseLong(String value, String column) {
+            try {
+                return Long.parseLong(value);
+            } catch(NumberFormatException e) {
+                throw new InvalidRequestException(column + " '" + value + "' is not a number.");
+            }
+        }
+
+        private Double parseDouble(String value) {
+            try {
+                return Double.parseDouble(value);
+            } catch(NumberFormatException e) {
+                throw new InvalidRequestException("price '" + value + "' is not a number.");
+            }
+        }
+
+        private Integer parseInt(String value) {
+            try {
+                return Integer.parseInt(value);
+            } catch(NumberFormatException e) {
+                throw new InvalidRequestException("stock '" + value + "' is not a number.");
+            }
+        }
+
+        // RFC 4180 fields on a single line: commas separate, double quotes enclose and "" escapes.
+        static List<String> parse(String text) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for(int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if(quoted) {
+                    if(c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    }
+                    else if(c == '"') {
+                        quoted = false;
+                    }
+                    else {
+                        field.append(c);
+                    }
+                }
+                else if(c == '"') {
+                    quoted = true;
+                }
+                else if(c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                }
+                else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.dto.ProductResponseDTO;
+import com.mythicemporium.dto.ProductVariationAttributeDTO;
+import com.mythicemporium.dto.ProductVariationResponseDTO;
+import com.mythicemporium.model.Product;
+import com.mythicemporium.model.ProductVariation;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+public final class ProductMapper {
+
+    private ProductMapper() {
+    }
+
+    public static ProductResponseDTO toResponseDTO(Product product) {
+        ProductResponseDTO dto = new ProductResponseDTO();
+        dto.setId(product.getId());
+        dto.setVersion(product.getVersion());
+        dto.setName(product.getName());
+        dto.setDescription(product.getDescription());
+        dto.setBrandName(product.getBrand().getName());
+        dto.setCategoryName(product.getCategory().getName());
+
+        List<ProductVariationResponseDTO> variationDTOs = product.getVariations().stream()
+                .map(ProductMapper::toVariationResponseDTO)
+                .collect(Collectors.toList());
+
+        dto.setVariations(variationDTOs);
+        return dto;
+    }
+
+    public static ProductVariationResponseDTO toVariationResponseDTO(ProductVariation variation) {
+        ProductVariationResponseDTO varDto = new ProductVariationResponseDTO();
+        varDto.setId(variation.getId());
+        varDto.setVersion(variation.getVersion());
+        varDto.setSku(variation.getSku());
+        varDto.setPrice(variation.getPrice());
+        varDto.setStock(variation.getStock());
+        varDto.setImageUrl(variation.getImageUrl());
+
+        List<ProductVariationAttributeDTO> attrDTOs = variation.getAttributes().stream().map(attr -> {
+            ProductVariationAttributeDTO attrDto = new ProductVariationAttributeDTO();
+            attrDto.setAttributeName(attr.getAttributeName());
+            attrDto.setAttributeValue(attr.getAttributeValue());
+            return attrDto;
+        }).collect(Collectors.toList());
+
+        varDto.setAttributes(attrDTOs);
+        return varDto;
+    }
+}
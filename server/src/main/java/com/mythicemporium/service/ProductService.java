@@ -1,23 +1,36 @@
 package com.mythicemporium.service;
 
+import com.mythicemporium.config.CatalogProperties;
 import com.mythicemporium.dto.*;
+import com.mythicemporium.event.CatalogChangedEvent;
 import com.mythicemporium.exception.InsufficientStockException;
 import com.mythicemporium.exception.InvalidRequestException;
+import com.mythicemporium.exception.PreconditionFailedException;
 import com.mythicemporium.exception.ResourceConflictException;
 import com.mythicemporium.exception.ResourceNotFoundException;
 import com.mythicemporium.logging.AuditContext;
 import com.mythicemporium.logging.AuditContextHolder;
 import com.mythicemporium.model.*;
-import com.mythicemporium.repository.BrandRepository;
-import com.mythicemporium.repository.CategoryRepository;
+import com.mythicemporium.repository.ProductFilter;
 import com.mythicemporium.repository.ProductRepository;
+import com.mythicemporium.repository.ProductSort;
 import com.mythicemporium.repository.ProductVariationRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
@@ -25,42 +38,201 @@ import java.util.stream.Collectors;
 @Transactional
 public class ProductService {
 
+    public static final int MAX_PAGE_LIMIT = 200;
+    public static final int MAX_SEARCH_QUERY_LENGTH = 200;
+
     private ProductRepository productRepository;
     private ProductVariationRepository productVariationRepository;
-    private BrandRepository brandRepository;
-    private CategoryRepository categoryRepository;
-
-    public ProductService(ProductRepository productRepository, ProductVariationRepository productVariationRepository, BrandRepository brandRepository, CategoryRepository categoryRepository) {
+    private StockBucketService stockBucketService;
+    private InventoryEngine inventoryEngine;
+    private PurchaseCombiner purchaseCombiner;
+    private BrandService brandService;
+    private CategoryService categoryService;
+    private CatalogProjectionService catalogProjectionService;
+    private CatalogSnapshotService catalogSnapshotService;
+    private SkuIndex skuIndex;
+    private CatalogProperties catalogProperties;
+    private TransactionTemplate transactionTemplate;
+    private ApplicationEventPublisher eventPublisher;
+
+    public ProductService(ProductRepository productRepository, ProductVariationRepository productVariationRepository, StockBucketService stockBucketService,
+                          InventoryEngine inventoryEngine, PurchaseCombiner purchaseCombiner, BrandService brandService, CategoryService categoryService,
+                          CatalogProjectionService catalogProjectionService, CatalogSnapshotService catalogSnapshotService, SkuIndex skuIndex,
+                          CatalogProperties catalogProperties, PlatformTransactionManager transactionManager,
+                          ApplicationEventPublisher eventPublisher) {
         this.productRepository = productRepository;
         this.productVariationRepository = productVariationRepository;
-        this.brandRepository = brandRepository;
-        this.categoryRepository = categoryRepository;
+        this.stockBucketService = stockBucketService;
+        this.inventoryEngine = inventoryEngine;
+        this.purchaseCombiner = purchaseCombiner;
+        this.brandService = brandService;
+        this.categoryService = categoryService;
+        this.catalogProjectionService = catalogProjectionService;
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.skuIndex = skuIndex;
+        this.catalogProperties = catalogProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
     }
 
+    // Listings load products with brand, category and variations in one query, then load the
+    // attributes of those variations in a second one so toResponseDTO never triggers lazy loads.
+    // Reads use SUPPORTS so that snapshot-served requests never open a transaction or borrow a connection.
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<ProductResponseDTO> findAll() {
-        return productRepository.findAll().stream().map(this::toResponseDTO).toList();
+        if(readsFromSnapshot()) {
+            return catalogSnapshotService.getSnapshot().findAll();
+        }
+
+        List<Product> products = productRepository.findAllWithVariations();
+        if(!products.isEmpty()) {
+            productVariationRepository.findAllWithAttributes();
+        }
+
+        return products.stream().map(ProductMapper::toResponseDTO).toList();
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<ProductResponseDTO> findAllByBrandId(Long id) {
-        return productRepository.findAllByBrandId(id).stream().map(this::toResponseDTO).toList();
+        if(readsFromSnapshot()) {
+            return catalogSnapshotService.getSnapshot().findAllByBrandId(id);
+        }
+
+        List<Product> products = productRepository.findAllWithVariationsByBrandId(id);
+        if(!products.isEmpty()) {
+            productVariationRepository.findAllWithAttributesByBrandId(id);
+        }
+
+        return products.stream().map(ProductMapper::toResponseDTO).toList();
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<ProductResponseDTO> findAllByCategoryId(Long id) {
-        return productRepository.findAllByCategoryId(id).stream().map(this::toResponseDTO).toList();
+        if(readsFromSnapshot()) {
+            return catalogSnapshotService.getSnapshot().findAllByCategoryId(id);
+        }
+
+        List<Product> products = productRepository.findAllWithVariationsByCategoryId(id);
+        if(!products.isEmpty()) {
+            productVariationRepository.findAllWithAttributesByCategoryId(id);
+        }
+
+        return products.stream().map(ProductMapper::toResponseDTO).toList();
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public ProductPageDTO findAll(String after, int limit) {
+        validatePageLimit(limit);
+        Long afterId = ProductCursor.decode(after);
+
+        if(readsFromSnapshot()) {
+            return toPage(catalogSnapshotService.getSnapshot().findPage(afterId, limit + 1), limit);
+        }
+        if(readsFromProjection()) {
+            return toPage(catalogProjectionService.findPage(afterId, limit + 1), limit);
+        }
+        return loadPage(productRepository.findPageIds(afterId, Limit.of(limit + 1)), limit);
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public ProductPageDTO findAllByBrandId(Long id, String after, int limit) {
+        validatePageLimit(limit);
+        Long afterId = ProductCursor.decode(after);
+
+        if(readsFromSnapshot()) {
+            return toPage(catalogSnapshotService.getSnapshot().findPageByBrandId(id, afterId, limit + 1), limit);
+        }
+        if(readsFromProjection()) {
+            return toPage(catalogProjectionService.findPageByBrandId(id, afterId, limit + 1), limit);
+        }
+        return loadPage(productRepository.findPageIdsByBrandId(id, afterId, Limit.of(limit + 1)), limit);
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public ProductPageDTO findAllByCategoryId(Long id, String after, int limit) {
+        validatePageLimit(limit);
+        Long afterId = ProductCursor.decode(after);
+
+        if(readsFromSnapshot()) {
+            return toPage(catalogSnapshotService.getSnapshot().findPageByCategoryId(id, afterId, limit + 1), limit);
+        }
+        if(readsFromProjection()) {
+            return toPage(catalogProjectionService.findPageByCategoryId(id, afterId, limit + 1), limit);
+        }
+        return loadPage(productRepository.findPageIdsByCategoryId(id, afterId, Limit.of(limit + 1)), limit);
+    }
+
+    // Filtered and sorted listings always run as one query over product_variation and
+    // catalog_projection, whatever the read mode. Products without variations never match.
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public ProductPageDTO findFiltered(String after, int limit, Double minPrice, Double maxPrice, boolean inStock, String sort) {
+        validatePageLimit(limit);
+
+        if((minPrice != null && minPrice < 0) || (maxPrice != null && maxPrice < 0)) {
+            throw new InvalidRequestException("Price filters cannot be negative.");
+        }
+
+        if(minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            throw new InvalidRequestException("Minimum price cannot be greater than maximum price.");
+        }
+
+        ProductSort productSort = ProductSort.fromParam(sort);
+        if(productSort == null) {
+            throw new InvalidRequestException("Sort must be one of price, name or stock.");
+        }
+
+        ProductCursor.Position position = ProductCursor.decode(after, productSort);
+        ProductFilter filter = new ProductFilter(minPrice, maxPrice, inStock, productSort,
+                position == null ? null : position.getSortKey(),
+                position == null ? null : position.getProductId());
+
+        return catalogProjectionService.findFilteredPage(filter, limit);
     }
 
+    // Search always runs against catalog_projection, which carries the full-text index. Results are
+    // ranked, so pages are addressed by number and nextCursor holds the next page number.
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public ProductPageDTO searchProducts(String query, int page, int limit) {
+        if(query == null || query.isBlank()) {
+            throw new InvalidRequestException("Search query cannot be empty or null.");
+        }
+
+        if(query.length() > MAX_SEARCH_QUERY_LENGTH) {
+            throw new InvalidRequestException("Search query cannot be longer than " + MAX_SEARCH_QUERY_LENGTH + " characters.");
+        }
+
+        if(page < 0) {
+            throw new InvalidRequestException("Page cannot be negative.");
+        }
+
+        validatePageLimit(limit);
+
+        List<ProductResponseDTO> products = catalogProjectionService.search(query.trim(), (long) page * limit, limit + 1);
+        if(products.size() <= limit) {
+            return new ProductPageDTO(products, null);
+        }
+        return new ProductPageDTO(products.subList(0, limit), String.valueOf(page + 1));
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public ProductResponseDTO findById(Long id) {
+        if(readsFromSnapshot()) {
+            return catalogSnapshotService.getSnapshot().findById(id).orElse(null);
+        }
+
         Optional<Product> product = productRepository.findById(id);
 
-        return product.map(this::toResponseDTO).orElse(null);
+        return product.map(ProductMapper::toResponseDTO).orElse(null);
     }
 
     public CompletableFuture<Result> createProduct(ProductRequestDTO productRequest) {
         validateProductRequestDTO((long) 0, productRequest);
 
-        Brand brand = brandRepository.findById(productRequest.getBrandId())
+        // Brands and categories come from the reference data cache; a detached instance is
+        // enough for Hibernate to write the foreign key.
+        Brand brand = Optional.ofNullable(brandService.findById(productRequest.getBrandId()))
                 .orElseThrow(() -> new ResourceNotFoundException("Product brand not found."));
-        Category category = categoryRepository.findById(productRequest.getCategoryId())
+        Category category = Optional.ofNullable(categoryService.findById(productRequest.getCategoryId()))
                 .orElseThrow(() -> new ResourceNotFoundException("Product category not found."));
 
         Product product = new Product();
@@ -102,13 +274,18 @@ public class ProductService {
 
         try {
             product = productRepository.save(product);
+            productRepository.flush();
+            eventPublisher.publishEvent(CatalogChangedEvent.productCreated(product.getId()));
 
             AuditContext ctx = AuditContextHolder.getContext();
             ctx.setOperationType("CREATE");
 
-            result.setData(toResponseDTO(product));
+            result.setData(ProductMapper.toResponseDTO(product));
         }
         catch(Exception ex) {
+            if(SkuIndex.isConflict(ex)) {
+                throw new ResourceConflictException("A variation SKU of this product already exists in database.");
+            }
             result.addErrorMessage(ex.getMessage(), ResultType.INVALID);
         }
 
@@ -116,6 +293,12 @@ public class ProductService {
     }
 
     public CompletableFuture<Result> updateProduct(Long productId, ProductRequestDTO productRequest) {
+        return updateProduct(productId, productRequest, null);
+    }
+
+    // With an expected version (from If-Match), the update is refused unless the product is still
+    // at that version; a concurrent commit after the check still fails the version-guarded UPDATE.
+    public CompletableFuture<Result> updateProduct(Long productId, ProductRequestDTO productRequest, Long expectedVersion) {
         validateProductRequestDTO(productId, productRequest);
 
         if(productRequest.getVariations() != null) {
@@ -124,6 +307,7 @@ public class ProductService {
 
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product " + productId + " not found."));
+        checkVersion("Product " + productId, expectedVersion, product.getVersion());
 
         Brand brand = getBrandIfChanged(product, productRequest.getBrandId());
         Category category = getCategoryIfChanged(product, productRequest.getCategoryId());
@@ -138,7 +322,9 @@ public class ProductService {
 
         Result result = new Result();
         Product savedProduct = productRepository.save(product);
-        result.setData(toResponseDTO(savedProduct));
+        productRepository.flush();
+        eventPublisher.publishEvent(CatalogChangedEvent.productSaved(productId));
+        result.setData(ProductMapper.toResponseDTO(savedProduct));
 
         return CompletableFuture.completedFuture(result);
     }
@@ -148,13 +334,16 @@ public class ProductService {
             throw new InvalidRequestException("Product id cannot be negative.");
         }
 
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new ResourceNotFoundException("Product id " + productId + " not found."));
-
         AuditContext ctx = AuditContextHolder.getContext();
         ctx.setOperationType("DELETE");
 
-        productRepository.delete(product);
+        List<Long> variationIds = productRepository.deleteAllByIdIn(List.of(productId)).get(productId);
+        if(variationIds == null) {
+            throw new ResourceNotFoundException("Product id " + productId + " not found.");
+        }
+
+        variationIds.forEach(inventoryEngine::forget);
+        eventPublisher.publishEvent(CatalogChangedEvent.productDeleted(productId));
 
         return true;
     }
@@ -165,10 +354,6 @@ public class ProductService {
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product id " + productId + " not found."));
 
-        if(product.getVariations().stream().anyMatch(v -> v.getSku().equalsIgnoreCase(productVariationDTO.getSku()))) {
-            throw new ResourceConflictException("Product variation SKU " + productVariationDTO.getSku() + " already exists in database.");
-        }
-
         ProductVariation variation = new ProductVariation();
         variation.setSku(productVariationDTO.getSku());
         variation.setPrice(productVariationDTO.getPrice());
@@ -187,66 +372,74 @@ public class ProductService {
                 .collect(Collectors.toList());
 
         variation.setAttributes(attributes);
-        productVariationRepository.save(variation);
+        saveVariation(variation);
         product.getVariations().add(variation);
+        eventPublisher.publishEvent(CatalogChangedEvent.productSaved(productId));
 
         AuditContext ctx = AuditContextHolder.getContext();
         ctx.setOperationType("CREATE");
 
         Result result = new Result();
-        result.setData(toResponseDTO(product));
+        result.setData(ProductMapper.toResponseDTO(product));
 
         return CompletableFuture.completedFuture(result);
     }
 
     public CompletableFuture<Result> updateVariation(Long variationId, ProductVariationRequestDTO productVariationDTO) {
+        return updateVariation(variationId, productVariationDTO, null);
+    }
+
+    public CompletableFuture<Result> updateVariation(Long variationId, ProductVariationRequestDTO productVariationDTO, Long expectedVersion) {
         if(variationId < 0) {
             throw new InvalidRequestException("Variation id cannot be negative.");
         }
 
         ProductVariation variation = productVariationRepository.findById(variationId)
                 .orElseThrow(() -> new ResourceNotFoundException("Variation id " + variationId + " not found."));
+        checkVersion("Variation " + variationId, expectedVersion, variation.getVersion());
 
         Product product = variation.getProduct();
         if(product == null) {
             throw new ResourceNotFoundException("Product for variation id " + variationId + " not found.");
         }
 
-        if(product.getVariations().stream().anyMatch(v -> v.getSku().equalsIgnoreCase(productVariationDTO.getSku()) && !Objects.equals(v.getId(), variationId))) {
-            throw new ResourceConflictException("Product variation SKU " + productVariationDTO.getSku() + " already exists in database.");
-        }
-
         variation.setSku(productVariationDTO.getSku());
         variation.setPrice(productVariationDTO.getPrice());
-        variation.setStock(productVariationDTO.getStock());
+        if(variation.isStockSharded()) {
+            stockBucketService.setStock(variationId, productVariationDTO.getStock());
+        }
+        else if(!inventoryEngine.setStock(variationId, productVariationDTO.getStock())) {
+            variation.setStock(productVariationDTO.getStock());
+        }
         variation.setImageUrl(productVariationDTO.getImageUrl());
 
-        variation.getAttributes().clear();
-
         List<ProductVariationAttribute> attributes = productVariationDTO.getAttributes().stream()
                 .map(attrDto -> {
                     ProductVariationAttribute attr = new ProductVariationAttribute();
                     attr.setAttributeName(attrDto.getAttributeName());
                     attr.setAttributeValue(attrDto.getAttributeValue());
-                    attr.setVariation(variation);
                     return attr;
                 })
                 .collect(Collectors.toList());
 
-        variation.getAttributes().addAll(attributes);
+        variation.mergeAttributes(attributes);
 
-        productVariationRepository.save(variation);
+        saveVariation(variation);
+        eventPublisher.publishEvent(CatalogChangedEvent.productSaved(product.getId()));
 
         AuditContext ctx = AuditContextHolder.getContext();
         ctx.setOperationType("UPDATE");
 
         Result result = new Result();
-        result.setData(toResponseDTO(product));
+        result.setData(ProductMapper.toResponseDTO(product));
 
         return CompletableFuture.completedFuture(result);
     }
 
-    @Transactional
+    // In MEMORY inventory mode the sale is taken from the in-memory counter without opening a
+    // transaction; the engine's flusher writes it back and publishes the stock change. Otherwise,
+    // with a purchase batch window set, concurrent purchases are group-committed by the combiner.
+    @Transactional(propagation = Propagation.SUPPORTS)
     public boolean purchaseProduct(Long variationId, Integer quantity) {
         if (variationId < 0) {
             throw new InvalidRequestException("Variation id cannot be negative.");
@@ -256,11 +449,65 @@ public class ProductService {
             throw new InvalidRequestException("Quantity must be positive and non-null.");
         }
 
-        int updated = productVariationRepository.decrementStock(variationId, quantity);
-        if (updated == 0) {
+        InventoryEngine.Outcome outcome = inventoryEngine.tryPurchase(variationId, quantity);
+        if(outcome == InventoryEngine.Outcome.PURCHASED) {
+            return true;
+        }
+        if(outcome == InventoryEngine.Outcome.INSUFFICIENT) {
             throw new InsufficientStockException("Not enough stock available or product not found.");
         }
-        return true;
+
+        if(purchaseCombiner.applies()) {
+            if(!purchaseCombiner.purchase(variationId, quantity)) {
+                throw new InsufficientStockException("Not enough stock available or product not found.");
+            }
+            return true;
+        }
+
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            Integer shards = productVariationRepository.findStockShardsById(variationId).orElse(null);
+            boolean purchased = shards == null
+                    ? productVariationRepository.decrementStock(variationId, quantity) > 0
+                    : stockBucketService.decrement(variationId, shards, quantity);
+            if (!purchased) {
+                throw new InsufficientStockException("Not enough stock available or product not found.");
+            }
+
+            eventPublisher.publishEvent(CatalogChangedEvent.stockChanged(variationId));
+            return true;
+        }));
+    }
+
+    // Puts stock taken by purchaseProduct back, through whichever store holds each variation.
+    @Transactional
+    public void returnStock(Map<Long, Integer> quantities) {
+        Map<Long, Integer> held = new HashMap<>();
+        Map<Long, Integer> stored = new TreeMap<>();
+        quantities.forEach((variationId, quantity) -> {
+            if(inventoryEngine.manages(variationId)) {
+                held.put(variationId, quantity);
+                return;
+            }
+
+            Integer shards = productVariationRepository.findStockShardsById(variationId).orElse(null);
+            if(shards != null) {
+                stockBucketService.increment(variationId, shards, quantity);
+                eventPublisher.publishEvent(CatalogChangedEvent.stockChanged(variationId));
+            }
+            else {
+                stored.put(variationId, quantity);
+            }
+        });
+
+        if(!held.isEmpty()) {
+            inventoryEngine.restock(held);
+        }
+
+        if(!stored.isEmpty()) {
+            productVariationRepository.applyStockDeltas(stored.keySet().toArray(new Long[0]),
+                    stored.values().stream().map(quantity -> -quantity).toArray(Integer[]::new));
+            stored.keySet().forEach(variationId -> eventPublisher.publishEvent(CatalogChangedEvent.stockChanged(variationId)));
+        }
     }
 
     @Transactional
@@ -277,6 +524,8 @@ public class ProductService {
         if(updated == 0) {
             throw new ResourceNotFoundException("Variation " + variationId + " not found.");
         }
+
+        eventPublisher.publishEvent(CatalogChangedEvent.variationChanged(variationId));
         return true;
     }
 
@@ -290,31 +539,182 @@ public class ProductService {
             throw new InvalidRequestException("Stock must be positive and non-null.");
         }
 
-        int updated = productVariationRepository.updateStockById(variationId, stock);
-        if (updated == 0) {
-            throw new ResourceNotFoundException("Variation " + variationId + " not found.");
+        // Variations held by the inventory engine are written back by its flusher after commit.
+        if(!inventoryEngine.setStock(variationId, stock)) {
+            if(productVariationRepository.findStockShardsById(variationId).isPresent()) {
+                stockBucketService.setStock(variationId, stock);
+            }
+            else {
+                int updated = productVariationRepository.updateStockById(variationId, stock);
+                if (updated == 0) {
+                    throw new ResourceNotFoundException("Variation " + variationId + " not found.");
+                }
+            }
         }
+
+        eventPublisher.publishEvent(CatalogChangedEvent.variationChanged(variationId));
         return true;
     }
 
+    // Splits a hot variation's stock across the given number of bucket rows, or folds it back into
+    // the stock column when shards is 0 or 1.
     @Transactional
-    public boolean deleteVariation(Long variationId) {
+    public boolean updateVariationStockShards(Long variationId, Integer shards) {
         if(variationId < 0) {
             throw new InvalidRequestException("Variation id cannot be negative.");
         }
 
-        ProductVariation pv = productVariationRepository.findById(variationId)
-                .orElseThrow(() -> new ResourceNotFoundException("Variation id " + variationId + " not found."));
+        if(shards == null || shards < 0 || shards > StockBucketService.MAX_STOCK_SHARDS) {
+            throw new InvalidRequestException("Stock shards must be between 0 and " + StockBucketService.MAX_STOCK_SHARDS + ".");
+        }
+
+        if(inventoryEngine.isActive()) {
+            throw new InvalidRequestException("Stock sharding is not available while inventory is held in memory.");
+        }
+
+        ProductVariation variation = productVariationRepository.lockById(variationId)
+                .orElseThrow(() -> new ResourceNotFoundException("Variation " + variationId + " not found."));
+
+        int stock = variation.isStockSharded()
+                ? stockBucketService.lockedStock(variationId)
+                : Objects.requireNonNullElse(variation.getStock(), 0);
+        stockBucketService.reshard(variation, stock, shards);
+
+        eventPublisher.publishEvent(CatalogChangedEvent.variationChanged(variationId));
+        return true;
+    }
+
+    @Transactional
+    public boolean deleteVariation(Long variationId) {
+        if(variationId < 0) {
+            throw new InvalidRequestException("Variation id cannot be negative.");
+        }
 
         AuditContext ctx = AuditContextHolder.getContext();
         ctx.setOperationType("DELETE");
 
-        productVariationRepository.delete(pv);
+        Map<Long, Long> deleted = productRepository.deleteVariationsByIdIn(List.of(variationId));
+        if(!deleted.containsKey(variationId)) {
+            throw new ResourceNotFoundException("Variation id " + variationId + " not found.");
+        }
+
+        inventoryEngine.forget(variationId);
+        Long productId = deleted.get(variationId);
+        if(productId != null) {
+            eventPublisher.publishEvent(CatalogChangedEvent.productSaved(productId));
+        }
 
         return true;
     }
 
-    private void validateProductRequestDTO(Long productId, ProductRequestDTO productRequestDTO) {
+    // Scanner lookups. The SKU index resolves the variation id without a query once a SKU has been
+    // seen, and the variation itself comes from the snapshot when reads are served from it.
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public SkuLookupDTO findVariationBySku(String sku) {
+        if(sku == null || sku.isBlank()) {
+            throw new InvalidRequestException("Variation SKU cannot be null or empty.");
+        }
+
+        Long variationId = skuIndex.findVariationId(sku).orElse(null);
+        if(variationId == null) {
+            throw new ResourceNotFoundException("Variation SKU " + sku + " not found.");
+        }
+
+        SkuLookupDTO found = findVariationById(variationId);
+        if(found != null && sku.equalsIgnoreCase(found.getVariation().getSku())) {
+            return found;
+        }
+
+        // The cached id, or the snapshot's copy of the variation, predates a rename or delete. The
+        // unique index answers for the SKU as committed, and the next lookup caches its id again.
+        skuIndex.evict(sku);
+        return productVariationRepository.findWithAttributesByLowerSku(sku.toLowerCase(Locale.ROOT))
+                .map(this::toSkuLookup)
+                .orElseThrow(() -> new ResourceNotFoundException("Variation SKU " + sku + " not found."));
+    }
+
+    private SkuLookupDTO findVariationById(Long variationId) {
+        if(readsFromSnapshot()) {
+            CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+            Long productId = snapshot.productIdForVariation(variationId);
+            Optional<ProductVariationResponseDTO> variation = productId == null ? Optional.empty() : snapshot.findById(productId)
+                    .flatMap(product -> product.getVariations().stream().filter(v -> variationId.equals(v.getId())).findFirst());
+            if(variation.isPresent()) {
+                return new SkuLookupDTO(productId, variation.get());
+            }
+        }
+
+        return productVariationRepository.findWithAttributesById(variationId)
+                .map(this::toSkuLookup)
+                .orElse(null);
+    }
+
+    private SkuLookupDTO toSkuLookup(ProductVariation variation) {
+        return new SkuLookupDTO(variation.getProduct() == null ? null : variation.getProduct().getId(),
+                ProductMapper.toVariationResponseDTO(variation));
+    }
+
+    // SKUs are checked by the unique index on lower(sku), across the whole catalog, when the
+    // variation is flushed rather than by loading the product's other variations.
+    private void saveVariation(ProductVariation variation) {
+        try {
+            productVariationRepository.saveAndFlush(variation);
+        }
+        catch(DataIntegrityViolationException ex) {
+            if(SkuIndex.isConflict(ex)) {
+                throw new ResourceConflictException("Product variation SKU " + variation.getSku() + " already exists in database.");
+            }
+            throw ex;
+        }
+    }
+
+    private void validatePageLimit(int limit) {
+        if(limit < 1 || limit > MAX_PAGE_LIMIT) {
+            throw new InvalidRequestException("Page limit must be between 1 and " + MAX_PAGE_LIMIT + ".");
+        }
+    }
+
+    // Until the snapshot has finished its initial load, reads fall back to the tables.
+    private boolean readsFromSnapshot() {
+        return catalogProperties.getReadMode() == CatalogProperties.ReadMode.SNAPSHOT && catalogSnapshotService.isReady();
+    }
+
+    private boolean readsFromProjection() {
+        return catalogProperties.getReadMode() == CatalogProperties.ReadMode.PROJECTION;
+    }
+
+    // One extra id is requested so the presence of a next page is known without a count query.
+    private ProductPageDTO loadPage(List<Long> ids, int limit) {
+        boolean hasNext = ids.size() > limit;
+        List<Long> pageIds = hasNext ? ids.subList(0, limit) : ids;
+
+        List<ProductResponseDTO> products = List.of();
+        if(!pageIds.isEmpty()) {
+            List<Product> page = productRepository.findAllWithVariationsByIdIn(pageIds);
+            productVariationRepository.findAllWithAttributesByProductIdIn(pageIds);
+            products = page.stream().map(ProductMapper::toResponseDTO).toList();
+        }
+
+        String nextCursor = hasNext ? ProductCursor.encode(pageIds.get(pageIds.size() - 1)) : null;
+        return new ProductPageDTO(products, nextCursor);
+    }
+
+    private ProductPageDTO toPage(List<ProductResponseDTO> products, int limit) {
+        if(products.size() <= limit) {
+            return new ProductPageDTO(products, null);
+        }
+
+        List<ProductResponseDTO> page = products.subList(0, limit);
+        return new ProductPageDTO(page, ProductCursor.encode(page.get(page.size() - 1).getId()));
+    }
+
+    private void checkVersion(String resource, Long expectedVersion, Long version) {
+        if(expectedVersion != null && !expectedVersion.equals(version)) {
+            throw new PreconditionFailedException(resource + " is at version " + version + ", not " + expectedVersion + ".");
+        }
+    }
+
+    static void validateProductRequestDTO(Long productId, ProductRequestDTO productRequestDTO) {
         if(productId < 0) {
             throw new InvalidRequestException("Product id cannot be negative.");
         }
@@ -340,7 +740,7 @@ public class ProductService {
         }
     }
 
-    private void validateProductVariationRequestDTO(Long variationId, ProductVariationRequestDTO productVariationRequestDTO) {
+    static void validateProductVariationRequestDTO(Long variationId, ProductVariationRequestDTO productVariationRequestDTO) {
         if(variationId < 0) {
             throw new InvalidRequestException("Product id cannot be negative.");
         }
@@ -372,7 +772,7 @@ public class ProductService {
             return existingProduct.getBrand();
         }
 
-        return brandRepository.findById(newBrandId)
+        return Optional.ofNullable(brandService.findById(newBrandId))
                 .orElseThrow(() -> new ResourceNotFoundException("Product brand " + newBrandId + " not found."));
     }
 
@@ -382,38 +782,7 @@ public class ProductService {
             return existingProduct.getCategory();
         }
 
-        return categoryRepository.findById(newCategoryId)
+        return Optional.ofNullable(categoryService.findById(newCategoryId))
                 .orElseThrow(() -> new ResourceNotFoundException("Product category " + newCategoryId + " not found."));
     }
-
-    private ProductResponseDTO toResponseDTO(Product product) {
-        ProductResponseDTO dto = new ProductResponseDTO();
-        dto.setId(product.getId());
-        dto.setName(product.getName());
-        dto.setDescription(product.getDescription());
-        dto.setBrandName(product.getBrand().getName());
-        dto.setCategoryName(product.getCategory().getName());
-
-        List<ProductVariationResponseDTO> variationDTOs = product.getVariations().stream().map(variation -> {
-            ProductVariationResponseDTO varDto = new ProductVariationResponseDTO();
-            varDto.setId(variation.getId());
-            varDto.setSku(variation.getSku());
-            varDto.setPrice(variation.getPrice());
-            varDto.setStock(variation.getStock());
-            varDto.setImageUrl(variation.getImageUrl());
-
-            List<ProductVariationAttributeDTO> attrDTOs = variation.getAttributes().stream().map(attr -> {
-                ProductVariationAttributeDTO attrDto = new ProductVariationAttributeDTO();
-                attrDto.setAttributeName(attr.getAttributeName());
-                attrDto.setAttributeValue(attr.getAttributeValue());
-                return attrDto;
-            }).collect(Collectors.toList());
-
-            varDto.setAttributes(attrDTOs);
-            return varDto;
-        }).collect(Collectors.toList());
-
-        dto.setVariations(variationDTOs);
-        return dto;
-    }
 }
\ No newline at end of file
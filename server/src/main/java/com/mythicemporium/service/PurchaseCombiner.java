@@ -0,0 +1,191 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.config.InventoryProperties;
+import com.mythicemporium.event.CatalogChangedEvent;
+import com.mythicemporium.repository.ProductVariationRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Group commit for database purchases. The first purchase of a variation opens a batch and waits
+// out the batch window (or until the batch is full) while later purchases of the same variation
+// join it; the opener then applies the whole batch in one transaction, usually as a single
+// UPDATE with the summed quantity. When the sum does not fit in stock (or in an int), the row is
+// locked and requests are granted in arrival order, exactly as if each had run its own decrement
+// in turn. Sharded variations are always allocated that way, with every bucket locked in order.
+@Service
+public class PurchaseCombiner {
+
+    private ProductVariationRepository productVariationRepository;
+    private StockBucketService stockBucketService;
+    private InventoryProperties inventoryProperties;
+    private ApplicationEventPublisher eventPublisher;
+    private TransactionTemplate transactionTemplate;
+
+    private final Map<Long, Batch> openBatches = new ConcurrentHashMap<>();
+    private final DistributionSummary batchSizes;
+
+    public PurchaseCombiner(ProductVariationRepository productVariationRepository, StockBucketService stockBucketService,
+                            InventoryProperties inventoryProperties, ApplicationEventPublisher eventPublisher,
+                            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.productVariationRepository = productVariationRepository;
+        this.stockBucketService = stockBucketService;
+        this.inventoryProperties = inventoryProperties;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSizes = DistributionSummary.builder("inventory.purchase.batch.size")
+                .description("Purchases applied per group-committed transaction")
+                .register(meterRegistry);
+    }
+
+    // Purchases made inside a caller's transaction must commit or roll back with it, so they are
+    // never combined with other callers' purchases.
+    public boolean applies() {
+        return !inventoryProperties.getPurchaseBatchWindow().isZero()
+                && !TransactionSynchronizationManager.isActualTransactionActive();
+    }
+
+    // Blocks until the batch holding this purchase has committed. Returns false when there was
+    // not enough stock left for it.
+    public boolean purchase(Long variationId, int quantity) {
+        Request request = new Request(quantity);
+        Batch batch = join(variationId, request);
+
+        if(request.leader) {
+            lead(variationId, batch);
+        }
+
+        try {
+            return request.granted.join();
+        }
+        catch(CompletionException e) {
+            if(e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private Batch join(Long variationId, Request request) {
+        while(true) {
+            Batch batch = openBatches.computeIfAbsent(variationId, id -> new Batch());
+            synchronized(batch) {
+                if(!batch.closed) {
+                    batch.requests.add(request);
+                    request.leader = batch.requests.size() == 1;
+                    if(batch.requests.size() >= inventoryProperties.getPurchaseBatchSize()) {
+                        batch.notifyAll();
+                    }
+                    return batch;
+                }
+            }
+        }
+    }
+
+    private void lead(Long variationId, Batch batch) {
+        long deadline = System.nanoTime() + inventoryProperties.getPurchaseBatchWindow().toNanos();
+        List<Request> requests;
+        synchronized(batch) {
+            long remaining;
+            while(batch.requests.size() < inventoryProperties.getPurchaseBatchSize()
+                    && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    batch.wait(remaining / 1_000_000, (int) (remaining % 1_000_000));
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            batch.closed = true;
+            openBatches.remove(variationId, batch);
+            requests = List.copyOf(batch.requests);
+        }
+
+        batchSizes.record(requests.size());
+        try {
+            boolean[] granted = transactionTemplate.execute(status -> apply(variationId, requests));
+            for(int i = 0; i < requests.size(); i++) {
+                requests.get(i).granted.complete(granted[i]);
+            }
+        }
+        catch(RuntimeException e) {
+            requests.forEach(request -> request.granted.completeExceptionally(e));
+        }
+    }
+
+    private boolean[] apply(Long variationId, List<Request> requests) {
+        boolean[] granted;
+        Integer shards = productVariationRepository.findStockShardsById(variationId).orElse(null);
+
+        if(shards != null) {
+            granted = stockBucketService.allocate(variationId, requests.stream().map(request -> request.quantity).toList());
+        }
+        else {
+            granted = new boolean[requests.size()];
+            long total = requests.stream().mapToLong(request -> request.quantity).sum();
+            if(total <= Integer.MAX_VALUE && productVariationRepository.decrementStock(variationId, (int) total) > 0) {
+                Arrays.fill(granted, true);
+            }
+            else {
+                allocate(variationId, requests, granted);
+            }
+        }
+
+        for(boolean purchased : granted) {
+            if(purchased) {
+                eventPublisher.publishEvent(CatalogChangedEvent.stockChanged(variationId));
+                break;
+            }
+        }
+        return granted;
+    }
+
+    private void allocate(Long variationId, List<Request> requests, boolean[] granted) {
+        List<ProductVariationRepository.StockRow> rows = productVariationRepository.lockStockByIdIn(List.of(variationId));
+        if(rows.isEmpty()) {
+            return;
+        }
+
+        long available = rows.get(0).getStock();
+        long allocated = 0;
+        for(int i = 0; i < requests.size(); i++) {
+            int quantity = requests.get(i).quantity;
+            if(quantity <= available - allocated) {
+                allocated += quantity;
+                granted[i] = true;
+            }
+        }
+
+        if(allocated > 0) {
+            productVariationRepository.decrementStock(variationId, (int) allocated);
+        }
+    }
+
+    private static final class Batch {
+        private final List<Request> requests = new ArrayList<>();
+        private boolean closed;
+    }
+
+    private static final class Request {
+        private final int quantity;
+        private final CompletableFuture<Boolean> granted = new CompletableFuture<>();
+        private boolean leader;
+
+        private Request(int quantity) {
+            this.quantity = quantity;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.config.CacheConfig;
+import com.mythicemporium.event.CatalogChangedEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+// Evicts cached brands and categories once their change has committed. Evicting inside the
+// write transaction would let a concurrent reader re-cache the old row before the commit.
+@Component
+public class ReferenceDataCacheEvictor {
+
+    private CacheManager cacheManager;
+
+    public ReferenceDataCacheEvictor(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void evict(CatalogChangedEvent event) {
+        switch(event.getType()) {
+            case BRAND -> evict(CacheConfig.BRANDS, CacheConfig.ALL_BRANDS, event.getId());
+            case CATEGORY -> evict(CacheConfig.CATEGORIES, CacheConfig.ALL_CATEGORIES, event.getId());
+            default -> {
+            }
+        }
+    }
+
+    private void evict(String byIdCacheName, String allCacheName, Long id) {
+        Cache byId = cacheManager.getCache(byIdCacheName);
+        if(byId != null) {
+            byId.evict(id);
+        }
+
+        Cache all = cacheManager.getCache(allCacheName);
+        if(all != null) {
+            all.clear();
+        }
+    }
+}
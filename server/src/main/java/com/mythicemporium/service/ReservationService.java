@@ -0,0 +1,150 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.config.InventoryProperties;
+import com.mythicemporium.dto.ReservationResponseDTO;
+import com.mythicemporium.exception.InvalidRequestException;
+import com.mythicemporium.exception.ResourceConflictException;
+import com.mythicemporium.exception.ResourceNotFoundException;
+import com.mythicemporium.model.StockReservation;
+import com.mythicemporium.repository.ProductVariationRepository;
+import com.mythicemporium.repository.StockReservationRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+// Reserving takes the quantity through the normal purchase path, so a variation's stock already
+// excludes every active hold and availability never needs the reservations. Confirming keeps the
+// stock taken; releasing or expiring gives it back.
+@Service
+@Transactional
+public class ReservationService {
+
+    private StockReservationRepository reservationRepository;
+    private ProductVariationRepository productVariationRepository;
+    private ProductService productService;
+    private InventoryProperties inventoryProperties;
+    private TransactionTemplate transactionTemplate;
+    private Clock clock;
+
+    public ReservationService(StockReservationRepository reservationRepository, ProductVariationRepository productVariationRepository,
+                              ProductService productService, InventoryProperties inventoryProperties,
+                              PlatformTransactionManager transactionManager) {
+        this(reservationRepository, productVariationRepository, productService, inventoryProperties, transactionManager, Clock.systemUTC());
+    }
+
+    ReservationService(StockReservationRepository reservationRepository, ProductVariationRepository productVariationRepository,
+                       ProductService productService, InventoryProperties inventoryProperties,
+                       PlatformTransactionManager transactionManager, Clock clock) {
+        this.reservationRepository = reservationRepository;
+        this.productVariationRepository = productVariationRepository;
+        this.productService = productService;
+        this.inventoryProperties = inventoryProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+    }
+
+    public CompletableFuture<Result> reserve(Long variationId, Integer quantity, String owner) {
+        if(variationId == null || variationId < 0) {
+            throw new InvalidRequestException("Variation id cannot be null or negative.");
+        }
+
+        if(quantity == null || quantity <= 0) {
+            throw new InvalidRequestException("Quantity must be positive and non-null.");
+        }
+
+        productService.purchaseProduct(variationId, quantity);
+
+        Instant now = clock.instant();
+        StockReservation reservation = new StockReservation();
+        reservation.setVariation(productVariationRepository.getReferenceById(variationId));
+        reservation.setVariationId(variationId);
+        reservation.setQuantity(quantity);
+        reservation.setStatus(StockReservation.Status.ACTIVE);
+        reservation.setOwner(owner);
+        reservation.setCreatedAt(now);
+        reservation.setExpiresAt(now.plus(inventoryProperties.getReservationTtl()));
+        reservationRepository.save(reservation);
+
+        Result result = new Result();
+        result.setData(toResponseDTO(reservation));
+        return CompletableFuture.completedFuture(result);
+    }
+
+    public CompletableFuture<Result> confirm(Long reservationId, String owner) {
+        StockReservation reservation = lockActive(reservationId, owner);
+        reservation.setStatus(StockReservation.Status.CONFIRMED);
+
+        Result result = new Result();
+        result.setData(toResponseDTO(reservation));
+        return CompletableFuture.completedFuture(result);
+    }
+
+    public CompletableFuture<Result> release(Long reservationId, String owner) {
+        StockReservation reservation = lockActive(reservationId, owner);
+        reservation.setStatus(StockReservation.Status.RELEASED);
+        productService.returnStock(Map.of(reservation.getVariationId(), reservation.getQuantity()));
+
+        Result result = new Result();
+        result.setData(toResponseDTO(reservation));
+        return CompletableFuture.completedFuture(result);
+    }
+
+    // Each batch is its own transaction; expired holds are found through the partial expiry index
+    // and their stock is returned with one statement per store rather than one per reservation.
+    @Scheduled(fixedDelayString = "${inventory.reservation-sweep-interval-ms:1000}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void sweepExpired() {
+        int batchSize = inventoryProperties.getReservationSweepBatchSize();
+        while(true) {
+            Integer expired = transactionTemplate.execute(status -> expireBatch(batchSize));
+            if(expired == null || expired < batchSize) {
+                return;
+            }
+        }
+    }
+
+    private int expireBatch(int batchSize) {
+        List<StockReservation> expired = reservationRepository.lockExpired(clock.instant(), batchSize);
+        if(expired.isEmpty()) {
+            return 0;
+        }
+
+        reservationRepository.updateStatusByIdIn(expired.stream().map(StockReservation::getId).toList(), StockReservation.Status.EXPIRED);
+        productService.returnStock(expired.stream()
+                .collect(Collectors.groupingBy(StockReservation::getVariationId, Collectors.summingInt(StockReservation::getQuantity))));
+        return expired.size();
+    }
+
+    // Holds past their expiry count as expired even before the sweeper reaches them.
+    private StockReservation lockActive(Long reservationId, String owner) {
+        if(reservationId == null || reservationId < 0) {
+            throw new InvalidRequestException("Reservation id cannot be null or negative.");
+        }
+
+        StockReservation reservation = reservationRepository.lockById(reservationId)
+                .filter(r -> Objects.equals(r.getOwner(), owner))
+                .orElseThrow(() -> new ResourceNotFoundException("Reservation " + reservationId + " not found."));
+
+        if(reservation.getStatus() != StockReservation.Status.ACTIVE || !clock.instant().isBefore(reservation.getExpiresAt())) {
+            String status = reservation.getStatus() == StockReservation.Status.ACTIVE ? "expired" : reservation.getStatus().name().toLowerCase();
+            throw new ResourceConflictException("Reservation " + reservationId + " is already " + status + ".");
+        }
+        return reservation;
+    }
+
+    private ReservationResponseDTO toResponseDTO(StockReservation reservation) {
+        return new ReservationResponseDTO(reservation.getId(), reservation.getVariationId(), reservation.getQuantity(),
+                reservation.getStatus(), reservation.getExpiresAt());
+    }
+}
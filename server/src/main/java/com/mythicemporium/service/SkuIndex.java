@@ -0,0 +1,65 @@
+package com.mythicemporium.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mythicemporium.config.CatalogProperties;
+import com.mythicemporium.repository.ProductVariationRepository;
+import org.hibernate.exception.ConstraintViolationException;
+import org.postgresql.util.PSQLException;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.Optional;
+
+// Case-insensitive SKU to variation id map for lookups by SKU, backed by the unique index on
+// lower(sku) from schema.sql. Only SKUs that were found are cached. Renames and deletes do not
+// evict anything here: callers check that the variation they load still has the SKU and evict
+// it otherwise, so a stale entry costs one extra query rather than a wrong answer.
+@Component
+public class SkuIndex {
+
+    public static final String UNIQUE_INDEX = "uk_product_variation_sku_lower";
+
+    private ProductVariationRepository productVariationRepository;
+    private Cache<String, Long> variationIds;
+
+    public SkuIndex(ProductVariationRepository productVariationRepository, CatalogProperties catalogProperties) {
+        this.productVariationRepository = productVariationRepository;
+        this.variationIds = Caffeine.newBuilder()
+                .maximumSize(catalogProperties.getSkuCacheSize())
+                .build();
+    }
+
+    public Optional<Long> findVariationId(String sku) {
+        return Optional.ofNullable(variationIds.get(key(sku), key -> productVariationRepository.findIdByLowerSku(key).orElse(null)));
+    }
+
+    public void evict(String sku) {
+        variationIds.invalidate(key(sku));
+    }
+
+    // True if the write failed because a variation SKU is already taken, whether it went through
+    // Hibernate or straight through JDBC, where batch failures hang off the next-exception chain.
+    public static boolean isConflict(Throwable ex) {
+        for(Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if(cause instanceof ConstraintViolationException violation && UNIQUE_INDEX.equals(violation.getConstraintName())) {
+                return true;
+            }
+
+            if(cause instanceof SQLException sqlException) {
+                for(SQLException next = sqlException; next != null; next = next.getNextException()) {
+                    if(next instanceof PSQLException psqlException && psqlException.getServerErrorMessage() != null
+                            && UNIQUE_INDEX.equals(psqlException.getServerErrorMessage().getConstraint())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private String key(String sku) {
+        return sku.toLowerCase(Locale.ROOT);
+    }
+}
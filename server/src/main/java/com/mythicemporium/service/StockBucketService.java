@@ -0,0 +1,132 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.model.ProductVariation;
+import com.mythicemporium.model.StockBucket;
+import com.mythicemporium.repository.StockBucketRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Stock of sharded variations lives in stock_bucket rows. A purchase starts at a random bucket so
+// concurrent buyers lock different rows, moves on to the siblings when a bucket runs short, and
+// only as a last resort locks every bucket (in bucket order) to assemble the quantity.
+@Service
+@Transactional
+public class StockBucketService {
+
+    public static final int MAX_STOCK_SHARDS = 64;
+
+    private StockBucketRepository stockBucketRepository;
+
+    public StockBucketService(StockBucketRepository stockBucketRepository) {
+        this.stockBucketRepository = stockBucketRepository;
+    }
+
+    public boolean decrement(Long variationId, int shards, int quantity) {
+        int start = ThreadLocalRandom.current().nextInt(shards);
+        for(int i = 0; i < shards; i++) {
+            if(stockBucketRepository.decrementBucket(variationId, (start + i) % shards, quantity) > 0) {
+                return true;
+            }
+        }
+        return drain(variationId, quantity);
+    }
+
+    // Returned stock goes to a random bucket, for the same reason purchases start at one.
+    public void increment(Long variationId, int shards, int quantity) {
+        stockBucketRepository.incrementBucket(variationId, ThreadLocalRandom.current().nextInt(shards), quantity);
+    }
+
+    // Takes the quantity across several buckets when no single bucket holds enough of it.
+    public boolean drain(Long variationId, int quantity) {
+        List<StockBucket> buckets = stockBucketRepository.lockAllByVariationId(variationId);
+        if(sum(buckets) < quantity) {
+            return false;
+        }
+
+        take(buckets, quantity);
+        return true;
+    }
+
+    // Grants the quantities in the given order against the variation's total stock and takes the
+    // granted sum in one pass. Every bucket is locked in bucket order, so batches of the same
+    // variation queue up behind each other instead of locking buckets in opposite orders.
+    public boolean[] allocate(Long variationId, List<Integer> quantities) {
+        List<StockBucket> buckets = stockBucketRepository.lockAllByVariationId(variationId);
+        long available = sum(buckets);
+        long allocated = 0;
+
+        boolean[] granted = new boolean[quantities.size()];
+        for(int i = 0; i < quantities.size(); i++) {
+            int quantity = quantities.get(i);
+            if(quantity <= available - allocated) {
+                allocated += quantity;
+                granted[i] = true;
+            }
+        }
+
+        take(buckets, (int) allocated);
+        return granted;
+    }
+
+    // Locks every bucket of the variation and returns their total.
+    public int lockedStock(Long variationId) {
+        return sum(stockBucketRepository.lockAllByVariationId(variationId));
+    }
+
+    public void setStock(Long variationId, int stock) {
+        List<StockBucket> buckets = stockBucketRepository.lockAllByVariationId(variationId);
+        for(int i = 0; i < buckets.size(); i++) {
+            buckets.get(i).setStock(share(stock, buckets.size(), i));
+        }
+    }
+
+    // Moves the variation's stock between the stock column and a new set of buckets. The caller
+    // must hold the variation row lock and pass in the variation's current total stock.
+    public void reshard(ProductVariation variation, int stock, int shards) {
+        stockBucketRepository.deleteAllByVariationId(variation.getId());
+
+        if(shards <= 1) {
+            variation.setStock(stock);
+            variation.setStockShards(null);
+            return;
+        }
+
+        List<StockBucket> buckets = new ArrayList<>();
+        for(int i = 0; i < shards; i++) {
+            StockBucket bucket = new StockBucket();
+            bucket.setVariation(variation);
+            bucket.setBucket(i);
+            bucket.setStock(share(stock, shards, i));
+            buckets.add(bucket);
+        }
+        stockBucketRepository.saveAll(buckets);
+
+        variation.setStock(0);
+        variation.setStockShards(shards);
+    }
+
+    // Takes the quantity from the locked buckets, lowest bucket first.
+    private void take(List<StockBucket> buckets, int quantity) {
+        int remaining = quantity;
+        for(StockBucket bucket : buckets) {
+            if(remaining == 0) {
+                break;
+            }
+            int taken = Math.min(bucket.getStock(), remaining);
+            bucket.setStock(bucket.getStock() - taken);
+            remaining -= taken;
+        }
+    }
+
+    private int share(int stock, int shards, int bucket) {
+        return stock / shards + (bucket < stock % shards ? 1 : 0);
+    }
+
+    private int sum(List<StockBucket> buckets) {
+        return buckets.stream().mapToInt(StockBucket::getStock).sum();
+    }
+}
@@ -0,0 +1,40 @@
+-- Schema objects that hibernate.ddl-auto cannot express. Runs after Hibernate has updated the
+-- tables (spring.jpa.defer-datasource-initialization) on every startup, so it must stay idempotent.
+
+-- Full-text search over the pre-joined catalog rows. Name weighs most, then brand and category,
+-- then description.
+ALTER TABLE catalog_projection ADD COLUMN IF NOT EXISTS search_vector tsvector
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('english', coalesce(name, '')), 'A') ||
+        setweight(to_tsvector('english', coalesce(brand_name, '')), 'B') ||
+        setweight(to_tsvector('english', coalesce(category_name, '')), 'B') ||
+        setweight(to_tsvector('english', coalesce(description, '')), 'C')
+    ) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_catalog_projection_search_vector ON catalog_projection USING GIN (search_vector);
+
+-- In-stock filtering of product listings only ever looks at variations with stock left.
+CREATE INDEX IF NOT EXISTS idx_product_variation_in_stock ON product_variation (product_id, price) INCLUDE (stock) WHERE stock > 0;
+
+-- The reservation sweeper only ever looks for active holds past their expiry.
+CREATE INDEX IF NOT EXISTS idx_stock_reservation_active_expiry ON stock_reservation (expires_at) WHERE status = 'ACTIVE';
+
+-- Expired idempotency records are purged by expiry on a timer.
+CREATE INDEX IF NOT EXISTS idx_idempotency_record_expires_at ON idempotency_record (expires_at);
+
+-- SKUs are unique across the catalog, ignoring case. Duplicate SKUs are rejected by this index
+-- when the write flushes; existing duplicates have to be renamed before it can be created.
+CREATE UNIQUE INDEX IF NOT EXISTS uk_product_variation_sku_lower ON product_variation (lower(sku));
+
+-- Rows created before optimistic versioning start at version 0.
+UPDATE product SET version = 0 WHERE version IS NULL;
+UPDATE product_variation SET version = 0 WHERE version IS NULL;
+
+-- Catalog ids come from pooled sequences (50 ids per nextval) instead of identity columns. Each
+-- sequence is kept at or past the largest id in its table, so blocks handed out after this never
+-- reuse an id assigned by the identity column. Hibernate takes the block ending at nextval.
+SELECT setval('brand_seq', GREATEST((SELECT COALESCE(MAX(id), 1) FROM brand), (SELECT last_value FROM brand_seq)));
+SELECT setval('category_seq', GREATEST((SELECT COALESCE(MAX(id), 1) FROM category), (SELECT last_value FROM category_seq)));
+SELECT setval('product_seq', GREATEST((SELECT COALESCE(MAX(id), 1) FROM product), (SELECT last_value FROM product_seq)));
+SELECT setval('product_variation_seq', GREATEST((SELECT COALESCE(MAX(id), 1) FROM product_variation), (SELECT last_value FROM product_variation_seq)));
+SELECT setval('product_variation_attribute_seq', GREATEST((SELECT COALESCE(MAX(id), 1) FROM product_variation_attribute), (SELECT last_value FROM product_variation_attribute_seq)));
@@ -6,6 +6,7 @@ import com.mythicemporium.exception.ResourceConflictException;
 import com.mythicemporium.exception.ResourceNotFoundException;
 import com.mythicemporium.model.Brand;
 import com.mythicemporium.service.BrandService;
+import com.mythicemporium.service.CatalogRevision;
 import com.mythicemporium.service.Result;
 import com.mythicemporium.service.ResultType;
 import org.junit.jupiter.api.Test;
@@ -25,6 +26,8 @@ import java.util.concurrent.CompletableFuture;
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -40,6 +43,18 @@ class BrandControllerTest {
     @MockitoBean
     private BrandService service;
 
+    @Autowired
+    private CatalogRevision catalogRevision;
+
+    @Test
+    @WithMockUser
+    void getAllBrandsWithCurrentETagShouldReturnNotModified() throws Exception {
+        mockMvc.perform(get("/api/brands").header("If-None-Match", catalogRevision.etag()))
+                .andExpect(status().isNotModified());
+
+        verify(service, never()).findAll();
+    }
+
     @Test
     @WithMockUser
     void getAllBrandsShouldReturnBrandList() throws Exception {
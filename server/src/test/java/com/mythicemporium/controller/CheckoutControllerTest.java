@@ -0,0 +1,100 @@
+package com.mythicemporium.controller;
+
+import com.mythicemporium.dto.CheckoutLineDTO;
+import com.mythicemporium.dto.CheckoutRequestDTO;
+import com.mythicemporium.dto.CheckoutResultDTO;
+import com.mythicemporium.dto.CheckoutShortageDTO;
+import com.mythicemporium.service.CheckoutService;
+import com.mythicemporium.service.Result;
+import com.mythicemporium.service.ResultType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class CheckoutControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private CheckoutService service;
+
+    @Test
+    void checkoutWithoutAuthenticationShouldReturn401() throws Exception {
+        mockMvc.perform(post("/api/checkout")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(getRequestJson())
+                        .with(csrf()))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @WithMockUser
+    void checkoutWithStockShouldReturn200() throws Exception {
+        Result result = new Result();
+        result.setData(new CheckoutResultDTO(List.of(new CheckoutLineDTO(1L, 2), new CheckoutLineDTO(2L, 1)), List.of()));
+        when(service.checkout(any(CheckoutRequestDTO.class))).thenReturn(CompletableFuture.completedFuture(result));
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/checkout")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(getRequestJson())
+                        .with(csrf()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lines", hasSize(2)))
+                .andExpect(jsonPath("$.shortages", hasSize(0)));
+    }
+
+    @Test
+    @WithMockUser
+    void checkoutWithShortLinesShouldReturn409() throws Exception {
+        Result result = new Result();
+        result.addErrorMessage("Variation %d: requested %d, %d available.", ResultType.INVALID, 2L, 1, 0);
+        result.setData(new CheckoutResultDTO(List.of(), List.of(new CheckoutShortageDTO(2L, 1, 0))));
+        when(service.checkout(any(CheckoutRequestDTO.class))).thenReturn(CompletableFuture.completedFuture(result));
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/checkout")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(getRequestJson())
+                        .with(csrf()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.shortages[0].variationId", is(2)))
+                .andExpect(jsonPath("$.shortages[0].available", is(0)));
+    }
+
+    private String getRequestJson() {
+        return """
+                {
+                    "lines": [
+                        { "variationId": 1, "quantity": 2 },
+                        { "variationId": 2, "quantity": 1 }
+                    ]
+                }
+                """;
+    }
+}
@@ -1,12 +1,28 @@
 package com.mythicemporium.controller;
 
+import com.mythicemporium.dto.BulkDeleteResultDTO;
+import com.mythicemporium.dto.BulkUpdateResultDTO;
+import com.mythicemporium.dto.BulkUpdateRowDTO;
+import com.mythicemporium.dto.FacetSearchResultDTO;
+import com.mythicemporium.dto.ImportErrorDTO;
+import com.mythicemporium.dto.ImportResultDTO;
+import com.mythicemporium.dto.ProductPageDTO;
 import com.mythicemporium.dto.ProductRequestDTO;
 import com.mythicemporium.dto.ProductResponseDTO;
 import com.mythicemporium.dto.ProductVariationAttributeDTO;
 import com.mythicemporium.dto.ProductVariationRequestDTO;
+import com.mythicemporium.dto.ProductVariationResponseDTO;
+import com.mythicemporium.dto.SkuLookupDTO;
+import com.mythicemporium.exception.PreconditionFailedException;
+import com.mythicemporium.exception.ResourceNotFoundException;
 import com.mythicemporium.model.Brand;
 import com.mythicemporium.model.Category;
 import com.mythicemporium.model.Product;
+import com.mythicemporium.service.AttributeFacetService;
+import com.mythicemporium.service.BulkUpdateService;
+import com.mythicemporium.service.CatalogExportService;
+import com.mythicemporium.service.CatalogRevision;
+import com.mythicemporium.service.ProductImportService;
 import com.mythicemporium.service.Result;
 import com.mythicemporium.service.ProductService;
 import com.mythicemporium.service.ResultType;
@@ -20,12 +36,24 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -41,6 +69,21 @@ class ProductControllerTest {
     @MockitoBean
     private ProductService service;
 
+    @MockitoBean
+    private CatalogExportService exportService;
+
+    @MockitoBean
+    private AttributeFacetService facetService;
+
+    @MockitoBean
+    private BulkUpdateService bulkUpdateService;
+
+    @MockitoBean
+    private ProductImportService importService;
+
+    @Autowired
+    private CatalogRevision catalogRevision;
+
     @Test
     @WithMockUser
     void getAllProductsShouldReturnProductList() throws Exception {
@@ -48,20 +91,84 @@ class ProductControllerTest {
                 generateProductResponse(1L),
                 generateProductResponse(2L)
         );
-        when(service.findAll()).thenReturn(products);
+        when(service.findAll(null, 50)).thenReturn(new ProductPageDTO(products, null));
 
         mockMvc.perform(get("/api/products"))
                 .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Link"))
                 .andExpect(jsonPath("$", hasSize(2)))
                 .andExpect(jsonPath("$[0].id", is(1)))
                 .andExpect(jsonPath("$[1].id", is(2)));
     }
 
+    @Test
+    @WithMockUser
+    void getAllProductsWithMorePagesShouldReturnNextLink() throws Exception {
+        List<ProductResponseDTO> products = List.of(generateProductResponse(3L));
+        when(service.findAll("cursor", 1)).thenReturn(new ProductPageDTO(products, "next-cursor"));
+
+        mockMvc.perform(get("/api/products").param("after", "cursor").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Link", containsString("after=next-cursor")))
+                .andExpect(header().string("Link", containsString("rel=\"next\"")))
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    @Test
+    @WithMockUser
+    void getAllProductsShouldReturnETag() throws Exception {
+        when(service.findAll(null, 50)).thenReturn(new ProductPageDTO(List.of(generateProductResponse(1L)), null));
+
+        mockMvc.perform(get("/api/products"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", catalogRevision.etag()))
+                .andExpect(header().string("Cache-Control", containsString("no-cache")));
+    }
+
+    @Test
+    @WithMockUser
+    void getAllProductsWithCurrentETagShouldReturnNotModified() throws Exception {
+        mockMvc.perform(get("/api/products").header("If-None-Match", catalogRevision.etag()))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        verify(service, never()).findAll(anyString(), anyInt());
+        verify(service, never()).findAll(isNull(), anyInt());
+    }
+
+    @Test
+    @WithMockUser
+    void getAllProductsWithStaleETagShouldReturnProducts() throws Exception {
+        String staleETag = catalogRevision.etag();
+        catalogRevision.bump();
+        when(service.findAll(null, 50)).thenReturn(new ProductPageDTO(List.of(generateProductResponse(1L)), null));
+
+        mockMvc.perform(get("/api/products").header("If-None-Match", staleETag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    @Test
+    @WithMockUser
+    void getAllProductsWithFiltersShouldUseFilteredListing() throws Exception {
+        List<ProductResponseDTO> products = List.of(generateProductResponse(2L));
+        when(service.findFiltered(null, 50, 10.0, 20.0, true, "price")).thenReturn(new ProductPageDTO(products, null));
+
+        mockMvc.perform(get("/api/products")
+                        .param("minPrice", "10")
+                        .param("maxPrice", "20")
+                        .param("inStock", "true")
+                        .param("sort", "price"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(2)));
+    }
+
     @Test
     @WithMockUser
     void getAllProductsByBrandIdShouldReturnFilteredList() throws Exception {
         List<ProductResponseDTO> products = List.of(generateProductResponse(1L));
-        when(service.findAllByBrandId(1L)).thenReturn(products);
+        when(service.findAllByBrandId(1L, null, 50)).thenReturn(new ProductPageDTO(products, null));
 
         mockMvc.perform(get("/api/products/brand/1"))
                 .andExpect(status().isOk())
@@ -73,7 +180,7 @@ class ProductControllerTest {
     @WithMockUser
     void getAllProductsByCategoryIdShouldReturnFilteredList() throws Exception {
         List<ProductResponseDTO> products = List.of(generateProductResponse(1L));
-        when(service.findAllByCategoryId(1L)).thenReturn(products);
+        when(service.findAllByCategoryId(1L, null, 50)).thenReturn(new ProductPageDTO(products, null));
 
         mockMvc.perform(get("/api/products/category/1"))
                 .andExpect(status().isOk())
@@ -81,6 +188,87 @@ class ProductControllerTest {
                 .andExpect(jsonPath("$[0].id", is(1)));
     }
 
+    @Test
+    @WithMockUser
+    void searchProductsShouldReturnRankedPageWithNextLink() throws Exception {
+        List<ProductResponseDTO> products = List.of(generateProductResponse(4L));
+        when(service.searchProducts("dragon", 0, 1)).thenReturn(new ProductPageDTO(products, "1"));
+
+        mockMvc.perform(get("/api/products/search").param("q", "dragon").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Link", containsString("page=1")))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(4)));
+    }
+
+    @Test
+    @WithMockUser
+    void facetsShouldReturnMatchesAndCounts() throws Exception {
+        when(facetService.search(List.of("Color:Red", "Size:M"), null, 50))
+                .thenReturn(new FacetSearchResultDTO(1, List.of(10L), null, Map.of("Color", Map.of("Red", 1))));
+
+        mockMvc.perform(get("/api/products/facets").param("attribute", "Color:Red", "Size:M"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.matchCount", is(1)))
+                .andExpect(jsonPath("$.variationIds[0]", is(10)))
+                .andExpect(jsonPath("$.facets.Color.Red", is(1)));
+    }
+
+    @Test
+    @WithMockUser(roles = {"ADMIN"})
+    void exportProductsShouldStreamNdjson() throws Exception {
+        when(exportService.exportProducts(any(OutputStream.class))).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(0);
+            out.write("{\"id\":1}\n{\"id\":2}\n".getBytes(StandardCharsets.UTF_8));
+            return 2L;
+        });
+
+        mockMvc.perform(get("/api/products/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andExpect(content().string("{\"id\":1}\n{\"id\":2}\n"));
+    }
+
+    @Test
+    @WithMockUser(roles = {"DEMO", "GUEST", "USER"})
+    void exportProductsAsNonAdminShouldReturn403() throws Exception {
+        mockMvc.perform(get("/api/products/export"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @WithMockUser(roles = {"ADMIN"})
+    void importProductsFromCsvShouldReturnResult() throws Exception {
+        when(importService.importProducts(any(InputStream.class), eq(ProductImportService.Format.CSV)))
+                .thenReturn(new ImportResultDTO(1, 1, 50.0, List.of(new ImportErrorDTO(3, "Product brand 9 not found."))));
+
+        mockMvc.perform(post("/api/products/import")
+                        .contentType("text/csv")
+                        .content("name,description,brandId,categoryId,sku,price,stock,imageUrl,attributes\n")
+                        .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported", is(1)))
+                .andExpect(jsonPath("$.errors[0].line", is(3)));
+    }
+
+    @Test
+    @WithMockUser(roles = {"DEMO", "GUEST", "USER"})
+    void importProductsAsNonAdminShouldReturn403() throws Exception {
+        mockMvc.perform(post("/api/products/import")
+                        .contentType("application/x-ndjson")
+                        .content("{}\n")
+                        .with(csrf()))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void streamShouldOpenEventStreamWithoutAuthentication() throws Exception {
+        mockMvc.perform(get("/api/products/stream").header("Last-Event-ID", "not-an-id"))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM));
+    }
+
     @Test
     @WithMockUser(roles = {"DEMO", "GUEST", "USER"})
     void createProductAsNonAdminShouldReturn403() throws Exception {
@@ -367,6 +555,84 @@ class ProductControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    @WithMockUser(roles = {"ADMIN"})
+    void updateVariationStockBulkShouldReturnRowResults() throws Exception {
+        when(bulkUpdateService.updateStock(any())).thenReturn(new BulkUpdateResultDTO(1, List.of(
+                new BulkUpdateRowDTO(1L, BulkUpdateRowDTO.Status.UPDATED, null),
+                new BulkUpdateRowDTO(2L, BulkUpdateRowDTO.Status.NOT_FOUND, "Variation 2 not found."))));
+
+        mockMvc.perform(patch("/api/products/variations/stock")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{ \"variationId\": 1, \"stock\": 5 }, { \"variationId\": 2, \"stock\": 6 }]")
+                        .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated", is(1)))
+                .andExpect(jsonPath("$.rows[0].status", is("UPDATED")))
+                .andExpect(jsonPath("$.rows[0].message").doesNotExist())
+                .andExpect(jsonPath("$.rows[1].status", is("NOT_FOUND")));
+    }
+
+    @Test
+    @WithMockUser(roles = {"DEMO", "GUEST", "USER"})
+    void updateVariationPriceBulkAsNonAdminShouldReturn403() throws Exception {
+        mockMvc.perform(patch("/api/products/variations/price")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{ \"variationId\": 1, \"price\": 5.0 }]")
+                        .with(csrf()))
+                .andExpect(status().isForbidden());
+
+        verify(bulkUpdateService, never()).updatePrices(any());
+    }
+
+    @Test
+    void getVariationBySkuShouldReturnVariationWithProductId() throws Exception {
+        ProductVariationResponseDTO variation = new ProductVariationResponseDTO();
+        variation.setId(7L);
+        variation.setSku("CLOAK-M");
+        when(service.findVariationBySku("cloak-m")).thenReturn(new SkuLookupDTO(3L, variation));
+
+        mockMvc.perform(get("/api/products/variations/by-sku/cloak-m"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.productId", is(3)))
+                .andExpect(jsonPath("$.variation.id", is(7)))
+                .andExpect(jsonPath("$.variation.sku", is("CLOAK-M")));
+    }
+
+    @Test
+    void getVariationByUnknownSkuShouldReturn404() throws Exception {
+        when(service.findVariationBySku("NOPE")).thenThrow(new ResourceNotFoundException("Variation SKU NOPE not found."));
+
+        mockMvc.perform(get("/api/products/variations/by-sku/NOPE"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void deleteProductsBulkAsAdminShouldReturnResult() throws Exception {
+        when(bulkUpdateService.deleteProducts(List.of(1L, 2L))).thenReturn(new BulkDeleteResultDTO(1, List.of(2L), List.of()));
+
+        mockMvc.perform(delete("/api/products")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[1, 2]")
+                        .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted", is(1)))
+                .andExpect(jsonPath("$.notFound[0]", is(2)));
+    }
+
+    @Test
+    @WithMockUser(roles = {"DEMO", "GUEST", "USER"})
+    void deleteProductsBulkAsNonAdminShouldReturn403() throws Exception {
+        mockMvc.perform(delete("/api/products")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[1, 2]")
+                        .with(csrf()))
+                .andExpect(status().isForbidden());
+
+        verify(bulkUpdateService, never()).deleteProducts(any());
+    }
+
     @Test
     @WithMockUser(roles = {"DEMO", "GUEST", "USER"})
     void deleteVariationAsNonAdminShouldReturn403() throws Exception {
@@ -398,6 +664,84 @@ class ProductControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    @WithMockUser
+    void purchaseWithRepeatedIdempotencyKeyShouldPurchaseOnce() throws Exception {
+        when(service.purchaseProduct(7L, 2)).thenReturn(true);
+        String idempotencyKey = UUID.randomUUID().toString();
+
+        for(int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/api/products/variations/7/purchase")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{ \"quantity\": 2 }")
+                            .header("Idempotency-Key", idempotencyKey)
+                            .with(csrf()))
+                    .andExpect(status().isOk())
+                    .andExpect(content().string("Purchased 2 of variation 7."));
+        }
+
+        verify(service, times(1)).purchaseProduct(7L, 2);
+    }
+
+    @Test
+    void purchaseWithoutAuthenticationShouldReturn401() throws Exception {
+        mockMvc.perform(post("/api/products/variations/7/purchase")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{ \"quantity\": 2 }")
+                        .with(csrf()))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @WithMockUser(roles = {"ADMIN"})
+    void updateProductWithIfMatchShouldReturnNewETag() throws Exception {
+        ProductResponseDTO updated = generateProductResponse(1L);
+        updated.setVersion(4L);
+        Result result = new Result();
+        result.setData(updated);
+        when(service.updateProduct(eq(1L), any(ProductRequestDTO.class), eq(3L))).thenReturn(CompletableFuture.completedFuture(result));
+
+        MvcResult mvcResult = mockMvc.perform(put("/api/products/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(getRequestJson())
+                        .header("If-Match", "\"3\"")
+                        .with(csrf()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""))
+                .andExpect(jsonPath("$.version", is(4)));
+    }
+
+    @Test
+    @WithMockUser(roles = {"ADMIN"})
+    void updateProductAtStaleVersionShouldReturn412() throws Exception {
+        when(service.updateProduct(eq(1L), any(ProductRequestDTO.class), eq(3L)))
+                .thenThrow(new PreconditionFailedException("Product 1 is at version 4, not 3."));
+
+        mockMvc.perform(put("/api/products/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(getRequestJson())
+                        .header("If-Match", "\"3\"")
+                        .with(csrf()))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    @WithMockUser(roles = {"ADMIN"})
+    void updateProductWithMalformedIfMatchShouldReturn400() throws Exception {
+        mockMvc.perform(put("/api/products/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(getRequestJson())
+                        .header("If-Match", "3")
+                        .with(csrf()))
+                .andExpect(status().isBadRequest());
+
+        verify(service, never()).updateProduct(any(Long.class), any(ProductRequestDTO.class));
+    }
+
     // Helper methods
 
     private String getRequestJson() {
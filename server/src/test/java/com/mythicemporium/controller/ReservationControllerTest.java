@@ -0,0 +1,92 @@
+package com.mythicemporium.controller;
+
+import com.mythicemporium.dto.ReservationResponseDTO;
+import com.mythicemporium.exception.ResourceConflictException;
+import com.mythicemporium.model.StockReservation;
+import com.mythicemporium.service.ReservationService;
+import com.mythicemporium.service.Result;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ReservationControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private ReservationService service;
+
+    @Test
+    void reserveWithoutAuthenticationShouldReturn401() throws Exception {
+        mockMvc.perform(post("/api/products/variations/1/reservations")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{ \"quantity\": 2 }")
+                        .with(csrf()))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @WithMockUser(username = "buyer")
+    void reserveShouldReturn201() throws Exception {
+        Result result = new Result();
+        result.setData(new ReservationResponseDTO(5L, 1L, 2, StockReservation.Status.ACTIVE, Instant.parse("2026-01-01T12:10:00Z")));
+        when(service.reserve(1L, 2, "buyer")).thenReturn(CompletableFuture.completedFuture(result));
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/products/variations/1/reservations")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{ \"quantity\": 2 }")
+                        .with(csrf()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id", is(5)))
+                .andExpect(jsonPath("$.status", is("ACTIVE")));
+    }
+
+    @Test
+    @WithMockUser(username = "buyer")
+    void confirmShouldReturn200() throws Exception {
+        Result result = new Result();
+        result.setData(new ReservationResponseDTO(5L, 1L, 2, StockReservation.Status.CONFIRMED, Instant.parse("2026-01-01T12:10:00Z")));
+        when(service.confirm(5L, "buyer")).thenReturn(CompletableFuture.completedFuture(result));
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/products/variations/reservations/5/confirm")
+                        .with(csrf()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("CONFIRMED")));
+    }
+
+    @Test
+    @WithMockUser(username = "buyer")
+    void releaseOfSettledReservationShouldReturn409() throws Exception {
+        when(service.release(5L, "buyer")).thenThrow(new ResourceConflictException("Reservation 5 is already confirmed."));
+
+        mockMvc.perform(post("/api/products/variations/reservations/5/release")
+                        .with(csrf()))
+                .andExpect(status().isConflict());
+    }
+}
@@ -0,0 +1,81 @@
+package com.mythicemporium.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Latency of filtered product listings over 100k products with 1M variations.
+// Excluded from the default build; run with: mvn test -Pbenchmark
+@Tag("benchmark")
+class CatalogFilterBenchmarkTest extends BaseRepositoryTest {
+    private static final int PRODUCTS = 100_000;
+    private static final int VARIATIONS_PER_PRODUCT = 10;
+    private static final int ITERATIONS = 50;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CatalogProjectionRepository projectionRepository;
+
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.execute("INSERT INTO brand (id, name) SELECT nextval('brand_seq'), 'Brand ' || g FROM generate_series(1, 50) g");
+        jdbcTemplate.execute("INSERT INTO category (id, name) SELECT nextval('category_seq'), 'Category ' || g FROM generate_series(1, 20) g");
+        jdbcTemplate.execute("INSERT INTO product (id, name, description, brand_id, category_id) " +
+                "SELECT nextval('product_seq'), 'Product ' || g, 'Description ' || g, " +
+                "(SELECT array_agg(id ORDER BY id) FROM brand)[1 + g % 50], (SELECT array_agg(id ORDER BY id) FROM category)[1 + g % 20] " +
+                "FROM generate_series(1, " + PRODUCTS + ") g");
+        jdbcTemplate.execute("INSERT INTO product_variation (id, sku, price, stock, product_id) " +
+                "SELECT nextval('product_variation_seq'), 'SKU-' || p.id || '-' || g, round((random() * 500)::numeric, 2), " +
+                "CASE WHEN random() < 0.3 THEN 0 ELSE (random() * 100)::int END, p.id " +
+                "FROM product p CROSS JOIN generate_series(1, " + VARIATIONS_PER_PRODUCT + ") g");
+        jdbcTemplate.execute("INSERT INTO catalog_projection (product_id, name, description, brand_id, brand_name, category_id, category_name, variations) " +
+                "SELECT p.id, p.name, p.description, b.id, b.name, c.id, c.name, '[]' " +
+                "FROM product p JOIN brand b ON b.id = p.brand_id JOIN category c ON c.id = p.category_id");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_product_variation_in_stock ON product_variation (product_id, price) INCLUDE (stock) WHERE stock > 0");
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @Test
+    void filteredListingLatency() {
+        report("price 100-150, in stock, by price", () ->
+                projectionRepository.findFilteredPage(new ProductFilter(100.0, 150.0, true, ProductSort.PRICE, null, null), 50));
+        report("price <= 20, by name", () ->
+                projectionRepository.findFilteredPage(new ProductFilter(null, 20.0, false, ProductSort.NAME, null, null), 50));
+        report("in stock, by id", () ->
+                projectionRepository.findFilteredPage(new ProductFilter(null, null, true, ProductSort.ID, null, null), 50));
+        report("in stock, by id, deep keyset page", () ->
+                projectionRepository.findFilteredPage(new ProductFilter(null, null, true, ProductSort.ID, 90_000L, 90_000L), 50));
+        report("by stock", () ->
+                projectionRepository.findFilteredPage(new ProductFilter(null, null, false, ProductSort.STOCK, null, null), 50));
+    }
+
+    private void report(String name, Supplier<List<CatalogProjectionRepositoryCustom.SortedRow>> query) {
+        for(int i = 0; i < 5; i++) {
+            assertFalse(query.get().isEmpty());
+            entityManager.clear();
+        }
+
+        List<Long> micros = new ArrayList<>();
+        for(int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            query.get();
+            micros.add((System.nanoTime() - start) / 1_000);
+            entityManager.clear();
+        }
+        Collections.sort(micros);
+
+        System.out.printf("%-40s p50=%6.2fms p95=%6.2fms max=%6.2fms%n", name,
+                micros.get(ITERATIONS / 2) / 1000.0, micros.get(ITERATIONS * 95 / 100) / 1000.0, micros.get(ITERATIONS - 1) / 1000.0);
+    }
+}
@@ -0,0 +1,133 @@
+package com.mythicemporium.repository;
+
+import com.mythicemporium.dto.ProductVariationResponseDTO;
+import com.mythicemporium.event.CatalogChangedEvent;
+import com.mythicemporium.model.CatalogProjection;
+import com.mythicemporium.service.CatalogProjectionService;
+import com.mythicemporium.service.CatalogRevision;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Two transactions editing different variations of one product, each refreshing the product's
+// projection row before it commits. Runs outside the test transaction so both can commit.
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CatalogProjectionConcurrencyTest extends BaseRepositoryTest {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CatalogProjectionRepository projectionRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductVariationRepository productVariationRepository;
+
+    @Autowired
+    private BrandRepository brandRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private CatalogProjectionService service;
+    private Long productId;
+    private Long[] variationIds;
+
+    @BeforeEach
+    void seed() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        service = new CatalogProjectionService(projectionRepository, productRepository, productVariationRepository,
+                brandRepository, categoryRepository, new CatalogRevision(), transactionManager);
+
+        truncate();
+        jdbcTemplate.execute("INSERT INTO brand (id, name) VALUES (nextval('brand_seq'), 'Test Brand')");
+        jdbcTemplate.execute("INSERT INTO category (id, name) VALUES (nextval('category_seq'), 'Test Category')");
+        productId = jdbcTemplate.queryForObject("INSERT INTO product (id, name, description, brand_id, category_id, version) " +
+                "SELECT nextval('product_seq'), 'Test Product', 'Test Description', (SELECT min(id) FROM brand), (SELECT min(id) FROM category), 0 " +
+                "RETURNING id", Long.class);
+        jdbcTemplate.execute("INSERT INTO product_variation (id, sku, price, stock, product_id, version) " +
+                "SELECT nextval('product_variation_seq'), 'SKU-' || g, 10, 5, " + productId + ", 0 FROM generate_series(1, 2) g");
+        variationIds = jdbcTemplate.queryForList("SELECT id FROM product_variation ORDER BY id", Long.class).toArray(new Long[0]);
+        service.rebuildAll();
+    }
+
+    @AfterEach
+    void truncate() {
+        jdbcTemplate.execute("TRUNCATE catalog_projection, product_variation, product, brand, category RESTART IDENTITY CASCADE");
+    }
+
+    @Test
+    void shouldKeepBothConcurrentVariationEditsInProjection() throws Exception {
+        CountDownLatch firstRefreshed = new CountDownLatch(1);
+        CountDownLatch secondStarted = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        Future<?> first = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+            productVariationRepository.updatePriceById(variationIds[0], 20.0);
+            service.applyChange(CatalogChangedEvent.variationChanged(variationIds[0]));
+            firstRefreshed.countDown();
+            await(secondStarted);
+            // Gives the second edit time to read the product before this one commits.
+            sleep(500);
+        }));
+        Future<?> second = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+            await(firstRefreshed);
+            productVariationRepository.updatePriceById(variationIds[1], 30.0);
+            secondStarted.countDown();
+            service.applyChange(CatalogChangedEvent.variationChanged(variationIds[1]));
+        }));
+
+        first.get(30, TimeUnit.SECONDS);
+        second.get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        CatalogProjection projection = projectionRepository.findById(productId).orElseThrow();
+        Map<Long, Double> prices = projection.getVariations().stream()
+                .collect(Collectors.toMap(ProductVariationResponseDTO::getId, ProductVariationResponseDTO::getPrice));
+        assertEquals(Map.of(variationIds[0], 20.0, variationIds[1], 30.0), prices);
+        assertEquals(List.of(), projectionRepository.findStaleProductIds());
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        }
+        catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.mythicemporium.repository;
+
+import com.mythicemporium.dto.ProductVariationAttributeDTO;
+import com.mythicemporium.dto.ProductVariationResponseDTO;
+import com.mythicemporium.model.Brand;
+import com.mythicemporium.model.CatalogProjection;
+import com.mythicemporium.model.Category;
+import com.mythicemporium.model.Product;
+import com.mythicemporium.model.ProductVariation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogProjectionRepositoryTest extends BaseRepositoryTest {
+    @Autowired
+    private CatalogProjectionRepository projectionRepository;
+
+    private Brand testBrand;
+    private Category testCategory;
+
+    @BeforeEach
+    void setUp() {
+        testBrand = createTestBrand("Test Brand");
+        testCategory = createTestCategory("Test Category");
+    }
+
+    @Test
+    void shouldRoundTripVariationsAsJson() {
+        Product product = createTestProduct("Test Product", "Test Description", testBrand, testCategory);
+        projectionRepository.saveAndFlush(generateProjection(product));
+        entityManager.clear();
+
+        CatalogProjection found = projectionRepository.findById(product.getId()).orElseThrow();
+
+        assertEquals("Test Brand", found.getBrandName());
+        assertEquals(1, found.getVariations().size());
+        assertEquals("SKU-1", found.getVariations().get(0).getSku());
+        assertEquals("Red", found.getVariations().get(0).getAttributes().get(0).getAttributeValue());
+    }
+
+    @Test
+    void shouldReturnPagesAndRenameBrand() {
+        Brand testBrand2 = createTestBrand("Test Brand 2");
+        Product product1 = createTestProduct("Test Product 1", "Test Description", testBrand, testCategory);
+        Product product2 = createTestProduct("Test Product 2", "Test Description", testBrand2, testCategory);
+        Product product3 = createTestProduct("Test Product 3", "Test Description", testBrand, testCategory);
+        projectionRepository.saveAllAndFlush(List.of(generateProjection(product1), generateProjection(product2), generateProjection(product3)));
+
+        List<CatalogProjection> page = projectionRepository.findPage(product1.getId(), Limit.of(5));
+        List<CatalogProjection> brandPage = projectionRepository.findPageByBrandId(testBrand.getId(), 0L, Limit.of(5));
+        int renamed = projectionRepository.updateBrandName(testBrand.getId(), "Renamed Brand");
+        entityManager.clear();
+
+        assertEquals(List.of(product2.getId(), product3.getId()), page.stream().map(CatalogProjection::getProductId).toList());
+        assertEquals(List.of(product1.getId(), product3.getId()), brandPage.stream().map(CatalogProjection::getProductId).toList());
+        assertEquals(2, renamed);
+        assertEquals("Renamed Brand", projectionRepository.findById(product3.getId()).orElseThrow().getBrandName());
+        assertEquals("Test Brand 2", projectionRepository.findById(product2.getId()).orElseThrow().getBrandName());
+    }
+
+    @Test
+    void shouldSearchAcrossNameBrandAndCategoryRankedByRelevance() {
+        Brand dragonBrand = createTestBrand("Dragonforge");
+        Product descriptionMatch = createTestProduct("Iron Shield", "Decorated with a dragon crest", testBrand, testCategory);
+        Product nameMatch = createTestProduct("Dragon Scale Shield", "A sturdy shield", testBrand, testCategory);
+        Product brandMatch = createTestProduct("Forge Hammer", "Heavy hammer", dragonBrand, testCategory);
+        createTestProduct("Elven Bow", "Light bow", testBrand, testCategory);
+        projectionRepository.saveAllAndFlush(List.of(generateProjection(nameMatch), generateProjection(descriptionMatch),
+                generateProjection(brandMatch)));
+        entityManager.clear();
+
+        List<CatalogProjection> results = projectionRepository.search("dragon", 0, 10);
+        List<CatalogProjection> secondPage = projectionRepository.search("dragon", 1, 10);
+        List<CatalogProjection> none = projectionRepository.search("bow", 0, 10);
+
+        assertEquals(List.of(nameMatch.getId(), descriptionMatch.getId()), results.stream().map(CatalogProjection::getProductId).toList());
+        assertEquals(List.of(descriptionMatch.getId()), secondPage.stream().map(CatalogProjection::getProductId).toList());
+        assertTrue(none.isEmpty());
+        assertEquals(brandMatch.getId(), projectionRepository.search("dragonforge", 0, 10).get(0).getProductId());
+    }
+
+    @Test
+    void shouldFilterByPriceAndStockAndSortWithKeyset() {
+        Product cheap = createTestProduct("Cheap Dagger", "Test Description", testBrand, testCategory);
+        Product pricey = createTestProduct("Ancient Blade", "Test Description", testBrand, testCategory);
+        Product soldOut = createTestProduct("Sold Out Bow", "Test Description", testBrand, testCategory);
+        addVariation(cheap, "SKU-C1", 5.0, 3);
+        addVariation(cheap, "SKU-C2", 50.0, 0);
+        addVariation(pricey, "SKU-P1", 40.0, 1);
+        addVariation(soldOut, "SKU-S1", 10.0, 0);
+        projectionRepository.saveAllAndFlush(List.of(generateProjection(cheap), generateProjection(pricey), generateProjection(soldOut)));
+        entityManager.clear();
+
+        List<CatalogProjectionRepositoryCustom.SortedRow> byPrice = projectionRepository.findFilteredPage(
+                new ProductFilter(1.0, 100.0, true, ProductSort.PRICE, null, null), 10);
+        List<CatalogProjectionRepositoryCustom.SortedRow> byName = projectionRepository.findFilteredPage(
+                new ProductFilter(null, null, false, ProductSort.NAME, null, null), 10);
+        List<CatalogProjectionRepositoryCustom.SortedRow> afterFirst = projectionRepository.findFilteredPage(
+                new ProductFilter(1.0, 100.0, true, ProductSort.PRICE, byPrice.get(0).getSortKey(), cheap.getId()), 10);
+        List<CatalogProjectionRepositoryCustom.SortedRow> aboveThirty = projectionRepository.findFilteredPage(
+                new ProductFilter(30.0, null, false, ProductSort.ID, null, null), 10);
+
+        assertEquals(List.of(cheap.getId(), pricey.getId()), productIds(byPrice));
+        assertEquals(5.0, byPrice.get(0).getSortKey());
+        assertEquals(List.of(pricey.getId(), cheap.getId(), soldOut.getId()), productIds(byName));
+        assertEquals(List.of(pricey.getId()), productIds(afterFirst));
+        assertEquals(List.of(cheap.getId(), pricey.getId()), productIds(aboveThirty));
+    }
+
+    private List<Long> productIds(List<CatalogProjectionRepositoryCustom.SortedRow> rows) {
+        return rows.stream().map(row -> row.getProjection().getProductId()).toList();
+    }
+
+    private void addVariation(Product product, String sku, Double price, Integer stock) {
+        ProductVariation variation = createTestVariation(sku, price, stock, "img");
+        variation.setProduct(product);
+        entityManager.persistAndFlush(variation);
+    }
+
+    private CatalogProjection generateProjection(Product product) {
+        ProductVariationAttributeDTO attribute = new ProductVariationAttributeDTO();
+        attribute.setAttributeName("Color");
+        attribute.setAttributeValue("Red");
+
+        ProductVariationResponseDTO variation = new ProductVariationResponseDTO();
+        variation.setId(1L);
+        variation.setSku("SKU-1");
+        variation.setPrice(1.99);
+        variation.setStock(4);
+        variation.setAttributes(List.of(attribute));
+
+        CatalogProjection projection = new CatalogProjection();
+        projection.setProductId(product.getId());
+        projection.setName(product.getName());
+        projection.setDescription(product.getDescription());
+        projection.setBrandId(product.getBrand().getId());
+        projection.setBrandName(product.getBrand().getName());
+        projection.setCategoryId(product.getCategory().getId());
+        projection.setCategoryName(product.getCategory().getName());
+        projection.setVariations(List.of(variation));
+        return projection;
+    }
+}
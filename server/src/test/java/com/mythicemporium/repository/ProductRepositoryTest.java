@@ -1,14 +1,34 @@
 package com.mythicemporium.repository;
 
+import com.mythicemporium.dto.CatalogRowDTO;
 import com.mythicemporium.model.Brand;
 import com.mythicemporium.model.Category;
 import com.mythicemporium.model.Product;
+import com.mythicemporium.model.ProductVariation;
+import com.mythicemporium.model.ProductVariationAttribute;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
 
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -19,6 +39,9 @@ class ProductRepositoryTest extends BaseRepositoryTest {
     @Autowired
     private ProductVariationRepository productVariationRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     private Brand testBrand;
     private Category testCategory;
 
@@ -43,6 +66,126 @@ class ProductRepositoryTest extends BaseRepositoryTest {
         assertEquals("Test Category", found.get().getCategory().getName());
     }
 
+    @Test
+    void shouldInsertProductsWithVariationsAndAttributesInBatches() {
+        List<Product> products = new ArrayList<>();
+        for(int i = 0; i < 3; i++) {
+            Product product = new Product();
+            product.setName("Imported " + i);
+            product.setDescription("Imported");
+            product.setBrand(testBrand);
+            product.setCategory(testCategory);
+            ProductVariation variation = createTestVariation("IMP-" + i, 1.99, i, "img");
+            variation.setProduct(product);
+            ProductVariationAttribute size = createTestAttribute("Size", "M");
+            size.setVariation(variation);
+            variation.getAttributes().add(size);
+            product.getVariations().add(variation);
+            products.add(product);
+        }
+
+        productRepository.insertAll(products);
+        entityManager.clear();
+
+        assertTrue(products.stream().allMatch(product -> product.getId() != null));
+        Product found = productRepository.findById(products.get(2).getId()).orElseThrow();
+        assertEquals("Imported 2", found.getName());
+        assertEquals(0L, found.getVersion());
+        assertEquals("Test Brand", found.getBrand().getName());
+        assertEquals(1, found.getVariations().size());
+        assertEquals(2, found.getVariations().get(0).getStock());
+        assertEquals("M", found.getVariations().get(0).getAttributes().get(0).getAttributeValue());
+
+        Long[] productIds = products.stream().map(Product::getId).toArray(Long[]::new);
+        assertEquals(3, count("SELECT count(*) FROM product_aud WHERE revtype = 0 AND name LIKE 'Imported %' AND id = ANY(CAST(? AS bigint[]))", (Object) productIds));
+        assertEquals(3, count("SELECT count(*) FROM product_variation_aud a JOIN product_variation v ON v.id = a.id " +
+                "WHERE a.revtype = 0 AND a.sku = v.sku AND v.product_id = ANY(CAST(? AS bigint[]))", (Object) productIds));
+        assertEquals(3, count("SELECT count(*) FROM product_variation_attribute_aud a JOIN product_variation v ON v.id = a.variation_id " +
+                "WHERE a.revtype = 0 AND v.product_id = ANY(CAST(? AS bigint[]))", (Object) productIds));
+        assertEquals(1, count("SELECT count(DISTINCT rev) FROM product_aud WHERE id = ANY(CAST(? AS bigint[]))", (Object) productIds));
+
+        Product saved = productRepository.saveAndFlush(createTestProduct("After Import", "Test Description", testBrand, testCategory));
+        assertTrue(products.stream().noneMatch(product -> product.getId().equals(saved.getId())));
+    }
+
+    @Test
+    void shouldBatchCreateProductCascadeInsertsPerTable() {
+        Product product = new Product();
+        product.setName("Batched Product");
+        product.setDescription("Test Description");
+        product.setBrand(testBrand);
+        product.setCategory(testCategory);
+        for(int i = 0; i < 20; i++) {
+            product.getVariations().add(variationWithAttributes(product, "BATCH-" + i, 5));
+        }
+
+        Statistics statistics = getStatistics();
+        statistics.clear();
+        productRepository.saveAndFlush(product);
+
+        // 121 rows; one insert batch per table plus at most one id block per sequence.
+        assertTrue(statistics.getPrepareStatementCount() <= 6);
+    }
+
+    @Test
+    void shouldBatchCreateVariationCascadeInsertsPerTable() {
+        Product product = createTestProduct("Test Product", "Test Description", testBrand, testCategory);
+
+        Statistics statistics = getStatistics();
+        statistics.clear();
+        ProductVariation variation = variationWithAttributes(product, "BATCH-VARIATION", 5);
+        productVariationRepository.saveAndFlush(variation);
+
+        // 6 rows; one insert for the variation, one batch for its attributes plus at most one id block per sequence.
+        assertTrue(statistics.getPrepareStatementCount() <= 4);
+    }
+
+    @Test
+    void shouldDeleteProductsWithSetBasedStatementsAndAuditThem() {
+        Brand testBrand2 = createTestBrand("Test Brand 2");
+        Brand testBrand3 = createTestBrand("Test Brand 3");
+        seedProducts(3, testBrand);
+        seedProducts(1, testBrand2);
+        seedProducts(1, testBrand3);
+        List<Long> doomed = productRepository.findAllByBrandId(testBrand.getId()).stream().map(Product::getId).sorted().toList();
+        Long kept = productRepository.findAllByBrandId(testBrand2.getId()).get(0).getId();
+        Long single = productRepository.findAllByBrandId(testBrand3.getId()).get(0).getId();
+        entityManager.clear();
+
+        List<Long> requested = new ArrayList<>(doomed);
+        requested.add(-99L);
+        Map<Long, List<Long>> deleted = new LinkedHashMap<>();
+        long statements = countStatements(() -> deleted.putAll(productRepository.deleteAllByIdIn(requested)));
+
+        assertEquals(doomed, new ArrayList<>(deleted.keySet()));
+        assertTrue(deleted.values().stream().allMatch(variationIds -> variationIds.size() == 2));
+        assertEquals(0, count("SELECT count(*) FROM product WHERE brand_id = ?", testBrand.getId()));
+        assertEquals(0, count("SELECT count(*) FROM product_variation v JOIN product p ON p.id = v.product_id WHERE p.brand_id = ?", testBrand.getId()));
+        assertEquals(4, count("SELECT count(*) FROM product_variation_attribute a JOIN product_variation v ON v.id = a.variation_id WHERE v.product_id = ?", kept));
+        assertEquals(3, count("SELECT count(*) FROM product_aud WHERE revtype = 2"));
+        assertEquals(6, count("SELECT count(*) FROM product_variation_aud WHERE revtype = 2"));
+        assertEquals(12, count("SELECT count(*) FROM product_variation_attribute_aud WHERE revtype = 2"));
+        assertEquals(1, count("SELECT count(DISTINCT rev) FROM product_aud WHERE revtype = 2"));
+        // The revision's sequence value and row, then one statement per table, however many products go.
+        assertTrue(statements <= 5);
+        assertEquals(statements, countStatements(() -> productRepository.deleteAllByIdIn(List.of(single))));
+    }
+
+    @Test
+    void shouldDeleteVariationsWithTheirAttributes() {
+        seedProducts(1, testBrand);
+        Long productId = productRepository.findAllByBrandId(testBrand.getId()).get(0).getId();
+        Long variationId = count("SELECT min(id) FROM product_variation WHERE product_id = ?", productId);
+        entityManager.clear();
+
+        Map<Long, Long> deleted = productRepository.deleteVariationsByIdIn(List.of(variationId, -99L));
+
+        assertEquals(Map.of(variationId, productId), deleted);
+        assertEquals(1, count("SELECT count(*) FROM product_variation WHERE product_id = ?", productId));
+        assertEquals(0, count("SELECT count(*) FROM product_variation_attribute WHERE variation_id = ?", variationId));
+        assertEquals(2, count("SELECT count(*) FROM product_variation_attribute_aud WHERE revtype = 2"));
+    }
+
     @Test
     void shouldReturnAllByBrand() {
         Brand testBrand2 = createTestBrand("Test Brand 2");
@@ -84,4 +227,178 @@ class ProductRepositoryTest extends BaseRepositoryTest {
         assertEquals(2, testCategoryProducts.size());
         assertEquals(1, testCategory2Products.size());
     }
+
+    @Test
+    void shouldLoadCatalogInConstantNumberOfQueries() {
+        seedProducts(3, testBrand);
+        assertEquals(2, loadCatalogAndCountQueries());
+
+        seedProducts(20, testBrand);
+        assertEquals(2, loadCatalogAndCountQueries());
+    }
+
+    @Test
+    void shouldLoadBrandCatalogInConstantNumberOfQueries() {
+        Brand testBrand2 = createTestBrand("Test Brand 2");
+        seedProducts(5, testBrand);
+        seedProducts(15, testBrand2);
+
+        entityManager.clear();
+        Statistics statistics = getStatistics();
+        statistics.clear();
+
+        List<Product> products = productRepository.findAllWithVariationsByBrandId(testBrand2.getId());
+        productVariationRepository.findAllWithAttributesByBrandId(testBrand2.getId());
+        touchCatalog(products);
+
+        assertEquals(15, products.size());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void shouldReturnPageIdsAfterCursor() {
+        Brand testBrand2 = createTestBrand("Test Brand 2");
+
+        Product product1 = createTestProduct("Test Product 1", "Test Description", testBrand, testCategory);
+        Product product2 = createTestProduct("Test Product 2", "Test Description", testBrand2, testCategory);
+        Product product3 = createTestProduct("Test Product 3", "Test Description", testBrand, testCategory);
+        Product product4 = createTestProduct("Test Product 4", "Test Description", testBrand, testCategory);
+
+        List<Long> firstPage = productRepository.findPageIds(0L, Limit.of(2));
+        List<Long> secondPage = productRepository.findPageIds(firstPage.get(1), Limit.of(2));
+        List<Long> brandPage = productRepository.findPageIdsByBrandId(testBrand.getId(), product1.getId(), Limit.of(10));
+
+        assertEquals(List.of(product1.getId(), product2.getId()), firstPage);
+        assertEquals(List.of(product3.getId(), product4.getId()), secondPage);
+        assertEquals(List.of(product3.getId(), product4.getId()), brandPage);
+    }
+
+    @Test
+    void shouldStreamCatalogRowsInProductOrder() {
+        seedProducts(3, testBrand);
+        entityManager.clear();
+
+        List<CatalogRowDTO> rows;
+        try(Stream<CatalogRowDTO> stream = productRepository.streamCatalogRows()) {
+            rows = stream.toList();
+        }
+
+        // 3 products x 2 variations x 2 attributes
+        assertEquals(12, rows.size());
+        for(int i = 1; i < rows.size(); i++) {
+            assertTrue(rows.get(i - 1).getProductId() <= rows.get(i).getProductId());
+        }
+    }
+
+    private long loadCatalogAndCountQueries() {
+        entityManager.clear();
+        Statistics statistics = getStatistics();
+        statistics.clear();
+
+        List<Product> products = productRepository.findAllWithVariations();
+        productVariationRepository.findAllWithAttributes();
+        touchCatalog(products);
+
+        return statistics.getPrepareStatementCount();
+    }
+
+    private long countStatements(Runnable action) {
+        long before = StatementCounter.prepared.get();
+        action.run();
+        return StatementCounter.prepared.get() - before;
+    }
+
+    private long count(String sql, Object... args) {
+        return jdbcTemplate.queryForObject(sql, Long.class, args);
+    }
+
+    private ProductVariation variationWithAttributes(Product product, String sku, int attributes) {
+        ProductVariation variation = createTestVariation(sku, 1.99, 4, "img");
+        variation.setProduct(product);
+        for(int i = 0; i < attributes; i++) {
+            ProductVariationAttribute attribute = createTestAttribute("Attribute " + i, "Value " + i);
+            attribute.setVariation(variation);
+            variation.getAttributes().add(attribute);
+        }
+        return variation;
+    }
+
+    private void touchCatalog(List<Product> products) {
+        for(Product product : products) {
+            product.getBrand().getName();
+            product.getCategory().getName();
+            for(ProductVariation variation : product.getVariations()) {
+                for(ProductVariationAttribute attribute : variation.getAttributes()) {
+                    attribute.getAttributeValue();
+                }
+            }
+        }
+    }
+
+    private void seedProducts(int count, Brand brand) {
+        for(int i = 0; i < count; i++) {
+            Product product = createTestProduct("Seed Product " + i, "Test Description", brand, testCategory);
+
+            for(int j = 0; j < 2; j++) {
+                ProductVariation variation = createTestVariation("SEED-" + product.getId() + "-" + j, 1.99, 4, "img");
+                variation.setProduct(product);
+
+                ProductVariationAttribute size = createTestAttribute("Size", "M");
+                size.setVariation(variation);
+                ProductVariationAttribute color = createTestAttribute("Color", "Red");
+                color.setVariation(variation);
+                variation.getAttributes().add(size);
+                variation.getAttributes().add(color);
+
+                entityManager.persist(variation);
+            }
+        }
+        entityManager.flush();
+    }
+
+    // Counts the statements prepared on every connection. Hibernate's statistics miss the ones
+    // the bulk repository methods run through JdbcTemplate.
+    @TestConfiguration
+    static class StatementCounter {
+        static final AtomicLong prepared = new AtomicLong();
+
+        @Bean
+        static BeanPostProcessor statementCountingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if(!(bean instanceof DataSource dataSource)) {
+                        return bean;
+                    }
+
+                    return new DelegatingDataSource(dataSource) {
+                        @Override
+                        public Connection getConnection() throws SQLException {
+                            return counting(super.getConnection());
+                        }
+
+                        @Override
+                        public Connection getConnection(String username, String password) throws SQLException {
+                            return counting(super.getConnection(username, password));
+                        }
+                    };
+                }
+            };
+        }
+
+        private static Connection counting(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if(method.getName().startsWith("prepare")) {
+                            prepared.incrementAndGet();
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        }
+                        catch(InvocationTargetException ex) {
+                            throw ex.getTargetException();
+                        }
+                    });
+        }
+    }
 }
\ No newline at end of file
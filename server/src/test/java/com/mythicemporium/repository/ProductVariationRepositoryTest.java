@@ -1,10 +1,17 @@
 package com.mythicemporium.repository;
 
+import com.mythicemporium.dto.VariationAttributeRowDTO;
 import com.mythicemporium.model.*;
+import com.mythicemporium.service.SkuIndex;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -59,6 +66,71 @@ class ProductVariationRepositoryTest extends BaseRepositoryTest {
         assertEquals(2, decremented.get().getStock());
     }
 
+    @Test
+    void shouldLockAndDecrementStockInOneStatement() {
+        ProductVariation first = createTestVariation("SKU-1", 1.99, 4, "img");
+        ProductVariation second = createTestVariation("SKU-2", 1.99, 1, "img");
+        first.setProduct(testProduct);
+        second.setProduct(testProduct);
+        productVariationRepository.saveAll(List.of(first, second));
+        entityManager.flush();
+
+        List<ProductVariationRepository.StockRow> locked = productVariationRepository.lockStockByIdIn(List.of(second.getId(), first.getId()));
+        int decremented = productVariationRepository.decrementStockBatch(new Long[]{first.getId(), second.getId()}, new Integer[]{3, 2});
+        entityManager.clear();
+
+        assertEquals(List.of(first.getId(), second.getId()), locked.stream().map(ProductVariationRepository.StockRow::getId).toList());
+        assertEquals(1, decremented);
+        assertEquals(1, productVariationRepository.findById(first.getId()).orElseThrow().getStock());
+        assertEquals(1, productVariationRepository.findById(second.getId()).orElseThrow().getStock());
+    }
+
+    @Test
+    void shouldApplyStockDeltasAndPageStockRows() {
+        ProductVariation first = createTestVariation("SKU-1", 1.99, 4, "img");
+        ProductVariation second = createTestVariation("SKU-2", 1.99, 1, "img");
+        first.setProduct(testProduct);
+        second.setProduct(testProduct);
+        productVariationRepository.saveAll(List.of(first, second));
+        entityManager.flush();
+
+        int updated = productVariationRepository.applyStockDeltas(new Long[]{first.getId(), second.getId()}, new Integer[]{3, -2});
+        entityManager.clear();
+        List<ProductVariationRepository.StockRow> rows = productVariationRepository.findStockPage(0L, Limit.of(10));
+
+        assertEquals(2, updated);
+        assertEquals(List.of(first.getId(), second.getId()), rows.stream().map(ProductVariationRepository.StockRow::getId).toList());
+        assertEquals(List.of(1, 3), rows.stream().map(ProductVariationRepository.StockRow::getStock).toList());
+        assertEquals(testProduct.getId(), rows.get(0).getProductId());
+        assertEquals(3, productVariationRepository.findStockRowById(second.getId()).orElseThrow().getStock());
+    }
+
+    @Test
+    void shouldSetStockAndPriceForManyVariationsInOneStatement() {
+        ProductVariation first = createTestVariation("SKU-1", 1.99, 4, "img");
+        ProductVariation second = createTestVariation("SKU-2", 1.99, 1, "img");
+        ProductVariation sharded = createTestVariation("SKU-3", 1.99, 0, "img");
+        sharded.setStockShards(2);
+        first.setProduct(testProduct);
+        second.setProduct(testProduct);
+        sharded.setProduct(testProduct);
+        productVariationRepository.saveAll(List.of(first, second, sharded));
+        entityManager.flush();
+
+        int stocked = productVariationRepository.setStockBatch(new Long[]{first.getId(), second.getId(), sharded.getId()}, new Integer[]{7, 8, 9});
+        int priced = productVariationRepository.setPriceBatch(new Long[]{first.getId(), second.getId()}, new Double[]{2.5, 3.5});
+        entityManager.clear();
+
+        assertEquals(2, stocked);
+        assertEquals(2, priced);
+        ProductVariation updatedFirst = productVariationRepository.findById(first.getId()).orElseThrow();
+        assertEquals(7, updatedFirst.getStock());
+        assertEquals(2.5, updatedFirst.getPrice());
+        assertEquals(1L, updatedFirst.getVersion());
+        assertEquals(8, productVariationRepository.findById(second.getId()).orElseThrow().getStock());
+        assertEquals(0, productVariationRepository.findStockRowById(sharded.getId()).orElseThrow().getStock());
+    }
+
     @Test
     void shouldUpdateStockById() {
         ProductVariation variation = createTestVariation("Test SKU", 1.99, 4, "img");
@@ -90,4 +162,133 @@ class ProductVariationRepositoryTest extends BaseRepositoryTest {
         assertTrue(updated.isPresent());
         assertEquals(2.22, updated.get().getPrice());
     }
+
+    @Test
+    void shouldBumpVersionOnEditsButNotOnPurchases() {
+        ProductVariation variation = createTestVariation("Test SKU", 1.99, 4, "img");
+        variation.setProduct(testProduct);
+        ProductVariation saved = productVariationRepository.saveAndFlush(variation);
+        Long created = saved.getVersion();
+
+        productVariationRepository.decrementStock(saved.getId(), 1);
+        entityManager.clear();
+        Long afterPurchase = productVariationRepository.findById(saved.getId()).orElseThrow().getVersion();
+
+        productVariationRepository.updatePriceById(saved.getId(), 2.22);
+        entityManager.clear();
+        ProductVariation repriced = productVariationRepository.findById(saved.getId()).orElseThrow();
+        Long afterPrice = repriced.getVersion();
+
+        repriced.setSku("Edited SKU");
+        Long afterEdit = productVariationRepository.saveAndFlush(repriced).getVersion();
+
+        assertEquals(0L, created);
+        assertEquals(0L, afterPurchase);
+        assertEquals(1L, afterPrice);
+        assertEquals(2L, afterEdit);
+    }
+
+    @Test
+    void shouldFindAttributeRowsIncludingVariationsWithoutAttributes() {
+        ProductVariation withAttributes = createTestVariation("SKU-1", 1.99, 4, "img");
+        withAttributes.setProduct(testProduct);
+        ProductVariationAttribute size = createTestAttribute("Size", "M");
+        size.setVariation(withAttributes);
+        withAttributes.getAttributes().add(size);
+        ProductVariation withoutAttributes = createTestVariation("SKU-2", 2.99, 1, "img");
+        withoutAttributes.setProduct(testProduct);
+
+        productVariationRepository.saveAll(List.of(withAttributes, withoutAttributes));
+        entityManager.flush();
+        entityManager.clear();
+
+        List<VariationAttributeRowDTO> rows = productVariationRepository.findAttributeRowsByProductIdIn(List.of(testProduct.getId()));
+
+        assertEquals(2, rows.size());
+        assertTrue(rows.stream().anyMatch(row -> "Size".equals(row.getAttributeName()) && "M".equals(row.getAttributeValue())));
+        assertTrue(rows.stream().anyMatch(row -> row.getVariationId().equals(withoutAttributes.getId()) && row.getAttributeName() == null));
+        assertTrue(rows.stream().allMatch(row -> row.getProductId().equals(testProduct.getId())));
+    }
+
+    @Test
+    void shouldFindVariationIdBySkuIgnoringCase() {
+        ProductVariation variation = createTestVariation("Cloak-M", 1.99, 4, "img");
+        variation.setProduct(testProduct);
+        Long id = entityManager.persistAndFlush(variation).getId();
+
+        assertEquals(Optional.of(id), productVariationRepository.findIdByLowerSku("cloak-m"));
+        assertTrue(productVariationRepository.findIdByLowerSku("cloak-l").isEmpty());
+    }
+
+    @Test
+    void shouldRejectSkuTakenByAnotherProductIgnoringCase() {
+        Product otherProduct = createTestProduct("Other Product", "Test Description", testBrand, testCategory);
+        ProductVariation first = createTestVariation("CLOAK-M", 1.99, 4, "img");
+        first.setProduct(testProduct);
+        entityManager.persistAndFlush(first);
+
+        ProductVariation duplicate = createTestVariation("cloak-m", 2.99, 1, "img");
+        duplicate.setProduct(otherProduct);
+
+        DataIntegrityViolationException ex = assertThrows(DataIntegrityViolationException.class,
+                () -> productVariationRepository.saveAndFlush(duplicate));
+        assertTrue(SkuIndex.isConflict(ex));
+    }
+
+    @Test
+    void shouldNotWriteUnchangedAttributesWhenMerging() {
+        Long variationId = persistVariationWithAttributes("Size", "M", "Color", "Red", "Material", "Wool");
+        ProductVariation variation = productVariationRepository.findById(variationId).orElseThrow();
+        variation.getAttributes().size();
+
+        Statistics statistics = getStatistics();
+        statistics.clear();
+        variation.setPrice(2.49);
+        variation.mergeAttributes(List.of(createTestAttribute("Size", "M"), createTestAttribute("Color", "Red"),
+                createTestAttribute("Material", "Wool")));
+        entityManager.flush();
+
+        EntityStatistics attributeStatistics = statistics.getEntityStatistics(ProductVariationAttribute.class.getName());
+        assertEquals(0, attributeStatistics.getInsertCount() + attributeStatistics.getUpdateCount() + attributeStatistics.getDeleteCount());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void shouldWriteOnlyChangedAddedAndRemovedAttributesWhenMerging() {
+        Long variationId = persistVariationWithAttributes("Size", "M", "Color", "Red", "Material", "Wool");
+        ProductVariation variation = productVariationRepository.findById(variationId).orElseThrow();
+        variation.getAttributes().size();
+
+        Statistics statistics = getStatistics();
+        statistics.clear();
+        variation.mergeAttributes(List.of(createTestAttribute("Size", "L"), createTestAttribute("Color", "Red"),
+                createTestAttribute("Finish", "Matte")));
+        entityManager.flush();
+
+        EntityStatistics attributeStatistics = statistics.getEntityStatistics(ProductVariationAttribute.class.getName());
+        assertEquals(1, attributeStatistics.getUpdateCount());
+        assertEquals(1, attributeStatistics.getInsertCount());
+        assertEquals(1, attributeStatistics.getDeleteCount());
+
+        entityManager.clear();
+        List<VariationAttributeRowDTO> rows = productVariationRepository.findAttributeRowsByProductIdIn(List.of(testProduct.getId()));
+        assertEquals(3, rows.size());
+        assertTrue(rows.stream().anyMatch(row -> row.getAttributeName().equals("Size") && row.getAttributeValue().equals("L")));
+        assertTrue(rows.stream().anyMatch(row -> row.getAttributeName().equals("Finish")));
+        assertTrue(rows.stream().noneMatch(row -> row.getAttributeName().equals("Material")));
+    }
+
+    private Long persistVariationWithAttributes(String... namesAndValues) {
+        ProductVariation variation = createTestVariation("Test SKU", 1.99, 4, "img");
+        variation.setProduct(testProduct);
+        for(int i = 0; i < namesAndValues.length; i += 2) {
+            ProductVariationAttribute attribute = createTestAttribute(namesAndValues[i], namesAndValues[i + 1]);
+            attribute.setVariation(variation);
+            variation.getAttributes().add(attribute);
+        }
+
+        Long id = entityManager.persistAndFlush(variation).getId();
+        entityManager.clear();
+        return id;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,228 @@
+package com.mythicemporium.repository;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Contention on the purchase path (ProductVariationRepository.decrementStock, one transaction per
+// purchase) under hundreds of concurrent buyers, for a single hot variation and for purchases
+// spread uniformly over many. Reports throughput, p50/p99 latency and time spent waiting on row
+// locks, sampled from pg_stat_activity. A second run makes randomized purchases against small
+// stocks with concurrent restocks and checks that no variation is ever oversold.
+// Sizes and the random seed can be overridden with -Dbenchmark.buyers, -Dbenchmark.purchases and
+// -Dbenchmark.seed. Excluded from the default build; run with: mvn test -Pbenchmark
+@Tag("benchmark")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PurchaseContentionBenchmarkTest extends BaseRepositoryTest {
+    private static final int BUYERS = Integer.getInteger("benchmark.buyers", 256);
+    private static final int CONNECTIONS = 64;
+    private static final int VARIATIONS = 64;
+    private static final long DURATION_MS = 10_000;
+    private static final long PURCHASES = Long.getLong("benchmark.purchases", 1_000_000L);
+    private static final long SEED = Long.getLong("benchmark.seed", 42L);
+    private static final long LOCK_SAMPLE_MS = 5;
+
+    @DynamicPropertySource
+    static void configurePool(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.hikari.maximum-pool-size", () -> String.valueOf(CONNECTIONS + 2));
+        registry.add("spring.datasource.hikari.connection-timeout", () -> "60000");
+        registry.add("spring.jpa.show-sql", () -> "false");
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductVariationRepository productVariationRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private Long[] variationIds;
+
+    @BeforeEach
+    void seed() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        jdbcTemplate.execute("TRUNCATE product_variation, product, brand, category RESTART IDENTITY CASCADE");
+        jdbcTemplate.execute("INSERT INTO brand (id, name) VALUES (nextval('brand_seq'), 'Bench Brand')");
+        jdbcTemplate.execute("INSERT INTO category (id, name) VALUES (nextval('category_seq'), 'Bench Category')");
+        jdbcTemplate.execute("INSERT INTO product (id, name, description, brand_id, category_id) " +
+                "SELECT nextval('product_seq'), 'Bench Product', 'Bench', (SELECT min(id) FROM brand), (SELECT min(id) FROM category)");
+        jdbcTemplate.execute("INSERT INTO product_variation (id, sku, price, stock, product_id, version) " +
+                "SELECT nextval('product_variation_seq'), 'BENCH-' || g, 10, 0, (SELECT min(id) FROM product), 0 FROM generate_series(1, " + VARIATIONS + ") g");
+        variationIds = jdbcTemplate.queryForList("SELECT id FROM product_variation ORDER BY id", Long.class).toArray(new Long[0]);
+    }
+
+    @Test
+    void purchaseThroughputLatencyAndLockWait() throws Exception {
+        System.out.printf("%-8s buyers=%d connections=%d%n", "scenario", BUYERS, CONNECTIONS);
+        run("hot", random -> () -> 0);
+        run("uniform", random -> () -> random.nextInt(VARIATIONS));
+    }
+
+    @Test
+    void randomizedPurchasesNeverOversell() throws Exception {
+        int initialStock = 500;
+        jdbcTemplate.update("UPDATE product_variation SET stock = ?", initialStock);
+
+        AtomicLongArray sold = new AtomicLongArray(VARIATIONS);
+        AtomicLongArray restocked = new AtomicLongArray(VARIATIONS);
+        AtomicLong attempts = new AtomicLong();
+        AtomicBoolean done = new AtomicBoolean();
+
+        // Half the purchases go to a few hot variations so that stock keeps running out under contention.
+        ExecutorService executor = Executors.newFixedThreadPool(BUYERS + 1);
+        List<Future<?>> buyers = new ArrayList<>();
+        for(int i = 0; i < BUYERS; i++) {
+            Random random = new Random(SEED + i);
+            buyers.add(executor.submit(() -> {
+                while(attempts.getAndIncrement() < PURCHASES) {
+                    int index = random.nextBoolean() ? random.nextInt(4) : random.nextInt(VARIATIONS);
+                    int quantity = 1 + random.nextInt(3);
+                    Boolean purchased = transactionTemplate.execute(status ->
+                            productVariationRepository.decrementStock(variationIds[index], quantity) > 0);
+                    if(Boolean.TRUE.equals(purchased)) {
+                        sold.addAndGet(index, quantity);
+                    }
+                }
+                return null;
+            }));
+        }
+
+        Random restockRandom = new Random(SEED - 1);
+        Future<?> restocker = executor.submit(() -> {
+            while(!done.get()) {
+                int index = restockRandom.nextInt(VARIATIONS);
+                int quantity = 1 + restockRandom.nextInt(50);
+                transactionTemplate.executeWithoutResult(status ->
+                        productVariationRepository.applyStockDeltas(new Long[]{variationIds[index]}, new Integer[]{-quantity}));
+                restocked.addAndGet(index, quantity);
+                assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM product_variation WHERE stock < 0", Integer.class));
+                Thread.sleep(1);
+            }
+            return null;
+        });
+
+        for(Future<?> buyer : buyers) {
+            buyer.get();
+        }
+        done.set(true);
+        restocker.get();
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        long totalSold = 0;
+        for(int i = 0; i < VARIATIONS; i++) {
+            Integer remaining = jdbcTemplate.queryForObject("SELECT stock FROM product_variation WHERE id = ?", Integer.class, variationIds[i]);
+            assertTrue(remaining >= 0);
+            assertEquals(initialStock + restocked.get(i) - sold.get(i), remaining.longValue(), "variation " + variationIds[i]);
+            totalSold += sold.get(i);
+        }
+        System.out.printf("randomized purchases=%d units sold=%d seed=%d: no variation oversold%n", PURCHASES, totalSold, SEED);
+    }
+
+    private void run(String scenario, Function<Random, IntSupplier> distribution) throws Exception {
+        jdbcTemplate.update("UPDATE product_variation SET stock = ?", Integer.MAX_VALUE / 2);
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Timer latency = Timer.builder("purchase")
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicLong lockWaitSamples = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(BUYERS + 1);
+        // Sampled over its own connection so that it never queues behind the buyers for the pool.
+        Future<?> sampler = executor.submit(() -> {
+            try(Connection connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+                Statement statement = connection.createStatement()) {
+                while(!done.get()) {
+                    try(ResultSet waiting = statement.executeQuery("SELECT count(*) FROM pg_stat_activity " +
+                            "WHERE datname = current_database() AND wait_event_type = 'Lock'")) {
+                        waiting.next();
+                        lockWaitSamples.addAndGet(waiting.getLong(1));
+                    }
+                    Thread.sleep(LOCK_SAMPLE_MS);
+                }
+            }
+            return null;
+        });
+
+        long deadline = System.currentTimeMillis() + DURATION_MS;
+        List<Future<Long>> buyers = new ArrayList<>();
+        for(int i = 0; i < BUYERS; i++) {
+            IntSupplier next = distribution.apply(new Random(SEED + i));
+            buyers.add(executor.submit(() -> {
+                long count = 0;
+                while(System.currentTimeMillis() < deadline) {
+                    Long id = variationIds[next.getAsInt()];
+                    Boolean purchased = latency.record(() -> transactionTemplate.execute(status ->
+                            productVariationRepository.decrementStock(id, 1) > 0));
+                    if(Boolean.TRUE.equals(purchased)) {
+                        count++;
+                    }
+                }
+                return count;
+            }));
+        }
+
+        long purchases = 0;
+        for(Future<Long> buyer : buyers) {
+            purchases += buyer.get();
+        }
+        done.set(true);
+        sampler.get();
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        Long sold = jdbcTemplate.queryForObject("SELECT sum(" + (Integer.MAX_VALUE / 2) + "::bigint - stock) FROM product_variation", Long.class);
+        assertEquals(purchases, sold.longValue());
+
+        HistogramSnapshot snapshot = latency.takeSnapshot();
+        double lockWaitMs = lockWaitSamples.get() * (double) LOCK_SAMPLE_MS;
+        System.out.printf("%-8s purchases/s=%9.1f p50=%7.2fms p99=%7.2fms lock wait=%8.1fms total, %6.3fms per purchase%n",
+                scenario, purchases * 1000.0 / DURATION_MS, percentile(snapshot, 0.5), percentile(snapshot, 0.99),
+                lockWaitMs, lockWaitMs / Math.max(purchases, 1));
+    }
+
+    private double percentile(HistogramSnapshot snapshot, double percentile) {
+        for(ValueAtPercentile value : snapshot.percentileValues()) {
+            if(value.percentile() == percentile) {
+                return value.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return Double.NaN;
+    }
+}
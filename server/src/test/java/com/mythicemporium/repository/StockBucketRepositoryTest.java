@@ -0,0 +1,83 @@
+package com.mythicemporium.repository;
+
+import com.mythicemporium.dto.CatalogRowDTO;
+import com.mythicemporium.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StockBucketRepositoryTest extends BaseRepositoryTest {
+    @Autowired
+    private StockBucketRepository stockBucketRepository;
+
+    @Autowired
+    private ProductVariationRepository productVariationRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private ProductVariation testVariation;
+
+    @BeforeEach
+    void setUp() {
+        Product product = createTestProduct("Test Product", "Test Description", createTestBrand("Test Brand"), createTestCategory("Test Category"));
+        testVariation = createTestVariation("Test SKU", 1.99, 0, "img");
+        testVariation.setProduct(product);
+        testVariation.setStockShards(3);
+        entityManager.persistAndFlush(testVariation);
+        for(int i = 0; i < 3; i++) {
+            StockBucket bucket = new StockBucket();
+            bucket.setVariation(testVariation);
+            bucket.setBucket(i);
+            bucket.setStock(i + 1);
+            entityManager.persistAndFlush(bucket);
+        }
+        entityManager.clear();
+    }
+
+    @Test
+    void shouldSumBucketsIntoVariationStock() {
+        ProductVariation found = productVariationRepository.findById(testVariation.getId()).orElseThrow();
+
+        assertEquals(6, found.getStock());
+        assertEquals(3, productVariationRepository.findStockShardsById(testVariation.getId()).orElseThrow());
+    }
+
+    @Test
+    void shouldExportSummedBucketStock() {
+        List<CatalogRowDTO> rows;
+        try(Stream<CatalogRowDTO> stream = productRepository.streamCatalogRows()) {
+            rows = stream.filter(row -> testVariation.getId().equals(row.getVariationId())).toList();
+        }
+
+        assertEquals(1, rows.size());
+        assertEquals(6, rows.get(0).getStock());
+    }
+
+    @Test
+    void shouldDecrementOnlyBucketWithEnoughStock() {
+        int first = stockBucketRepository.decrementBucket(testVariation.getId(), 0, 2);
+        int third = stockBucketRepository.decrementBucket(testVariation.getId(), 2, 2);
+        entityManager.clear();
+
+        List<StockBucket> buckets = stockBucketRepository.lockAllByVariationId(testVariation.getId());
+
+        assertEquals(0, first);
+        assertEquals(1, third);
+        assertEquals(List.of(1, 2, 1), buckets.stream().map(StockBucket::getStock).toList());
+        assertEquals(4, productVariationRepository.findById(testVariation.getId()).orElseThrow().getStock());
+    }
+
+    @Test
+    void shouldDeleteBucketsOfVariation() {
+        int deleted = stockBucketRepository.deleteAllByVariationId(testVariation.getId());
+
+        assertEquals(3, deleted);
+        assertTrue(stockBucketRepository.lockAllByVariationId(testVariation.getId()).isEmpty());
+    }
+}
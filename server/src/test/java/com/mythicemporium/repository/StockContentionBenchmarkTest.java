@@ -0,0 +1,113 @@
+package com.mythicemporium.repository;
+
+import com.mythicemporium.model.ProductVariation;
+import com.mythicemporium.service.StockBucketService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Purchase throughput of one hot variation with its stock in the stock column versus split
+// across 4, 16 and 32 buckets, under 32 concurrent buyers.
+// Excluded from the default build; run with: mvn test -Pbenchmark
+@Tag("benchmark")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StockContentionBenchmarkTest extends BaseRepositoryTest {
+    private static final int BUYERS = 32;
+    private static final int INITIAL_STOCK = 10_000_000;
+    private static final long DURATION_MS = 5_000;
+
+    @DynamicPropertySource
+    static void configurePool(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.hikari.maximum-pool-size", () -> String.valueOf(BUYERS + 2));
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductVariationRepository productVariationRepository;
+
+    @Autowired
+    private StockBucketRepository stockBucketRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void purchaseThroughputScalesWithShards() throws Exception {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        StockBucketService stockBucketService = new StockBucketService(stockBucketRepository);
+
+        jdbcTemplate.execute("INSERT INTO brand (id, name) VALUES (nextval('brand_seq'), 'Bench Brand')");
+        jdbcTemplate.execute("INSERT INTO category (id, name) VALUES (nextval('category_seq'), 'Bench Category')");
+        jdbcTemplate.execute("INSERT INTO product (id, name, description, brand_id, category_id) " +
+                "SELECT nextval('product_seq'), 'Bench Product', 'Bench', (SELECT min(id) FROM brand), (SELECT min(id) FROM category)");
+
+        double baseline = 0;
+        for(int shards : new int[]{1, 4, 16, 32}) {
+            Long variationId = jdbcTemplate.queryForObject("INSERT INTO product_variation (id, sku, price, stock, product_id) " +
+                    "SELECT nextval('product_variation_seq'), 'HOT-" + shards + "', 10, " + INITIAL_STOCK + ", min(id) FROM product RETURNING id", Long.class);
+            transactionTemplate.executeWithoutResult(status -> {
+                ProductVariation variation = productVariationRepository.lockById(variationId).orElseThrow();
+                stockBucketService.reshard(variation, INITIAL_STOCK, shards);
+            });
+
+            long purchases = runBuyers(transactionTemplate, stockBucketService, variationId, shards);
+            double perSecond = purchases * 1000.0 / DURATION_MS;
+            if(shards == 1) {
+                baseline = perSecond;
+            }
+
+            Integer remaining = transactionTemplate.execute(status ->
+                    productVariationRepository.findById(variationId).orElseThrow().getStock());
+            assertEquals(INITIAL_STOCK - purchases, remaining.longValue());
+
+            System.out.printf("shards=%-3d purchases/s=%9.1f speedup=%5.2fx%n", shards, perSecond, perSecond / baseline);
+        }
+    }
+
+    private long runBuyers(TransactionTemplate transactionTemplate, StockBucketService stockBucketService, Long variationId, int shards) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(BUYERS);
+        long deadline = System.currentTimeMillis() + DURATION_MS;
+
+        List<Future<Long>> buyers = new ArrayList<>();
+        for(int i = 0; i < BUYERS; i++) {
+            buyers.add(executor.submit(() -> {
+                long count = 0;
+                while(System.currentTimeMillis() < deadline) {
+                    Boolean purchased = transactionTemplate.execute(status -> shards > 1
+                            ? stockBucketService.decrement(variationId, shards, 1)
+                            : productVariationRepository.decrementStock(variationId, 1) > 0);
+                    if(Boolean.TRUE.equals(purchased)) {
+                        count++;
+                    }
+                }
+                return count;
+            }));
+        }
+
+        long total = 0;
+        for(Future<Long> buyer : buyers) {
+            total += buyer.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        return total;
+    }
+}
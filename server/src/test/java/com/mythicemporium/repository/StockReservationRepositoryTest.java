@@ -0,0 +1,68 @@
+package com.mythicemporium.repository;
+
+import com.mythicemporium.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StockReservationRepositoryTest extends BaseRepositoryTest {
+    @Autowired
+    private StockReservationRepository reservationRepository;
+
+    private ProductVariation testVariation;
+
+    @BeforeEach
+    void setUp() {
+        Product product = createTestProduct("Test Product", "Test Description", createTestBrand("Test Brand"), createTestCategory("Test Category"));
+        testVariation = createTestVariation("Test SKU", 1.99, 10, "img");
+        testVariation.setProduct(product);
+        entityManager.persistAndFlush(testVariation);
+    }
+
+    @Test
+    void shouldLockOnlyExpiredActiveReservationsOldestFirst() {
+        Instant now = Instant.parse("2026-01-01T12:00:00Z");
+        StockReservation later = createReservation(StockReservation.Status.ACTIVE, now.minusSeconds(10));
+        StockReservation earlier = createReservation(StockReservation.Status.ACTIVE, now.minusSeconds(60));
+        createReservation(StockReservation.Status.CONFIRMED, now.minusSeconds(60));
+        createReservation(StockReservation.Status.ACTIVE, now.plusSeconds(60));
+        entityManager.clear();
+
+        List<StockReservation> expired = reservationRepository.lockExpired(now, 10);
+        List<StockReservation> firstOnly = reservationRepository.lockExpired(now, 1);
+
+        assertEquals(List.of(earlier.getId(), later.getId()), expired.stream().map(StockReservation::getId).toList());
+        assertEquals(testVariation.getId(), expired.get(0).getVariationId());
+        assertEquals(List.of(earlier.getId()), firstOnly.stream().map(StockReservation::getId).toList());
+    }
+
+    @Test
+    void shouldUpdateStatusOfReservations() {
+        Instant now = Instant.parse("2026-01-01T12:00:00Z");
+        StockReservation first = createReservation(StockReservation.Status.ACTIVE, now);
+        StockReservation second = createReservation(StockReservation.Status.ACTIVE, now);
+
+        int updated = reservationRepository.updateStatusByIdIn(List.of(first.getId(), second.getId()), StockReservation.Status.EXPIRED);
+        entityManager.clear();
+
+        assertEquals(2, updated);
+        assertEquals(StockReservation.Status.EXPIRED, reservationRepository.lockById(first.getId()).orElseThrow().getStatus());
+        assertTrue(reservationRepository.lockExpired(now, 10).isEmpty());
+    }
+
+    private StockReservation createReservation(StockReservation.Status status, Instant expiresAt) {
+        StockReservation reservation = new StockReservation();
+        reservation.setVariation(testVariation);
+        reservation.setQuantity(1);
+        reservation.setStatus(status);
+        reservation.setOwner("user");
+        reservation.setCreatedAt(expiresAt.minusSeconds(600));
+        reservation.setExpiresAt(expiresAt);
+        return entityManager.persistAndFlush(reservation);
+    }
+}
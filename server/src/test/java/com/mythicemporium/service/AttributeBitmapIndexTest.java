@@ -0,0 +1,61 @@
+package com.mythicemporium.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttributeBitmapIndexTest {
+
+    private AttributeBitmapIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new AttributeBitmapIndex();
+        index.replaceProduct(1L, Map.of(
+                10L, List.of(Map.entry("Color", "Red"), Map.entry("Size", "M")),
+                11L, List.of(Map.entry("Color", "Blue"), Map.entry("Size", "M"))));
+        index.replaceProduct(2L, Map.of(
+                20L, List.of(Map.entry("Color", "Red"), Map.entry("Size", "L")),
+                21L, List.of()));
+    }
+
+    @Test
+    void shouldMatchEverythingWithoutFilters() {
+        assertArrayEquals(new int[] {10, 11, 20, 21}, index.match(Map.of()).toArray());
+    }
+
+    @Test
+    void shouldAndAcrossNamesAndOrWithinValues() {
+        assertArrayEquals(new int[] {10, 20}, index.match(Map.of("Color", Set.of("Red"))).toArray());
+        assertArrayEquals(new int[] {10}, index.match(Map.of("Color", Set.of("Red"), "Size", Set.of("M"))).toArray());
+        assertArrayEquals(new int[] {10, 11, 20}, index.match(Map.of("Color", Set.of("Red", "Blue"))).toArray());
+        assertTrue(index.match(Map.of("Material", Set.of("Wool"))).isEmpty());
+    }
+
+    @Test
+    void shouldCountFacetsIgnoringOwnFilter() {
+        Map<String, Map<String, Integer>> facets = index.facetCounts(Map.of("Color", Set.of("Red")));
+
+        assertEquals(Map.of("Red", 2, "Blue", 1), facets.get("Color"));
+        assertEquals(Map.of("M", 1, "L", 1), facets.get("Size"));
+    }
+
+    @Test
+    void shouldReplaceAndRemoveProducts() {
+        index.replaceProduct(1L, Map.of(10L, List.of(Map.entry("Color", "Green"))));
+
+        assertArrayEquals(new int[] {10, 20, 21}, index.match(Map.of()).toArray());
+        assertArrayEquals(new int[] {20}, index.match(Map.of("Size", Set.of("M", "L"))).toArray());
+        assertArrayEquals(new int[] {10}, index.match(Map.of("Color", Set.of("Green"))).toArray());
+
+        index.removeProduct(2L);
+
+        assertEquals(1, index.variationCount());
+        assertEquals(Map.of("Color", Map.of("Green", 1)), index.facetCounts(Map.of()));
+    }
+}
@@ -0,0 +1,117 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.dto.FacetSearchResultDTO;
+import com.mythicemporium.dto.VariationAttributeRowDTO;
+import com.mythicemporium.event.CatalogChangedEvent;
+import com.mythicemporium.exception.InvalidRequestException;
+import com.mythicemporium.repository.ProductRepository;
+import com.mythicemporium.repository.ProductVariationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AttributeFacetServiceTest {
+
+    @Mock
+    ProductRepository productRepository;
+
+    @Mock
+    ProductVariationRepository productVariationRepository;
+
+    @Mock
+    CatalogRevision catalogRevision;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    private AttributeFacetService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new AttributeFacetService(productRepository, productVariationRepository, catalogRevision,
+                transactionManager, Runnable::run);
+
+        when(productRepository.findPageIds(eq(0L), any(Limit.class))).thenReturn(List.of(1L, 2L));
+        when(productRepository.findPageIds(eq(2L), any(Limit.class))).thenReturn(List.of());
+        when(productVariationRepository.findAttributeRowsByProductIdIn(List.of(1L, 2L))).thenReturn(List.of(
+                new VariationAttributeRowDTO(1L, 10L, "Color", "Red"),
+                new VariationAttributeRowDTO(1L, 10L, "Size", "M"),
+                new VariationAttributeRowDTO(1L, 11L, "Color", "Blue"),
+                new VariationAttributeRowDTO(2L, 20L, "Color", "Red"),
+                new VariationAttributeRowDTO(2L, 21L, null, null)));
+        service.loadAll();
+    }
+
+    @Test
+    void shouldFilterAndCountFacets() {
+        FacetSearchResultDTO result = service.search(List.of("Color:Red", "Color:Blue", "Size:M"), null, 10);
+
+        assertEquals(1, result.getMatchCount());
+        assertEquals(List.of(10L), result.getVariationIds());
+        assertNull(result.getNextAfter());
+        assertEquals(Map.of("Red", 1), result.getFacets().get("Color"));
+        assertEquals(Map.of("M", 1), result.getFacets().get("Size"));
+    }
+
+    @Test
+    void shouldPageThroughMatches() {
+        FacetSearchResultDTO first = service.search(List.of(), null, 2);
+        FacetSearchResultDTO second = service.search(List.of(), first.getNextAfter(), 2);
+
+        assertEquals(4, first.getMatchCount());
+        assertEquals(List.of(10L, 11L), first.getVariationIds());
+        assertEquals(11L, first.getNextAfter());
+        assertEquals(List.of(20L, 21L), second.getVariationIds());
+        assertNull(second.getNextAfter());
+    }
+
+    @Test
+    void shouldReloadProductAfterCommittedChange() {
+        when(productVariationRepository.findAttributeRowsByProductIdIn(List.of(2L)))
+                .thenReturn(List.of(new VariationAttributeRowDTO(2L, 20L, "Color", "Green")));
+
+        service.onCatalogChanged(CatalogChangedEvent.productSaved(2L));
+
+        assertEquals(List.of(20L), service.search(List.of("Color:Green"), null, 10).getVariationIds());
+        assertEquals(0, service.search(List.of("Color:Red"), 10L, 10).getVariationIds().size());
+        verify(catalogRevision).bump();
+    }
+
+    @Test
+    void shouldDropDeletedProduct() {
+        when(productVariationRepository.findAttributeRowsByProductIdIn(List.of(1L))).thenReturn(List.of());
+
+        service.onCatalogChanged(CatalogChangedEvent.productDeleted(1L));
+
+        assertEquals(List.of(20L, 21L), service.search(null, null, 10).getVariationIds());
+    }
+
+    @Test
+    void shouldIgnoreStockChanges() {
+        service.onCatalogChanged(CatalogChangedEvent.stockChanged(10L));
+
+        verify(productVariationRepository, times(1)).findAttributeRowsByProductIdIn(any());
+    }
+
+    @Test
+    void shouldNotSearchWithInvalidFilter() {
+        assertThrows(InvalidRequestException.class, () -> service.search(List.of("Color"), null, 10));
+        assertThrows(InvalidRequestException.class, () -> service.search(List.of(":Red"), null, 10));
+        assertThrows(InvalidRequestException.class, () -> service.search(List.of("Color:"), null, 10));
+        assertThrows(InvalidRequestException.class, () -> service.search(List.of(), null, 0));
+        assertThrows(InvalidRequestException.class, () -> service.search(List.of(), -1L, 10));
+    }
+}
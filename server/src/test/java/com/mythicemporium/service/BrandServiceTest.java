@@ -11,6 +11,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.util.List;
 import java.util.Optional;
@@ -27,11 +28,14 @@ public class BrandServiceTest {
     @Mock
     BrandRepository brandRepository;
 
+    @Mock
+    ApplicationEventPublisher eventPublisher;
+
     private BrandService service;
 
     @BeforeEach
     void setUp() {
-        service = new BrandService(brandRepository);
+        service = new BrandService(brandRepository, eventPublisher);
     }
 
     @Test
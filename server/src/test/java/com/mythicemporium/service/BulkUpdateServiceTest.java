@@ -0,0 +1,224 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.config.CatalogProperties;
+import com.mythicemporium.dto.BulkDeleteResultDTO;
+import com.mythicemporium.dto.BulkUpdateResultDTO;
+import com.mythicemporium.dto.BulkUpdateRowDTO;
+import com.mythicemporium.dto.PriceUpdateDTO;
+import com.mythicemporium.dto.StockUpdateDTO;
+import com.mythicemporium.event.CatalogChangedEvent;
+import com.mythicemporium.exception.InvalidRequestException;
+import com.mythicemporium.repository.ProductRepository;
+import com.mythicemporium.repository.ProductVariationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BulkUpdateServiceTest {
+
+    @Mock
+    ProductRepository productRepository;
+
+    @Mock
+    ProductVariationRepository productVariationRepository;
+
+    @Mock
+    StockBucketService stockBucketService;
+
+    @Mock
+    InventoryEngine inventoryEngine;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    @Mock
+    ApplicationEventPublisher eventPublisher;
+
+    private CatalogProperties catalogProperties;
+    private SimpleMeterRegistry meterRegistry;
+    private BulkUpdateService service;
+
+    @BeforeEach
+    void setUp() {
+        catalogProperties = new CatalogProperties();
+        catalogProperties.setBulkChunkSize(2);
+        catalogProperties.setBulkMaxRows(10);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new BulkUpdateService(productRepository, productVariationRepository, stockBucketService, inventoryEngine,
+                catalogProperties, transactionManager, eventPublisher, meterRegistry);
+    }
+
+    @Test
+    void shouldRejectEmptyOrOversizedRequests() {
+        assertThrows(InvalidRequestException.class, () -> service.updateStock(List.of()));
+        assertThrows(InvalidRequestException.class, () -> service.updatePrices(null));
+
+        List<StockUpdateDTO> tooMany = new ArrayList<>();
+        for(long id = 0; id < 11; id++) {
+            tooMany.add(stock(id, 1));
+        }
+        assertThrows(InvalidRequestException.class, () -> service.updateStock(tooMany));
+        verifyNoInteractions(productVariationRepository);
+    }
+
+    @Test
+    void shouldSetStockInSortedChunksAndReportRowsInRequestOrder() {
+        lockReturnsExisting(1L, 2L, 3L);
+
+        BulkUpdateResultDTO result = service.updateStock(List.of(stock(3L, 30), stock(1L, 10), stock(2L, 20), stock(9L, 90)));
+
+        assertEquals(3, result.getUpdated());
+        assertEquals(List.of(3L, 1L, 2L, 9L), result.getRows().stream().map(BulkUpdateRowDTO::getVariationId).toList());
+        assertEquals(List.of(BulkUpdateRowDTO.Status.UPDATED, BulkUpdateRowDTO.Status.UPDATED, BulkUpdateRowDTO.Status.UPDATED,
+                BulkUpdateRowDTO.Status.NOT_FOUND), result.getRows().stream().map(BulkUpdateRowDTO::getStatus).toList());
+        verify(productVariationRepository).setStockBatch(new Long[]{1L, 2L}, new Integer[]{10, 20});
+        verify(productVariationRepository).setStockBatch(new Long[]{3L}, new Integer[]{30});
+        verify(transactionManager, times(2)).commit(any());
+        verify(eventPublisher, times(3)).publishEvent(any(CatalogChangedEvent.class));
+        assertEquals(2, meterRegistry.get("catalog.bulk.update").tag("field", "stock").timer().count());
+    }
+
+    @Test
+    void shouldRouteHeldAndShardedVariationsAwayFromBatchUpdate() {
+        when(inventoryEngine.setStock(anyLong(), anyInt())).thenAnswer(invocation -> invocation.getArgument(0).equals(1L));
+        when(productVariationRepository.lockStockByIdIn(any())).thenReturn(List.of(stockRow(2L, 4)));
+
+        BulkUpdateResultDTO result = service.updateStock(List.of(stock(1L, 10), stock(2L, 20)));
+
+        assertEquals(2, result.getUpdated());
+        verify(productVariationRepository).lockStockByIdIn(Set.of(2L));
+        verify(stockBucketService).setStock(2L, 20);
+        verify(productVariationRepository, never()).setStockBatch(any(), any());
+    }
+
+    @Test
+    void shouldReportInvalidAndDuplicateRowsWithoutApplyingThem() {
+        lockReturnsExisting(1L);
+
+        BulkUpdateResultDTO result = service.updatePrices(List.of(price(1L, 2.5), price(1L, 3.5), price(2L, -1.0), price(null, 1.0)));
+
+        assertEquals(1, result.getUpdated());
+        assertEquals(List.of(BulkUpdateRowDTO.Status.UPDATED, BulkUpdateRowDTO.Status.INVALID, BulkUpdateRowDTO.Status.INVALID,
+                BulkUpdateRowDTO.Status.INVALID), result.getRows().stream().map(BulkUpdateRowDTO::getStatus).toList());
+        verify(productVariationRepository).setPriceBatch(new Long[]{1L}, new Double[]{2.5});
+    }
+
+    @Test
+    void shouldFailOnlyTheChunkThatCouldNotCommit() {
+        lockReturnsExisting(1L, 2L, 3L);
+        when(productVariationRepository.setPriceBatch(any(), any()))
+                .thenThrow(new RuntimeException("deadlock detected"))
+                .thenReturn(1);
+
+        BulkUpdateResultDTO result = service.updatePrices(List.of(price(1L, 1.0), price(2L, 2.0), price(3L, 3.0)));
+
+        assertEquals(1, result.getUpdated());
+        assertEquals(List.of(BulkUpdateRowDTO.Status.FAILED, BulkUpdateRowDTO.Status.FAILED, BulkUpdateRowDTO.Status.UPDATED),
+                result.getRows().stream().map(BulkUpdateRowDTO::getStatus).toList());
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    void shouldDeleteProductsInSortedChunksAndReportMissingIds() {
+        when(productRepository.deleteAllByIdIn(List.of(1L, 2L))).thenReturn(Map.of(1L, List.of(10L, 11L), 2L, List.of()));
+        when(productRepository.deleteAllByIdIn(List.of(3L, 4L))).thenReturn(Map.of(4L, List.of(40L)));
+
+        BulkDeleteResultDTO result = service.deleteProducts(List.of(4L, 2L, 3L, 1L, 2L));
+
+        assertEquals(3, result.getDeleted());
+        assertEquals(List.of(3L), result.getNotFound());
+        assertTrue(result.getFailed().isEmpty());
+        verify(inventoryEngine).forget(10L);
+        verify(inventoryEngine).forget(11L);
+        verify(inventoryEngine).forget(40L);
+        verify(eventPublisher, times(3)).publishEvent(any(CatalogChangedEvent.class));
+        verify(transactionManager, times(2)).commit(any());
+        assertEquals(2, meterRegistry.get("catalog.bulk.delete").timer().count());
+    }
+
+    @Test
+    void shouldReportChunkThatFailedToDeleteAndContinue() {
+        when(productRepository.deleteAllByIdIn(List.of(1L, 2L))).thenThrow(new RuntimeException("lock timeout"));
+        when(productRepository.deleteAllByIdIn(List.of(3L))).thenReturn(Map.of(3L, List.of()));
+
+        BulkDeleteResultDTO result = service.deleteProducts(List.of(1L, 2L, 3L));
+
+        assertEquals(1, result.getDeleted());
+        assertEquals(List.of(1L, 2L), result.getFailed());
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    void shouldRejectInvalidBulkDeletes() {
+        assertThrows(InvalidRequestException.class, () -> service.deleteProducts(List.of()));
+        assertThrows(InvalidRequestException.class, () -> service.deleteProducts(Arrays.asList(1L, null)));
+        assertThrows(InvalidRequestException.class, () -> service.deleteProducts(List.of(1L, -2L)));
+        verifyNoInteractions(productRepository);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void lockReturnsExisting(Long... existing) {
+        List<Long> ids = List.of(existing);
+        when(productVariationRepository.lockStockByIdIn(any())).thenAnswer(invocation -> ((Collection<Long>) invocation.getArgument(0)).stream()
+                .filter(ids::contains)
+                .map(id -> stockRow(id, null))
+                .toList());
+    }
+
+    private StockUpdateDTO stock(Long variationId, Integer stock) {
+        StockUpdateDTO dto = new StockUpdateDTO();
+        dto.setVariationId(variationId);
+        dto.setStock(stock);
+        return dto;
+    }
+
+    private PriceUpdateDTO price(Long variationId, Double price) {
+        PriceUpdateDTO dto = new PriceUpdateDTO();
+        dto.setVariationId(variationId);
+        dto.setPrice(price);
+        return dto;
+    }
+
+    private ProductVariationRepository.StockRow stockRow(Long id, Integer stockShards) {
+        return new ProductVariationRepository.StockRow() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Long getProductId() {
+                return 1L;
+            }
+
+            @Override
+            public Integer getStock() {
+                return 0;
+            }
+
+            @Override
+            public Integer getStockShards() {
+                return stockShards;
+            }
+        };
+    }
+}
@@ -0,0 +1,268 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.config.CatalogProperties;
+import com.mythicemporium.dto.CatalogDeltaDTO;
+import com.mythicemporium.event.CatalogChangedEvent;
+import com.mythicemporium.repository.ProductVariationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogChangeStreamTest {
+
+    @Mock
+    ProductVariationRepository productVariationRepository;
+
+    private final List<Runnable> sends = new ArrayList<>();
+    private CatalogProperties catalogProperties;
+    private SimpleMeterRegistry meterRegistry;
+    private CatalogChangeStream stream;
+
+    @BeforeEach
+    void setUp() {
+        catalogProperties = new CatalogProperties();
+        catalogProperties.setStreamBufferSize(2);
+        catalogProperties.setStreamReplaySize(3);
+        meterRegistry = new SimpleMeterRegistry();
+        stream = new CatalogChangeStream(productVariationRepository, catalogProperties, meterRegistry, sends::add);
+    }
+
+    @Test
+    void shouldGreetNewSubscriberWithCurrentId() {
+        RecordingEmitter emitter = subscribe(null);
+
+        assertEquals(List.of(CatalogChangeStream.READY), emitter.names());
+        assertEquals(1.0, meterRegistry.get("catalog.stream.subscribers").gauge().value());
+    }
+
+    @Test
+    void shouldCoalesceVariationChangesIntoOneQueryAndFanOut() {
+        RecordingEmitter first = subscribe(null);
+        RecordingEmitter second = subscribe(null);
+        when(productVariationRepository.findStockAndPriceByIdIn(any())).thenReturn(List.of(row(7L, 3L, 4.99, 2)));
+
+        stream.onCatalogChanged(CatalogChangedEvent.stockChanged(7L));
+        stream.onCatalogChanged(CatalogChangedEvent.variationChanged(7L));
+        stream.onCatalogChanged(CatalogChangedEvent.productCreated(3L));
+        stream.onCatalogChanged(CatalogChangedEvent.brandSaved(1L));
+        stream.publish();
+        sendAll();
+
+        verify(productVariationRepository, times(1)).findStockAndPriceByIdIn(List.of(7L));
+        for(RecordingEmitter emitter : List.of(first, second)) {
+            assertEquals(List.of(CatalogChangeStream.READY, CatalogChangeStream.PRODUCT_CREATED, CatalogChangeStream.VARIATION), emitter.names());
+            CatalogDeltaDTO delta = emitter.deltas().get(2);
+            assertEquals(7L, delta.getVariationId());
+            assertEquals(2, delta.getStock());
+            assertEquals(4.99, delta.getPrice());
+        }
+    }
+
+    @Test
+    void shouldReplaceLaggingSubscribersBufferWithResync() {
+        RecordingEmitter emitter = subscribe(null);
+        sendAll();
+
+        for(long id = 1; id <= 3; id++) {
+            stream.onCatalogChanged(CatalogChangedEvent.productSaved(id));
+            stream.publish();
+        }
+        sendAll();
+
+        assertEquals(List.of(CatalogChangeStream.READY, CatalogChangeStream.RESYNC), emitter.names());
+        assertEquals(1.0, meterRegistry.get("catalog.stream.resyncs").counter().count());
+    }
+
+    @Test
+    void shouldReplayChangesAfterLastEventId() {
+        RecordingEmitter first = subscribe(null);
+        stream.onCatalogChanged(CatalogChangedEvent.productSaved(1L));
+        stream.publish();
+        stream.onCatalogChanged(CatalogChangedEvent.productDeleted(2L));
+        stream.publish();
+        sendAll();
+
+        RecordingEmitter resumed = subscribe(first.ids().get(1));
+
+        assertEquals(List.of(CatalogChangeStream.PRODUCT_DELETED), resumed.names());
+        assertEquals(first.ids().get(2), resumed.ids().get(0));
+    }
+
+    @Test
+    void shouldResyncWhenLastEventIdIsNoLongerReplayable() {
+        RecordingEmitter first = subscribe(null);
+        for(long id = 1; id <= 5; id++) {
+            stream.onCatalogChanged(CatalogChangedEvent.productSaved(id));
+            stream.publish();
+            sendAll();
+        }
+
+        assertEquals(List.of(CatalogChangeStream.RESYNC), subscribe(first.ids().get(0)).names());
+        assertEquals(List.of(CatalogChangeStream.RESYNC), subscribe("not-an-id").names());
+    }
+
+    @Test
+    void shouldDropChangesWithoutSubscribersAndResyncAcrossTheGap() {
+        RecordingEmitter closed = subscribe(null);
+        closed.failing = true;
+        stream.onCatalogChanged(CatalogChangedEvent.productSaved(1L));
+        stream.publish();
+        sendAll();
+        String lastSeen = closed.ids().get(0);
+
+        stream.onCatalogChanged(CatalogChangedEvent.stockChanged(7L));
+        stream.publish();
+
+        verifyNoInteractions(productVariationRepository);
+        assertEquals(List.of(CatalogChangeStream.RESYNC), subscribe(lastSeen).names());
+    }
+
+    @Test
+    void shouldYieldSenderToOtherSubscribersAfterABatch() {
+        catalogProperties.setStreamBufferSize(100);
+        RecordingEmitter busy = subscribe(null);
+        RecordingEmitter other = subscribe(null);
+        for(long id = 1; id <= CatalogChangeStream.SEND_BATCH_SIZE + 4; id++) {
+            stream.onCatalogChanged(CatalogChangedEvent.productSaved(id));
+        }
+        stream.publish();
+
+        // Whichever subscriber goes first sends one batch and queues its rest behind the other.
+        sends.remove(0).run();
+
+        assertEquals(Set.of(1, 1 + CatalogChangeStream.SEND_BATCH_SIZE), Set.of(busy.names().size(), other.names().size()));
+        assertEquals(2, sends.size());
+
+        sends.remove(0).run();
+
+        assertEquals(1 + CatalogChangeStream.SEND_BATCH_SIZE, busy.names().size());
+        assertEquals(1 + CatalogChangeStream.SEND_BATCH_SIZE, other.names().size());
+        sendAll();
+        assertEquals(1 + CatalogChangeStream.SEND_BATCH_SIZE + 4, busy.names().size());
+        assertEquals(1 + CatalogChangeStream.SEND_BATCH_SIZE + 4, other.names().size());
+    }
+
+    @Test
+    void shouldDropSubscriberStuckInASend() {
+        catalogProperties.setStreamSendTimeout(Duration.ZERO);
+        RecordingEmitter stalled = subscribe(null);
+        RecordingEmitter healthy = subscribe(null);
+        stalled.duringSend = () -> {
+            stalled.duringSend = null;
+            LockSupport.parkNanos(1_000_000);
+            stream.publish();
+        };
+
+        stream.onCatalogChanged(CatalogChangedEvent.productSaved(1L));
+        stream.publish();
+        sendAll();
+        stream.onCatalogChanged(CatalogChangedEvent.productSaved(2L));
+        stream.publish();
+        sendAll();
+
+        assertEquals(1, stream.subscriberCount());
+        assertTrue(stalled.completed);
+        assertEquals(1.0, meterRegistry.get("catalog.stream.stalls").counter().count());
+        assertEquals(List.of(CatalogChangeStream.READY, CatalogChangeStream.PRODUCT_UPDATED, CatalogChangeStream.PRODUCT_UPDATED),
+                healthy.names());
+    }
+
+    private RecordingEmitter subscribe(String lastEventId) {
+        RecordingEmitter emitter = new RecordingEmitter();
+        stream.subscribe(lastEventId, emitter);
+        sendAll();
+        return emitter;
+    }
+
+    private void sendAll() {
+        while(!sends.isEmpty()) {
+            sends.remove(0).run();
+        }
+    }
+
+    private ProductVariationRepository.StockPriceRow row(Long id, Long productId, Double price, Integer stock) {
+        return new ProductVariationRepository.StockPriceRow() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Long getProductId() {
+                return productId;
+            }
+
+            @Override
+            public Double getPrice() {
+                return price;
+            }
+
+            @Override
+            public Integer getStock() {
+                return stock;
+            }
+        };
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+        private final List<Set<DataWithMediaType>> events = new ArrayList<>();
+        private boolean failing;
+        private boolean completed;
+        private Runnable duringSend;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if(failing) {
+                throw new IOException("Broken pipe");
+            }
+            if(duringSend != null) {
+                duringSend.run();
+            }
+            events.add(builder.build());
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+
+        private List<String> names() {
+            return field("event:");
+        }
+
+        private List<String> ids() {
+            return field("id:");
+        }
+
+        private List<CatalogDeltaDTO> deltas() {
+            return events.stream()
+                    .flatMap(event -> event.stream().map(DataWithMediaType::getData))
+                    .filter(CatalogDeltaDTO.class::isInstance)
+                    .map(CatalogDeltaDTO.class::cast)
+                    .toList();
+        }
+
+        private List<String> field(String prefix) {
+            return events.stream()
+                    .map(event -> event.stream().map(data -> data.getData().toString()).reduce("", String::concat))
+                    .flatMap(text -> text.lines().filter(line -> line.startsWith(prefix)).map(line -> line.substring(prefix.length())))
+                    .toList();
+        }
+    }
+}
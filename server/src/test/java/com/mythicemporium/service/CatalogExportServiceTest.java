@@ -0,0 +1,78 @@
+package com.mythicemporium.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mythicemporium.dto.CatalogRowDTO;
+import com.mythicemporium.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogExportServiceTest {
+
+    @Mock
+    ProductRepository productRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private CatalogExportService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new CatalogExportService(productRepository, objectMapper);
+    }
+
+    @Test
+    void shouldExportOneLinePerProduct() throws IOException {
+        when(productRepository.streamCatalogRows()).thenReturn(Stream.of(
+                generateRow(1L, 10L, "Size", "M"),
+                generateRow(1L, 10L, "Color", "Red"),
+                generateRow(1L, 11L, "Size", "L"),
+                generateRow(2L, null, null, null)
+        ));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = service.exportProducts(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, count);
+        assertEquals(2, lines.length);
+
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals(1, first.get("id").asLong());
+        assertEquals(2, first.get("variations").size());
+        assertEquals(2, first.get("variations").get(0).get("attributes").size());
+        assertEquals(1, first.get("variations").get(1).get("attributes").size());
+
+        JsonNode second = objectMapper.readTree(lines[1]);
+        assertEquals(2, second.get("id").asLong());
+        assertEquals(0, second.get("variations").size());
+    }
+
+    @Test
+    void shouldExportNothingForEmptyCatalog() throws IOException {
+        when(productRepository.streamCatalogRows()).thenReturn(Stream.empty());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(0, service.exportProducts(out));
+        assertEquals(0, out.size());
+    }
+
+    private CatalogRowDTO generateRow(Long productId, Long variationId, String attributeName, String attributeValue) {
+        return new CatalogRowDTO(productId, "Test Product " + productId, "Test Description", "Test Brand", "Test Category",
+                variationId, variationId == null ? null : "SKU-" + variationId, 1.99, 10, null,
+                attributeName, attributeValue);
+    }
+}
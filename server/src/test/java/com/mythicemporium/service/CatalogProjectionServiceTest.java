@@ -0,0 +1,197 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.event.CatalogChangedEvent;
+import com.mythicemporium.model.*;
+import com.mythicemporium.repository.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogProjectionServiceTest {
+
+    @Mock
+    CatalogProjectionRepository projectionRepository;
+
+    @Mock
+    ProductRepository productRepository;
+
+    @Mock
+    ProductVariationRepository productVariationRepository;
+
+    @Mock
+    BrandRepository brandRepository;
+
+    @Mock
+    CategoryRepository categoryRepository;
+
+    @Mock
+    CatalogRevision catalogRevision;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    private CatalogProjectionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new CatalogProjectionService(projectionRepository, productRepository, productVariationRepository,
+                brandRepository, categoryRepository, catalogRevision, transactionManager);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldRefreshProjectionWhenProductSaved() {
+        when(productRepository.findAllWithVariationsByIdIn(List.of(1L))).thenReturn(List.of(generateProduct(1L)));
+
+        service.applyChange(CatalogChangedEvent.productSaved(1L));
+
+        ArgumentCaptor<List<CatalogProjection>> saved = ArgumentCaptor.forClass(List.class);
+        verify(projectionRepository).saveAll(saved.capture());
+        CatalogProjection projection = saved.getValue().get(0);
+        assertEquals(1L, projection.getProductId());
+        assertEquals("Test Brand", projection.getBrandName());
+        assertEquals(2L, projection.getBrandId());
+        assertEquals(1, projection.getVariations().size());
+        assertEquals("Size", projection.getVariations().get(0).getAttributes().get(0).getAttributeName());
+    }
+
+    @Test
+    void shouldDeleteProjectionWhenProductDeleted() {
+        service.applyChange(CatalogChangedEvent.productDeleted(1L));
+
+        verify(projectionRepository).deleteById(1L);
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    void shouldRenameBrandInProjection() {
+        Brand brand = new Brand();
+        brand.setId(2L);
+        brand.setName("Renamed Brand");
+        when(brandRepository.findById(2L)).thenReturn(Optional.of(brand));
+
+        service.applyChange(CatalogChangedEvent.brandSaved(2L));
+
+        verify(projectionRepository).updateBrandName(2L, "Renamed Brand");
+    }
+
+    @Test
+    void shouldRefreshOwningProductWhenVariationChanged() {
+        when(productVariationRepository.findProductIdById(5L)).thenReturn(Optional.of(1L));
+        when(productRepository.findAllWithVariationsByIdIn(List.of(1L))).thenReturn(List.of(generateProduct(1L)));
+
+        service.applyChange(CatalogChangedEvent.variationChanged(5L));
+
+        verify(projectionRepository).saveAll(anyList());
+    }
+
+    @Test
+    void shouldDeferStockChangesUntilAfterCommit() {
+        service.applyChange(CatalogChangedEvent.stockChanged(5L));
+        service.queueStockChange(CatalogChangedEvent.stockChanged(5L));
+
+        verifyNoInteractions(projectionRepository);
+
+        service.refreshPendingStock();
+        verify(transactionManager).getTransaction(any());
+        verify(catalogRevision).bump();
+    }
+
+    @Test
+    void shouldLockProductBeforeReadingItsVariations() {
+        when(productVariationRepository.findProductIdById(5L)).thenReturn(Optional.of(1L));
+        when(productRepository.findAllWithVariationsByIdIn(List.of(1L))).thenReturn(List.of(generateProduct(1L)));
+
+        service.applyChange(CatalogChangedEvent.variationChanged(5L));
+
+        InOrder inOrder = inOrder(productRepository, projectionRepository);
+        inOrder.verify(productRepository).lockAllByIdIn(List.of(1L));
+        inOrder.verify(productRepository).findAllWithVariationsByIdIn(List.of(1L));
+        inOrder.verify(projectionRepository).saveAll(anyList());
+    }
+
+    @Test
+    void shouldRequeueStockChangesWhenRefreshFails() {
+        when(productVariationRepository.findProductIdsByIdIn(List.of(5L)))
+                .thenThrow(new IllegalStateException("connection lost"))
+                .thenReturn(List.of());
+        service.queueStockChange(CatalogChangedEvent.stockChanged(5L));
+
+        service.refreshPendingStock();
+        verify(catalogRevision, never()).bump();
+
+        service.refreshPendingStock();
+        verify(productVariationRepository, times(2)).findProductIdsByIdIn(List.of(5L));
+        verify(catalogRevision).bump();
+    }
+
+    @Test
+    void shouldRefreshOnlyStaleProductsOnStartup() {
+        when(projectionRepository.findStaleProductIds()).thenReturn(List.of(2L));
+        when(productRepository.findAllWithVariationsByIdIn(List.of(2L))).thenReturn(List.of(generateProduct(2L)));
+
+        service.rebuildIfIncomplete();
+
+        verify(projectionRepository).deleteOrphans();
+        verify(productRepository).findAllWithVariationsByIdIn(List.of(2L));
+        verify(projectionRepository).saveAll(anyList());
+        verify(productRepository, never()).findPageIds(any(), any());
+    }
+
+    @Test
+    void shouldSkipRefreshOnStartupWhenNothingIsStale() {
+        when(projectionRepository.findStaleProductIds()).thenReturn(List.of());
+
+        service.rebuildIfIncomplete();
+
+        verify(projectionRepository, never()).saveAll(anyList());
+    }
+
+    private Product generateProduct(Long id) {
+        Brand brand = new Brand();
+        brand.setId(2L);
+        brand.setName("Test Brand");
+
+        Category category = new Category();
+        category.setId(3L);
+        category.setName("Test Category");
+
+        Product product = new Product();
+        product.setId(id);
+        product.setName("Test Product " + id);
+        product.setDescription("Test Description");
+        product.setBrand(brand);
+        product.setCategory(category);
+
+        ProductVariation variation = new ProductVariation();
+        variation.setId(5L);
+        variation.setSku("SKU-5");
+        variation.setPrice(1.99);
+        variation.setStock(3);
+        variation.setProduct(product);
+
+        ProductVariationAttribute attribute = new ProductVariationAttribute();
+        attribute.setAttributeName("Size");
+        attribute.setAttributeValue("M");
+        attribute.setVariation(variation);
+
+        variation.setAttributes(new ArrayList<>(List.of(attribute)));
+        product.setVariations(new ArrayList<>(List.of(variation)));
+        return product;
+    }
+}
@@ -0,0 +1,20 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.event.CatalogChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogRevisionTest {
+
+    @Test
+    void shouldChangeETagAfterCommittedChange() {
+        CatalogRevision revision = new CatalogRevision();
+        String before = revision.etag();
+
+        revision.onCatalogChanged(CatalogChangedEvent.stockChanged(1L));
+
+        assertNotEquals(before, revision.etag());
+        assertTrue(revision.etag().startsWith("\"") && revision.etag().endsWith("\""));
+    }
+}
@@ -0,0 +1,160 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.config.CatalogProperties;
+import com.mythicemporium.event.CatalogChangedEvent;
+import com.mythicemporium.model.*;
+import com.mythicemporium.repository.ProductRepository;
+import com.mythicemporium.repository.ProductVariationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogSnapshotServiceTest {
+
+    @Mock
+    ProductRepository productRepository;
+
+    @Mock
+    ProductVariationRepository productVariationRepository;
+
+    @Mock
+    CatalogRevision catalogRevision;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    private CatalogSnapshotService service;
+
+    @BeforeEach
+    void setUp() {
+        CatalogProperties catalogProperties = new CatalogProperties();
+        catalogProperties.setReadMode(CatalogProperties.ReadMode.SNAPSHOT);
+        service = new CatalogSnapshotService(productRepository, productVariationRepository, catalogProperties,
+                catalogRevision, transactionManager, Runnable::run);
+    }
+
+    @Test
+    void shouldLoadWholeCatalogInBatches() {
+        when(productRepository.findPageIds(eq(0L), any(Limit.class))).thenReturn(List.of(1L, 2L));
+        when(productRepository.findPageIds(eq(2L), any(Limit.class))).thenReturn(List.of());
+        when(productRepository.findAllWithVariationsByIdIn(List.of(1L, 2L)))
+                .thenReturn(List.of(generateProduct(1L, 10L), generateProduct(2L, 20L)));
+
+        service.loadIfEnabled();
+
+        assertTrue(service.isReady());
+        assertEquals(2, service.getSnapshot().size());
+        assertEquals(1L, service.getSnapshot().productIdForVariation(10L));
+    }
+
+    @Test
+    void shouldReloadOnlyTouchedProductOnceForStockChangesOfATick() {
+        loadSnapshot();
+        CatalogSnapshot before = service.getSnapshot();
+
+        Product renamed = generateProduct(1L, 10L);
+        renamed.setName("Renamed Product");
+        when(productRepository.findAllWithVariationsByIdIn(Set.of(1L))).thenReturn(List.of(renamed));
+
+        service.onCatalogChanged(CatalogChangedEvent.stockChanged(10L));
+        service.onCatalogChanged(CatalogChangedEvent.stockChanged(10L));
+        assertSame(before, service.getSnapshot());
+
+        service.refreshPendingStock();
+
+        verify(productRepository, times(1)).findAllWithVariationsByIdIn(Set.of(1L));
+        assertEquals("Renamed Product", service.getSnapshot().findById(1L).orElseThrow().getName());
+        assertEquals("Test Product 2", service.getSnapshot().findById(2L).orElseThrow().getName());
+        assertEquals(before.getVersion() + 1, service.getSnapshot().getVersion());
+        assertEquals("Test Product 1", before.findById(1L).orElseThrow().getName());
+        verify(catalogRevision, times(2)).bump();
+        verify(productRepository, never()).findAllWithVariationsByIdIn(Set.of(2L));
+    }
+
+    @Test
+    void shouldDropDeletedProduct() {
+        loadSnapshot();
+        when(productRepository.findAllWithVariationsByIdIn(Set.of(2L))).thenReturn(List.of());
+
+        service.onCatalogChanged(CatalogChangedEvent.productDeleted(2L));
+
+        assertTrue(service.getSnapshot().findById(2L).isEmpty());
+        assertEquals(1, service.getSnapshot().size());
+    }
+
+    @Test
+    void shouldResolveUnknownVariationThroughRepository() {
+        loadSnapshot();
+        when(productVariationRepository.findProductIdsByIdIn(Set.of(30L))).thenReturn(List.of(2L));
+        when(productRepository.findAllWithVariationsByIdIn(Set.of(2L))).thenReturn(List.of(generateProduct(2L, 30L)));
+
+        service.onCatalogChanged(CatalogChangedEvent.variationChanged(30L));
+
+        assertEquals(2L, service.getSnapshot().productIdForVariation(30L));
+    }
+
+    @Test
+    void shouldKeepChangesPendingWhenRefreshFails() {
+        loadSnapshot();
+        long version = service.getSnapshot().getVersion();
+        when(productRepository.findAllWithVariationsByIdIn(Set.of(1L)))
+                .thenThrow(new RuntimeException("connection refused"))
+                .thenReturn(List.of(generateProduct(1L, 10L)));
+
+        service.onCatalogChanged(CatalogChangedEvent.productSaved(1L));
+        assertEquals(version, service.getSnapshot().getVersion());
+
+        service.onCatalogChanged(CatalogChangedEvent.brandSaved(99L));
+        assertEquals(version + 1, service.getSnapshot().getVersion());
+    }
+
+    private void loadSnapshot() {
+        when(productRepository.findPageIds(eq(0L), any(Limit.class))).thenReturn(List.of(1L, 2L));
+        when(productRepository.findPageIds(eq(2L), any(Limit.class))).thenReturn(List.of());
+        when(productRepository.findAllWithVariationsByIdIn(List.of(1L, 2L)))
+                .thenReturn(List.of(generateProduct(1L, 10L), generateProduct(2L, 20L)));
+        service.loadAll();
+    }
+
+    private Product generateProduct(Long id, Long variationId) {
+        Brand brand = new Brand();
+        brand.setId(3L);
+        brand.setName("Test Brand");
+
+        Category category = new Category();
+        category.setId(4L);
+        category.setName("Test Category");
+
+        Product product = new Product();
+        product.setId(id);
+        product.setName("Test Product " + id);
+        product.setDescription("Test Description");
+        product.setBrand(brand);
+        product.setCategory(category);
+
+        ProductVariation variation = new ProductVariation();
+        variation.setId(variationId);
+        variation.setSku("SKU-" + variationId);
+        variation.setPrice(1.99);
+        variation.setStock(3);
+        variation.setProduct(product);
+        variation.setAttributes(new ArrayList<>());
+
+        product.setVariations(new ArrayList<>(List.of(variation)));
+        return product;
+    }
+}
@@ -0,0 +1,134 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.dto.ProductResponseDTO;
+import com.mythicemporium.dto.ProductVariationAttributeDTO;
+import com.mythicemporium.dto.ProductVariationResponseDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogSnapshotTest {
+
+    @Test
+    void shouldIndexProductsByIdBrandAndCategory() {
+        CatalogSnapshot snapshot = CatalogSnapshot.EMPTY.apply(List.of(
+                generateEntry(1L, 10L, 20L, 100L),
+                generateEntry(2L, 10L, 21L, 200L),
+                generateEntry(3L, 11L, 20L, 300L)), List.of());
+
+        assertEquals(1, snapshot.getVersion());
+        assertEquals(3, snapshot.size());
+        assertEquals(List.of(1L, 2L), ids(snapshot.findAllByBrandId(10L)));
+        assertEquals(List.of(1L, 3L), ids(snapshot.findAllByCategoryId(20L)));
+        assertEquals(2L, snapshot.productIdForVariation(200L));
+        assertTrue(snapshot.findAllByBrandId(99L).isEmpty());
+    }
+
+    @Test
+    void shouldPageAfterCursor() {
+        CatalogSnapshot snapshot = CatalogSnapshot.EMPTY.apply(List.of(
+                generateEntry(1L, 10L, 20L, 100L),
+                generateEntry(2L, 10L, 20L, 200L),
+                generateEntry(3L, 10L, 20L, 300L)), List.of());
+
+        assertEquals(List.of(2L, 3L), ids(snapshot.findPage(1L, 5)));
+        assertEquals(List.of(1L), ids(snapshot.findPageByBrandId(10L, 0L, 1)));
+        assertEquals(List.of(3L), ids(snapshot.findPageByCategoryId(20L, 2L, 5)));
+    }
+
+    @Test
+    void shouldLeavePreviousVersionUntouchedWhenApplyingChanges() {
+        CatalogSnapshot first = CatalogSnapshot.EMPTY.apply(List.of(
+                generateEntry(1L, 10L, 20L, 100L),
+                generateEntry(2L, 10L, 20L, 200L)), List.of());
+
+        CatalogSnapshot second = first.apply(List.of(generateEntry(1L, 11L, 20L, 101L)), List.of(2L));
+
+        assertEquals(2, second.getVersion());
+        assertEquals(List.of(1L), ids(second.findAll()));
+        assertTrue(second.findAllByBrandId(10L).isEmpty());
+        assertEquals(List.of(1L), ids(second.findAllByBrandId(11L)));
+        assertNull(second.productIdForVariation(100L));
+        assertNull(second.productIdForVariation(200L));
+        assertEquals(1L, second.productIdForVariation(101L));
+
+        assertEquals(List.of(1L, 2L), ids(first.findAllByBrandId(10L)));
+        assertEquals(1L, first.productIdForVariation(100L));
+    }
+
+    @Test
+    void shouldPageAcrossIdRangesAndDropEmptiedOnes() {
+        List<CatalogSnapshot.Entry> entries = new ArrayList<>();
+        for(long id = 1000; id < 1100; id++) {
+            entries.add(generateEntry(id, 10L, 20L, id * 10));
+        }
+        CatalogSnapshot first = CatalogSnapshot.EMPTY.apply(entries, List.of());
+
+        assertEquals(List.of(1022L, 1023L, 1024L, 1025L), ids(first.findPage(1021L, 4)));
+
+        List<Long> removed = new ArrayList<>();
+        for(long id = 1000; id < 1024; id++) {
+            removed.add(id);
+        }
+        CatalogSnapshot second = first.apply(List.of(generateEntry(1010L, 10L, 20L, 10100L)), removed);
+
+        assertEquals(77, second.size());
+        assertEquals(List.of(1010L, 1024L), ids(second.findPage(0L, 2)));
+        assertNull(second.productIdForVariation(10000L));
+        assertEquals(1010L, second.productIdForVariation(10100L));
+        assertEquals(100, first.size());
+        assertEquals(List.of(1000L), ids(first.findPage(0L, 1)));
+    }
+
+    @Test
+    void shouldShareIndexesThatAnUpdateDoesNotChange() {
+        CatalogSnapshot first = CatalogSnapshot.EMPTY.apply(List.of(
+                generateEntry(1L, 10L, 20L, 100L),
+                generateEntry(2L, 11L, 20L, 200L)), List.of());
+
+        CatalogSnapshot second = first.apply(List.of(generateEntry(1L, 10L, 20L, 100L)), List.of());
+        CatalogSnapshot third = second.apply(List.of(generateEntry(1L, 11L, 20L, 100L)), List.of());
+
+        assertSame(first.productIdsForBrand(10L), second.productIdsForBrand(10L));
+        assertSame(first.productIdsForCategory(20L), second.productIdsForCategory(20L));
+        assertTrue(third.productIdsForBrand(10L).isEmpty());
+        assertEquals(Set.of(1L, 2L), third.productIdsForBrand(11L));
+        assertSame(second.productIdsForCategory(20L), third.productIdsForCategory(20L));
+        assertEquals(1L, third.productIdForVariation(100L));
+    }
+
+    @Test
+    void shouldExposeUnmodifiableProducts() {
+        CatalogSnapshot snapshot = CatalogSnapshot.EMPTY.apply(List.of(generateEntry(1L, 10L, 20L, 100L)), List.of());
+        ProductResponseDTO product = snapshot.findById(1L).orElseThrow();
+
+        assertThrows(UnsupportedOperationException.class, () -> product.getVariations().clear());
+        assertThrows(UnsupportedOperationException.class, () -> product.getVariations().get(0).getAttributes().clear());
+    }
+
+    private List<Long> ids(List<ProductResponseDTO> products) {
+        return products.stream().map(ProductResponseDTO::getId).toList();
+    }
+
+    private CatalogSnapshot.Entry generateEntry(Long productId, Long brandId, Long categoryId, Long variationId) {
+        ProductVariationAttributeDTO attribute = new ProductVariationAttributeDTO();
+        attribute.setAttributeName("Size");
+        attribute.setAttributeValue("Large");
+
+        ProductVariationResponseDTO variation = new ProductVariationResponseDTO();
+        variation.setId(variationId);
+        variation.setSku("SKU-" + variationId);
+        variation.setAttributes(new ArrayList<>(List.of(attribute)));
+
+        ProductResponseDTO product = new ProductResponseDTO();
+        product.setId(productId);
+        product.setName("Test Product " + productId);
+        product.setVariations(new ArrayList<>(List.of(variation)));
+
+        return new CatalogSnapshot.Entry(product, brandId, categoryId);
+    }
+}
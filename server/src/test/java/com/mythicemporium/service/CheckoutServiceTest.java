@@ -0,0 +1,186 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.dto.CheckoutLineDTO;
+import com.mythicemporium.dto.CheckoutRequestDTO;
+import com.mythicemporium.dto.CheckoutResultDTO;
+import com.mythicemporium.event.CatalogChangedEvent;
+import com.mythicemporium.exception.InsufficientStockException;
+import com.mythicemporium.exception.InvalidRequestException;
+import com.mythicemporium.exception.ResourceNotFoundException;
+import com.mythicemporium.repository.ProductVariationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CheckoutServiceTest {
+
+    @Mock
+    ProductVariationRepository productVariationRepository;
+
+    @Mock
+    StockBucketService stockBucketService;
+
+    @Mock
+    InventoryEngine inventoryEngine;
+
+    @Mock
+    ApplicationEventPublisher eventPublisher;
+
+    private CheckoutService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new CheckoutService(productVariationRepository, stockBucketService, inventoryEngine, eventPublisher);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldLockInIdOrderAndDecrementAllLinesAtOnce() throws ExecutionException, InterruptedException {
+        when(productVariationRepository.lockStockByIdIn(any())).thenReturn(List.of(stockRow(2L, 5, null), stockRow(9L, 5, null)));
+        when(productVariationRepository.decrementStockBatch(any(), any())).thenReturn(2);
+
+        Result result = service.checkout(request(new CheckoutLineDTO(9L, 1), new CheckoutLineDTO(2L, 2), new CheckoutLineDTO(9L, 3))).get();
+
+        ArgumentCaptor<Collection<Long>> locked = ArgumentCaptor.forClass(Collection.class);
+        verify(productVariationRepository).lockStockByIdIn(locked.capture());
+        verify(productVariationRepository).decrementStockBatch(new Long[]{2L, 9L}, new Integer[]{2, 4});
+        verify(eventPublisher, times(2)).publishEvent(any(CatalogChangedEvent.class));
+        assertEquals(List.of(2L, 9L), new ArrayList<>(locked.getValue()));
+        assertTrue(result.isSuccess());
+        assertEquals(2, ((CheckoutResultDTO) result.getData()).getLines().size());
+    }
+
+    @Test
+    void shouldReportEveryShortLineAndDecrementNothing() throws ExecutionException, InterruptedException {
+        when(productVariationRepository.lockStockByIdIn(any())).thenReturn(List.of(stockRow(1L, 0, null), stockRow(2L, 10, null), stockRow(3L, 1, null)));
+
+        Result result = service.checkout(request(new CheckoutLineDTO(1L, 1), new CheckoutLineDTO(2L, 1), new CheckoutLineDTO(3L, 2))).get();
+
+        CheckoutResultDTO data = (CheckoutResultDTO) result.getData();
+        assertFalse(result.isSuccess());
+        assertEquals(List.of(1L, 3L), data.getShortages().stream().map(s -> s.getVariationId()).toList());
+        assertEquals(1, data.getShortages().get(1).getAvailable());
+        assertEquals(2, result.getErrorMessages().size());
+        verify(productVariationRepository, never()).decrementStockBatch(any(), any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void shouldTakeShardedLinesFromBuckets() throws ExecutionException, InterruptedException {
+        when(productVariationRepository.lockStockByIdIn(any())).thenReturn(List.of(stockRow(1L, 5, null), stockRow(2L, 0, 4)));
+        when(stockBucketService.lockedStock(2L)).thenReturn(10);
+        when(stockBucketService.drain(2L, 3)).thenReturn(true);
+        when(productVariationRepository.decrementStockBatch(any(), any())).thenReturn(1);
+
+        Result result = service.checkout(request(new CheckoutLineDTO(1L, 1), new CheckoutLineDTO(2L, 3))).get();
+
+        assertTrue(result.isSuccess());
+        verify(productVariationRepository).decrementStockBatch(new Long[]{1L}, new Integer[]{1});
+    }
+
+    @Test
+    void shouldTakeHeldLinesFromInventoryEngine() throws ExecutionException, InterruptedException {
+        when(inventoryEngine.isActive()).thenReturn(true);
+        when(inventoryEngine.manages(1L)).thenReturn(true);
+        when(inventoryEngine.tryPurchaseAll(Map.of(1L, 2))).thenReturn(List.of());
+        when(productVariationRepository.lockStockByIdIn(any())).thenReturn(List.of(stockRow(2L, 5, null)));
+        when(productVariationRepository.decrementStockBatch(any(), any())).thenReturn(1);
+
+        Result result = service.checkout(request(new CheckoutLineDTO(1L, 2), new CheckoutLineDTO(2L, 1))).get();
+
+        assertTrue(result.isSuccess());
+        verify(productVariationRepository).decrementStockBatch(new Long[]{2L}, new Integer[]{1});
+        verify(eventPublisher, times(1)).publishEvent(any(CatalogChangedEvent.class));
+    }
+
+    @Test
+    void shouldReleaseHeldLinesWhenStoredLineIsShort() throws ExecutionException, InterruptedException {
+        when(inventoryEngine.isActive()).thenReturn(true);
+        when(inventoryEngine.manages(1L)).thenReturn(true);
+        when(inventoryEngine.tryPurchaseAll(Map.of(1L, 2))).thenReturn(List.of());
+        when(productVariationRepository.lockStockByIdIn(any())).thenReturn(List.of(stockRow(2L, 0, null)));
+
+        Result result = service.checkout(request(new CheckoutLineDTO(1L, 2), new CheckoutLineDTO(2L, 1))).get();
+
+        assertFalse(result.isSuccess());
+        verify(inventoryEngine).release(Map.of(1L, 2));
+        verify(productVariationRepository, never()).decrementStockBatch(any(), any());
+    }
+
+    @Test
+    void shouldNotCheckoutUnknownVariation() {
+        when(productVariationRepository.lockStockByIdIn(any())).thenReturn(List.of(stockRow(1L, 3, null)));
+
+        assertThrows(ResourceNotFoundException.class, () -> service.checkout(request(new CheckoutLineDTO(1L, 1), new CheckoutLineDTO(4L, 1))));
+        verify(productVariationRepository, never()).decrementStockBatch(any(), any());
+    }
+
+    @Test
+    void shouldFailWholeCartWhenBatchUpdateMissesALine() {
+        when(productVariationRepository.lockStockByIdIn(any())).thenReturn(List.of(stockRow(1L, 3, null), stockRow(2L, 3, null)));
+        when(productVariationRepository.decrementStockBatch(any(), any())).thenReturn(1);
+
+        assertThrows(InsufficientStockException.class, () -> service.checkout(request(new CheckoutLineDTO(1L, 1), new CheckoutLineDTO(2L, 1))));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void shouldNotCheckoutInvalidCart() {
+        assertThrows(InvalidRequestException.class, () -> service.checkout(null));
+        assertThrows(InvalidRequestException.class, () -> service.checkout(new CheckoutRequestDTO(List.of())));
+        assertThrows(InvalidRequestException.class, () -> service.checkout(request(new CheckoutLineDTO(null, 1))));
+        assertThrows(InvalidRequestException.class, () -> service.checkout(request(new CheckoutLineDTO(-1L, 1))));
+        assertThrows(InvalidRequestException.class, () -> service.checkout(request(new CheckoutLineDTO(1L, 0))));
+        assertThrows(InvalidRequestException.class, () -> service.checkout(request(new CheckoutLineDTO(1L, Integer.MAX_VALUE), new CheckoutLineDTO(1L, 1))));
+
+        List<CheckoutLineDTO> tooMany = new ArrayList<>();
+        for(long i = 0; i <= CheckoutService.MAX_CHECKOUT_LINES; i++) {
+            tooMany.add(new CheckoutLineDTO(i, 1));
+        }
+        assertThrows(InvalidRequestException.class, () -> service.checkout(new CheckoutRequestDTO(tooMany)));
+        verifyNoInteractions(productVariationRepository);
+    }
+
+    private CheckoutRequestDTO request(CheckoutLineDTO... lines) {
+        return new CheckoutRequestDTO(new ArrayList<>(List.of(lines)));
+    }
+
+    private ProductVariationRepository.StockRow stockRow(Long id, Integer stock, Integer stockShards) {
+        return new ProductVariationRepository.StockRow() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Long getProductId() {
+                return null;
+            }
+
+            @Override
+            public Integer getStock() {
+                return stock;
+            }
+
+            @Override
+            public Integer getStockShards() {
+                return stockShards;
+            }
+        };
+    }
+}
@@ -0,0 +1,75 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.config.CatalogProperties;
+import com.mythicemporium.exception.PreconditionFailedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConflictRetryExecutorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ConflictRetryExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        CatalogProperties catalogProperties = new CatalogProperties();
+        catalogProperties.setConflictRetryAttempts(3);
+        catalogProperties.setConflictRetryBackoff(Duration.ofMillis(1));
+        meterRegistry = new SimpleMeterRegistry();
+        executor = new ConflictRetryExecutor(catalogProperties, meterRegistry);
+    }
+
+    @Test
+    void shouldRetryConflictingWriteUntilItCommits() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = executor.execute("product.update", () -> {
+            if(attempts.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("Product", 1L);
+            }
+            return "saved";
+        });
+
+        assertEquals("saved", result);
+        assertEquals(3, attempts.get());
+        assertEquals(2.0, conflicts("product.update", "retried"));
+    }
+
+    @Test
+    void shouldGiveUpAfterLastAttempt() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> executor.execute("product.update", () -> {
+            attempts.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException("Product", 1L);
+        }));
+
+        assertEquals(3, attempts.get());
+        assertEquals(2.0, conflicts("product.update", "retried"));
+        assertEquals(1.0, conflicts("product.update", "exhausted"));
+    }
+
+    @Test
+    void shouldNotRetryConditionalWrites() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(PreconditionFailedException.class, () -> executor.executeOnce("variation.update", () -> {
+            attempts.incrementAndGet();
+            throw new PreconditionFailedException("Variation 1 is at version 2, not 1.");
+        }));
+
+        assertEquals(1, attempts.get());
+        assertEquals(1.0, conflicts("variation.update", "rejected"));
+    }
+
+    private double conflicts(String operation, String outcome) {
+        return meterRegistry.get("catalog.write.conflicts").tag("operation", operation).tag("outcome", outcome).counter().count();
+    }
+}
@@ -0,0 +1,202 @@
+package com.mythicemporium.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mythicemporium.config.IdempotencyProperties;
+import com.mythicemporium.dto.StockUpdateDTO;
+import com.mythicemporium.exception.InsufficientStockException;
+import com.mythicemporium.exception.InvalidRequestException;
+import com.mythicemporium.model.IdempotencyRecord;
+import com.mythicemporium.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T12:00:00Z");
+
+    @Mock
+    IdempotencyRecordRepository recordRepository;
+
+    private IdempotencyService service;
+
+    @BeforeEach
+    void setUp() {
+        IdempotencyProperties idempotencyProperties = new IdempotencyProperties();
+        idempotencyProperties.setTtl(Duration.ofHours(1));
+        service = new IdempotencyService(recordRepository, idempotencyProperties, new ObjectMapper(), Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    void shouldRunActionWithoutKey() {
+        AtomicInteger calls = new AtomicInteger();
+
+        service.executeNow(null, "PATCH /products/variations/1/stock", stockUpdate(5), () -> ok(calls));
+        service.executeNow(null, "PATCH /products/variations/1/stock", stockUpdate(5), () -> ok(calls));
+
+        assertEquals(2, calls.get());
+        verifyNoInteractions(recordRepository);
+    }
+
+    @Test
+    void shouldReplayStoredResponseForRepeatedKey() {
+        AtomicInteger calls = new AtomicInteger();
+        when(recordRepository.findByIdAndExpiresAtAfter(":key-1", NOW)).thenReturn(Optional.empty());
+
+        ResponseEntity<?> first = service.executeNow("key-1", "POST /products", Map.of("name", "Sword"), () -> created(calls));
+        ResponseEntity<?> second = service.executeNow("key-1", "POST /products", Map.of("name", "Sword"), () -> created(calls));
+
+        ArgumentCaptor<IdempotencyRecord> stored = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        verify(recordRepository).save(stored.capture());
+        assertEquals(1, calls.get());
+        assertEquals(HttpStatus.CREATED, second.getStatusCode());
+        assertEquals(first.getBody(), second.getBody());
+        assertEquals("true", second.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertNull(first.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals(201, stored.getValue().getStatus());
+        assertEquals(MediaType.APPLICATION_JSON_VALUE, stored.getValue().getContentType());
+        assertEquals("{\"id\":1}", stored.getValue().getBody());
+        assertEquals(NOW.plus(Duration.ofHours(1)), stored.getValue().getExpiresAt());
+    }
+
+    @Test
+    void shouldCoalesceConcurrentDuplicateOntoInFlightRequest() {
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<ResponseEntity<?>> inFlight = new CompletableFuture<>();
+        when(recordRepository.findByIdAndExpiresAtAfter(":key-1", NOW)).thenReturn(Optional.empty());
+
+        CompletableFuture<ResponseEntity<?>> first = service.execute("key-1", "POST /products", null, () -> {
+            calls.incrementAndGet();
+            return inFlight;
+        });
+        CompletableFuture<ResponseEntity<?>> duplicate = service.execute("key-1", "POST /products", null, () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(ResponseEntity.ok("second"));
+        });
+
+        assertFalse(duplicate.isDone());
+        inFlight.complete(ResponseEntity.ok("first"));
+
+        assertEquals(1, calls.get());
+        assertEquals("first", first.join().getBody());
+        assertEquals("first", duplicate.join().getBody());
+    }
+
+    @Test
+    void shouldReplayDurableRecordWithoutRunningAction() {
+        AtomicInteger calls = new AtomicInteger();
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setId(":key-1");
+        record.setFingerprint(fingerprintOf("PATCH /products/variations/1/stock", stockUpdate(5)));
+        record.setStatus(200);
+        record.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        record.setBody("Stock updated.");
+        record.setExpiresAt(NOW.plusSeconds(60));
+        when(recordRepository.findByIdAndExpiresAtAfter(":key-1", NOW)).thenReturn(Optional.of(record));
+
+        ResponseEntity<?> replayed = service.executeNow("key-1", "PATCH /products/variations/1/stock", stockUpdate(5), () -> ok(calls));
+
+        assertEquals(0, calls.get());
+        assertEquals(HttpStatus.OK, replayed.getStatusCode());
+        assertEquals("Stock updated.", replayed.getBody());
+        assertEquals(MediaType.TEXT_PLAIN, replayed.getHeaders().getContentType());
+    }
+
+    @Test
+    void shouldRejectKeyReusedForDifferentRequest() {
+        AtomicInteger calls = new AtomicInteger();
+        when(recordRepository.findByIdAndExpiresAtAfter(":key-1", NOW)).thenReturn(Optional.empty());
+
+        service.executeNow("key-1", "PATCH /products/variations/1/stock", stockUpdate(5), () -> ok(calls));
+
+        assertThrows(InvalidRequestException.class,
+                () -> service.executeNow("key-1", "PATCH /products/variations/1/stock", stockUpdate(6), () -> ok(calls)));
+        assertThrows(InvalidRequestException.class,
+                () -> service.executeNow("key-1", "PATCH /products/variations/2/stock", stockUpdate(5), () -> ok(calls)));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void shouldForgetFailedRequestsSoTheyCanBeRetried() {
+        AtomicInteger calls = new AtomicInteger();
+        when(recordRepository.findByIdAndExpiresAtAfter(anyString(), any(Instant.class))).thenReturn(Optional.empty());
+
+        assertThrows(InsufficientStockException.class, () -> service.executeNow("key-1", "POST /products/variations/1/purchase", null, () -> {
+            calls.incrementAndGet();
+            throw new InsufficientStockException("Insufficient stock.");
+        }));
+        service.executeNow("key-2", "POST /products", null, () -> {
+            calls.incrementAndGet();
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        });
+        service.executeNow("key-1", "POST /products/variations/1/purchase", null, () -> ok(calls));
+        service.executeNow("key-2", "POST /products", null, () -> ok(calls));
+
+        assertEquals(4, calls.get());
+        verify(recordRepository, times(2)).save(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    void shouldRejectOverlongKey() {
+        assertThrows(InvalidRequestException.class,
+                () -> service.executeNow("k".repeat(256), "POST /products", null, () -> ResponseEntity.ok("ok")));
+        assertThrows(InvalidRequestException.class,
+                () -> service.executeNow(" ", "POST /products", null, () -> ResponseEntity.ok("ok")));
+    }
+
+    @Test
+    void shouldPurgeExpiredRecords() {
+        service.purgeExpired();
+
+        verify(recordRepository).deleteExpired(NOW);
+    }
+
+    // Runs a request through a throwaway service to learn the fingerprint it stores.
+    private String fingerprintOf(String request, Object payload) {
+        IdempotencyRecordRepository repository = mock(IdempotencyRecordRepository.class);
+        when(repository.findByIdAndExpiresAtAfter(anyString(), any(Instant.class))).thenReturn(Optional.empty());
+        new IdempotencyService(repository, new IdempotencyProperties(), new ObjectMapper())
+                .executeNow("probe", request, payload, () -> ResponseEntity.ok("probe"));
+
+        ArgumentCaptor<IdempotencyRecord> stored = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        verify(repository).save(stored.capture());
+        return stored.getValue().getFingerprint();
+    }
+
+    private ResponseEntity<?> ok(AtomicInteger calls) {
+        calls.incrementAndGet();
+        return ResponseEntity.ok("Stock updated.");
+    }
+
+    private ResponseEntity<?> created(AtomicInteger calls) {
+        calls.incrementAndGet();
+        return new ResponseEntity<>(Map.of("id", 1), HttpStatus.CREATED);
+    }
+
+    private StockUpdateDTO stockUpdate(int stock) {
+        StockUpdateDTO dto = new StockUpdateDTO();
+        dto.setStock(stock);
+        return dto;
+    }
+}
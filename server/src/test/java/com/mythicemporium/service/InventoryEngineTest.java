@@ -0,0 +1,264 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.config.InventoryProperties;
+import com.mythicemporium.dto.CheckoutShortageDTO;
+import com.mythicemporium.event.CatalogChangedEvent;
+import com.mythicemporium.repository.ProductVariationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryEngineTest {
+
+    @Mock
+    ProductVariationRepository productVariationRepository;
+
+    @Mock
+    ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    @Mock
+    ScheduledExecutorService flusher;
+
+    private InventoryProperties inventoryProperties;
+    private SimpleMeterRegistry meterRegistry;
+    private InventoryEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        inventoryProperties = new InventoryProperties();
+        inventoryProperties.setMode(InventoryProperties.Mode.MEMORY);
+        meterRegistry = new SimpleMeterRegistry();
+        engine = new InventoryEngine(productVariationRepository, inventoryProperties, eventPublisher, transactionManager,
+                meterRegistry, flusher);
+    }
+
+    @Test
+    void shouldLoadUnshardedVariationsAndScheduleFlusher() {
+        load(stockRow(1L, 10L, 5, null), stockRow(2L, 10L, 50, 4));
+
+        assertTrue(engine.isActive());
+        assertEquals(5, engine.available(1L));
+        assertNull(engine.available(2L));
+        verify(flusher).scheduleWithFixedDelay(any(Runnable.class), eq(5L), eq(5L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void shouldNotManageAnythingInDatabaseMode() {
+        inventoryProperties.setMode(InventoryProperties.Mode.DATABASE);
+
+        engine.loadIfEnabled();
+
+        assertFalse(engine.isActive());
+        assertEquals(InventoryEngine.Outcome.NOT_MANAGED, engine.tryPurchase(1L, 1));
+        verifyNoInteractions(productVariationRepository, flusher);
+    }
+
+    @Test
+    void shouldNeverOversellUnderConcurrentPurchases() throws Exception {
+        load(stockRow(1L, 10L, 3000, null));
+
+        ExecutorService buyers = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> results = new ArrayList<>();
+        for(int i = 0; i < 8; i++) {
+            results.add(buyers.submit(() -> {
+                int purchased = 0;
+                for(int j = 0; j < 1000; j++) {
+                    if(engine.tryPurchase(1L, 1) == InventoryEngine.Outcome.PURCHASED) {
+                        purchased++;
+                    }
+                }
+                return purchased;
+            }));
+        }
+
+        int total = 0;
+        for(Future<Integer> result : results) {
+            total += result.get();
+        }
+        buyers.shutdown();
+
+        assertEquals(3000, total);
+        assertEquals(0, engine.available(1L));
+        assertEquals(3000, engine.pendingUnits());
+        assertEquals(InventoryEngine.Outcome.INSUFFICIENT, engine.tryPurchase(1L, 1));
+    }
+
+    @Test
+    void shouldFlushAllDeltasInOneUpdateAndPublishStockChanges() {
+        load(stockRow(1L, 10L, 5, null), stockRow(2L, 10L, 5, null));
+        engine.tryPurchase(1L, 2);
+        engine.tryPurchase(1L, 1);
+        engine.tryPurchase(2L, 4);
+
+        assertTrue(engine.flushLagMillis() >= 0);
+        engine.flush();
+
+        verify(productVariationRepository).applyStockDeltas(new Long[]{1L, 2L}, new Integer[]{3, 4});
+        verify(eventPublisher, times(2)).publishEvent(any(CatalogChangedEvent.class));
+        assertEquals(0, engine.pendingUnits());
+        assertEquals(0, engine.flushLagMillis());
+        assertEquals(1, meterRegistry.get("inventory.flush").timer().count());
+
+        engine.flush();
+        verify(productVariationRepository, times(1)).applyStockDeltas(any(), any());
+    }
+
+    @Test
+    void shouldRetryDeltasAfterFailedFlush() {
+        load(stockRow(1L, 10L, 5, null));
+        engine.tryPurchase(1L, 2);
+        when(productVariationRepository.applyStockDeltas(any(), any()))
+                .thenThrow(new RuntimeException("connection lost"))
+                .thenReturn(1);
+
+        engine.flush();
+        engine.tryPurchase(1L, 1);
+        engine.flush();
+
+        verify(productVariationRepository).applyStockDeltas(new Long[]{1L}, new Integer[]{3});
+        assertEquals(1.0, meterRegistry.get("inventory.flush.failures").counter().count());
+        assertEquals(0, engine.pendingUnits());
+    }
+
+    @Test
+    void shouldApplyAdminStockAsDelta() {
+        load(stockRow(1L, 10L, 10, null));
+        engine.tryPurchase(1L, 3);
+
+        assertTrue(engine.setStock(1L, 20));
+        engine.flush();
+
+        // Database holds 10; 10 - (-10) = 20 once the flush lands.
+        assertEquals(20, engine.available(1L));
+        verify(productVariationRepository).applyStockDeltas(new Long[]{1L}, new Integer[]{-10});
+    }
+
+    @Test
+    void shouldTakeEveryLineOrNone() {
+        load(stockRow(1L, 10L, 5, null), stockRow(2L, 10L, 1, null), stockRow(3L, 10L, 0, null));
+
+        List<CheckoutShortageDTO> shortages = engine.tryPurchaseAll(Map.of(1L, 2, 2L, 3, 3L, 1));
+
+        assertEquals(List.of(2L, 3L), shortages.stream().map(CheckoutShortageDTO::getVariationId).sorted().toList());
+        assertEquals(5, engine.available(1L));
+        assertEquals(0, engine.pendingUnits());
+
+        assertTrue(engine.tryPurchaseAll(Map.of(1L, 2, 2L, 1)).isEmpty());
+        assertEquals(3, engine.available(1L));
+        assertEquals(0, engine.available(2L));
+
+        engine.release(Map.of(1L, 2, 2L, 1));
+        assertEquals(5, engine.available(1L));
+        assertEquals(0, engine.pendingUnits());
+    }
+
+    @Test
+    void shouldGiveBackStockOfRolledBackTransactionAndRestockAfterCommit() {
+        load(stockRow(1L, 10L, 5, null));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertEquals(InventoryEngine.Outcome.PURCHASED, engine.tryPurchase(1L, 2));
+            engine.restock(Map.of(1L, 1));
+            assertEquals(3, engine.available(1L));
+
+            TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(),
+                    TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+        finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(5, engine.available(1L));
+
+        engine.restock(Map.of(1L, 1));
+        assertEquals(6, engine.available(1L));
+    }
+
+    @Test
+    void shouldAdoptNewVariationsButNotShardedOnes() {
+        load();
+        when(productVariationRepository.findStockRowById(7L)).thenReturn(Optional.of(stockRow(7L, 3L, 2, null)));
+        when(productVariationRepository.findStockRowById(8L)).thenReturn(Optional.of(stockRow(8L, 3L, 2, 4)));
+
+        assertEquals(InventoryEngine.Outcome.PURCHASED, engine.tryPurchase(7L, 2));
+        assertEquals(InventoryEngine.Outcome.NOT_MANAGED, engine.tryPurchase(8L, 1));
+        assertEquals(InventoryEngine.Outcome.NOT_MANAGED, engine.tryPurchase(9L, 1));
+        assertEquals(InventoryEngine.Outcome.INSUFFICIENT, engine.tryPurchase(7L, 1));
+        verify(productVariationRepository, times(1)).findStockRowById(7L);
+    }
+
+    @Test
+    void shouldForgetVariationsOfDeletedProduct() {
+        load(stockRow(1L, 10L, 5, null), stockRow(2L, 11L, 5, null));
+
+        engine.onCatalogChanged(CatalogChangedEvent.productDeleted(10L));
+
+        assertNull(engine.available(1L));
+        assertEquals(5, engine.available(2L));
+    }
+
+    private void load(ProductVariationRepository.StockRow... rows) {
+        if(rows.length > 0) {
+            when(productVariationRepository.findStockPage(eq(0L), any(Limit.class))).thenReturn(List.of(rows));
+            when(productVariationRepository.findStockPage(eq(rows[rows.length - 1].getId()), any(Limit.class))).thenReturn(List.of());
+        }
+        else {
+            when(productVariationRepository.findStockPage(anyLong(), any(Limit.class))).thenReturn(List.of());
+        }
+        engine.loadIfEnabled();
+    }
+
+    private ProductVariationRepository.StockRow stockRow(Long id, Long productId, Integer stock, Integer stockShards) {
+        return new ProductVariationRepository.StockRow() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Long getProductId() {
+                return productId;
+            }
+
+            @Override
+            public Integer getStock() {
+                return stock;
+            }
+
+            @Override
+            public Integer getStockShards() {
+                return stockShards;
+            }
+        };
+    }
+}
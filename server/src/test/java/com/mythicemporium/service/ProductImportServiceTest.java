@@ -0,0 +1,209 @@
+package com.mythicemporium.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mythicemporium.config.CatalogProperties;
+import com.mythicemporium.dto.ImportErrorDTO;
+import com.mythicemporium.dto.ImportResultDTO;
+import com.mythicemporium.event.CatalogChangedEvent;
+import com.mythicemporium.exception.InvalidRequestException;
+import com.mythicemporium.model.Brand;
+import com.mythicemporium.model.Category;
+import com.mythicemporium.model.Product;
+import com.mythicemporium.model.ProductVariation;
+import com.mythicemporium.repository.ProductRepository;
+import com.mythicemporium.repository.ProductVariationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductImportServiceTest {
+
+    @Mock
+    ProductRepository productRepository;
+
+    @Mock
+    ProductVariationRepository productVariationRepository;
+
+    @Mock
+    BrandService brandService;
+
+    @Mock
+    CategoryService categoryService;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    @Mock
+    ApplicationEventPublisher eventPublisher;
+
+    private final AtomicLong ids = new AtomicLong();
+    private CatalogProperties catalogProperties;
+    private ProductImportService service;
+
+    @BeforeEach
+    void setUp() {
+        catalogProperties = new CatalogProperties();
+        catalogProperties.setImportChunkSize(2);
+        service = new ProductImportService(productRepository, productVariationRepository, brandService, categoryService,
+                catalogProperties, transactionManager, eventPublisher, new ObjectMapper());
+
+        Brand brand = new Brand();
+        brand.setId(1L);
+        Category category = new Category();
+        category.setId(2L);
+        when(brandService.findAll()).thenReturn(List.of(brand));
+        when(categoryService.findAll()).thenReturn(List.of(category));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldImportValidNdjsonLinesInChunksAndReportTheRest() throws IOException {
+        assignIds();
+        String ndjson = product("A", 1L, "A-1") + "\n" +
+                "\n" +
+                "{ not json\n" +
+                product("B", 9L, "B-1") + "\n" +
+                product("C", 1L, "C-1") + "\n" +
+                product("D", 1L, "D-1") + "\n";
+
+        ImportResultDTO result = service.importProducts(stream(ndjson), ProductImportService.Format.NDJSON);
+
+        assertEquals(3, result.getImported());
+        assertEquals(2, result.getFailed());
+        assertTrue(result.getRowsPerSecond() > 0);
+        assertEquals(List.of(3L, 4L), result.getErrors().stream().map(ImportErrorDTO::getLine).toList());
+        assertEquals("Product brand 9 not found.", result.getErrors().get(1).getMessage());
+
+        ArgumentCaptor<List<Product>> chunks = ArgumentCaptor.forClass(List.class);
+        verify(productRepository, times(3)).insertAll(chunks.capture());
+        assertEquals(List.of("A", "C", "D"), chunks.getAllValues().stream().flatMap(List::stream).map(Product::getName).toList());
+        assertEquals(1L, chunks.getAllValues().get(0).get(0).getBrand().getId());
+        verify(eventPublisher, times(3)).publishEvent(any(CatalogChangedEvent.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldGroupCsvLinesIntoProducts() throws IOException {
+        assignIds();
+        String csv = "name,description,brandId,categoryId,sku,price,stock,imageUrl,attributes\n" +
+                "Cloak,\"Warm, hooded\",1,2,CLOAK-S,10.5,3,,Size=S;Color=Grey\n" +
+                "Cloak,\"Warm, hooded\",1,2,CLOAK-M,11.5,4,img,Size=M\n" +
+                "Staff,Oak,1,2,STAFF-1,abc,1,,\n" +
+                "Ring,\"The \"\"one\"\"\",1,2,RING-1,99,1,,\n";
+
+        ImportResultDTO result = service.importProducts(stream(csv), ProductImportService.Format.CSV);
+
+        assertEquals(2, result.getImported());
+        assertEquals(1, result.getFailed());
+        assertEquals(4L, result.getErrors().get(0).getLine());
+        assertTrue(result.getErrors().get(0).getMessage().contains("price 'abc'"));
+
+        ArgumentCaptor<List<Product>> chunks = ArgumentCaptor.forClass(List.class);
+        verify(productRepository, times(2)).insertAll(chunks.capture());
+        Product cloak = chunks.getAllValues().get(0).get(0);
+        assertEquals("Warm, hooded", cloak.getDescription());
+        assertEquals(List.of("CLOAK-S", "CLOAK-M"), cloak.getVariations().stream().map(ProductVariation::getSku).toList());
+        assertEquals(2, cloak.getVariations().get(0).getAttributes().size());
+        assertEquals("The \"one\"", chunks.getAllValues().get(1).get(0).getDescription());
+    }
+
+    @Test
+    void shouldRejectCsvWithoutRequiredColumns() {
+        assertThrows(InvalidRequestException.class, () ->
+                service.importProducts(stream("name,description\nA,B\n"), ProductImportService.Format.CSV));
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldReportSkusTakenInTheChunkOrCatalogByLine() throws IOException {
+        assignIds();
+        catalogProperties.setImportChunkSize(4);
+        when(productVariationRepository.findLowerSkusIn(anyCollection())).thenAnswer(invocation ->
+                invocation.<Collection<String>>getArgument(0).stream().filter(sku -> sku.equals("c-1")).toList());
+        String ndjson = product("A", 1L, "A-1") + "\n" +
+                product("B", 1L, "B-1") + "\n" +
+                product("C", 1L, "C-1") + "\n" +
+                product("D", 1L, "a-1") + "\n" +
+                "{\"name\":\"E\",\"description\":\"Imported\",\"brandId\":1,\"categoryId\":2,\"variations\":[" +
+                "{\"sku\":\"D-1\",\"price\":1.5,\"stock\":3,\"attributes\":[]}," +
+                "{\"sku\":\"d-1\",\"price\":1.5,\"stock\":3,\"attributes\":[]}]}\n";
+
+        ImportResultDTO result = service.importProducts(stream(ndjson), ProductImportService.Format.NDJSON);
+
+        assertEquals(2, result.getImported());
+        assertEquals(List.of(3L, 4L, 5L), result.getErrors().stream().map(ImportErrorDTO::getLine).toList());
+        assertEquals(List.of("Variation SKU C-1 already exists.",
+                        "Variation SKU a-1 is already used on line 1.",
+                        "Variation SKU d-1 is repeated within the product."),
+                result.getErrors().stream().map(ImportErrorDTO::getMessage).toList());
+
+        ArgumentCaptor<List<Product>> chunks = ArgumentCaptor.forClass(List.class);
+        verify(productRepository, times(1)).insertAll(chunks.capture());
+        assertEquals(List.of("A", "B"), chunks.getValue().stream().map(Product::getName).toList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldRetryAFailedChunkOneProductAtATime() throws IOException {
+        doAnswer(invocation -> {
+            List<Product> products = invocation.getArgument(0);
+            if(products.stream().anyMatch(product -> product.getName().equals("B"))) {
+                throw new RuntimeException("connection lost");
+            }
+            products.forEach(product -> product.setId(ids.incrementAndGet()));
+            return null;
+        }).when(productRepository).insertAll(anyList());
+
+        ImportResultDTO result = service.importProducts(stream(product("A", 1L, "A-1") + "\n" + product("B", 1L, "B-1")),
+                ProductImportService.Format.NDJSON);
+
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getFailed());
+        assertEquals(List.of(2L), result.getErrors().stream().map(ImportErrorDTO::getLine).toList());
+        assertEquals("Product could not be saved.", result.getErrors().get(0).getMessage());
+
+        ArgumentCaptor<List<Product>> attempts = ArgumentCaptor.forClass(List.class);
+        verify(productRepository, times(3)).insertAll(attempts.capture());
+        assertEquals(List.of(2, 1, 1), attempts.getAllValues().stream().map(List::size).toList());
+        verify(transactionManager, times(2)).rollback(any());
+        verify(eventPublisher, times(1)).publishEvent(any(CatalogChangedEvent.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void assignIds() {
+        doAnswer(invocation -> {
+            ((List<Product>) invocation.getArgument(0)).forEach(product -> product.setId(ids.incrementAndGet()));
+            return null;
+        }).when(productRepository).insertAll(anyList());
+    }
+
+    private String product(String name, Long brandId, String sku) {
+        return "{\"name\":\"" + name + "\",\"description\":\"Imported\",\"brandId\":" + brandId + ",\"categoryId\":2," +
+                "\"variations\":[{\"sku\":\"" + sku + "\",\"price\":1.5,\"stock\":3,\"attributes\":[{\"attributeName\":\"Size\",\"attributeValue\":\"M\"}]}]}";
+    }
+
+    private InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,40 +1,57 @@
 package com.mythicemporium.service;
 
+import com.mythicemporium.config.CatalogProperties;
 import com.mythicemporium.dto.*;
+import com.mythicemporium.event.CatalogChangedEvent;
 import com.mythicemporium.exception.InsufficientStockException;
 import com.mythicemporium.exception.InvalidRequestException;
+import com.mythicemporium.exception.PreconditionFailedException;
 import com.mythicemporium.exception.ResourceConflictException;
 import com.mythicemporium.exception.ResourceNotFoundException;
 import com.mythicemporium.model.*;
-import com.mythicemporium.repository.BrandRepository;
-import com.mythicemporium.repository.CategoryRepository;
+import com.mythicemporium.repository.ProductFilter;
 import com.mythicemporium.repository.ProductRepository;
+import com.mythicemporium.repository.ProductSort;
 import com.mythicemporium.repository.ProductVariationRepository;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import javax.swing.text.html.Option;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class ProductServiceTest {
 
     @Mock
-    BrandRepository brandRepository;
+    BrandService brandService;
 
     @Mock
-    CategoryRepository categoryRepository;
+    CategoryService categoryService;
 
     @Mock
     ProductRepository productRepository;
@@ -42,16 +59,44 @@ class ProductServiceTest {
     @Mock
     ProductVariationRepository productVariationRepository;
 
+    @Mock
+    StockBucketService stockBucketService;
+
+    @Mock
+    InventoryEngine inventoryEngine;
+
+    @Mock
+    PurchaseCombiner purchaseCombiner;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    @Mock
+    CatalogProjectionService catalogProjectionService;
+
+    @Mock
+    CatalogSnapshotService catalogSnapshotService;
+
+    @Mock
+    SkuIndex skuIndex;
+
+    @Mock
+    ApplicationEventPublisher eventPublisher;
+
+    private CatalogProperties catalogProperties;
+
     private ProductService service;
 
     @BeforeEach
     void setUp() {
-        service = new ProductService(productRepository, productVariationRepository, brandRepository, categoryRepository);
+        catalogProperties = new CatalogProperties();
+        service = new ProductService(productRepository, productVariationRepository, stockBucketService, inventoryEngine, purchaseCombiner, brandService, categoryService,
+                catalogProjectionService, catalogSnapshotService, skuIndex, catalogProperties, transactionManager, eventPublisher);
     }
 
     @Test
     void shouldFindAll() {
-        when(productRepository.findAll()).thenReturn(List.of(generateProduct(1L)));
+        when(productRepository.findAllWithVariations()).thenReturn(List.of(generateProduct(1L)));
         List<ProductResponseDTO> products = service.findAll();
 
         assertEquals(1, products.size());
@@ -59,7 +104,7 @@ class ProductServiceTest {
 
     @Test
     void findAllByBrandId() {
-        when(productRepository.findAllByBrandId(any(Long.class))).thenReturn(List.of(generateProduct(1L)));
+        when(productRepository.findAllWithVariationsByBrandId(any(Long.class))).thenReturn(List.of(generateProduct(1L)));
         List<ProductResponseDTO> products = service.findAllByBrandId(1L);
 
         assertEquals(1, products.size());
@@ -67,16 +112,170 @@ class ProductServiceTest {
 
     @Test
     void findAllByCategoryId() {
-        when(productRepository.findAllByCategoryId(any(Long.class))).thenReturn(List.of(generateProduct(1L)));
+        when(productRepository.findAllWithVariationsByCategoryId(any(Long.class))).thenReturn(List.of(generateProduct(1L)));
         List<ProductResponseDTO> products = service.findAllByCategoryId(1L);
 
         assertEquals(1, products.size());
     }
 
+    @Test
+    void shouldFindFirstPageWithNextCursor() {
+        when(productRepository.findPageIds(eq(0L), any(Limit.class))).thenReturn(List.of(1L, 2L, 3L));
+        when(productRepository.findAllWithVariationsByIdIn(List.of(1L, 2L))).thenReturn(List.of(generateProduct(1L), generateProduct(2L)));
+
+        ProductPageDTO page = service.findAll(null, 2);
+
+        assertEquals(2, page.getProducts().size());
+        assertEquals(2L, ProductCursor.decode(page.getNextCursor()));
+    }
+
+    @Test
+    void shouldFindLastPageWithoutNextCursor() {
+        when(productRepository.findPageIdsByBrandId(eq(1L), eq(2L), any(Limit.class))).thenReturn(List.of(3L));
+        when(productRepository.findAllWithVariationsByIdIn(List.of(3L))).thenReturn(List.of(generateProduct(3L)));
+
+        ProductPageDTO page = service.findAllByBrandId(1L, ProductCursor.encode(2L), 2);
+
+        assertEquals(1, page.getProducts().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void shouldFindEmptyPage() {
+        when(productRepository.findPageIdsByCategoryId(eq(1L), eq(0L), any(Limit.class))).thenReturn(List.of());
+
+        ProductPageDTO page = service.findAllByCategoryId(1L, null, 2);
+
+        assertTrue(page.getProducts().isEmpty());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void shouldFindPageFromProjectionInProjectionReadMode() {
+        catalogProperties.setReadMode(CatalogProperties.ReadMode.PROJECTION);
+        ProductResponseDTO first = new ProductResponseDTO();
+        first.setId(4L);
+        ProductResponseDTO second = new ProductResponseDTO();
+        second.setId(5L);
+        when(catalogProjectionService.findPageByBrandId(1L, 0L, 2)).thenReturn(List.of(first, second));
+
+        ProductPageDTO page = service.findAllByBrandId(1L, null, 1);
+
+        assertEquals(1, page.getProducts().size());
+        assertEquals(4L, ProductCursor.decode(page.getNextCursor()));
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    void shouldFindFromSnapshotInSnapshotReadMode() {
+        catalogProperties.setReadMode(CatalogProperties.ReadMode.SNAPSHOT);
+        CatalogSnapshot snapshot = CatalogSnapshot.EMPTY.apply(List.of(
+                new CatalogSnapshot.Entry(ProductMapper.toResponseDTO(generateProduct(4L)), 1L, 1L),
+                new CatalogSnapshot.Entry(ProductMapper.toResponseDTO(generateProduct(5L)), 1L, 1L)), List.of());
+        when(catalogSnapshotService.isReady()).thenReturn(true);
+        when(catalogSnapshotService.getSnapshot()).thenReturn(snapshot);
+
+        ProductPageDTO page = service.findAllByBrandId(1L, null, 1);
+
+        assertEquals(1, page.getProducts().size());
+        assertEquals(4L, ProductCursor.decode(page.getNextCursor()));
+        assertEquals("Test Product 5", service.findById(5L).getName());
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    void shouldFindFromTablesUntilSnapshotIsReady() {
+        catalogProperties.setReadMode(CatalogProperties.ReadMode.SNAPSHOT);
+        when(catalogSnapshotService.isReady()).thenReturn(false);
+        when(productRepository.findAllWithVariations()).thenReturn(List.of(generateProduct(1L)));
+
+        assertEquals(1, service.findAll().size());
+    }
+
+    @Test
+    void shouldNotFindPageWithInvalidLimit() {
+        assertThrows(InvalidRequestException.class, () -> service.findAll(null, 0));
+        assertThrows(InvalidRequestException.class, () -> service.findAll(null, ProductService.MAX_PAGE_LIMIT + 1));
+    }
+
+    @Test
+    void shouldNotFindPageWithInvalidCursor() {
+        assertThrows(InvalidRequestException.class, () -> service.findAll("not a cursor", 10));
+    }
+
+    @Test
+    void shouldFindFilteredPageFromCursor() {
+        String cursor = ProductCursor.encode(ProductSort.PRICE, 12.5, 7L);
+        ProductPageDTO expected = new ProductPageDTO(List.of(), null);
+        when(catalogProjectionService.findFilteredPage(any(ProductFilter.class), eq(20))).thenReturn(expected);
+
+        ProductPageDTO page = service.findFiltered(cursor, 20, 10.0, 100.0, true, "price");
+
+        ArgumentCaptor<ProductFilter> filter = ArgumentCaptor.forClass(ProductFilter.class);
+        verify(catalogProjectionService).findFilteredPage(filter.capture(), eq(20));
+        assertSame(expected, page);
+        assertEquals(ProductSort.PRICE, filter.getValue().getSort());
+        assertEquals(12.5, filter.getValue().getAfterKey());
+        assertEquals(7L, filter.getValue().getAfterId());
+        assertTrue(filter.getValue().isInStock());
+    }
+
+    @Test
+    void shouldNotFindFilteredPageWithInvalidFilters() {
+        assertThrows(InvalidRequestException.class, () -> service.findFiltered(null, 20, -1.0, null, false, null));
+        assertThrows(InvalidRequestException.class, () -> service.findFiltered(null, 20, 50.0, 10.0, false, null));
+        assertThrows(InvalidRequestException.class, () -> service.findFiltered(null, 20, null, null, false, "rating"));
+        assertThrows(InvalidRequestException.class, () -> service.findFiltered(null, 0, null, null, true, null));
+        verifyNoInteractions(catalogProjectionService);
+    }
+
+    @Test
+    void shouldNotFindFilteredPageWithCursorFromAnotherSort() {
+        String cursor = ProductCursor.encode(ProductSort.NAME, "Dagger", 7L);
+
+        assertThrows(InvalidRequestException.class, () -> service.findFiltered(cursor, 20, null, null, false, "price"));
+        assertThrows(InvalidRequestException.class, () -> service.findFiltered(ProductCursor.encode(7L), 20, null, null, false, "name"));
+    }
+
+    @Test
+    void shouldSearchProductsWithNextPage() {
+        ProductResponseDTO first = new ProductResponseDTO();
+        first.setId(7L);
+        ProductResponseDTO second = new ProductResponseDTO();
+        second.setId(3L);
+        when(catalogProjectionService.search("red dragon", 2L, 2)).thenReturn(List.of(first, second));
+
+        ProductPageDTO page = service.searchProducts("  red dragon ", 2, 1);
+
+        assertEquals(1, page.getProducts().size());
+        assertEquals(7L, page.getProducts().get(0).getId());
+        assertEquals("3", page.getNextCursor());
+    }
+
+    @Test
+    void shouldSearchProductsOnLastPage() {
+        when(catalogProjectionService.search("dragon", 0L, 11)).thenReturn(List.of(new ProductResponseDTO()));
+
+        ProductPageDTO page = service.searchProducts("dragon", 0, 10);
+
+        assertEquals(1, page.getProducts().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void shouldNotSearchWithInvalidQuery() {
+        assertThrows(InvalidRequestException.class, () -> service.searchProducts(null, 0, 10));
+        assertThrows(InvalidRequestException.class, () -> service.searchProducts(" ", 0, 10));
+        assertThrows(InvalidRequestException.class, () -> service.searchProducts("a".repeat(ProductService.MAX_SEARCH_QUERY_LENGTH + 1), 0, 10));
+        assertThrows(InvalidRequestException.class, () -> service.searchProducts("dragon", -1, 10));
+        assertThrows(InvalidRequestException.class, () -> service.searchProducts("dragon", 0, 0));
+        verifyNoInteractions(catalogProjectionService);
+    }
+
     @Test
     void shouldCreateValidProduct() throws ExecutionException, InterruptedException {
-        when(brandRepository.findById(any(Long.class))).thenReturn(Optional.of(createTestBrand()));
-        when(categoryRepository.findById(any(Long.class))).thenReturn(Optional.of(createTestCategory()));
+        when(brandService.findById(any(Long.class))).thenReturn(createTestBrand());
+        when(categoryService.findById(any(Long.class))).thenReturn(createTestCategory());
         when(productRepository.save(any(Product.class))).thenReturn(generateProduct(1L));
 
         ProductVariationAttributeDTO attributeDTO = generateAttributeDTO();
@@ -181,7 +380,7 @@ class ProductServiceTest {
 
     @Test
     void shouldNotCreateProductWithNonExistentCategory() {
-        when(brandRepository.findById(any(Long.class))).thenReturn(Optional.of(createTestBrand()));
+        when(brandService.findById(any(Long.class))).thenReturn(createTestBrand());
         ProductVariationAttributeDTO attributeDTO = generateAttributeDTO();
         ProductVariationRequestDTO variationRequestDTO = generateVariationRequest();
         variationRequestDTO.setAttributes(List.of(attributeDTO));
@@ -207,6 +406,30 @@ class ProductServiceTest {
         assertEquals(productRequestDTO.getName(), ((ProductResponseDTO) result.get().getData()).getName());
     }
 
+    @Test
+    void shouldUpdateProductAtExpectedVersion() throws ExecutionException, InterruptedException {
+        Product product = generateProduct(1L);
+        product.setVersion(3L);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(productRepository.save(any(Product.class))).thenReturn(product);
+
+        CompletableFuture<Result> result = service.updateProduct(1L, generateProductRequest(), 3L);
+
+        assertTrue(result.get().isSuccess());
+        verify(productRepository).flush();
+    }
+
+    @Test
+    void shouldNotUpdateProductAtStaleVersion() {
+        Product product = generateProduct(1L);
+        product.setVersion(4L);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+
+        assertThrows(PreconditionFailedException.class, () -> service.updateProduct(1L, generateProductRequest(), 3L));
+        verify(productRepository, never()).save(any(Product.class));
+        verifyNoInteractions(eventPublisher);
+    }
+
     @Test
     void shouldNotUpdateProductWithInvalidId() {
         assertThrows(InvalidRequestException.class, () -> service.updateVariation(-1L, generateVariationRequest()));
@@ -300,9 +523,12 @@ class ProductServiceTest {
 
     @Test
     void shouldDeleteValidProduct() {
-        when(productRepository.findById(any(Long.class))).thenReturn(Optional.of(generateProduct(1L)));
+        when(productRepository.deleteAllByIdIn(List.of(1L))).thenReturn(Map.of(1L, List.of(5L, 6L)));
 
         assertTrue(service.deleteProduct(1L));
+        verify(inventoryEngine).forget(5L);
+        verify(inventoryEngine).forget(6L);
+        verify(eventPublisher).publishEvent(any(CatalogChangedEvent.class));
     }
 
     @Test
@@ -312,7 +538,10 @@ class ProductServiceTest {
 
     @Test
     void shouldNotDeleteNonExistentProduct() {
-        assertThrows(ResourceNotFoundException.class, () -> service.deleteVariation(1L));
+        when(productRepository.deleteAllByIdIn(List.of(1L))).thenReturn(Map.of());
+
+        assertThrows(ResourceNotFoundException.class, () -> service.deleteProduct(1L));
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
@@ -414,8 +643,10 @@ class ProductServiceTest {
         productWithExistingVariation.getVariations().add(existingVariation);
 
         when(productRepository.findById(any(Long.class))).thenReturn(Optional.of(productWithExistingVariation));
+        when(productVariationRepository.saveAndFlush(any(ProductVariation.class))).thenThrow(skuConflict());
 
         assertThrows(ResourceConflictException.class, () -> service.createVariation(1L, variationRequestDTO));
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
@@ -448,6 +679,129 @@ class ProductServiceTest {
         assertEquals(variationRequestDTO.getSku(), ((ProductResponseDTO) result.get().getData()).getVariations().get(0).getSku());
     }
 
+    @Test
+    void shouldKeepMatchingAttributesWhenUpdatingVariation() throws ExecutionException, InterruptedException {
+        Product product = generateProduct(1L);
+        ProductVariation existingVariation = generateProductVariation(1L);
+        existingVariation.setProduct(product);
+        product.getVariations().add(existingVariation);
+
+        ProductVariationAttribute size = new ProductVariationAttribute();
+        size.setId(10L);
+        size.setAttributeName("Size");
+        size.setAttributeValue("Small");
+        size.setVariation(existingVariation);
+        ProductVariationAttribute color = new ProductVariationAttribute();
+        color.setId(11L);
+        color.setAttributeName("Color");
+        color.setAttributeValue("Red");
+        color.setVariation(existingVariation);
+        existingVariation.setAttributes(new ArrayList<>(List.of(size, color)));
+
+        ProductVariationRequestDTO variationRequestDTO = generateVariationRequest();
+        variationRequestDTO.setSku(existingVariation.getSku());
+        variationRequestDTO.setAttributes(List.of(generateAttributeDTO()));
+        when(productVariationRepository.findById(1L)).thenReturn(Optional.of(existingVariation));
+
+        assertTrue(service.updateVariation(1L, variationRequestDTO).get().isSuccess());
+        assertEquals(List.of(size), existingVariation.getAttributes());
+        assertEquals(10L, existingVariation.getAttributes().get(0).getId());
+        assertEquals("Default Size", existingVariation.getAttributes().get(0).getAttributeValue());
+    }
+
+    @Test
+    void shouldNotCreateProductWithTakenSku() {
+        ProductVariationRequestDTO variationRequestDTO = generateVariationRequest();
+        variationRequestDTO.setAttributes(List.of(generateAttributeDTO()));
+        ProductRequestDTO productRequestDTO = generateProductRequest();
+        productRequestDTO.setVariations(List.of(variationRequestDTO));
+        when(brandService.findById(any(Long.class))).thenReturn(createTestBrand());
+        when(categoryService.findById(any(Long.class))).thenReturn(createTestCategory());
+        when(productRepository.save(any(Product.class))).thenReturn(generateProduct(1L));
+        doThrow(skuConflict()).when(productRepository).flush();
+
+        assertThrows(ResourceConflictException.class, () -> service.createProduct(productRequestDTO));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void shouldFindVariationBySkuIgnoringCase() {
+        ProductVariation variation = generateProductVariation(7L);
+        variation.setSku("Cloak-M");
+        variation.setProduct(generateProduct(3L));
+        when(skuIndex.findVariationId("cloak-m")).thenReturn(Optional.of(7L));
+        when(productVariationRepository.findWithAttributesById(7L)).thenReturn(Optional.of(variation));
+
+        SkuLookupDTO found = service.findVariationBySku("cloak-m");
+
+        assertEquals(3L, found.getProductId());
+        assertEquals(7L, found.getVariation().getId());
+        verify(skuIndex, never()).evict(any());
+    }
+
+    @Test
+    void shouldEvictRenamedSkuAndReadItThroughIndex() {
+        ProductVariation renamed = generateProductVariation(7L);
+        renamed.setSku("OTHER");
+        ProductVariation current = generateProductVariation(8L);
+        current.setSku("CLOAK-M");
+        when(skuIndex.findVariationId("CLOAK-M")).thenReturn(Optional.of(7L));
+        when(productVariationRepository.findWithAttributesById(7L)).thenReturn(Optional.of(renamed));
+        when(productVariationRepository.findWithAttributesByLowerSku("cloak-m")).thenReturn(Optional.of(current));
+
+        assertEquals(8L, service.findVariationBySku("CLOAK-M").getVariation().getId());
+        verify(skuIndex).evict("CLOAK-M");
+    }
+
+    @Test
+    void shouldFindRenamedSkuBeforeSnapshotCatchesUp() {
+        catalogProperties.setReadMode(CatalogProperties.ReadMode.SNAPSHOT);
+        Product product = generateProduct(3L);
+        ProductVariation stale = generateProductVariation(7L);
+        stale.setSku("CLOAK-OLD");
+        stale.setProduct(product);
+        product.getVariations().add(stale);
+        CatalogSnapshot snapshot = CatalogSnapshot.EMPTY.apply(List.of(
+                new CatalogSnapshot.Entry(ProductMapper.toResponseDTO(product), 1L, 1L)), List.of());
+        when(catalogSnapshotService.isReady()).thenReturn(true);
+        when(catalogSnapshotService.getSnapshot()).thenReturn(snapshot);
+
+        ProductVariation renamed = generateProductVariation(7L);
+        renamed.setSku("CLOAK-NEW");
+        renamed.setProduct(product);
+        when(skuIndex.findVariationId("cloak-new")).thenReturn(Optional.of(7L));
+        when(productVariationRepository.findWithAttributesByLowerSku("cloak-new")).thenReturn(Optional.of(renamed));
+
+        SkuLookupDTO found = service.findVariationBySku("cloak-new");
+
+        assertEquals(3L, found.getProductId());
+        assertEquals("CLOAK-NEW", found.getVariation().getSku());
+        verify(productVariationRepository, never()).findWithAttributesById(any());
+    }
+
+    @Test
+    void shouldNotFindUnknownOrBlankSku() {
+        when(skuIndex.findVariationId("NOPE")).thenReturn(Optional.empty());
+        when(skuIndex.findVariationId("GONE")).thenReturn(Optional.of(9L));
+
+        assertThrows(ResourceNotFoundException.class, () -> service.findVariationBySku("NOPE"));
+        assertThrows(ResourceNotFoundException.class, () -> service.findVariationBySku("GONE"));
+        verify(skuIndex).evict("GONE");
+        assertThrows(InvalidRequestException.class, () -> service.findVariationBySku(" "));
+    }
+
+    @Test
+    void shouldNotUpdateVariationAtStaleVersion() {
+        ProductVariation existingVariation = new ProductVariation();
+        existingVariation.setId(1L);
+        existingVariation.setVersion(2L);
+        existingVariation.setProduct(generateProduct(1L));
+        when(productVariationRepository.findById(1L)).thenReturn(Optional.of(existingVariation));
+
+        assertThrows(PreconditionFailedException.class, () -> service.updateVariation(1L, generateVariationRequest(), 1L));
+        verify(productVariationRepository, never()).save(any(ProductVariation.class));
+    }
+
     @Test
     void shouldNotUpdateVariationWithInvalidId() {
         assertThrows(InvalidRequestException.class, () -> service.updateVariation(-1L, generateVariationRequest()));
@@ -484,6 +838,7 @@ class ProductServiceTest {
         product.getVariations().add(existingVariation2);
 
         when(productVariationRepository.findById(1L)).thenReturn(Optional.of(existingVariation1));
+        when(productVariationRepository.saveAndFlush(any(ProductVariation.class))).thenThrow(skuConflict());
 
         assertThrows(ResourceConflictException.class, () -> service.updateVariation(1L, variationRequestDTO));
     }
@@ -495,6 +850,18 @@ class ProductServiceTest {
         assertTrue(service.purchaseProduct(1L, 2));
     }
 
+    @Test
+    void shouldPublishStockChangeOnPurchase() {
+        when(productVariationRepository.decrementStock(any(Long.class), any(Integer.class))).thenReturn(1);
+
+        service.purchaseProduct(7L, 1);
+
+        ArgumentCaptor<CatalogChangedEvent> event = ArgumentCaptor.forClass(CatalogChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(CatalogChangedEvent.Type.STOCK, event.getValue().getType());
+        assertEquals(7L, event.getValue().getId());
+    }
+
     @Test
     void shouldNotPurchaseProductWithInvalidVariationId() {
         assertThrows(InvalidRequestException.class, () -> service.purchaseProduct(-1L, 2));
@@ -519,6 +886,123 @@ class ProductServiceTest {
         assertThrows(InsufficientStockException.class, () -> service.purchaseProduct(1L, 5));
     }
 
+    @Test
+    void shouldPurchaseFromInventoryEngineWithoutDatabase() {
+        when(inventoryEngine.tryPurchase(1L, 2)).thenReturn(InventoryEngine.Outcome.PURCHASED);
+
+        assertTrue(service.purchaseProduct(1L, 2));
+        verifyNoInteractions(productVariationRepository, transactionManager, eventPublisher);
+    }
+
+    @Test
+    void shouldNotPurchaseFromInventoryEngineWithInsufficientStock() {
+        when(inventoryEngine.tryPurchase(1L, 2)).thenReturn(InventoryEngine.Outcome.INSUFFICIENT);
+
+        assertThrows(InsufficientStockException.class, () -> service.purchaseProduct(1L, 2));
+        verifyNoInteractions(productVariationRepository);
+    }
+
+    @Test
+    void shouldPurchaseThroughCombinerWhenBatching() {
+        when(purchaseCombiner.applies()).thenReturn(true);
+        when(purchaseCombiner.purchase(1L, 2)).thenReturn(true);
+        when(purchaseCombiner.purchase(1L, 9)).thenReturn(false);
+
+        assertTrue(service.purchaseProduct(1L, 2));
+        assertThrows(InsufficientStockException.class, () -> service.purchaseProduct(1L, 9));
+        verifyNoInteractions(productVariationRepository, transactionManager);
+    }
+
+    @Test
+    void shouldSetStockThroughInventoryEngine() {
+        when(inventoryEngine.setStock(1L, 25)).thenReturn(true);
+
+        assertTrue(service.updateVariationStock(1L, 25));
+        verify(productVariationRepository, never()).updateStockById(any(Long.class), any(Integer.class));
+    }
+
+    @Test
+    void shouldNotShardVariationStockWhileInventoryInMemory() {
+        when(inventoryEngine.isActive()).thenReturn(true);
+
+        assertThrows(InvalidRequestException.class, () -> service.updateVariationStockShards(1L, 4));
+    }
+
+    @Test
+    void shouldPurchaseShardedVariationFromBuckets() {
+        when(productVariationRepository.findStockShardsById(1L)).thenReturn(Optional.of(8));
+        when(stockBucketService.decrement(1L, 8, 2)).thenReturn(true);
+
+        assertTrue(service.purchaseProduct(1L, 2));
+        verify(productVariationRepository, never()).decrementStock(any(Long.class), any(Integer.class));
+    }
+
+    @Test
+    void shouldNotPurchaseShardedVariationWithInsufficientStock() {
+        when(productVariationRepository.findStockShardsById(1L)).thenReturn(Optional.of(8));
+        when(stockBucketService.decrement(1L, 8, 5)).thenReturn(false);
+
+        assertThrows(InsufficientStockException.class, () -> service.purchaseProduct(1L, 5));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void shouldReturnStockThroughEachVariationsStore() {
+        when(inventoryEngine.manages(any(Long.class))).thenAnswer(invocation -> invocation.getArgument(0).equals(1L));
+        when(productVariationRepository.findStockShardsById(2L)).thenReturn(Optional.of(4));
+        when(productVariationRepository.findStockShardsById(3L)).thenReturn(Optional.empty());
+        when(productVariationRepository.findStockShardsById(5L)).thenReturn(Optional.empty());
+
+        service.returnStock(Map.of(1L, 1, 2L, 2, 3L, 3, 5L, 5));
+
+        verify(inventoryEngine).restock(Map.of(1L, 1));
+        verify(stockBucketService).increment(2L, 4, 2);
+        verify(productVariationRepository).applyStockDeltas(new Long[]{3L, 5L}, new Integer[]{-3, -5});
+        verify(eventPublisher, times(3)).publishEvent(any(CatalogChangedEvent.class));
+    }
+
+    @Test
+    void shouldSpreadStockOfShardedVariationAcrossBuckets() {
+        when(productVariationRepository.findStockShardsById(1L)).thenReturn(Optional.of(4));
+
+        assertTrue(service.updateVariationStock(1L, 25));
+        verify(stockBucketService).setStock(1L, 25);
+        verify(productVariationRepository, never()).updateStockById(any(Long.class), any(Integer.class));
+    }
+
+    @Test
+    void shouldShardVariationStock() {
+        ProductVariation variation = new ProductVariation();
+        variation.setId(1L);
+        variation.setStock(30);
+        when(productVariationRepository.lockById(1L)).thenReturn(Optional.of(variation));
+
+        assertTrue(service.updateVariationStockShards(1L, 4));
+        verify(stockBucketService).reshard(variation, 30, 4);
+    }
+
+    @Test
+    void shouldReshardFromLockedBucketTotal() {
+        ProductVariation variation = new ProductVariation();
+        variation.setId(1L);
+        variation.setStock(0);
+        variation.setStockShards(4);
+        when(productVariationRepository.lockById(1L)).thenReturn(Optional.of(variation));
+        when(stockBucketService.lockedStock(1L)).thenReturn(12);
+
+        assertTrue(service.updateVariationStockShards(1L, 0));
+        verify(stockBucketService).reshard(variation, 12, 0);
+    }
+
+    @Test
+    void shouldNotShardVariationStockWithInvalidShards() {
+        assertThrows(InvalidRequestException.class, () -> service.updateVariationStockShards(1L, null));
+        assertThrows(InvalidRequestException.class, () -> service.updateVariationStockShards(1L, -1));
+        assertThrows(InvalidRequestException.class, () -> service.updateVariationStockShards(1L, StockBucketService.MAX_STOCK_SHARDS + 1));
+        when(productVariationRepository.lockById(2L)).thenReturn(Optional.empty());
+        assertThrows(ResourceNotFoundException.class, () -> service.updateVariationStockShards(2L, 4));
+    }
+
     @Test
     void shouldUpdateVariationPrice() {
         when(productVariationRepository.updatePriceById(any(Long.class), any(Double.class))).thenReturn(1);
@@ -577,9 +1061,11 @@ class ProductServiceTest {
 
     @Test
     void shouldDeleteValidVariation() {
-        when(productVariationRepository.findById(any(Long.class))).thenReturn(Optional.of(generateProductVariation(1L)));
+        when(productRepository.deleteVariationsByIdIn(List.of(1L))).thenReturn(Map.of(1L, 2L));
 
         assertTrue(service.deleteVariation(1L));
+        verify(inventoryEngine).forget(1L);
+        verify(eventPublisher).publishEvent(any(CatalogChangedEvent.class));
     }
 
     @Test
@@ -589,7 +1075,7 @@ class ProductServiceTest {
 
     @Test
     void shouldNotDeleteNonExistentVariation() {
-        when(productVariationRepository.findById(any(Long.class))).thenReturn(Optional.empty());
+        when(productRepository.deleteVariationsByIdIn(List.of(1L))).thenReturn(Map.of());
 
         assertThrows(ResourceNotFoundException.class, () -> service.deleteVariation(1L));
     }
@@ -616,6 +1102,11 @@ class ProductServiceTest {
         return pv;
     }
 
+    private DataIntegrityViolationException skuConflict() {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("duplicate key", new SQLException("duplicate key", "23505"), SkuIndex.UNIQUE_INDEX));
+    }
+
     private ProductRequestDTO generateProductRequest() {
         ProductRequestDTO dto = new ProductRequestDTO();
         dto.setName("Test Product 1");
@@ -0,0 +1,180 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.config.InventoryProperties;
+import com.mythicemporium.event.CatalogChangedEvent;
+import com.mythicemporium.repository.ProductVariationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PurchaseCombinerTest {
+
+    @Mock
+    ProductVariationRepository productVariationRepository;
+
+    @Mock
+    StockBucketService stockBucketService;
+
+    @Mock
+    ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    private InventoryProperties inventoryProperties;
+    private SimpleMeterRegistry meterRegistry;
+    private PurchaseCombiner combiner;
+
+    @BeforeEach
+    void setUp() {
+        inventoryProperties = new InventoryProperties();
+        inventoryProperties.setPurchaseBatchWindow(Duration.ofSeconds(10));
+        inventoryProperties.setPurchaseBatchSize(3);
+        meterRegistry = new SimpleMeterRegistry();
+        combiner = new PurchaseCombiner(productVariationRepository, stockBucketService, inventoryProperties, eventPublisher,
+                transactionManager, meterRegistry);
+    }
+
+    @Test
+    void shouldApplyOnlyWithBatchWindow() {
+        assertTrue(combiner.applies());
+
+        inventoryProperties.setPurchaseBatchWindow(Duration.ZERO);
+
+        assertFalse(combiner.applies());
+    }
+
+    @Test
+    void shouldApplyFullBatchAsOneUpdateWithSummedQuantity() {
+        when(productVariationRepository.findStockShardsById(1L)).thenReturn(Optional.empty());
+        when(productVariationRepository.decrementStock(1L, 6)).thenReturn(1);
+
+        List<CompletableFuture<Boolean>> purchases = purchaseInOrder(1, 2, 3);
+
+        assertEquals(List.of(true, true, true), purchases.stream().map(CompletableFuture::join).toList());
+        verify(productVariationRepository, times(1)).decrementStock(any(Long.class), anyInt());
+        verify(transactionManager, times(1)).commit(any());
+        verify(eventPublisher, times(1)).publishEvent(any(CatalogChangedEvent.class));
+        assertEquals(3.0, meterRegistry.get("inventory.purchase.batch.size").summary().totalAmount());
+    }
+
+    @Test
+    void shouldGrantInArrivalOrderWhenSumDoesNotFit() {
+        when(productVariationRepository.findStockShardsById(1L)).thenReturn(Optional.empty());
+        when(productVariationRepository.decrementStock(1L, 9)).thenReturn(0);
+        when(productVariationRepository.lockStockByIdIn(List.of(1L))).thenReturn(List.of(stockRow(1L, 6)));
+
+        List<CompletableFuture<Boolean>> purchases = purchaseInOrder(3, 4, 2);
+
+        assertEquals(List.of(true, false, true), purchases.stream().map(CompletableFuture::join).toList());
+        verify(productVariationRepository).decrementStock(1L, 5);
+        verify(eventPublisher, times(1)).publishEvent(any(CatalogChangedEvent.class));
+    }
+
+    @Test
+    void shouldAllocateOverflowingBatchPerRequest() {
+        when(productVariationRepository.findStockShardsById(1L)).thenReturn(Optional.empty());
+        when(productVariationRepository.lockStockByIdIn(List.of(1L))).thenReturn(List.of(stockRow(1L, 10)));
+
+        List<CompletableFuture<Boolean>> purchases = purchaseInOrder(Integer.MAX_VALUE, 4, 5);
+
+        assertEquals(List.of(false, true, true), purchases.stream().map(CompletableFuture::join).toList());
+        verify(productVariationRepository, times(1)).decrementStock(any(Long.class), anyInt());
+        verify(productVariationRepository).decrementStock(1L, 9);
+    }
+
+    @Test
+    void shouldAllocateShardedVariationInOneOrderedPass() {
+        when(productVariationRepository.findStockShardsById(1L)).thenReturn(Optional.of(4));
+        when(stockBucketService.allocate(1L, List.of(1, 2, 3))).thenReturn(new boolean[] {true, false, true});
+
+        List<CompletableFuture<Boolean>> purchases = purchaseInOrder(1, 2, 3);
+
+        assertEquals(List.of(true, false, true), purchases.stream().map(CompletableFuture::join).toList());
+        verify(stockBucketService, never()).decrement(any(Long.class), anyInt(), anyInt());
+        verify(productVariationRepository, never()).decrementStock(any(Long.class), anyInt());
+    }
+
+    @Test
+    void shouldFailEveryPurchaseOfBatchWhenTransactionFails() {
+        when(productVariationRepository.findStockShardsById(1L)).thenThrow(new QueryTimeoutException("timeout"));
+
+        List<CompletableFuture<Boolean>> purchases = purchaseInOrder(1, 1, 1);
+
+        for(CompletableFuture<Boolean> purchase : purchases) {
+            CompletionException thrown = assertThrows(CompletionException.class, purchase::join);
+            assertInstanceOf(QueryTimeoutException.class, thrown.getCause());
+        }
+        verifyNoInteractions(eventPublisher);
+    }
+
+    // Starts one buyer per quantity and waits for each to block before starting the next, so the
+    // batch holds them in the given order.
+    private List<CompletableFuture<Boolean>> purchaseInOrder(int... quantities) {
+        List<CompletableFuture<Boolean>> purchases = new ArrayList<>();
+        for(int quantity : quantities) {
+            CompletableFuture<Boolean> purchase = new CompletableFuture<>();
+            Thread buyer = new Thread(() -> {
+                try {
+                    purchase.complete(combiner.purchase(1L, quantity));
+                }
+                catch(RuntimeException e) {
+                    purchase.completeExceptionally(e);
+                }
+            });
+            buyer.start();
+            awaitBlocked(buyer, purchase);
+            purchases.add(purchase);
+        }
+        return purchases;
+    }
+
+    private void awaitBlocked(Thread buyer, CompletableFuture<Boolean> purchase) {
+        while(!purchase.isDone() && buyer.getState() != Thread.State.WAITING && buyer.getState() != Thread.State.TIMED_WAITING) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private ProductVariationRepository.StockRow stockRow(Long id, Integer stock) {
+        return new ProductVariationRepository.StockRow() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Long getProductId() {
+                return 10L;
+            }
+
+            @Override
+            public Integer getStock() {
+                return stock;
+            }
+
+            @Override
+            public Integer getStockShards() {
+                return null;
+            }
+        };
+    }
+}
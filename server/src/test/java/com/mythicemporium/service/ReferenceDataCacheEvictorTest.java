@@ -0,0 +1,56 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.config.CacheConfig;
+import com.mythicemporium.event.CatalogChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReferenceDataCacheEvictorTest {
+
+    private ConcurrentMapCacheManager cacheManager;
+
+    private ReferenceDataCacheEvictor evictor;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = new ConcurrentMapCacheManager(CacheConfig.BRANDS, CacheConfig.ALL_BRANDS,
+                CacheConfig.CATEGORIES, CacheConfig.ALL_CATEGORIES);
+        evictor = new ReferenceDataCacheEvictor(cacheManager);
+
+        cacheManager.getCache(CacheConfig.BRANDS).put(1L, "Brand 1");
+        cacheManager.getCache(CacheConfig.BRANDS).put(2L, "Brand 2");
+        cacheManager.getCache(CacheConfig.ALL_BRANDS).put("all", List.of("Brand 1", "Brand 2"));
+        cacheManager.getCache(CacheConfig.CATEGORIES).put(1L, "Category 1");
+    }
+
+    @Test
+    void shouldEvictChangedBrandAndBrandList() {
+        evictor.evict(CatalogChangedEvent.brandSaved(1L));
+
+        assertNull(cacheManager.getCache(CacheConfig.BRANDS).get(1L));
+        assertNotNull(cacheManager.getCache(CacheConfig.BRANDS).get(2L));
+        assertNull(cacheManager.getCache(CacheConfig.ALL_BRANDS).get("all"));
+        assertNotNull(cacheManager.getCache(CacheConfig.CATEGORIES).get(1L));
+    }
+
+    @Test
+    void shouldEvictDeletedCategory() {
+        evictor.evict(CatalogChangedEvent.categoryDeleted(1L));
+
+        assertNull(cacheManager.getCache(CacheConfig.CATEGORIES).get(1L));
+        assertNotNull(cacheManager.getCache(CacheConfig.BRANDS).get(1L));
+    }
+
+    @Test
+    void shouldIgnoreProductChanges() {
+        evictor.evict(CatalogChangedEvent.productSaved(1L));
+
+        assertNotNull(cacheManager.getCache(CacheConfig.BRANDS).get(1L));
+        assertNotNull(cacheManager.getCache(CacheConfig.ALL_BRANDS).get("all"));
+    }
+}
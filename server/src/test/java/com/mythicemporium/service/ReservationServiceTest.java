@@ -0,0 +1,172 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.config.InventoryProperties;
+import com.mythicemporium.dto.ReservationResponseDTO;
+import com.mythicemporium.exception.InsufficientStockException;
+import com.mythicemporium.exception.InvalidRequestException;
+import com.mythicemporium.exception.ResourceConflictException;
+import com.mythicemporium.exception.ResourceNotFoundException;
+import com.mythicemporium.model.ProductVariation;
+import com.mythicemporium.model.StockReservation;
+import com.mythicemporium.repository.ProductVariationRepository;
+import com.mythicemporium.repository.StockReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReservationServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T12:00:00Z");
+
+    @Mock
+    StockReservationRepository reservationRepository;
+
+    @Mock
+    ProductVariationRepository productVariationRepository;
+
+    @Mock
+    ProductService productService;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    private InventoryProperties inventoryProperties;
+    private ReservationService service;
+
+    @BeforeEach
+    void setUp() {
+        inventoryProperties = new InventoryProperties();
+        inventoryProperties.setReservationTtl(Duration.ofMinutes(10));
+        inventoryProperties.setReservationSweepBatchSize(2);
+        service = new ReservationService(reservationRepository, productVariationRepository, productService, inventoryProperties,
+                transactionManager, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    void shouldReserveByTakingStock() throws ExecutionException, InterruptedException {
+        when(productVariationRepository.getReferenceById(1L)).thenReturn(new ProductVariation());
+
+        Result result = service.reserve(1L, 3, "user").get();
+
+        ReservationResponseDTO data = (ReservationResponseDTO) result.getData();
+        verify(productService).purchaseProduct(1L, 3);
+        verify(reservationRepository).save(any(StockReservation.class));
+        assertTrue(result.isSuccess());
+        assertEquals(StockReservation.Status.ACTIVE, data.getStatus());
+        assertEquals(NOW.plus(Duration.ofMinutes(10)), data.getExpiresAt());
+    }
+
+    @Test
+    void shouldNotReserveWithInsufficientStock() {
+        when(productService.purchaseProduct(1L, 3)).thenThrow(new InsufficientStockException("Insufficient stock."));
+
+        assertThrows(InsufficientStockException.class, () -> service.reserve(1L, 3, "user"));
+        verify(reservationRepository, never()).save(any());
+    }
+
+    @Test
+    void shouldNotReserveWithInvalidQuantity() {
+        assertThrows(InvalidRequestException.class, () -> service.reserve(1L, 0, "user"));
+        assertThrows(InvalidRequestException.class, () -> service.reserve(1L, null, "user"));
+        verifyNoInteractions(productService);
+    }
+
+    @Test
+    void shouldConfirmWithoutReturningStock() throws ExecutionException, InterruptedException {
+        StockReservation reservation = reservation(5L, 1L, 2, NOW.plusSeconds(60));
+        when(reservationRepository.lockById(5L)).thenReturn(Optional.of(reservation));
+
+        Result result = service.confirm(5L, "user").get();
+
+        assertTrue(result.isSuccess());
+        assertEquals(StockReservation.Status.CONFIRMED, reservation.getStatus());
+        verifyNoInteractions(productService);
+    }
+
+    @Test
+    void shouldReleaseAndReturnStock() throws ExecutionException, InterruptedException {
+        StockReservation reservation = reservation(5L, 1L, 2, NOW.plusSeconds(60));
+        when(reservationRepository.lockById(5L)).thenReturn(Optional.of(reservation));
+
+        service.release(5L, "user").get();
+
+        assertEquals(StockReservation.Status.RELEASED, reservation.getStatus());
+        verify(productService).returnStock(Map.of(1L, 2));
+    }
+
+    @Test
+    void shouldNotConfirmReservationOfAnotherOwner() {
+        when(reservationRepository.lockById(5L)).thenReturn(Optional.of(reservation(5L, 1L, 2, NOW.plusSeconds(60))));
+
+        assertThrows(ResourceNotFoundException.class, () -> service.confirm(5L, "someone-else"));
+    }
+
+    @Test
+    void shouldNotConfirmExpiredOrSettledReservation() {
+        StockReservation expired = reservation(5L, 1L, 2, NOW);
+        StockReservation released = reservation(6L, 1L, 2, NOW.plusSeconds(60));
+        released.setStatus(StockReservation.Status.RELEASED);
+        when(reservationRepository.lockById(5L)).thenReturn(Optional.of(expired));
+        when(reservationRepository.lockById(6L)).thenReturn(Optional.of(released));
+
+        assertThrows(ResourceConflictException.class, () -> service.confirm(5L, "user"));
+        assertThrows(ResourceConflictException.class, () -> service.release(6L, "user"));
+        verifyNoInteractions(productService);
+    }
+
+    @Test
+    void shouldSweepExpiredInBatchesAndReturnStockPerVariation() {
+        when(reservationRepository.lockExpired(NOW, 2))
+                .thenReturn(List.of(reservation(1L, 7L, 2, NOW), reservation(2L, 7L, 3, NOW)))
+                .thenReturn(List.of(reservation(3L, 8L, 1, NOW)));
+
+        service.sweepExpired();
+
+        verify(reservationRepository).updateStatusByIdIn(List.of(1L, 2L), StockReservation.Status.EXPIRED);
+        verify(reservationRepository).updateStatusByIdIn(List.of(3L), StockReservation.Status.EXPIRED);
+        verify(productService).returnStock(Map.of(7L, 5));
+        verify(productService).returnStock(Map.of(8L, 1));
+        verify(reservationRepository, times(2)).lockExpired(any(Instant.class), anyInt());
+    }
+
+    @Test
+    void shouldSweepNothingWhenNoneExpired() {
+        when(reservationRepository.lockExpired(NOW, 2)).thenReturn(List.of());
+
+        service.sweepExpired();
+
+        verify(reservationRepository, never()).updateStatusByIdIn(any(), any());
+        verify(productService, never()).returnStock(anyMap());
+    }
+
+    private StockReservation reservation(Long id, Long variationId, int quantity, Instant expiresAt) {
+        StockReservation reservation = new StockReservation();
+        reservation.setId(id);
+        reservation.setVariationId(variationId);
+        reservation.setQuantity(quantity);
+        reservation.setStatus(StockReservation.Status.ACTIVE);
+        reservation.setOwner("user");
+        reservation.setCreatedAt(NOW.minusSeconds(600));
+        reservation.setExpiresAt(expiresAt);
+        return reservation;
+    }
+}
@@ -0,0 +1,61 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.config.CatalogProperties;
+import com.mythicemporium.repository.ProductVariationRepository;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.SQLException;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SkuIndexTest {
+
+    @Mock
+    ProductVariationRepository productVariationRepository;
+
+    private SkuIndex skuIndex;
+
+    @BeforeEach
+    void setUp() {
+        skuIndex = new SkuIndex(productVariationRepository, new CatalogProperties());
+    }
+
+    @Test
+    void shouldResolveEachSkuOnceIgnoringCase() {
+        when(productVariationRepository.findIdByLowerSku("cloak-m")).thenReturn(Optional.of(7L));
+
+        assertEquals(Optional.of(7L), skuIndex.findVariationId("CLOAK-M"));
+        assertEquals(Optional.of(7L), skuIndex.findVariationId("cloak-m"));
+        verify(productVariationRepository, times(1)).findIdByLowerSku("cloak-m");
+
+        skuIndex.evict("Cloak-M");
+        skuIndex.findVariationId("cloak-m");
+        verify(productVariationRepository, times(2)).findIdByLowerSku("cloak-m");
+    }
+
+    @Test
+    void shouldNotCacheMissingSkus() {
+        when(productVariationRepository.findIdByLowerSku("new-sku")).thenReturn(Optional.empty(), Optional.of(9L));
+
+        assertTrue(skuIndex.findVariationId("NEW-SKU").isEmpty());
+        assertEquals(Optional.of(9L), skuIndex.findVariationId("NEW-SKU"));
+    }
+
+    @Test
+    void shouldRecognizeOnlyTheSkuIndexAsConflict() {
+        assertTrue(SkuIndex.isConflict(new DataIntegrityViolationException("duplicate",
+                new ConstraintViolationException("duplicate", new SQLException("duplicate", "23505"), SkuIndex.UNIQUE_INDEX))));
+        assertFalse(SkuIndex.isConflict(new DataIntegrityViolationException("duplicate",
+                new ConstraintViolationException("duplicate", new SQLException("duplicate", "23505"), "uk_stock_bucket_variation_bucket"))));
+        assertFalse(SkuIndex.isConflict(new IllegalStateException("unrelated")));
+    }
+}
@@ -0,0 +1,115 @@
+package com.mythicemporium.service;
+
+import com.mythicemporium.model.ProductVariation;
+import com.mythicemporium.model.StockBucket;
+import com.mythicemporium.repository.StockBucketRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockBucketServiceTest {
+
+    @Mock
+    StockBucketRepository stockBucketRepository;
+
+    private StockBucketService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new StockBucketService(stockBucketRepository);
+    }
+
+    @Test
+    void shouldStopAtFirstBucketWithEnoughStock() {
+        when(stockBucketRepository.decrementBucket(eq(1L), anyInt(), eq(2))).thenReturn(1);
+
+        assertTrue(service.decrement(1L, 4, 2));
+        verify(stockBucketRepository, times(1)).decrementBucket(eq(1L), anyInt(), eq(2));
+        verify(stockBucketRepository, never()).lockAllByVariationId(1L);
+    }
+
+    @Test
+    void shouldTryEverySiblingThenDrainAcrossBuckets() {
+        List<StockBucket> buckets = List.of(bucket(0, 1), bucket(1, 2), bucket(2, 1));
+        when(stockBucketRepository.decrementBucket(eq(1L), anyInt(), eq(3))).thenReturn(0);
+        when(stockBucketRepository.lockAllByVariationId(1L)).thenReturn(buckets);
+
+        assertTrue(service.decrement(1L, 3, 3));
+
+        ArgumentCaptor<Integer> tried = ArgumentCaptor.forClass(Integer.class);
+        verify(stockBucketRepository, times(3)).decrementBucket(eq(1L), tried.capture(), eq(3));
+        assertEquals(3, tried.getAllValues().stream().distinct().count());
+        assertEquals(List.of(0, 0, 1), buckets.stream().map(StockBucket::getStock).toList());
+    }
+
+    @Test
+    void shouldNotDrainMoreThanTotalStock() {
+        List<StockBucket> buckets = List.of(bucket(0, 1), bucket(1, 1));
+        when(stockBucketRepository.lockAllByVariationId(1L)).thenReturn(buckets);
+
+        assertFalse(service.drain(1L, 3));
+        assertEquals(List.of(1, 1), buckets.stream().map(StockBucket::getStock).toList());
+    }
+
+    @Test
+    void shouldAllocateInArrivalOrderAndTakeFromLowestBucketFirst() {
+        List<StockBucket> buckets = List.of(bucket(0, 2), bucket(1, 3), bucket(2, 1));
+        when(stockBucketRepository.lockAllByVariationId(1L)).thenReturn(buckets);
+
+        boolean[] granted = service.allocate(1L, List.of(3, 4, 2));
+
+        assertArrayEquals(new boolean[] {true, false, true}, granted);
+        assertEquals(List.of(0, 0, 1), buckets.stream().map(StockBucket::getStock).toList());
+        verify(stockBucketRepository, never()).decrementBucket(any(Long.class), anyInt(), anyInt());
+    }
+
+    @Test
+    void shouldSpreadStockEvenlyAcrossBuckets() {
+        List<StockBucket> buckets = List.of(bucket(0, 0), bucket(1, 0), bucket(2, 0));
+        when(stockBucketRepository.lockAllByVariationId(1L)).thenReturn(buckets);
+
+        service.setStock(1L, 11);
+
+        assertEquals(List.of(4, 4, 3), buckets.stream().map(StockBucket::getStock).toList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldReshardIntoBucketsAndBack() {
+        ProductVariation variation = new ProductVariation();
+        variation.setId(1L);
+        variation.setStock(10);
+
+        service.reshard(variation, 10, 4);
+
+        ArgumentCaptor<List<StockBucket>> saved = ArgumentCaptor.forClass(List.class);
+        verify(stockBucketRepository).saveAll(saved.capture());
+        assertEquals(List.of(3, 3, 2, 2), saved.getValue().stream().map(StockBucket::getStock).toList());
+        assertEquals(4, variation.getStockShards());
+
+        service.reshard(variation, 10, 1);
+
+        verify(stockBucketRepository, times(2)).deleteAllByVariationId(1L);
+        assertNull(variation.getStockShards());
+        assertEquals(10, variation.getStock());
+    }
+
+    private StockBucket bucket(int bucket, int stock) {
+        StockBucket stockBucket = new StockBucket();
+        stockBucket.setBucket(bucket);
+        stockBucket.setStock(stock);
+        return stockBucket;
+    }
+}